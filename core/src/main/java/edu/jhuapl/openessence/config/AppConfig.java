@@ -26,9 +26,15 @@
 
 package edu.jhuapl.openessence.config;
 
+import edu.jhuapl.bsp.detector.DetectorRegistry;
+import edu.jhuapl.bsp.detector.DetectorStateCache;
+import edu.jhuapl.graphs.controller.GraphDataBinaryToDiskHandler;
+import edu.jhuapl.graphs.controller.InMemoryGraphDataHandler;
 import edu.jhuapl.graphs.jfreechart.JFreeChartGraphSource;
+import edu.jhuapl.openessence.controller.ReportController;
 import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
 import edu.jhuapl.openessence.i18n.InspectableResourceBundleMessageSource;
+import edu.jhuapl.openessence.web.util.SeriesResultCache;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
@@ -107,4 +113,50 @@ public class AppConfig {
         return new JFreeChartGraphSource();
     }
 
+    /**
+     * Holds graph data between building a chart and fetching its image. Graphs live as long as the graph retention
+     * period; past {@code graph.cache.maxEntries} graphs the oldest are written to the graph directory (compressed
+     * unless {@code graph.cache.compress} is false), unless {@code graph.cache.spillToDisk} is false.
+     */
+    @Bean
+    public InMemoryGraphDataHandler graphDataHandler() {
+        GraphDataBinaryToDiskHandler spillHandler = null;
+        if (env.getProperty("graph.cache.spillToDisk", Boolean.class, true)) {
+            boolean compress = env.getProperty("graph.cache.compress", Boolean.class, true);
+            spillHandler = new GraphDataBinaryToDiskHandler(envConfig.graphPath().toString(), compress);
+        }
+        return new InMemoryGraphDataHandler(env.getProperty("graph.cache.maxEntries", Integer.class, 500),
+                                            envConfig.graphRetention(), spillHandler);
+    }
+
+    /**
+     * Pools detector instances across requests so time series reports don't construct a new detector (and re-read its
+     * configuration) for every series.
+     */
+    @Bean
+    public DetectorRegistry detectorRegistry() {
+        return new DetectorRegistry();
+    }
+
+    /**
+     * End states of incremental detectors, so refreshing or extending a time series only runs detection on the new
+     * days.
+     */
+    @Bean
+    public DetectorStateCache detectorStateCache() {
+        return new DetectorStateCache();
+    }
+
+    /**
+     * Computed time series, so identical dashboard refreshes skip the database and detection. Size and lifetime come
+     * from {@code timeseries.cache.maxEntries} and {@code timeseries.cache.ttl} (milliseconds); a size of 0 turns
+     * the cache off.
+     */
+    @Bean
+    public SeriesResultCache<ReportController.TimeseriesData> timeSeriesCache() {
+        return new SeriesResultCache<ReportController.TimeseriesData>(
+                env.getProperty("timeseries.cache.maxEntries", Integer.class, 200),
+                env.getProperty("timeseries.cache.ttl", Long.class, 300000L));
+    }
+
 }
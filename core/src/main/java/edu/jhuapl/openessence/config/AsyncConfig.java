@@ -43,4 +43,22 @@ public class AsyncConfig implements AsyncConfigurer {
     public ExecutorService getAsyncExecutor() {
         return Executors.newCachedThreadPool();
     }
+
+    /**
+     * Runs per-series detection for time series reports. Detection is CPU bound, so the pool is capped at the number
+     * of processors; extra work queues up instead of oversubscribing the CPUs when several reports run at once.
+     */
+    @Bean
+    public ExecutorService detectionExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads map layer overlays. Loading mostly waits on the databases, so a few threads overlap the overlays of a
+     * request without taking every pooled connection when several maps are requested at once.
+     */
+    @Bean
+    public ExecutorService mapLayerExecutor() {
+        return Executors.newFixedThreadPool(4);
+    }
 }
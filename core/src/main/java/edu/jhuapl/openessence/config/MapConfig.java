@@ -26,6 +26,8 @@
 
 package edu.jhuapl.openessence.config;
 
+import edu.jhuapl.openessence.web.util.MapFeatureStore;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
@@ -84,4 +86,24 @@ public class MapConfig {
         return env.getProperty("postgres.cleanup", "1 minute");
     }
 
+    /**
+     * Whether overlays are served from memory as GeoJSON instead of being written to the map request tables and read
+     * back by GeoServer.
+     */
+    public boolean inMemoryFeatures() {
+        return env.getProperty("map.features.inMemory", Boolean.class, false);
+    }
+
+    /**
+     * How long, in milliseconds, in-memory overlay features can be fetched after the map data request.
+     */
+    public long mapFeatureTtl() {
+        return env.getProperty("map.features.ttl", Long.class, 60000L);
+    }
+
+    @Bean
+    public MapFeatureStore mapFeatureStore() {
+        return new MapFeatureStore(env.getProperty("map.features.maxEntries", Integer.class, 100), mapFeatureTtl());
+    }
+
 }
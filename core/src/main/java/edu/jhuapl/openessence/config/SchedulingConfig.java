@@ -26,11 +26,18 @@
 
 package edu.jhuapl.openessence.config;
 
+import edu.jhuapl.graphs.controller.InMemoryGraphDataHandler;
+import edu.jhuapl.openessence.datasource.jdbc.DailyRollup;
+import edu.jhuapl.openessence.datasource.jdbc.DimensionJoiner;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+import edu.jhuapl.openessence.web.util.MapFeatureStore;
+
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.SchedulingConfigurer;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
@@ -40,7 +47,9 @@ import java.nio.file.DirectoryIteratorException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.annotation.Resource;
 import javax.inject.Inject;
 
 /**
@@ -56,17 +65,98 @@ public class SchedulingConfig implements SchedulingConfigurer {
     @Inject
     private EnvironmentConfig envConfig;
 
+    @Inject
+    private InMemoryGraphDataHandler graphDataHandler;
+
+    @Inject
+    private MapConfig mapConfig;
+
+    @Inject
+    private MapFeatureStore mapFeatureStore;
+
+    @Inject
+    private Environment env;
+
+    @Resource
+    private ConcurrentMap<String, JdbcOeDataSource> dataSources;
+
     @Override
     public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
         // it would be nice if we could use Spring's @Scheduled annotations,
         // but that doesn't let us inject the trigger rate
         taskRegistrar.addFixedDelayTask(new GraphCleanupTask(), envConfig.graphRetention());
+        taskRegistrar.addFixedDelayTask(new Runnable() {
+            @Override
+            public void run() {
+                mapFeatureStore.removeExpired();
+            }
+        }, mapConfig.mapFeatureTtl());
+
+        long joinRefresh = env.getProperty("dimensions.join.refresh", Long.class, DimensionJoiner.DEFAULT_MAX_AGE);
+        if (joinRefresh > 0) {
+            taskRegistrar.addFixedDelayTask(new DimensionJoinRefreshTask(), joinRefresh);
+        }
+
+        long rollupRefresh = env.getProperty("rollups.refresh", Long.class, DailyRollup.DEFAULT_REFRESH_INTERVAL);
+        if (rollupRefresh > 0) {
+            taskRegistrar.addFixedDelayTask(new RollupRefreshTask(), rollupRefresh);
+        }
+    }
+
+    /**
+     * Task that re-joins dimensions in the background, so that requests don't have to wait on the lookup queries.
+     */
+    class DimensionJoinRefreshTask implements Runnable {
+
+        private final Logger log = LoggerFactory.getLogger(getClass());
+
+        @Override
+        public void run() {
+            for (JdbcOeDataSource ds : dataSources.values()) {
+                DimensionJoiner joiner = ds.getDimensionJoiner();
+                if (joiner == null) {
+                    continue;
+                }
+                try {
+                    joiner.refresh();
+                } catch (RuntimeException e) {
+                    // keep going, one bad lookup table shouldn't stop the rest
+                    log.error("Could not join dimensions of data source " + ds.getDataSourceId(), e);
+                }
+            }
+        }
     }
 
     /**
-     * Task that deletes old graph files. Unfortunately, some archaic operating systems (AKA Windows) do not automatically
-     * clean out the system temp directory, so we have to do it ourselves. We also can't rely on Java's temp file feature,
-     * since that deletes files when the JVM shuts down, and we will (hopefully) run forever.
+     * Task that brings daily rollup tables up to date. Until a rollup has been refreshed, its data source's queries use
+     * the base query.
+     */
+    class RollupRefreshTask implements Runnable {
+
+        private final Logger log = LoggerFactory.getLogger(getClass());
+
+        @Override
+        public void run() {
+            for (JdbcOeDataSource ds : dataSources.values()) {
+                DailyRollup rollup = ds.getDailyRollup();
+                if (rollup == null) {
+                    continue;
+                }
+                try {
+                    rollup.refresh();
+                } catch (RuntimeException e) {
+                    // queries keep using the base query, or the last good rollup for recent data
+                    log.error("Could not refresh rollup of data source " + ds.getDataSourceId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Task that drops expired in-memory graph data and deletes old graph files spilled to disk. Unfortunately, some
+     * archaic operating systems (AKA Windows) do not automatically clean out the system temp directory, so we have to do
+     * it ourselves. We also can't rely on Java's temp file feature, since that deletes files when the JVM shuts down, and
+     * we will (hopefully) run forever.
      */
     class GraphCleanupTask implements Runnable {
 
@@ -74,6 +164,8 @@ public class SchedulingConfig implements SchedulingConfigurer {
 
         @Override
         public void run() {
+            graphDataHandler.removeExpired();
+
             // sanity check before we delete all the user's files
             if (!envConfig.graphPath().startsWith(FileUtils.getTempDirectoryPath())) {
                 String msg = "Graph directory is not in system tmp dir.";
@@ -74,10 +74,12 @@ public class DataSourceController extends OeController {
     @ResponseBody
     DataSourceDetails details(@PathVariable JdbcOeDataSource dataSource, ServletWebRequest request, Principal principal,
                               @RequestParam(value = "firstrecord", defaultValue = "0") long firstRecord,
-                              @RequestParam(value = "pagesize", defaultValue = "200") long pageSize)
+                              @RequestParam(value = "pagesize", defaultValue = "200") long pageSize,
+                              @RequestParam(value = "after", required = false) String[] after,
+                              @RequestParam(value = "total", defaultValue = "true") boolean totalRequested)
             throws IOException, OeDataSourceException, OeDataSourceAccessException, ErrorMessageException {
 
-        return reportController.detailsQuery(request, dataSource, firstRecord, pageSize);
+        return reportController.detailsQuery(request, dataSource, firstRecord, pageSize, after, totalRequested);
     }
 
     @RequestMapping(value = "/ds/{dataSource}/details", method = RequestMethod.GET, produces = "text/csv")
@@ -31,6 +31,8 @@ import edu.jhuapl.openessence.datasource.OeDataSourceAccessException;
 import edu.jhuapl.openessence.datasource.entry.ChildRecordSet;
 import edu.jhuapl.openessence.datasource.entry.CompleteRecord;
 import edu.jhuapl.openessence.datasource.entry.DbKeyValMap;
+import edu.jhuapl.openessence.datasource.jdbc.DailyRollup;
+import edu.jhuapl.openessence.datasource.jdbc.DimensionJoiner;
 import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
 import edu.jhuapl.openessence.datasource.jdbc.entry.JdbcOeDataEntrySource;
 import edu.jhuapl.openessence.datasource.jdbc.entry.TableAwareQueryRecord;
@@ -39,6 +41,7 @@ import edu.jhuapl.openessence.upload.FileImporter;
 import edu.jhuapl.openessence.upload.FileImporterRegistry;
 import edu.jhuapl.openessence.web.util.ControllerUtils;
 import edu.jhuapl.openessence.web.util.ErrorMessageException;
+import edu.jhuapl.openessence.web.util.SeriesResultCache;
 
 import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
@@ -55,11 +58,16 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.annotation.Resource;
 import javax.inject.Inject;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -78,6 +86,12 @@ public class InputController extends OeController {
     @Inject
     private FileImporterRegistry fileImporters;
 
+    @Inject
+    private SeriesResultCache<ReportController.TimeseriesData> timeSeriesCache;
+
+    @Resource
+    private ConcurrentMap<String, JdbcOeDataSource> dataSources;
+
     /**
      * Add record to the database with the provided values. Response should be a JSON formatted collection with #success
      * and #record fields indicating status of request and generated keys (if appropriate) for new record.
@@ -111,7 +125,9 @@ public class InputController extends OeController {
                                                                                      dimensions, values),
                                                            ControllerUtils.getChildRecordSets(jdes, request, true));
 
-        return jdes.addCompleteRecord(completeRecord, false);
+        Map<String, Object> result = jdes.addCompleteRecord(completeRecord, false);
+        dataChanged(Collections.singletonList(values));
+        return result;
     }
 
     @RequestMapping(value = "/update", method = {POST, PUT})
@@ -133,6 +149,7 @@ public class InputController extends OeController {
         // are included as part of the request (when merge parameter is true)
         // Defaults to false (nullify parameter values not included on request)
         boolean merge = Boolean.valueOf(request.getParameter("merge"));
+        Map<String, Object> oldValues = new HashMap<String, Object>(completeRecord.getParentRecord().getValues());
 
         // parent record's values are replaced with request param values
         for (String field : completeRecord.getParentRecord().getValues().keySet()) {
@@ -157,6 +174,7 @@ public class InputController extends OeController {
 
         completeRecord.setChildrenRecordSets(ControllerUtils.getChildRecordSets(jdes, servletRequest, false));
         jdes.updateCompleteRecord(dbKeyValMap, completeRecord);
+        dataChanged(Arrays.asList(oldValues, completeRecord.getParentRecord().getValues()));
 
         Map<String, Object> data = data(ds, request);// new HashMap<String, Object>();
         data.put("success", true);
@@ -214,6 +232,7 @@ public class InputController extends OeController {
         }
 
         jdes.deleteQueryRecords(jdes.getTableName(), pksForDeletion);
+        dataChanged(null);
 
         // Build/write response
         Map<String, Object> data = new HashMap<String, Object>();
@@ -236,7 +255,9 @@ public class InputController extends OeController {
                 log.error("No file importer configured for data source {}", ds.getDataSourceId());
                 throw new IllegalArgumentException("No file importer configured");
             }
-            response.getWriter().write(mapper.writeValueAsString(importer.importFile(file)));
+            Object imported = importer.importFile(file);
+            dataChanged(null);
+            response.getWriter().write(mapper.writeValueAsString(imported));
         } catch (Exception e) {
             // respond to exception as normal, but with content type text/html
             response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -244,4 +265,38 @@ public class InputController extends OeController {
         }
 
     }
+
+    /**
+     * Entry data sources usually write the tables that other (query) data sources report on, so we can't tell which
+     * cached time series or joined dimensions are stale and drop them all. Rollups only need a rebuild if a changed
+     * record is older than their lookback period, which we can tell if the record has a value for their date dimension.
+     *
+     * @param records values of the changed records before and after the change, or null if not known
+     */
+    private void dataChanged(List<Map<String, Object>> records) {
+        timeSeriesCache.invalidateAll();
+        for (JdbcOeDataSource ds : dataSources.values()) {
+            DimensionJoiner joiner = ds.getDimensionJoiner();
+            if (joiner != null) {
+                joiner.invalidate();
+            }
+            DailyRollup rollup = ds.getDailyRollup();
+            if (rollup != null) {
+                if (records == null) {
+                    rollup.invalidate();
+                } else {
+                    rollup.recordsChanged(recordDates(records, rollup.getDateId()));
+                }
+            }
+        }
+    }
+
+    private static List<Date> recordDates(List<Map<String, Object>> records, String dateId) {
+        List<Date> dates = new ArrayList<Date>(records.size());
+        for (Map<String, Object> record : records) {
+            Object date = record.get(dateId);
+            dates.add(date instanceof Date ? (Date) date : null);
+        }
+        return dates;
+    }
 }
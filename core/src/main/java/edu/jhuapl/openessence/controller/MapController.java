@@ -30,7 +30,6 @@ import edu.jhuapl.openessence.config.MapConfig;
 import edu.jhuapl.openessence.datasource.Dimension;
 import edu.jhuapl.openessence.datasource.Filter;
 import edu.jhuapl.openessence.datasource.QueryManipulationStore;
-import edu.jhuapl.openessence.datasource.Record;
 import edu.jhuapl.openessence.datasource.entry.OeDataEntrySource;
 import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
 import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
@@ -40,11 +39,16 @@ import edu.jhuapl.openessence.model.MapData;
 import edu.jhuapl.openessence.web.util.ControllerUtils;
 import edu.jhuapl.openessence.web.util.ErrorMessageException;
 import edu.jhuapl.openessence.web.util.Filters;
+import edu.jhuapl.openessence.web.util.MapFeatureStore;
 import edu.jhuapl.openessence.web.util.MapQueryUtil;
 import edu.jhuapl.openessence.web.util.Sorters;
 
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -53,13 +57,17 @@ import org.springframework.web.context.request.NativeWebRequest;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
 
 @Controller
 @RequestMapping("/map")
@@ -67,6 +75,8 @@ public class MapController extends OeController {
 
     private static final Logger log = LoggerFactory.getLogger(MapController.class);
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     @Inject
     private MapQueryUtil mapQueryUtil;
 
@@ -79,6 +89,12 @@ public class MapController extends OeController {
     @Inject
     private MapConfig mapConfig;
 
+    @Inject
+    private MapFeatureStore mapFeatureStore;
+
+    @Resource(name = "mapLayerExecutor")
+    private ExecutorService mapLayerExecutor;
+
     @RequestMapping("/metadata")
     public
     @ResponseBody
@@ -95,17 +111,17 @@ public class MapController extends OeController {
     @RequestMapping("/mapData")
     public
     @ResponseBody
-    MapData mapData(@RequestParam("dsId") JdbcOeDataSource ds,
+    MapData mapData(@RequestParam("dsId") final JdbcOeDataSource ds,
                     @RequestParam(required = false) String[] results, @RequestParam(required = false) String[] accumId,
                     NativeWebRequest request) throws ErrorMessageException, IOException {
 
         MapData mapData = new MapData();
 
-        List<Filter> filters = new Filters().getFilters(request.getParameterMap(), ds, null, 0, null, 0);
-        List<Dimension> resultsList = ControllerUtils.getResultDimensionsByIds(ds, results);
+        final List<Filter> filters = new Filters().getFilters(request.getParameterMap(), ds, null, 0, null, 0);
+        final List<Dimension> resultsList = ControllerUtils.getResultDimensionsByIds(ds, results);
 
-        List<Dimension> accumulations = ControllerUtils.getAccumulationsByIds(ds, accumId);
-        List<OrderByFilter> sorts = new ArrayList<OrderByFilter>();
+        final List<Dimension> accumulations = ControllerUtils.getAccumulationsByIds(ds, accumId);
+        final List<OrderByFilter> sorts = new ArrayList<OrderByFilter>();
         try {
             sorts.addAll(Sorters.getSorters(request.getParameterMap()));
         } catch (Exception e) {
@@ -116,7 +132,8 @@ public class MapController extends OeController {
 
         // Add map layer information to response
         Map<String, Object> meta = ds.getMetaData();
-        MapMetaData mapInfo = (MapMetaData) meta.get("mapInfo");
+        // the overlays get this request's CQL filter or feature id, so never fill in the shared ones
+        MapMetaData mapInfo = new MapMetaData((MapMetaData) meta.get("mapInfo"));
 
         WMSLayer[] overlays = mapInfo.getOverlays();
         if (overlays == null) {
@@ -124,6 +141,8 @@ public class MapController extends OeController {
             overlays = new WMSLayer[0];
         }
 
+        final String timezone = ControllerUtils.getRequestTimezoneAsHourMinuteString(request);
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
         for (final WMSLayer layer : overlays) {
             final String oeDataSourceName = layer.getDataDSName();
             if (oeDataSourceName != null) {
@@ -132,64 +151,23 @@ public class MapController extends OeController {
                     throw new IllegalStateException("No data source named " + oeDataSourceName);
                 }
 
-                final Map<String, String> fieldMap = layer.getDataFieldMap();
-
-                final Object current_time;
-                final int nextSequenceValue;
-                String sequenceForMapRequestId = mapLayerDataEntrySource.getParentTableDetails()
-                        .getSequenceForMapRequestId();
-
-                current_time = mapQueryUtil.performCurrentTimestampQuery();
-                nextSequenceValue = mapQueryUtil.performNextSequenceValueQuery(sequenceForMapRequestId);
-
-                final String requestIdDimension = mapLayerDataEntrySource.getParentTableDetails().getMapRequestId();
-                final String requestIdSQLColumn = mapLayerDataEntrySource.getEditDimension(requestIdDimension)
-                        .getSqlCol();
-                layer.setCqlFilter(requestIdSQLColumn + "=" + nextSequenceValue);
-
-                // Cleanup...
-                int success = mapQueryUtil.performDelete(mapLayerDataEntrySource, current_time, postgresCleanup);
-                log.debug("Delete outcome: " + success);
-
-                // Build insert
-                final Collection<Record> detailsQuery = ds.detailsQuery(
-                        new QueryManipulationStore(resultsList, accumulations, filters, sorts, false,
-                                                   ControllerUtils.getRequestTimezoneAsHourMinuteString(request)));
-                for (final Record record : detailsQuery) {
-                    final LinkedHashMap<String, Object> updateMap = new LinkedHashMap<String, Object>();
-                    final Collection<String> placeholders = new ArrayList<String>();
-
-                    // Iterate records using destination/edit dimensions (minimal set)
-                    for (final Dimension dimension : mapLayerDataEntrySource.getEditDimensions()) {
-                        // Check fieldMapping for dimension, use mapped id
-                        final String dimensionId = (fieldMap == null
-                                                    || fieldMap.get(dimension.getId()) == null
-                                                    ? dimension.getId() : fieldMap.get(dimension.getId()));
-
-                        if (ds.getResultDimension(dimensionId) != null) {
-                            updateMap.put(dimension.getSqlCol(), record.getValue(dimensionId));
-                            placeholders.add("?");
+                final boolean inMemory = mapConfig.inMemoryFeatures();
+                tasks.add(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        QueryManipulationStore store =
+                                new QueryManipulationStore(resultsList, accumulations, new ArrayList<Filter>(filters),
+                                                           new ArrayList<OrderByFilter>(sorts), false, timezone);
+                        if (inMemory) {
+                            return loadLayerFeatures(ds, layer, mapLayerDataEntrySource, store);
                         } else {
-                            log.debug(String.format("No matching result dimension for %s. (%s)", dimensionId,
-                                                    dimension.getId()));
+                            return loadLayer(ds, layer, mapLayerDataEntrySource, store);
                         }
                     }
-
-                    // Add request id and time
-                    updateMap.put(mapLayerDataEntrySource.getEditDimension(
-                            mapLayerDataEntrySource.getParentTableDetails().getMapRequestId()).getSqlCol(),
-                                  nextSequenceValue);
-                    placeholders.add("?");
-
-                    updateMap.put("time_requested", current_time);
-                    placeholders.add("?");
-
-                    int updateSuccess = mapQueryUtil.performUpdate(mapLayerDataEntrySource, updateMap, placeholders);
-                    log.debug("INSERT OUTCOME: " + updateSuccess);
-                }
-
+                });
             }
         }
+        runLayerTasks(tasks);
 
         // Add map data
         mapData.setDsMapData(mapInfo);
@@ -197,4 +175,142 @@ public class MapController extends OeController {
         return mapData;
     }
 
+    /**
+     * Writes the features of an overlay loaded by {@link #mapData} as GeoJSON, when map features are kept in memory.
+     */
+    @RequestMapping("/features")
+    public void features(@RequestParam("id") String id, HttpServletResponse response) throws IOException {
+        MapFeatureStore.Features features = mapFeatureStore.get(id);
+        if (features == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "Map features " + id + " not found or expired");
+            return;
+        }
+
+        response.setContentType("application/json;charset=utf-8");
+        JsonGenerator generator = JSON_FACTORY.createJsonGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+        features.writeGeoJson(generator);
+        generator.close();
+    }
+
+    /**
+     * Replace this request's rows in a map layer table with the rows of the details query.
+     *
+     * @return number of rows inserted
+     */
+    private int loadLayer(JdbcOeDataSource ds, WMSLayer layer, OeDataEntrySource mapLayerDataEntrySource,
+                          QueryManipulationStore store) {
+        final Object current_time;
+        final int nextSequenceValue;
+        String sequenceForMapRequestId = mapLayerDataEntrySource.getParentTableDetails()
+                .getSequenceForMapRequestId();
+
+        current_time = mapQueryUtil.performCurrentTimestampQuery();
+        nextSequenceValue = mapQueryUtil.performNextSequenceValueQuery(sequenceForMapRequestId);
+
+        final String requestIdDimension = mapLayerDataEntrySource.getParentTableDetails().getMapRequestId();
+        final String requestIdSQLColumn = mapLayerDataEntrySource.getEditDimension(requestIdDimension)
+                .getSqlCol();
+        layer.setCqlFilter(requestIdSQLColumn + "=" + nextSequenceValue);
+        layer.setFeatureId(null);
+
+        // Cleanup...
+        int success = mapQueryUtil.performDelete(mapLayerDataEntrySource, current_time, postgresCleanup);
+        log.debug("Delete outcome: " + success);
+
+        // Build insert
+        final LinkedHashMap<String, String> resultColumns = getLayerColumns(ds, layer, mapLayerDataEntrySource);
+        int inserted = mapQueryUtil.performBatchInsert(ds, store, mapLayerDataEntrySource, resultColumns,
+                                                       requestIdSQLColumn, nextSequenceValue, current_time);
+        log.debug("INSERT OUTCOME: " + inserted);
+        return inserted;
+    }
+
+    /**
+     * Keep the layer's features in memory for {@link #features} instead of writing them to the map layer table.
+     *
+     * @return number of features
+     */
+    private int loadLayerFeatures(JdbcOeDataSource ds, WMSLayer layer, OeDataEntrySource mapLayerDataEntrySource,
+                                  QueryManipulationStore store) {
+        Dimension geometry = layer.getGeometryId() == null ? null : ds.getResultDimension(layer.getGeometryId());
+        if (geometry != null && !store.getResults().contains(geometry)) {
+            List<Dimension> results = new ArrayList<Dimension>(store.getResults());
+            results.add(geometry);
+            store.setResults(results);
+        }
+
+        MapFeatureStore.Features features =
+                mapQueryUtil.performFeatureQuery(ds, store, getLayerColumns(ds, layer, mapLayerDataEntrySource),
+                                                 geometry == null ? null : geometry.getId());
+        layer.setCqlFilter(null);
+        layer.setFeatureId(mapFeatureStore.put(features));
+        return features.size();
+    }
+
+    /**
+     * Columns of a map layer table, using destination/edit dimensions (minimal set), mapped to the result dimension
+     * that fills each one.
+     */
+    private LinkedHashMap<String, String> getLayerColumns(JdbcOeDataSource ds, WMSLayer layer,
+                                                          OeDataEntrySource mapLayerDataEntrySource) {
+        final Map<String, String> fieldMap = layer.getDataFieldMap();
+        final LinkedHashMap<String, String> resultColumns = new LinkedHashMap<String, String>();
+        for (final Dimension dimension : mapLayerDataEntrySource.getEditDimensions()) {
+            // Check fieldMapping for dimension, use mapped id
+            final String dimensionId = (fieldMap == null
+                                        || fieldMap.get(dimension.getId()) == null
+                                        ? dimension.getId() : fieldMap.get(dimension.getId()));
+
+            if (ds.getResultDimension(dimensionId) != null) {
+                resultColumns.put(dimension.getSqlCol(), dimensionId);
+            } else {
+                log.debug(String.format("No matching result dimension for %s. (%s)", dimensionId,
+                                        dimension.getId()));
+            }
+        }
+        return resultColumns;
+    }
+
+    /**
+     * Run layer loads on the map layer executor and wait for them. A single layer is loaded on the calling thread.
+     */
+    private void runLayerTasks(List<Callable<Integer>> tasks) {
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(tasks.size());
+        try {
+            for (Callable<Integer> task : tasks) {
+                // the details queries run as the requesting user
+                futures.add(mapLayerExecutor.submit(new DelegatingSecurityContextCallable<Integer>(task)));
+            }
+            for (Future<Integer> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading map layers", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // no-op for completed layers; stops the rest if one failed
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
 }
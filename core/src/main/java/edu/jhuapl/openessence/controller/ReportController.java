@@ -26,7 +26,10 @@
 
 package edu.jhuapl.openessence.controller;
 
-import edu.jhuapl.bsp.detector.DetectorHelper;
+import edu.jhuapl.bsp.detector.DetectorRegistry;
+import edu.jhuapl.bsp.detector.DetectorState;
+import edu.jhuapl.bsp.detector.DetectorStateCache;
+import edu.jhuapl.bsp.detector.IncrementalTemporalDetector;
 import edu.jhuapl.bsp.detector.TemporalDetectorInterface;
 import edu.jhuapl.bsp.detector.TemporalDetectorSimpleDataObject;
 import edu.jhuapl.bsp.detector.temporal.epa.NoDetectorDetector;
@@ -38,7 +41,6 @@ import edu.jhuapl.graphs.controller.DefaultGraphData;
 import edu.jhuapl.graphs.controller.GraphController;
 import edu.jhuapl.graphs.controller.GraphDataHandlerInterface;
 import edu.jhuapl.graphs.controller.GraphDataInterface;
-import edu.jhuapl.graphs.controller.GraphDataSerializeToDiskHandler;
 import edu.jhuapl.graphs.controller.GraphObject;
 import edu.jhuapl.openessence.datasource.Dimension;
 import edu.jhuapl.openessence.datasource.FieldType;
@@ -46,21 +48,22 @@ import edu.jhuapl.openessence.datasource.Filter;
 import edu.jhuapl.openessence.datasource.OeDataSource;
 import edu.jhuapl.openessence.datasource.OeDataSourceAccessException;
 import edu.jhuapl.openessence.datasource.OeDataSourceException;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
 import edu.jhuapl.openessence.datasource.Record;
-import edu.jhuapl.openessence.datasource.dataseries.AccumPoint;
 import edu.jhuapl.openessence.datasource.dataseries.DataSeriesSource;
 import edu.jhuapl.openessence.datasource.dataseries.Grouping;
 import edu.jhuapl.openessence.datasource.dataseries.GroupingDimension;
 import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
-import edu.jhuapl.openessence.datasource.jdbc.QueryRecord;
 import edu.jhuapl.openessence.datasource.jdbc.ResolutionHandler;
-import edu.jhuapl.openessence.datasource.jdbc.dataseries.AccumPointImpl;
 import edu.jhuapl.openessence.datasource.jdbc.dataseries.GroupingImpl;
 import edu.jhuapl.openessence.datasource.jdbc.entry.JdbcOeDataEntrySource;
 import edu.jhuapl.openessence.datasource.jdbc.filter.FieldFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GtFilter;
 import edu.jhuapl.openessence.datasource.jdbc.filter.GteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LtFilter;
 import edu.jhuapl.openessence.datasource.jdbc.filter.LteqFilter;
 import edu.jhuapl.openessence.datasource.jdbc.filter.OneArgOpFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.SqlGeneratingFilter;
 import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
 import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql.PgSqlDateHelper;
 import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql.PgSqlWeeklyHandler;
@@ -78,7 +81,9 @@ import edu.jhuapl.openessence.web.util.DetailsQuery;
 import edu.jhuapl.openessence.web.util.ErrorMessageException;
 import edu.jhuapl.openessence.web.util.FileExportUtil;
 import edu.jhuapl.openessence.web.util.Filters;
+import edu.jhuapl.openessence.web.util.SeriesResultCache;
 import edu.jhuapl.openessence.web.util.Sorters;
+import edu.jhuapl.openessence.web.util.TimeSeriesBuckets;
 
 import org.apache.commons.codec.EncoderException;
 import org.apache.commons.codec.net.URLCodec;
@@ -91,9 +96,9 @@ import org.codehaus.jackson.type.TypeReference;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.NoSuchMessageException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Controller;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -104,9 +109,11 @@ import org.springframework.web.context.request.WebRequest;
 
 import java.awt.*;
 import java.io.BufferedOutputStream;
-import java.io.File;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.security.Principal;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
@@ -119,12 +126,17 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.annotation.Resource;
 import javax.servlet.http.Cookie;
@@ -155,11 +167,25 @@ public class ReportController extends OeController {
     private static final String MONTHLY = "monthly";
     private static final String YEARLY = "yearly";
     private static final String TIMEZONE_ENABLED = "timezone.enabled";
-    private String graphDir;
 
     @Resource
     private InspectableResourceBundleMessageSource messageSource;
 
+    @Resource
+    private DetectorRegistry detectorRegistry;
+
+    @Resource
+    private DetectorStateCache detectorStateCache;
+
+    @Resource
+    private SeriesResultCache<TimeseriesData> timeSeriesCache;
+
+    @Resource
+    private GraphDataHandlerInterface graphDataHandler;
+
+    @Resource(name = "detectionExecutor")
+    private ExecutorService detectionExecutor;
+
     private Map<String, Integer> intervalMap;
 
     public ReportController() {
@@ -170,17 +196,6 @@ public class ReportController extends OeController {
         intervalMap.put(MONTHLY, Calendar.MONTH);
     }
 
-    @Autowired
-    public void setGraphDir(@Qualifier("graphDir") String graphDir) {
-        this.graphDir = graphDir;
-        File f = new File(this.graphDir);
-        if (!f.exists()) {
-            if (!f.mkdirs()) {
-                log.error("Unable to make directory " + graphDir);
-            }
-        }
-    }
-
     /**
      *
      * @deprecated Use {@link DataSourceController#fields(edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource)}
@@ -380,9 +395,25 @@ public class ReportController extends OeController {
         if (timezoneEnabledString.equalsIgnoreCase("true")) {
             clientTimezone = ControllerUtils.getRequestTimezoneAsHourMinuteString(request);
         }
-        //details query for all records
-        Collection<Record> records = new DetailsQuery().performDetailsQuery(ds, results, dimensions, filters, sorts,
-                                                                            groupings, false, clientTimezone);
+        TimeZone requestTimezone = ControllerUtils.getRequestTimezone(request);
+        String cacheKey = timeSeriesCacheKey(ds, model, filters, groupId, resolution, requestTimezone,
+                                             request.getLocale(), principal);
+        TimeseriesData series = timeSeriesCache.get(cacheKey);
+        if (series == null) {
+            //details query for all records
+            Collection<Record> records = new DetailsQuery().performDetailsQuery(ds, results, dimensions, filters,
+                                                                                sorts, groupings, false,
+                                                                                clientTimezone);
+            series = computeTimeseries(principal.getName(), dss, filters, group, resolution, model.getPrepull(),
+                                       records, accumulations, timeseriesDenominators,
+                                       model.getTimeseriesDetectorClass(), model.isDisplayIntervalEndDate(),
+                                       requestTimezone);
+            if (series != null && series.errorMessage == null) {
+                timeSeriesCache.put(ds.getDataSourceId(), cacheKey, series);
+            }
+        } else {
+            log.debug("Time series served from cache, {}", timeSeriesCache);
+        }
 
         //create graph data and set known configuration
         DefaultGraphData graphData = new DefaultGraphData();
@@ -404,14 +435,9 @@ public class ReportController extends OeController {
         graphTimeSeriesUrl = appendGraphFontParam(ds, graphTimeSeriesUrl);
 
         //TODO, this still uses the html method from the graph module and then wraps in json...move to a pure json method
-        Map<String, Object> timeseriesResult = createTimeseries(principal.getName(), dss,
-                                                                filters, group, resolution, model.getPrepull(),
-                                                                graphTimeSeriesUrl,
-                                                                records, accumulations, timeseriesDenominators,
-                                                                model.getTimeseriesDetectorClass(),
-                                                                model.isIncludeDetails(),
-                                                                model.isDisplayIntervalEndDate(), graphData,
-                                                                ControllerUtils.getRequestTimezone(request), model.isGraphExpectedValues());
+        Map<String, Object> timeseriesResult = createTimeseries(principal.getName(), dss, group, series,
+                                                                graphTimeSeriesUrl, model.isIncludeDetails(),
+                                                                graphData, model.isGraphExpectedValues());
 
         result.putAll(timeseriesResult);
 
@@ -533,27 +559,118 @@ public class ReportController extends OeController {
         return response;
     }
 
+    /**
+     * Run series tasks on the detection executor. A single series is run on the calling thread since there is nothing
+     * to overlap it with.
+     */
+    private List<Future<SeriesResult>> submitSeries(List<Callable<SeriesResult>> tasks) {
+        List<Future<SeriesResult>> futures = new ArrayList<Future<SeriesResult>>(tasks.size());
+        if (tasks.size() == 1) {
+            FutureTask<SeriesResult> task = new FutureTask<SeriesResult>(tasks.get(0));
+            task.run();
+            futures.add(task);
+        } else {
+            for (Callable<SeriesResult> task : tasks) {
+                futures.add(detectionExecutor.submit(task));
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Prefix of the detector state key for the series of one time series request; the accumulation id completes it.
+     * The date range is left out, so that a report extended by a few days finds the state of the earlier run, and a
+     * rolling window replaces the state of the day before instead of adding one per start date. A state is only used
+     * for a series with the same start date, and detectors check the counts themselves before reusing it, so the key
+     * only has to be specific enough to avoid thrashing.
+     */
+    private static String detectorStateKey(DataSeriesSource dss, List<Filter> filters, String dateFieldName,
+                                           String timeResolution, String detectorClass,
+                                           List<Dimension> timeseriesDenominators) {
+        StringBuilder key = new StringBuilder();
+        key.append(dss.getClass().getName()).append('|').append(detectorClass).append('|').append(timeResolution);
+        if (timeseriesDenominators != null) {
+            for (Dimension denominator : timeseriesDenominators) {
+                key.append("|/").append(denominator.getId());
+            }
+        }
+        for (Filter f : filters) {
+            if ((f instanceof GteqFilter || f instanceof GtFilter || f instanceof LteqFilter || f instanceof LtFilter)
+                && ((OneArgOpFilter) f).getFilterId().equalsIgnoreCase(dateFieldName)) {
+                continue;
+            }
+            key.append('|').append(describeFilter(dss, f));
+        }
+        return key.append('|').toString();
+    }
+
+    /**
+     * Key for the computed series of a time series request. Filters are sorted so that the order of request parameters
+     * does not matter. The user's roles are included since data source scripts may restrict rows by role.
+     */
+    private static String timeSeriesCacheKey(JdbcOeDataSource ds, TimeSeriesModel model, List<Filter> filters,
+                                             String groupId, String resolution, TimeZone timezone, Locale locale,
+                                             Principal principal) {
+        StringBuilder key = new StringBuilder();
+        key.append(ds.getDataSourceId());
+        key.append('|').append(Arrays.toString(model.getAccumId()));
+        key.append('|').append(Arrays.toString(model.getTimeseriesDenominator()));
+        key.append('|').append(groupId).append(':').append(resolution);
+        key.append('|').append(model.getTimeseriesDetectorClass());
+        key.append('|').append(model.getPrepull());
+        key.append('|').append(model.isDisplayIntervalEndDate());
+        key.append('|').append(timezone.getID()).append('|').append(locale);
+        TreeSet<String> sortedFilters = new TreeSet<String>();
+        for (Filter f : filters) {
+            sortedFilters.add(describeFilter(ds, f));
+        }
+        key.append('|').append(sortedFilters);
+        TreeSet<String> roles = new TreeSet<String>();
+        if (principal instanceof Authentication) {
+            for (GrantedAuthority authority : ((Authentication) principal).getAuthorities()) {
+                roles.add(authority.getAuthority());
+            }
+        }
+        return key.append('|').append(roles).toString();
+    }
+
+    private static String describeFilter(Object dataSource, Filter f) {
+        StringBuilder description = new StringBuilder(f.getClass().getSimpleName());
+        if (f instanceof FieldFilter) {
+            description.append(':').append(((FieldFilter) f).getFilterId());
+        }
+        if (f instanceof SqlGeneratingFilter && dataSource instanceof JdbcOeDataSource) {
+            SqlGeneratingFilter sf = (SqlGeneratingFilter) f;
+            description.append(':').append(sf.getSqlSnippet((JdbcOeDataSource) dataSource))
+                    .append(sf.getArguments((JdbcOeDataSource) dataSource));
+        }
+        return description.toString();
+    }
+
     private boolean isTimeZoneEnabled() {
         return "true".equalsIgnoreCase(messageSource.getMessage(TIMEZONE_ENABLED, "false"));
     }
 
-    private Map<String, Object> createTimeseries(String userPrincipalName, DataSeriesSource dss, List<Filter> filters,
-                                                 GroupingImpl group,
-                                                 String timeResolution, Integer prepull, String graphTimeSeriesUrl,
-                                                 final Collection<Record> records,
-                                                 final List<Dimension> accumulations,
-                                                 final List<Dimension> timeseriesDenominators,
-                                                 String detectorClass, boolean includeDetails,
-                                                 boolean displayIntervalEndDate, GraphDataInterface graphData,
-                                                 TimeZone clientTimezone, boolean graphExpected) {
-
-        Map<String, Object> result = new HashMap<String, Object>();
+    /**
+     * Run detection on each accumulation and build everything the time series graph shows.
+     *
+     * @return the series, or null if they could not be created
+     */
+    private TimeseriesData computeTimeseries(String userPrincipalName, final DataSeriesSource dss,
+                                             final List<Filter> filters, GroupingImpl group,
+                                             final String timeResolution, final Integer prepull,
+                                             final Collection<Record> records,
+                                             final List<Dimension> accumulations,
+                                             final List<Dimension> timeseriesDenominators,
+                                             final String detectorClass, final boolean displayIntervalEndDate,
+                                             final TimeZone clientTimezone) {
+
+        TimeseriesData data = new TimeseriesData();
         Map<String, ResolutionHandler> resolutionHandlers = null;
-        result.put("success", false);
         try {
             GroupingDimension grpdim = dss.getGroupingDimension(group.getId());
             resolutionHandlers = grpdim.getResolutionsMap();
-            String dateFieldName = group.getId();
+            final String dateFieldName = group.getId();
             Date startDate = null;
             Date endDate = null;
             if (grpdim != null && (grpdim.getSqlType() == FieldType.DATE
@@ -586,25 +703,25 @@ public class ReportController extends OeController {
             startDayCal.add(Calendar.MILLISECOND, timeOffsetMillies);
 
             //get data grouped by group dimension
-            List<AccumPoint>
+            final AccumulationSeries
                     points =
                     extractAccumulationPoints(userPrincipalName, dss, records, startDayCal.getTime(), endDate,
                                               dimensions, group, resolutionHandlers);
-            if (points.size() > 0) {
+            if (points.size > 0) {
                 DateFormat dateFormat = getDateFormat(timeResolution); //dateFormat.setTimeZone(timezone);
-                DateFormat tmpDateFormat = (DateFormat) dateFormat.clone();
+                final DateFormat tmpDateFormat = (DateFormat) dateFormat.clone();
 
                 if (isTimeZoneEnabled()) {
                     tmpDateFormat.setTimeZone(clientTimezone);
                 }
 
                 // number format for level
-                NumberFormat numFormat3 = NumberFormat.getNumberInstance();
+                final NumberFormat numFormat3 = NumberFormat.getNumberInstance();
                 numFormat3.setMinimumFractionDigits(0);
                 numFormat3.setMaximumFractionDigits(3);
 
                 // number format for expected count
-                NumberFormat numFormat1 = NumberFormat.getNumberInstance();
+                final NumberFormat numFormat1 = NumberFormat.getNumberInstance();
                 numFormat1.setMinimumFractionDigits(0);
                 numFormat1.setMaximumFractionDigits(1);
 
@@ -616,10 +733,10 @@ public class ReportController extends OeController {
                 } else if (timeResolution.equals("daily")) {
                     cal.add(Calendar.DATE, prepull);
                 }
-                Date queryStartDate = cal.getTime();
+                final Date queryStartDate = cal.getTime();
 
                 //-- Handles Denominator Types -- //
-                double[] divisors = new double[points.size()];
+                double[] divisors = new double[points.size];
                 double multiplier = 1.0;
                 boolean percentBased = false;
                 String yAxisLabel = messageSource.getDataSourceMessage("graph.count", dss);
@@ -652,201 +769,311 @@ public class ReportController extends OeController {
 
                 //get all results
                 Collection<Dimension> dims = new ArrayList<Dimension>(dss.getResultDimensions());
-                Collection<String> dimIds = ControllerUtils.getDimensionIdsFromCollection(dims);
+                final Collection<String> dimIds = ControllerUtils.getDimensionIdsFromCollection(dims);
                 Collection<String> accIds = ControllerUtils.getDimensionIdsFromCollection(dss.getAccumulations());
                 //remove extra accumulations in the result set using string ids
                 dimIds.removeAll(accIds);
 
-                //for each accumulation we run detection and gather results
-                int aIndex = 0;
+                // read-only values shared by the series tasks below
+                final double[] seriesDivisors = divisors;
+                final double seriesMultiplier = multiplier;
+                final Date seriesStartDate = startDate;
+                final Date seriesEndDate = endDate;
+                final int seriesTimeOffset = timeOffsetMillies;
+                final int startDay = getWeekStartDay(resolutionHandlers);
+                final DateFormat weekPartFormat = (DateFormat) dateFormatWeekPart.clone();
+                final String seriesStateKey = detectorStateKey(dss, filters, dateFieldName, timeResolution,
+                                                               detectorClass, timeseriesDenominators);
+
+                //for each accumulation we run detection and gather results. Series are independent, so they run in
+                //parallel and are merged back in accumulation order.
+                List<Callable<SeriesResult>> tasks = new ArrayList<Callable<SeriesResult>>(accumulations.size());
                 for (Dimension accumulation : accumulations) {
-                    String accumId = accumulation.getId();
+                    final String accumId = accumulation.getId();
 
                     // use display name if it has one, otherwise translate its ID
-                    String accumIdTranslated = accumulation.getDisplayName();
-                    if (accumIdTranslated == null) {
-                        accumIdTranslated = messageSource.getDataSourceMessage(accumulation.getId(), dss);
-                    }
-
-                    TemporalDetectorInterface TDI =
-                            (TemporalDetectorInterface) DetectorHelper.createObject(detectorClass);
-                    TemporalDetectorSimpleDataObject TDDO = new TemporalDetectorSimpleDataObject();
-
-                    int[] colors;
-                    double[] counts;
-                    String[] altTexts;
-                    double[] expecteds;
-                    double[] levels;
-                    String[] switchInfo;
-                    String[] urls;
-
-                    //pull the counts from the accum array points
-                    double[] seriesDoubleArray = generateSeriesValues(points, accumId);
-
-                    //run divisor before detection
-                    for (int i = 0; i < seriesDoubleArray.length; i++) {
-                        double div = divisors[i];
-                        if (div == 0) {
-                            seriesDoubleArray[i] = 0.0;
-                        } else {
-                            seriesDoubleArray[i] = (seriesDoubleArray[i] / div) * multiplier;
-                        }
+                    // (on this thread, since message lookup uses the request locale)
+                    String displayName = accumulation.getDisplayName();
+                    if (displayName == null) {
+                        displayName = messageSource.getDataSourceMessage(accumulation.getId(), dss);
                     }
+                    final String accumIdTranslated = displayName;
+
+                    tasks.add(new Callable<SeriesResult>() {
+                        @Override
+                        public SeriesResult call() {
+                            SeriesResult series = new SeriesResult();
+                            series.label = accumIdTranslated;
+
+                            // formats are not thread-safe, so each series gets its own
+                            NumberFormat levelFormat = (NumberFormat) numFormat3.clone();
+                            NumberFormat expectedFormat = (NumberFormat) numFormat1.clone();
+                            DateFormat seriesDateFormat = (DateFormat) tmpDateFormat.clone();
+                            DateFormat seriesWeekPartFormat = (DateFormat) weekPartFormat.clone();
+
+                            TemporalDetectorSimpleDataObject TDDO = new TemporalDetectorSimpleDataObject();
+
+                            //pull the counts from the accum array points
+                            double[] seriesDoubleArray = generateSeriesValues(points, accumId);
+
+                            //run divisor before detection
+                            for (int i = 0; i < seriesDoubleArray.length; i++) {
+                                double div = seriesDivisors[i];
+                                if (div == 0) {
+                                    seriesDoubleArray[i] = 0.0;
+                                } else {
+                                    seriesDoubleArray[i] = (seriesDoubleArray[i] / div) * seriesMultiplier;
+                                }
+                            }
 
-                    //run detection
-                    TDDO.setCounts(seriesDoubleArray);
-                    TDDO.setStartDate(startDate);
-                    TDDO.setTimeResolution(timeResolution);
-
-                    try {
-                        TDI.runDetector(TDDO);
-                    } catch (Exception e) {
-                        log.error("", e);
-                        String errorMessage = "Failure to create timeseries";
-                        if (e.getMessage() != null) {
-                            errorMessage = errorMessage + ":<BR>" + e.getMessage();
-                        }
-                        result.put("message", errorMessage);
-                        result.put("success", false);
-                        return result;
-                    }
+                            //run detection
+                            TDDO.setCounts(seriesDoubleArray);
+                            TDDO.setStartDate(seriesStartDate);
+                            TDDO.setTimeResolution(timeResolution);
+
+                            TemporalDetectorInterface TDI = null;
+                            try {
+                                TDI = detectorRegistry.borrowDetector(detectorClass);
+                                if (TDI instanceof IncrementalTemporalDetector) {
+                                    String stateKey = seriesStateKey + accumId;
+                                    DetectorState previous = detectorStateCache.get(stateKey);
+                                    // a window that has moved on starts a new state
+                                    Date savedStart = previous == null ? null : previous.getStartDate();
+                                    if (savedStart == null || seriesStartDate == null
+                                        || savedStart.getTime() != seriesStartDate.getTime()) {
+                                        previous = null;
+                                    }
+                                    // the newest interval may still be filling in, so it is left out of the state
+                                    DetectorState state = ((IncrementalTemporalDetector) TDI)
+                                            .runDetector(TDDO, previous, seriesDoubleArray.length - 1);
+                                    detectorStateCache.put(stateKey, state);
+                                } else {
+                                    TDI.runDetector(TDDO);
+                                }
+                            } catch (Exception e) {
+                                log.error("", e);
+                                series.error = e;
+                                return series;
+                            } finally {
+                                detectorRegistry.returnDetector(TDI);
+                            }
 
-                    TDDO.cropStartup(prepull);
-                    counts = TDDO.getCounts();
-                    int tddoLength = counts.length;
+                            TDDO.cropStartup(prepull);
+                            double[] counts = TDDO.getCounts();
+                            int tddoLength = counts.length;
 
-                    if (!DAILY.equalsIgnoreCase(timeResolution)) {
-                        //toggle between start date and end date
-                        //TDDO.setDates(getOurDates(startDate, endDate, tddoLength, timeResolution));
-                        TDDO.setDates(getOurDates(queryStartDate, endDate, tddoLength, timeResolution,
-                                                  displayIntervalEndDate));
-                    }
-                    double[] tcolors = TDDO.getColors();
-
-                    Date[] tdates = TDDO.getDates();
-                    altTexts = TDDO.getAltTexts();
-                    expecteds = TDDO.getExpecteds();
-                    levels = TDDO.getLevels();
-                    switchInfo = TDDO.getSwitchInfo();
-                    colors = new int[tddoLength];
-                    dates = new String[tddoLength];
-                    urls = new String[tddoLength];
-
-                    //add the accumId for the current series
-                    dimIds.add(accumId);
-
-                    StringBuilder jsCall = new StringBuilder();
-                    jsCall.append("javascript:OE.report.datasource.showDetails({");
-                    jsCall.append("dsId:'").append(dss.getClass().getName()).append("'");
-                    //specify results
-                    jsCall.append(",results:[").append(StringUtils.collectionToDelimitedString(dimIds, ",", "'", "'"))
-                            .append(']');
-                    //specify accumId
-                    jsCall.append(",accumId:'").append(accumId).append("'");
-
-                    addJavaScriptFilters(jsCall, filters, dateFieldName);
-
-                    //this builds urls and hover texts
-                    int startDay = getWeekStartDay(resolutionHandlers);
-
-                    Calendar c = Calendar.getInstance(clientTimezone);
-
-//				   Calendar curr = Calendar.getInstance();
-                    for (int i = 0; i < tddoLength; i++) {
-                        colors[i] = (int) tcolors[i];
-
-                        // For a time series data point, set time to be current server time
-                        // This will allow us to convert this data point date object to be request timezone date
-                        c.setTime(tdates[i]);
-                        c.add(Calendar.MILLISECOND, timeOffsetMillies);
-
-                        if (timeResolution.equals(WEEKLY)) {
-                            dates[i] = dateFormatWeekPart.format(tdates[i])
-                                       + "-W" + PgSqlDateHelper.getWeekOfYear(startDay, c) + "-"
-                                       + PgSqlDateHelper.getYear(startDay, c);
-                        } else {
-                            dates[i] = tmpDateFormat.format(c.getTime());
-                        }
+                            if (!DAILY.equalsIgnoreCase(timeResolution)) {
+                                //toggle between start date and end date
+                                TDDO.setDates(getOurDates(queryStartDate, seriesEndDate, tddoLength, timeResolution,
+                                                          displayIntervalEndDate));
+                            }
+                            double[] tcolors = TDDO.getColors();
+
+                            Date[] tdates = TDDO.getDates();
+                            String[] altTexts = TDDO.getAltTexts();
+                            double[] expecteds = TDDO.getExpecteds();
+                            double[] levels = TDDO.getLevels();
+                            String[] switchInfo = TDDO.getSwitchInfo();
+                            int[] colors = new int[tddoLength];
+                            String[] dates = new String[tddoLength];
+                            String[] urls = new String[tddoLength];
+
+                            //the current series' accumId goes last in the results
+                            List<String> seriesDimIds = new ArrayList<String>(dimIds);
+                            seriesDimIds.add(accumId);
+
+                            StringBuilder jsCall = new StringBuilder();
+                            jsCall.append("javascript:OE.report.datasource.showDetails({");
+                            jsCall.append("dsId:'").append(dss.getClass().getName()).append("'");
+                            //specify results
+                            jsCall.append(",results:[")
+                                    .append(StringUtils.collectionToDelimitedString(seriesDimIds, ",", "'", "'"))
+                                    .append(']');
+                            //specify accumId
+                            jsCall.append(",accumId:'").append(accumId).append("'");
+
+                            addJavaScriptFilters(jsCall, filters, dateFieldName);
+
+                            //this builds urls and hover texts
+                            Calendar c = Calendar.getInstance(clientTimezone);
+
+                            for (int i = 0; i < tddoLength; i++) {
+                                colors[i] = (int) tcolors[i];
+
+                                // For a time series data point, set time to be current server time
+                                // This will allow us to convert this data point date object to be request timezone date
+                                c.setTime(tdates[i]);
+                                c.add(Calendar.MILLISECOND, seriesTimeOffset);
+
+                                if (timeResolution.equals(WEEKLY)) {
+                                    dates[i] = seriesWeekPartFormat.format(tdates[i])
+                                               + "-W" + PgSqlDateHelper.getWeekOfYear(startDay, c) + "-"
+                                               + PgSqlDateHelper.getYear(startDay, c);
+                                } else {
+                                    dates[i] = seriesDateFormat.format(c.getTime());
+                                }
 
-                        altTexts[i] = "(" + accumIdTranslated + ") " + // Accum
-                                      "Date: " + dates[i] + // Date
-                                      ", Level: " + numFormat3.format(levels[i]) + // Level
-                                      ", Count: " + ((int) counts[i]) + // Count
-                                      ", Expected: " + numFormat1.format(expecteds[i]); // Expected
+                                altTexts[i] = "(" + accumIdTranslated + ") " + // Accum
+                                              "Date: " + dates[i] + // Date
+                                              ", Level: " + levelFormat.format(levels[i]) + // Level
+                                              ", Count: " + ((int) counts[i]) + // Count
+                                              ", Expected: " + expectedFormat.format(expecteds[i]); // Expected
 
-                        if (switchInfo != null) {
-                            altTexts[i] += ", Switch: " + switchInfo[i] + ", ";
-                        }
+                                if (switchInfo != null) {
+                                    altTexts[i] += ", Switch: " + switchInfo[i] + ", ";
+                                }
 
-                        // build the click through url
-                        StringBuilder tmp = new StringBuilder(jsCall.toString());
+                                // build the click through url
+                                StringBuilder tmp = new StringBuilder(jsCall.toString());
+
+                                // add the date field with start and end dates from the data point
+                                if (!DAILY.equalsIgnoreCase(timeResolution)) {
+                                    Calendar timeSet = Calendar.getInstance(clientTimezone);
+                                    timeSet.setTime(tdates[i]);
+
+                                    if (WEEKLY.equalsIgnoreCase(timeResolution)) {
+                                        timeSet.set(Calendar.DAY_OF_WEEK, startDay + 1);
+                                        tmp.append(",").append(dateFieldName).append("_start:'")
+                                                .append(timeSet.getTimeInMillis()).append("'");
+                                        timeSet.add(Calendar.DAY_OF_YEAR, 6);
+                                        tmp.append(",").append(dateFieldName).append("_end:'")
+                                                .append(timeSet.getTimeInMillis()).append("'");
+                                    } else if (MONTHLY.equalsIgnoreCase(timeResolution)) {
+                                        // Compute last day of month
+                                        timeSet.set(Calendar.DAY_OF_MONTH, 1);
+                                        timeSet.add(Calendar.MONTH, 1);
+                                        timeSet.add(Calendar.DAY_OF_YEAR, -1);
+                                        tmp.append(",").append(dateFieldName).append("_end:'")
+                                                .append(timeSet.getTimeInMillis()).append("'");
+                                        // set first day of month
+                                        timeSet.set(Calendar.DAY_OF_MONTH, 1);
+                                        tmp.append(",").append(dateFieldName).append("_start:'")
+                                                .append(timeSet.getTimeInMillis()).append("'");
+                                    } else if (YEARLY.equalsIgnoreCase(timeResolution)) {
+                                        // Compute last day of month
+                                        timeSet.set(Calendar.DATE, 31);
+                                        timeSet.add(Calendar.MONTH, Calendar.DECEMBER);
+                                        tmp.append(",").append(dateFieldName).append("_end:'")
+                                                .append(timeSet.getTimeInMillis()).append("'");
+                                        timeSet.set(Calendar.DATE, 1);
+                                        timeSet.add(Calendar.MONTH, Calendar.JANUARY);
+                                        tmp.append(",").append(dateFieldName).append("_start:'")
+                                                .append(timeSet.getTimeInMillis()).append("'");
+                                    }
+                                } else {
+                                    // add the date field with start and end dates from the data point
+                                    tmp.append(",").append(dateFieldName).append("_start:'")
+                                            .append(tdates[i].getTime()).append("'");
+                                    tmp.append(",").append(dateFieldName).append("_end:'")
+                                            .append(tdates[i].getTime()).append("'");
+                                }
+                                tmp.append("});");
+                                urls[i] = tmp.toString();
+                            }
 
-                        // add the date field with start and end dates from the data point
-                        if (!DAILY.equalsIgnoreCase(timeResolution)) {
-                            Calendar timeSet = Calendar.getInstance(clientTimezone);
-                            timeSet.setTime(tdates[i]);
+                            series.counts = counts;
+                            series.colors = colors;
+                            series.altTexts = altTexts;
+                            series.expecteds = expecteds;
+                            series.levels = levels;
+                            series.urls = urls;
+                            series.switchInfo = switchInfo;
+                            series.dates = dates;
+                            return series;
+                        }
+                    });
+                }
 
-                            if (WEEKLY.equalsIgnoreCase(timeResolution)) {
-                                timeSet.set(Calendar.DAY_OF_WEEK, startDay + 1);
-                                tmp.append(",").append(dateFieldName).append("_start:'")
-                                        .append(timeSet.getTimeInMillis()).append("'");
-                                timeSet.add(Calendar.DAY_OF_YEAR, 6);
-                                tmp.append(",").append(dateFieldName).append("_end:'").append(timeSet.getTimeInMillis())
-                                        .append("'");
-                            } else if (MONTHLY.equalsIgnoreCase(timeResolution)) {
-                                // Compute last day of month
-                                timeSet.set(Calendar.DAY_OF_MONTH, 1);
-                                timeSet.add(Calendar.MONTH, 1);
-                                timeSet.add(Calendar.DAY_OF_YEAR, -1);
-                                tmp.append(",").append(dateFieldName).append("_end:'").append(timeSet.getTimeInMillis())
-                                        .append("'");
-                                // set first day of month
-                                timeSet.set(Calendar.DAY_OF_MONTH, 1);
-                                tmp.append(",").append(dateFieldName).append("_start:'")
-                                        .append(timeSet.getTimeInMillis()).append("'");
-                            } else if (YEARLY.equalsIgnoreCase(timeResolution)) {
-                                // Compute last day of month
-                                timeSet.set(Calendar.DATE, 31);
-                                timeSet.add(Calendar.MONTH, Calendar.DECEMBER);
-                                tmp.append(",").append(dateFieldName).append("_end:'").append(timeSet.getTimeInMillis())
-                                        .append("'");
-                                timeSet.set(Calendar.DATE, 1);
-                                timeSet.add(Calendar.MONTH, Calendar.JANUARY);
-                                tmp.append(",").append(dateFieldName).append("_start:'")
-                                        .append(timeSet.getTimeInMillis()).append("'");
+                List<Future<SeriesResult>> futures = submitSeries(tasks);
+                int aIndex = 0;
+                try {
+                    for (Future<SeriesResult> future : futures) {
+                        SeriesResult series = future.get();
+                        if (series.error != null) {
+                            String errorMessage = "Failure to create timeseries";
+                            if (series.error.getMessage() != null) {
+                                errorMessage = errorMessage + ":<BR>" + series.error.getMessage();
                             }
-                        } else {
-                            // compute end date for individual data points based on the selected resolution
-//						   detailsPointEndDate = computeEndDate(tdates[i],timeResolution);
-                            // add the date field with start and end dates from the data point
-                            tmp.append(",").append(dateFieldName).append("_start:'").append(tdates[i].getTime())
-                                    .append("'");
-                            tmp.append(",").append(dateFieldName).append("_end:'").append(tdates[i].getTime())
-                                    .append("'");
+                            data.errorMessage = errorMessage;
+                            return data;
                         }
-                        tmp.append("});");
-                        urls[i] = tmp.toString();
-                    }
 
-                    allCounts[aIndex] = counts;
-                    allColors[aIndex] = colors;
-                    allAltTexts[aIndex] = altTexts;
-                    allExpecteds[aIndex] = expecteds;
-                    allLevels[aIndex] = levels;
-                    allLineSetURLs[aIndex] = urls;
-                    allSwitchInfo[aIndex] = switchInfo;
-                    lineSetLabels[aIndex] = accumIdTranslated;
-                    displayAlerts[aIndex] = isDetectionDetector;
-                    aIndex++;
-
-                    //remove the accumId for the next series
-                    dimIds.remove(accumId);
+                        dates = series.dates;
+                        allCounts[aIndex] = series.counts;
+                        allColors[aIndex] = series.colors;
+                        allAltTexts[aIndex] = series.altTexts;
+                        allExpecteds[aIndex] = series.expecteds;
+                        allLevels[aIndex] = series.levels;
+                        allLineSetURLs[aIndex] = series.urls;
+                        allSwitchInfo[aIndex] = series.switchInfo;
+                        lineSetLabels[aIndex] = series.label;
+                        displayAlerts[aIndex] = isDetectionDetector;
+                        aIndex++;
+                    }
+                } finally {
+                    // no-op for completed series; stops the rest if we bailed out early
+                    for (Future<SeriesResult> future : futures) {
+                        future.cancel(true);
+                    }
                 }
 
                 lineSetLabels[aIndex] = "Expected Values";
 
-                GraphDataSerializeToDiskHandler hndl = new GraphDataSerializeToDiskHandler(graphDir);
-                GraphController gc = getGraphController(null, hndl, userPrincipalName);
+                data.detection = isDetectionDetector;
+                data.percentBased = percentBased;
+                data.yAxisLabel = yAxisLabel;
+                data.dates = dates;
+                data.counts = allCounts;
+                data.colors = allColors;
+                data.altTexts = allAltTexts;
+                data.expecteds = allExpecteds;
+                data.levels = allLevels;
+                data.lineSetURLs = allLineSetURLs;
+                data.switchInfo = allSwitchInfo;
+                data.lineSetLabels = lineSetLabels;
+                data.displayAlerts = displayAlerts;
+            }
+        } catch (Exception e) {
+            log.error("Failure to create Timeseries", e);
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * Render the time series graph for series from {@link #computeTimeseries}.
+     */
+    private Map<String, Object> createTimeseries(String userPrincipalName, DataSeriesSource dss, GroupingImpl group,
+                                                 TimeseriesData data, String graphTimeSeriesUrl,
+                                                 boolean includeDetails, GraphDataInterface graphData,
+                                                 boolean graphExpected) {
+
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("success", false);
+        if (data == null) {
+            return result;
+        }
+        if (data.errorMessage != null) {
+            result.put("message", data.errorMessage);
+            return result;
+        }
+        try {
+            if (data.counts != null) {
+                boolean isDetectionDetector = data.detection;
+                String[] dates = data.dates;
+                double[][] allCounts = data.counts;
+                int[][] allColors = data.colors;
+                String[][] allAltTexts = data.altTexts;
+                double[][] allExpecteds = data.expecteds;
+                double[][] allLevels = data.levels;
+                String[][] allLineSetURLs = data.lineSetURLs;
+                String[][] allSwitchInfo = data.switchInfo;
+                String[] lineSetLabels = data.lineSetLabels;
+                boolean[] displayAlerts = data.displayAlerts;
+                boolean percentBased = data.percentBased;
+                String yAxisLabel = data.yAxisLabel;
+
+                GraphController gc = getGraphController(null, graphDataHandler, userPrincipalName);
                 //TODO figure out why I (hodancj1) added this to be accumulation size ~Feb 2012
                 // gc.setMaxLegendItems(accumulations.size());
 
@@ -1066,7 +1293,6 @@ public class ReportController extends OeController {
             }
         }
 
-        GraphDataSerializeToDiskHandler hndl = new GraphDataSerializeToDiskHandler(graphDir);
         GraphObject graph = null;
 
         Color[] colorsFromHex = null;
@@ -1078,7 +1304,7 @@ public class ReportController extends OeController {
             data.setGraphBaseColors(colorsFromHex);
         }
 
-        GraphController gc = getGraphController(null, hndl, userPrincipalName);
+        GraphController gc = getGraphController(null, graphDataHandler, userPrincipalName);
 
         List<Record> recs = new ArrayList<Record>(records);
 
@@ -1276,10 +1502,9 @@ public class ReportController extends OeController {
                                 @RequestParam(required = false) boolean graphExpectedValues)
             throws GraphException, IOException {
 
-        GraphDataSerializeToDiskHandler hndl = new GraphDataSerializeToDiskHandler(graphDir);
-        GraphController gc = getGraphController(dataId, hndl, req.getUserPrincipal().getName());
+        GraphController gc = getGraphController(dataId, graphDataHandler, req.getUserPrincipal().getName());
 
-        GraphDataInterface data = hndl.getGraphData(dataId);
+        GraphDataInterface data = graphDataHandler.getGraphData(dataId);
 
         if (graphTitle != null) {
             data.setGraphTitle(graphTitle);
@@ -1323,10 +1548,9 @@ public class ReportController extends OeController {
     public void graphBar(HttpServletRequest req, HttpServletResponse resp,
                          @RequestParam("graphDataId") String dataId,
                          @RequestParam(required = false) Integer resolution) throws GraphException, IOException {
-        GraphDataSerializeToDiskHandler hndl = new GraphDataSerializeToDiskHandler(graphDir);
-        GraphController gc = getGraphController(dataId, hndl, req.getUserPrincipal().getName());
+        GraphController gc = getGraphController(dataId, graphDataHandler, req.getUserPrincipal().getName());
 
-        GraphDataInterface data = hndl.getGraphData(dataId);
+        GraphDataInterface data = graphDataHandler.getGraphData(dataId);
         GraphObject graph = gc.createBarGraph(data, false);
         String filename = graph.getImageFileName();
         filename = filename.replaceAll("\\s", "_");
@@ -1348,10 +1572,9 @@ public class ReportController extends OeController {
                          @RequestParam("graphDataId") String dataId,
                          @RequestParam(required = false) Integer resolution) throws GraphException, IOException {
 
-        GraphDataSerializeToDiskHandler hndl = new GraphDataSerializeToDiskHandler(graphDir);
-        GraphController gc = getGraphController(dataId, hndl, req.getUserPrincipal().getName());
+        GraphController gc = getGraphController(dataId, graphDataHandler, req.getUserPrincipal().getName());
 
-        GraphDataInterface data = hndl.getGraphData(dataId);
+        GraphDataInterface data = graphDataHandler.getGraphData(dataId);
         GraphObject graph = gc.createPieGraph(data);
         String filename = graph.getImageFileName();
         filename = filename.replaceAll("\\s", "_");
@@ -1367,12 +1590,20 @@ public class ReportController extends OeController {
         }
     }
 
+    /**
+     * @param after        optional sort column values of the last row of the previous page, in sort column order. When
+     *                     the sort includes the data source's unique key, the page starts after that row instead of
+     *                     at firstRecord, which is much cheaper deep into large tables.
+     * @param totalRequested whether to count all matching rows
+     */
     @RequestMapping("/detailsQuery")
     public
     @ResponseBody
     DataSourceDetails detailsQuery(WebRequest request, @RequestParam("dsId") JdbcOeDataSource ds,
                                    @RequestParam(value = "firstrecord", defaultValue = "0") long firstRecord,
-                                   @RequestParam(value = "pagesize", defaultValue = "200") long pageSize)
+                                   @RequestParam(value = "pagesize", defaultValue = "200") long pageSize,
+                                   @RequestParam(value = "after", required = false) String[] after,
+                                   @RequestParam(value = "total", defaultValue = "true") boolean totalRequested)
             throws ErrorMessageException, OeDataSourceException, OeDataSourceAccessException {
 
         List<Filter> filters = new Filters().getFilters(request.getParameterMap(), ds, null, 0, null, 0);
@@ -1395,9 +1626,22 @@ public class ReportController extends OeController {
             clientTimezone = ControllerUtils
                     .getRequestTimezoneAsHourMinuteString(request);
         }
+        List<Object> keyset = null;
+        if (after != null && after.length == sorts.size()) {
+            keyset = new ArrayList<Object>();
+            for (int i = 0; i < after.length; i++) {
+                Dimension dimension = ds.getResultDimension(sorts.get(i).getFilterId());
+                if (dimension == null) {
+                    throw new ErrorMessageException("Unknown sort column " + sorts.get(i).getFilterId());
+                }
+                keyset.add(ControllerUtils.formatData(dimension.getId(), after[i], dimension.getSqlType(), true)
+                                   .get(dimension.getId()));
+            }
+        }
+
         return new DetailsQuery().performDetailsQuery(ds, results, accumulations, filters, sorts, false,
                                                       clientTimezone,
-                                                      firstRecord, pageSize, true);
+                                                      firstRecord, pageSize, keyset, totalRequested);
     }
 
     private int getCalWeekStartDay(Map<String, ResolutionHandler> resolutionHandlers) {
@@ -1444,183 +1688,83 @@ public class ReportController extends OeController {
 
 
     /**
-     * Extracts AccumPoint from a Collection of <code>records</code> where
+     * Extracts the value of each accumulation at each point of the series from a Collection of <code>records</code>.
+     * Date groupings at an hourly, daily, weekly or monthly resolution get one point per interval from startDate to
+     * endDate, with 0 for intervals without a record. Other groupings get one point per record.
      *
      * @param principal, used for logging
      */
-    private List<AccumPoint> extractAccumulationPoints(String principal, DataSeriesSource ds,
-                                                       final Collection<Record> records,
-                                                       Date startDate, Date endDate, List<Dimension> accumulations,
-                                                       final GroupingImpl group,
-                                                       Map<String, ResolutionHandler> resolutionHandlers) {
+    private AccumulationSeries extractAccumulationPoints(String principal, DataSeriesSource ds,
+                                                         final Collection<Record> records,
+                                                         Date startDate, Date endDate, List<Dimension> accumulations,
+                                                         final GroupingImpl group,
+                                                         Map<String, ResolutionHandler> resolutionHandlers) {
         log.info(LogStatements.TIME_SERIES.getLoggingStmt() + principal);
-        int startDayCal = getCalWeekStartDay(resolutionHandlers);
-        int startDay = getWeekStartDay(resolutionHandlers);
-
-        String resolution = group.getResolution();
         final String groupId = group.getId();
-        int zeroFillInterval = intervalMap.keySet().contains(resolution) ? intervalMap.get(resolution) : -1;
-
-        GroupingDimension grpdim = ds.getGroupingDimension(group.getId());
-        if (zeroFillInterval != -1 && (grpdim.getSqlType() == FieldType.DATE
-                                       || grpdim.getSqlType() == FieldType.DATE_TIME)) {
-            ArrayList<AccumPoint> fullVector = new ArrayList<AccumPoint>(records.size());
-            //create zero points for each accumulation
-            Map<String, Number> zeroes = new HashMap<String, Number>();
-            for (Dimension accumulation : accumulations) {
-                zeroes.put(accumulation.getId(), 0);
-            }
-            if (records.size() > 0) {
-                final Calendar cal = new GregorianCalendar();
-                cal.setTime(startDate);
-                Iterator<Record> recordsIterator = records.iterator();
-                Record currRecord = (recordsIterator.hasNext()) ? recordsIterator.next() : null;
-
-                //currently iterates over data incrementing cal by the resolution (weekly, daily etc)
-                for (int i = 1; !cal.getTime().after(endDate); i++) {
-                    // if (DAILY.equalsIgnoreCase(resolution)) {
-                    boolean addRecord = false;
-                    if (currRecord != null) {
-                        // 2013/03/25, SCC, GGF, There are some weird edge cases with selecting data ranges that span
-                        // the EDT/EST cross-overs.  Sometimes the "filter" will have the "23:00" and the data will have
-                        // "00:00".  So, since we only care about the "date" anyway, clear out any subordinate fields.
-
-                        // Database record date (set hour, minute, second, millisec to 0)
-                        final Calendar rowValue = Calendar.getInstance();
-                        rowValue.setTime((Date) currRecord.getValue(groupId));
-                        rowValue.set(Calendar.HOUR_OF_DAY, 0);
-                        rowValue.set(Calendar.MINUTE, 0);
-                        rowValue.set(Calendar.SECOND, 0);
-                        rowValue.set(Calendar.MILLISECOND, 0);
-
-                        // looping variable date (set hour, minute, second, millisec to 0)
-                        final Calendar calValue = Calendar.getInstance();
-                        calValue.setTime(cal.getTime());
-                        calValue.set(Calendar.HOUR_OF_DAY, 0);
-                        calValue.set(Calendar.MINUTE, 0);
-                        calValue.set(Calendar.SECOND, 0);
-                        calValue.set(Calendar.MILLISECOND, 0);
-
-                        if (resolution.equalsIgnoreCase(DAILY) && rowValue.equals(calValue)) {
-                            addRecord = true;
-                        } else {
-                            Calendar currRecCalendar = new GregorianCalendar();
-                            currRecCalendar.setTime((Date) currRecord.getValue(groupId));
-                            if (resolution.equalsIgnoreCase(WEEKLY)) {
-                                if (PgSqlDateHelper.getYear(startDay, cal) == PgSqlDateHelper
-                                        .getYear(startDay, currRecCalendar) &&
-                                    PgSqlDateHelper.getWeekOfYear(startDay, cal) == PgSqlDateHelper
-                                            .getWeekOfYear(startDay, currRecCalendar)) {
-                                    addRecord = true;
-                                }
-                            } else if (resolution.equalsIgnoreCase(MONTHLY)) {
-                                if (cal.get(Calendar.YEAR) == currRecCalendar.get(Calendar.YEAR) &&
-                                    cal.get(Calendar.MONTH) == currRecCalendar.get(Calendar.MONTH)) {
-                                    addRecord = true;
-                                }
-                            }
-                        }
-                        if (addRecord) {
-                            //if the current record matches the date put it in
-                            fullVector.add(createAccumulationPoint(currRecord, accumulations));
-                            currRecord = (recordsIterator.hasNext()) ? recordsIterator.next() : null;
-                        }
-                    }
-                    if (!addRecord) {
-                        //add a zero fill
-                        Map<String, Dimension> m = new HashMap<String, Dimension>();
-                        m.put(groupId, ds.getResultDimension(groupId));
-                        HashMap<String, Object> map = new HashMap<String, Object>();
-                        map.put(groupId, cal.getTime());
-                        Record r = new QueryRecord(m, map);
-                        fullVector.add(new AccumPointImpl(zeroes, r));
-                    }
-                    if (resolution.equalsIgnoreCase(WEEKLY)) {
-                        // add 7 days if current date falls on week start date
-                        if (i != 1) {
-                            cal.add(Calendar.WEEK_OF_YEAR, 1);
-                        } else {
-                            cal.add(Calendar.DAY_OF_YEAR, 1);
-                            while (cal.get(Calendar.DAY_OF_WEEK) != startDayCal) {
-                                cal.add(Calendar.DAY_OF_YEAR, 1);
-                            }
-                        }
-                    } else {
-                        // reset the date each time to account for +month oddness
-                        cal.setTime(startDate);
-                        // increment the interval
-                        cal.add(zeroFillInterval, 1 * i);
-                    }
-                }
 
-            }
-            return fullVector;
-        } else {
+        TimeSeriesBuckets buckets = null;
+        GroupingDimension grpdim = ds.getGroupingDimension(groupId);
+        if (grpdim.getSqlType() == FieldType.DATE || grpdim.getSqlType() == FieldType.DATE_TIME) {
+            buckets = TimeSeriesBuckets.create(group.getResolution(), getWeekStartDay(resolutionHandlers), startDate,
+                                               endDate);
+        }
+
+        if (buckets == null) {
             //pretty sure this is raw non filled
-            List<AccumPoint> rawVector = new ArrayList<AccumPoint>(records.size());
+            AccumulationSeries series = new AccumulationSeries(accumulations, records.size());
+            int i = 0;
             for (Record record : records) {
-                rawVector.add(createAccumulationPoint(record, accumulations));
+                series.add(i++, record);
             }
-            return rawVector;
+            return series;
         }
-    }
 
-    private AccumPoint createAccumulationPoint(Record record, List<Dimension> accumulations) {
-        Map<String, Number> values = new LinkedHashMap<String, Number>();
-        for (Dimension a : accumulations) {
-            Object value = record.getValue(a.getId());
-            Number number = (Number) value;
-            values.put(a.getId(), number);
+        // no data means no series, rather than a series of zeroes
+        AccumulationSeries series = new AccumulationSeries(accumulations, records.isEmpty() ? 0 : buckets.size());
+        for (Record record : records) {
+            // records are dated by the start of their interval in the server's time zone, but only the interval
+            // matters, which also takes care of filters and data ending up an hour apart around DST changes
+            int i = buckets.indexOf((Date) record.getValue(groupId));
+            if (i >= 0) {
+                series.add(i, record);
+            }
         }
-        AccumPoint accumPoint = new AccumPointImpl(values, record);
-        return accumPoint;
+        return series;
     }
 
     /**
-     * Takes a List of SeriesPoints and generates a double array that holds the value of each SeriesPoint
+     * Takes the series of one accumulation as a new array, for detectors
      *
-     * @param seriespoints - List<AccumPoint> whose values need to be extracted into a double[] for detectors
-     * @param dimId        - The dimension id to pull from each AccumPoint
-     * @return pointarray - double[] that holds all the values from the passed in list of SeriesPoint
+     * @param dimId - The dimension id of the accumulation
+     * @return pointarray - double[] that holds the accumulation's value at each point, NaN where it has none
      */
-    private double[] generateSeriesValues(List<AccumPoint> seriespoints, String dimId) {
-        //List<Number> pointlist = new ArrayList<Number>();
-        double[] pointarray = new double[seriespoints.size()];
-        int i = 0;
-        for (AccumPoint point : seriespoints) {
-            //pointlist.add(point.getValue());
-            if (point != null && point.getValue(dimId) != null) {
-                pointarray[i] = point.getValue(dimId).doubleValue();
-            } else {
-                pointarray[i] = Double.NaN;
-            }
-            i++;
+    private double[] generateSeriesValues(AccumulationSeries series, String dimId) {
+        double[] values = series.values.get(dimId);
+        if (values == null) {
+            double[] pointarray = new double[series.size];
+            Arrays.fill(pointarray, Double.NaN);
+            return pointarray;
         }
-        return pointarray;
+        return values.clone();
     }
 
     /**
-     * Takes a List of AccumPoints and generates a double array that holds the total of accumulations
+     * Generates a double array that holds the total of accumulations at each point of the series
      *
-     * @param points     - List<AccumPoint> whose values need to be extracted into a double[] for detectors
-     * @param dimensions - The list of dimensions to sum from each AccumPoint
-     * @return double[] that holds all the values from the passed in list of SeriesPoint
+     * @param dimensions - The list of dimensions to sum, points where a dimension has no value are summed without it
+     * @return double[] that holds the total at each point
      */
-    private double[] totalSeriesValues(List<AccumPoint> points, List<Dimension> dimensions) {
-        double[] totalArray = new double[points.size()];
-        int i = 0;
-        for (AccumPoint point : points) {
-            if (point != null) {
-                for (Dimension dim : dimensions) {
-                    Number value = point.getValue(dim.getId());
-                    if (value != null) {
-                        totalArray[i] = totalArray[i] + value.doubleValue();
+    private double[] totalSeriesValues(AccumulationSeries series, List<Dimension> dimensions) {
+        double[] totalArray = new double[series.size];
+        for (Dimension dim : dimensions) {
+            double[] values = series.values.get(dim.getId());
+            if (values != null) {
+                for (int i = 0; i < totalArray.length; i++) {
+                    if (!Double.isNaN(values[i])) {
+                        totalArray[i] += values[i];
                     }
                 }
-            } else {
-                totalArray[i] = Double.NaN;
             }
-            i++;
         }
         return totalArray;
     }
@@ -1667,21 +1811,12 @@ public class ReportController extends OeController {
         if (timezoneEnabledString.equalsIgnoreCase("true")) {
             clientTimezone = ControllerUtils.getRequestTimezoneAsHourMinuteString(request);
         }
-        Collection<Record> points =
-                new DetailsQuery().performDetailsQuery(ds, results, accumulations, filters, sorts, false,
-                                                       clientTimezone);
+        final QueryManipulationStore store =
+                new QueryManipulationStore(results, accumulations, filters, sorts, false, clientTimezone);
         // Translate accumulation int to bool if renderIntToBool set to true
         // if accumulation value is null ==> false else true
         String renderIntToBool = request.getParameter("renderIntToBool");
-        if (renderIntToBool != null && renderIntToBool.equalsIgnoreCase("true")) {
-            for (Record point : points) {
-                Map<String, Object> vals = point.getValues();
-                for (Dimension accum : accumulations) {
-                    Object accumVal = vals.get(accum.getId());
-                    vals.put(accum.getId(), accumVal != null);
-                }
-            }
-        }
+        boolean accumulationsAsBoolean = renderIntToBool != null && renderIntToBool.equalsIgnoreCase("true");
 
         response.setContentType("text/csv;charset=utf-8");
 
@@ -1699,8 +1834,11 @@ public class ReportController extends OeController {
         fileDownloadCookie.setPath("/");
         response.addCookie(fileDownloadCookie);
 
-        FileExportUtil.exportGridToCSV(response.getWriter(), columnHeaders.toArray(new String[columnHeaders.size()]),
-                                       points, timezone);
+        // rows are written as they are read, so the client starts receiving the file while the query runs
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"));
+        FileExportUtil.exportDetailsToCSV(writer, columnHeaders.toArray(new String[columnHeaders.size()]), ds, store,
+                                          timezone, accumulationsAsBoolean);
+        writer.flush();
     }
 
     private String appendUrlParameter(String url, String param, String value) {
@@ -1872,4 +2010,69 @@ public class ReportController extends OeController {
                     .replaceAll(" ", "%20");
         }
     }
+
+    /**
+     * Everything the time series graph shows, computed once per distinct request and shared through
+     * {@link #timeSeriesCache}, so it must not be modified after it is built. counts is null when there was no data.
+     */
+    public static class TimeseriesData {
+
+        String errorMessage;
+        boolean detection;
+        boolean percentBased;
+        String yAxisLabel;
+        String[] dates;
+        double[][] counts;
+        int[][] colors;
+        String[][] altTexts;
+        double[][] expecteds;
+        double[][] levels;
+        String[][] lineSetURLs;
+        String[][] switchInfo;
+        String[] lineSetLabels;
+        boolean[] displayAlerts;
+    }
+
+    /**
+     * Detection output and display values for one accumulation of a time series.
+     */
+    private static class SeriesResult {
+
+        String label;
+        double[] counts;
+        int[] colors;
+        String[] altTexts;
+        double[] expecteds;
+        double[] levels;
+        String[] urls;
+        String[] switchInfo;
+        String[] dates;
+        Exception error;
+    }
+
+    /**
+     * Value of each accumulation at each point of a time series, NaN where a record had no value.
+     */
+    private static class AccumulationSeries {
+
+        final int size;
+        final Map<String, double[]> values = new HashMap<String, double[]>();
+
+        AccumulationSeries(List<Dimension> accumulations, int size) {
+            this.size = size;
+            for (Dimension accumulation : accumulations) {
+                values.put(accumulation.getId(), new double[size]);
+            }
+        }
+
+        /**
+         * Add the record's values to a point; records in the same interval are summed.
+         */
+        void add(int index, Record record) {
+            for (Map.Entry<String, double[]> e : values.entrySet()) {
+                Number value = (Number) record.getValue(e.getKey());
+                e.getValue()[index] += value == null ? Double.NaN : value.doubleValue();
+            }
+        }
+    }
 }
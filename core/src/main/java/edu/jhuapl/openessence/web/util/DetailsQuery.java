@@ -98,6 +98,82 @@ public class DetailsQuery {
                                                  final long pageSize,
                                                  final boolean totalRequested)
             throws OeDataSourceException, OeDataSourceAccessException {
+        return performDetailsQuery(ds, results, accumulations, filters, sorts, isDistinct, timezone, firstRecord,
+                                   pageSize, null, totalRequested);
+    }
+
+    /**
+     * Get one page of details. The database does the paging when it {@link JdbcOeDataSource#supportsPaging() can},
+     * otherwise rows before the page are read and skipped.
+     *
+     * @param keyset sort values of the last row of the previous page, or null. Used instead of firstRecord when the
+     *               sort includes the data source's unique key and every sort dimension is a key or non-null.
+     */
+    public DataSourceDetails performDetailsQuery(final JdbcOeDataSource ds,
+                                                 final List<Dimension> results,
+                                                 final List<Dimension> accumulations,
+                                                 final List<Filter> filters,
+                                                 final List<OrderByFilter> sorts,
+                                                 final boolean isDistinct,
+                                                 final String timezone,
+                                                 final long firstRecord,
+                                                 final long pageSize,
+                                                 final List<Object> keyset,
+                                                 final boolean totalRequested)
+            throws OeDataSourceException, OeDataSourceAccessException {
+
+        if (pageSize <= 0 || !ds.supportsPaging()) {
+            return skipToPage(ds, results, accumulations, filters, sorts, isDistinct, timezone, firstRecord, pageSize,
+                              totalRequested);
+        }
+
+        // data sources may add filters to the store, so don't let the page and count queries share a list
+        final QueryManipulationStore queryManipStore =
+                new QueryManipulationStore(results, accumulations, new ArrayList<Filter>(filters), sorts, isDistinct,
+                                           timezone);
+        queryManipStore.setOffset(firstRecord);
+        queryManipStore.setLimit(pageSize);
+        queryManipStore.setKeyset(keyset);
+
+        final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        ds.detailsQuery(queryManipStore, new RowCallbackHandler() {
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                rows.add(createRow(queryManipStore.getResults(), rs));
+            }
+        }, ds.getFetchSize());
+
+        long total;
+        if (keyset == null && rows.size() < pageSize && (!rows.isEmpty() || firstRecord == 0)) {
+            // this was the last page
+            total = firstRecord + rows.size();
+        } else if (totalRequested) {
+            total = ds.detailsCount(new QueryManipulationStore(results, accumulations, new ArrayList<Filter>(filters),
+                                                               sorts, isDistinct, timezone));
+        } else {
+            total = firstRecord + rows.size();
+        }
+
+        DataSourceDetails details = new DataSourceDetails();
+        details.setRows(rows);
+        details.setTotalRecords((int) Math.min(total, Integer.MAX_VALUE));
+        return details;
+    }
+
+    /**
+     * Paging for databases without a paging clause: read every row, keeping the requested ones.
+     */
+    private DataSourceDetails skipToPage(final JdbcOeDataSource ds,
+                                         final List<Dimension> results,
+                                         final List<Dimension> accumulations,
+                                         final List<Filter> filters,
+                                         final List<OrderByFilter> sorts,
+                                         final boolean isDistinct,
+                                         final String timezone,
+                                         final long firstRecord,
+                                         final long pageSize,
+                                         final boolean totalRequested)
+            throws OeDataSourceException, OeDataSourceAccessException {
 
         final AtomicInteger rowNumber = new AtomicInteger(0);
         final QueryManipulationStore queryManipStore =
@@ -119,27 +195,7 @@ public class DetailsQuery {
                             throw new DetailsQueryExitEarlyRuntimeException("Stopped on row " + rownumber);
                         }
                     } else if (rownumber > first) {
-                        Map<String, Object> row = new LinkedHashMap<String, Object>();
-                        int i = 1;
-                        for (final Dimension dim : queryManipStore.getResults()) {
-                            final Object val = DataTypeConversionHelper.convert2JavaType(rs, dim.getSqlType(), i++);
-                            if (val instanceof Timestamp) {
-                                row.put(dim.getId(), ((Timestamp) val).getTime());
-                            } else if (val instanceof Date) {
-                                row.put(dim.getId(), ((Date) val).getTime());
-                            } else if (val instanceof Number) {
-                                row.put(dim.getId(), (Number) val);
-                            } else if (val instanceof String) {
-                                row.put(dim.getId(), (String) val);
-                            } else if (val instanceof Boolean) {
-                                row.put(dim.getId(), (Boolean) val);
-                            } else if (val == null) {
-                                row.put(dim.getId(), null);
-                            } else {
-                                throw new AssertionError("Unexpected field type \"" + val + "\"");
-                            }
-                        }
-                        rows.add(row);
+                        rows.add(createRow(queryManipStore.getResults(), rs));
                     }
                 }
             }, ds.getFetchSize());
@@ -152,4 +208,28 @@ public class DetailsQuery {
         details.setTotalRecords(rowNumber.get());
         return details;
     }
+
+    private static Map<String, Object> createRow(Collection<Dimension> dimensions, ResultSet rs) throws SQLException {
+        Map<String, Object> row = new LinkedHashMap<String, Object>();
+        int i = 1;
+        for (final Dimension dim : dimensions) {
+            final Object val = DataTypeConversionHelper.convert2JavaType(rs, dim.getSqlType(), i++);
+            if (val instanceof Timestamp) {
+                row.put(dim.getId(), ((Timestamp) val).getTime());
+            } else if (val instanceof Date) {
+                row.put(dim.getId(), ((Date) val).getTime());
+            } else if (val instanceof Number) {
+                row.put(dim.getId(), (Number) val);
+            } else if (val instanceof String) {
+                row.put(dim.getId(), (String) val);
+            } else if (val instanceof Boolean) {
+                row.put(dim.getId(), (Boolean) val);
+            } else if (val == null) {
+                row.put(dim.getId(), null);
+            } else {
+                throw new AssertionError("Unexpected field type \"" + val + "\"");
+            }
+        }
+        return row;
+    }
 }
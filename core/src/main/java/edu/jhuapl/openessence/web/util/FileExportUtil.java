@@ -26,11 +26,21 @@
 
 package edu.jhuapl.openessence.web.util;
 
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.OeDataSourceAccessException;
+import edu.jhuapl.openessence.datasource.OeDataSourceException;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
 import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
 
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -103,4 +113,259 @@ public class FileExportUtil {
             recordStrings.clear();
         }
     }
+
+    /**
+     * Runs a details query and writes each row as CSV as soon as it is read, so memory use does not depend on the
+     * size of the export. The output matches {@link #exportGridToCSV}.
+     *
+     * @param writer                 what to write the CSV data to; buffer it, it is written a value at a time
+     * @param reportHeaders          The headers in the DataDetails grid
+     * @param ds                     data source to query
+     * @param store                  the details query
+     * @param timezone               time zone of the request/client
+     * @param accumulationsAsBoolean write accumulations as true when they have a value and false otherwise
+     */
+    public static void exportDetailsToCSV(Writer writer, String[] reportHeaders, JdbcOeDataSource ds,
+                                          QueryManipulationStore store, TimeZone timezone,
+                                          boolean accumulationsAsBoolean) throws IOException {
+        writer.write(StringUtils.arrayToDelimitedString(reportHeaders, ","));
+        writer.write('\n');
+
+        // the list query refreshes joined dimensions before it runs, the streaming one doesn't
+        if (ds.getDimensionJoiner() != null) {
+            ds.getDimensionJoiner().joinDimensions();
+        }
+
+        try {
+            ds.streamDetailsQuery(store, new CsvRowWriter(writer, ds, store, timezone, accumulationsAsBoolean),
+                                  ds.getFetchSize());
+        } catch (DetailsQueryExitEarlyRuntimeException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        } catch (OeDataSourceAccessException e) {
+            throw new OeDataSourceException(e);
+        }
+    }
+
+    /**
+     * Writes rows of a details query as CSV lines. The formatters are picked on the first row, once the query has
+     * settled the column order.
+     */
+    private static class CsvRowWriter implements RowCallbackHandler {
+
+        private final Writer writer;
+        private final JdbcOeDataSource ds;
+        private final QueryManipulationStore store;
+        private final boolean accumulationsAsBoolean;
+        private final SimpleDateFormat dateFormat;
+        private final SimpleDateFormat dateTimeFormat;
+        private ValueWriter[] columns;
+
+        CsvRowWriter(Writer writer, JdbcOeDataSource ds, QueryManipulationStore store, TimeZone timezone,
+                     boolean accumulationsAsBoolean) {
+            this.writer = writer;
+            this.ds = ds;
+            this.store = store;
+            this.accumulationsAsBoolean = accumulationsAsBoolean;
+            dateFormat = (SimpleDateFormat) SIMPLE_DATE_FORMAT.clone();
+            dateTimeFormat = (SimpleDateFormat) SIMPLE_DATE_TIME_FORMAT.clone();
+            dateTimeFormat.setTimeZone(timezone);
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            if (columns == null) {
+                columns = createValueWriters();
+            }
+            try {
+                for (int i = 0; i < columns.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    columns[i].write(rs, i + 1, writer);
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                // most likely the client went away, no point reading more rows
+                throw new DetailsQueryExitEarlyRuntimeException("Could not write CSV export", e);
+            }
+        }
+
+        private ValueWriter[] createValueWriters() {
+            List<Dimension> dimensions = ds.getDetailsColumns(store);
+            ValueWriter[] writers = new ValueWriter[dimensions.size()];
+            for (int i = 0; i < writers.length; i++) {
+                Dimension d = dimensions.get(i);
+                if (accumulationsAsBoolean && store.getAccumulations() != null
+                    && store.getAccumulations().contains(d)) {
+                    writers[i] = new PresenceWriter(isQuoted(d));
+                    continue;
+                }
+                switch (d.getSqlType()) {
+                    case DATE:
+                        writers[i] = new DateWriter(dateFormat, false);
+                        break;
+                    case DATE_TIME:
+                        writers[i] = new DateWriter(dateTimeFormat, true);
+                        break;
+                    case INTEGER:
+                        writers[i] = new IntWriter();
+                        break;
+                    case FLOAT:
+                        writers[i] = new FloatWriter();
+                        break;
+                    case LONG:
+                        writers[i] = new LongWriter();
+                        break;
+                    case DOUBLE:
+                        writers[i] = new DoubleWriter();
+                        break;
+                    case BOOLEAN:
+                        writers[i] = new BooleanWriter();
+                        break;
+                    default:
+                        writers[i] = new TextWriter();
+                        break;
+                }
+            }
+            return writers;
+        }
+
+        private static boolean isQuoted(Dimension d) {
+            switch (d.getSqlType()) {
+                case INTEGER:
+                case FLOAT:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Reads one value of a row and writes it, quoted the same way {@link #exportGridToCSV} does. Null values are
+     * written as nothing.
+     */
+    private abstract static class ValueWriter {
+
+        abstract void write(ResultSet rs, int col, Writer out) throws SQLException, IOException;
+
+        static void writeQuoted(Writer out, String value) throws IOException {
+            out.write('"');
+            out.write(value);
+            out.write('"');
+        }
+    }
+
+    private static class DateWriter extends ValueWriter {
+
+        private final SimpleDateFormat format;
+        private final boolean timestamp;
+        private final Date date = new Date();
+
+        DateWriter(SimpleDateFormat format, boolean timestamp) {
+            this.format = format;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        void write(ResultSet rs, int col, Writer out) throws SQLException, IOException {
+            Date value = timestamp ? rs.getTimestamp(col) : rs.getDate(col);
+            if (value != null && !rs.wasNull()) {
+                date.setTime(value.getTime());
+                writeQuoted(out, format.format(date));
+            }
+        }
+    }
+
+    private static class IntWriter extends ValueWriter {
+
+        @Override
+        void write(ResultSet rs, int col, Writer out) throws SQLException, IOException {
+            int value = rs.getInt(col);
+            if (!rs.wasNull()) {
+                out.write(Integer.toString(value));
+            }
+        }
+    }
+
+    private static class FloatWriter extends ValueWriter {
+
+        @Override
+        void write(ResultSet rs, int col, Writer out) throws SQLException, IOException {
+            float value = rs.getFloat(col);
+            if (!rs.wasNull()) {
+                out.write(Float.toString(value));
+            }
+        }
+    }
+
+    private static class LongWriter extends ValueWriter {
+
+        @Override
+        void write(ResultSet rs, int col, Writer out) throws SQLException, IOException {
+            long value = rs.getLong(col);
+            if (!rs.wasNull()) {
+                writeQuoted(out, Long.toString(value));
+            }
+        }
+    }
+
+    private static class DoubleWriter extends ValueWriter {
+
+        @Override
+        void write(ResultSet rs, int col, Writer out) throws SQLException, IOException {
+            double value = rs.getDouble(col);
+            if (!rs.wasNull()) {
+                writeQuoted(out, Double.toString(value));
+            }
+        }
+    }
+
+    private static class BooleanWriter extends ValueWriter {
+
+        @Override
+        void write(ResultSet rs, int col, Writer out) throws SQLException, IOException {
+            boolean value = rs.getBoolean(col);
+            if (!rs.wasNull()) {
+                writeQuoted(out, Boolean.toString(value));
+            }
+        }
+    }
+
+    private static class TextWriter extends ValueWriter {
+
+        @Override
+        void write(ResultSet rs, int col, Writer out) throws SQLException, IOException {
+            String value = rs.getString(col);
+            if (value != null) {
+                writeQuoted(out, value);
+            }
+        }
+    }
+
+    /**
+     * Writes whether an accumulation has a value, for the renderIntToBool option.
+     */
+    private static class PresenceWriter extends ValueWriter {
+
+        private final boolean quoted;
+
+        PresenceWriter(boolean quoted) {
+            this.quoted = quoted;
+        }
+
+        @Override
+        void write(ResultSet rs, int col, Writer out) throws SQLException, IOException {
+            rs.getObject(col);
+            String value = Boolean.toString(!rs.wasNull());
+            if (quoted) {
+                writeQuoted(out, value);
+            } else {
+                out.write(value);
+            }
+        }
+    }
 }
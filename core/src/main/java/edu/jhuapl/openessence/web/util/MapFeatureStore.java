@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.web.util;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Holds the features of map overlays between the map data request and the client fetching them, so overlays can be
+ * drawn without writing to the map request tables. Entries expire a fixed time after they are stored, and the least
+ * recently used ones are dropped once more than {@code maxEntries} are held. Safe for use by multiple threads.
+ */
+public class MapFeatureStore {
+
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * @param maxEntries       maximum number of overlays held
+     * @param timeToLiveMillis how long an overlay can be fetched after it is stored
+     */
+    public MapFeatureStore(int maxEntries, long timeToLiveMillis) {
+        if (maxEntries < 1 || timeToLiveMillis < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid map feature store size " + maxEntries + " or time to live " + timeToLiveMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    /**
+     * @return id to fetch the features with
+     */
+    public String put(Features features) {
+        String id = UUID.randomUUID().toString();
+        long now = currentTimeMillis();
+        synchronized (entries) {
+            entries.put(id, new Entry(features, now + timeToLiveMillis));
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxEntries) {
+                it.next();
+                it.remove();
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @return the stored features, or null if there are none or they expired
+     */
+    public Features get(String id) {
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expires <= currentTimeMillis()) {
+                entries.remove(id);
+                entry = null;
+            }
+            return entry == null ? null : entry.features;
+        }
+    }
+
+    /**
+     * Drop expired entries. Entries are also dropped lazily when they are fetched.
+     */
+    public void removeExpired() {
+        long now = currentTimeMillis();
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().expires <= now) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static class Entry {
+
+        private final Features features;
+        private final long expires;
+
+        private Entry(Features features, long expires) {
+            this.features = features;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * The features of one overlay: a row of property values per feature, plus an optional geometry given as GeoJSON
+     * text.
+     */
+    public static class Features {
+
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+
+        private final String[] propertyNames;
+        private final List<Object[]> properties = new ArrayList<Object[]>();
+        private final List<JsonNode> geometries = new ArrayList<JsonNode>();
+
+        public Features(String[] propertyNames) {
+            this.propertyNames = propertyNames.clone();
+        }
+
+        /**
+         * @param values   property values, in the order of the property names
+         * @param geometry GeoJSON geometry object, or null
+         * @throws IllegalArgumentException if the geometry is not a JSON object with a type
+         */
+        public void add(Object[] values, String geometry) {
+            if (values.length != propertyNames.length) {
+                throw new IllegalArgumentException(
+                        "Got " + values.length + " values for " + propertyNames.length + " properties");
+            }
+            JsonNode node = geometry == null ? null : parseGeometry(geometry);
+            properties.add(values);
+            geometries.add(node);
+        }
+
+        public int size() {
+            return properties.size();
+        }
+
+        /**
+         * Write the features as a GeoJSON feature collection. Dates are written as milliseconds since the epoch, the
+         * same as details rows.
+         */
+        public void writeGeoJson(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("type", "FeatureCollection");
+            generator.writeArrayFieldStart("features");
+            for (int i = 0; i < properties.size(); i++) {
+                generator.writeStartObject();
+                generator.writeStringField("type", "Feature");
+                generator.writeNumberField("id", i);
+                generator.writeFieldName("geometry");
+                if (geometries.get(i) == null) {
+                    generator.writeNull();
+                } else {
+                    MAPPER.writeTree(generator, geometries.get(i));
+                }
+                generator.writeObjectFieldStart("properties");
+                Object[] values = properties.get(i);
+                for (int p = 0; p < propertyNames.length; p++) {
+                    generator.writeFieldName(propertyNames[p]);
+                    writeValue(generator, values[p]);
+                }
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+
+        private static JsonNode parseGeometry(String geometry) {
+            JsonNode node;
+            try {
+                node = MAPPER.readTree(geometry);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Geometry is not valid JSON: " + geometry, e);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Geometry is not valid JSON: " + geometry, e);
+            }
+            if (node == null || !node.isObject() || !node.path("type").isTextual()) {
+                throw new IllegalArgumentException("Geometry is not a GeoJSON object: " + geometry);
+            }
+            return node;
+        }
+
+        private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof Date) {
+                generator.writeNumber(((Date) value).getTime());
+            } else if (value instanceof Integer) {
+                generator.writeNumber((Integer) value);
+            } else if (value instanceof Long) {
+                generator.writeNumber((Long) value);
+            } else if (value instanceof Float) {
+                generator.writeNumber((Float) value);
+            } else if (value instanceof Number) {
+                generator.writeNumber(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                generator.writeBoolean((Boolean) value);
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+    }
+}
@@ -26,17 +26,39 @@
 
 package edu.jhuapl.openessence.web.util;
 
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.OeDataSourceAccessException;
+import edu.jhuapl.openessence.datasource.OeDataSourceException;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
 import edu.jhuapl.openessence.datasource.entry.OeDataEntrySource;
+import edu.jhuapl.openessence.datasource.jdbc.DataTypeConversionHelper;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
 
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 import javax.annotation.Resource;
 import javax.sql.DataSource;
@@ -49,6 +71,11 @@ public class MapQueryUtil {
 
     private static final Logger log = LoggerFactory.getLogger(MapQueryUtil.class);
 
+    /**
+     * Rows sent to the database per batch when loading a map layer.
+     */
+    private static final int INSERT_BATCH_SIZE = 500;
+
     @Resource
     private DataSource mapDataSource;
 
@@ -86,4 +113,213 @@ public class MapQueryUtil {
         log.debug(sql);
         return pgdb.update(sql, updateMap.values().toArray());
     }
+
+    /**
+     * Copy the rows of a details query into a map layer table. Rows are inserted through one prepared statement in
+     * batches as the details query streams them, so only one batch is held in memory. When the map tables live in the
+     * same database as the details query, the load runs in one transaction so the inserts use the connection the query
+     * already holds instead of waiting on the pool for a second one.
+     *
+     * @param ds                      data source to query
+     * @param store                   the details query
+     * @param mapLayerDataEntrySource the map layer table
+     * @param resultColumns           layer table column to the result dimension id whose value it gets
+     * @param requestIdColumn         layer table column for the map request id
+     * @param requestId               id of this map request
+     * @param current_time            time of this map request
+     * @return number of rows inserted
+     */
+    public int performBatchInsert(final JdbcOeDataSource ds, final QueryManipulationStore store,
+                                  OeDataEntrySource mapLayerDataEntrySource,
+                                  LinkedHashMap<String, String> resultColumns, String requestIdColumn,
+                                  Object requestId, Object current_time) {
+        List<String> columns = new ArrayList<String>(resultColumns.keySet());
+        columns.add(requestIdColumn);
+        columns.add("time_requested");
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("insert into ").append(mapLayerDataEntrySource.getTableName());
+        sb.append(" (");
+        sb.append(StringUtils.join(columns, ", "));
+        sb.append(") values (");
+        sb.append(StringUtils.join(Collections.nCopies(columns.size(), "?"), ", "));
+        sb.append(")");
+        String sql = sb.toString();
+        log.debug(sql);
+
+        final BatchInserter inserter = new BatchInserter(new JdbcTemplate(mapDataSource), sql, requestId, current_time);
+        final ResultColumnsHandler handler = new ResultColumnsHandler(ds, store, resultColumns.values()) {
+            @Override
+            protected void processValues(Object[] values) {
+                inserter.add(values);
+            }
+        };
+
+        final Integer fetchSize;
+        try {
+            fetchSize = ds.getFetchSize();
+        } catch (OeDataSourceAccessException e) {
+            throw new OeDataSourceException(e);
+        }
+
+        if (ds.getJdbcTemplate() != null && ds.getJdbcTemplate().getDataSource() == mapDataSource) {
+            TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(mapDataSource));
+            transaction.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    ds.streamDetailsQuery(store, handler, fetchSize);
+                    inserter.flush();
+                }
+            });
+        } else {
+            ds.streamDetailsQuery(store, handler, fetchSize);
+            inserter.flush();
+        }
+        return inserter.getCount();
+    }
+
+    /**
+     * Read the rows of a details query into map features, for serving overlays without the map request tables.
+     *
+     * @param ds            data source to query
+     * @param store         the details query
+     * @param resultColumns feature property name to the result dimension id whose value it gets
+     * @param geometryId    result dimension holding each feature's geometry as GeoJSON, or null for none
+     */
+    public MapFeatureStore.Features performFeatureQuery(JdbcOeDataSource ds, QueryManipulationStore store,
+                                                        LinkedHashMap<String, String> resultColumns,
+                                                        String geometryId) {
+        List<String> resultIds = new ArrayList<String>(resultColumns.values());
+        if (geometryId != null) {
+            resultIds.add(geometryId);
+        }
+        final MapFeatureStore.Features features =
+                new MapFeatureStore.Features(resultColumns.keySet().toArray(new String[resultColumns.size()]));
+        final int propertyCount = resultColumns.size();
+        final boolean hasGeometry = geometryId != null;
+
+        try {
+            ds.streamDetailsQuery(store, new ResultColumnsHandler(ds, store, resultIds) {
+                @Override
+                protected void processValues(Object[] values) {
+                    Object[] properties = values;
+                    String geometry = null;
+                    if (hasGeometry) {
+                        properties = Arrays.copyOf(values, propertyCount);
+                        geometry = values[propertyCount] == null ? null : values[propertyCount].toString();
+                    }
+                    features.add(properties, geometry);
+                }
+            }, ds.getFetchSize());
+        } catch (OeDataSourceAccessException e) {
+            throw new OeDataSourceException(e);
+        }
+        return features;
+    }
+
+    /**
+     * Inserts rows into a map layer table {@link #INSERT_BATCH_SIZE} at a time, adding the request id and time to each.
+     */
+    private static class BatchInserter implements ParameterizedPreparedStatementSetter<Object[]> {
+
+        private final JdbcTemplate jdbcTemplate;
+        private final String sql;
+        private final Object requestId;
+        private final Object currentTime;
+        private final List<Object[]> batch = new ArrayList<Object[]>(INSERT_BATCH_SIZE);
+        private int count;
+
+        BatchInserter(JdbcTemplate jdbcTemplate, String sql, Object requestId, Object currentTime) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.sql = sql;
+            this.requestId = requestId;
+            this.currentTime = currentTime;
+        }
+
+        void add(Object[] values) {
+            batch.add(values);
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, batch, INSERT_BATCH_SIZE, this);
+                count += batch.size();
+                batch.clear();
+            }
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, Object[] values) throws SQLException {
+            int param = 1;
+            for (Object value : values) {
+                StatementCreatorUtils.setParameterValue(ps, param++, SqlTypeValue.TYPE_UNKNOWN, value);
+            }
+            StatementCreatorUtils.setParameterValue(ps, param++, SqlTypeValue.TYPE_UNKNOWN, requestId);
+            StatementCreatorUtils.setParameterValue(ps, param, SqlTypeValue.TYPE_UNKNOWN, currentTime);
+        }
+    }
+
+    /**
+     * Reads the values of some result dimensions from each details row, in the order the ids are given. Dimensions the
+     * query doesn't return read as null.
+     */
+    private abstract static class ResultColumnsHandler implements RowCallbackHandler {
+
+        private final JdbcOeDataSource ds;
+        private final QueryManipulationStore store;
+        private final Collection<String> resultIds;
+
+        // result set column and type of each value, -1 for dimensions the query doesn't return
+        private int[] resultSetColumns;
+        private FieldType[] types;
+
+        ResultColumnsHandler(JdbcOeDataSource ds, QueryManipulationStore store, Collection<String> resultIds) {
+            this.ds = ds;
+            this.store = store;
+            this.resultIds = resultIds;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            if (resultSetColumns == null) {
+                // the query settles the column order, so this waits for the first row
+                mapColumns();
+            }
+
+            Object[] values = new Object[resultSetColumns.length];
+            for (int i = 0; i < resultSetColumns.length; i++) {
+                if (resultSetColumns[i] > 0) {
+                    values[i] = DataTypeConversionHelper.convert2JavaType(rs, types[i], resultSetColumns[i]);
+                }
+            }
+            processValues(values);
+        }
+
+        protected abstract void processValues(Object[] values) throws SQLException;
+
+        private void mapColumns() {
+            List<Dimension> columns = ds.getDetailsColumns(store);
+            resultSetColumns = new int[resultIds.size()];
+            types = new FieldType[resultIds.size()];
+
+            int i = 0;
+            for (String resultId : resultIds) {
+                resultSetColumns[i] = -1;
+                for (int c = 0; c < columns.size(); c++) {
+                    if (columns.get(c).getId().equals(resultId)) {
+                        resultSetColumns[i] = c + 1;
+                        types[i] = columns.get(c).getSqlType();
+                    }
+                }
+                i++;
+            }
+        }
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.web.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of report results. Entries expire a fixed time after they are stored and the least recently used entry
+ * is dropped once the cache is full. Each entry belongs to the data source it was computed from so that it can be
+ * invalidated when that data source's data changes. Safe for use by multiple threads.
+ *
+ * @param <V> cached value type; values are shared between requests and must not be modified
+ */
+public class SeriesResultCache<V> {
+
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+    private final Map<String, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries       maximum number of entries, 0 disables the cache
+     * @param timeToLiveMillis how long an entry stays valid after it is stored
+     */
+    public SeriesResultCache(int maxEntries, long timeToLiveMillis) {
+        if (maxEntries < 0 || timeToLiveMillis < 0) {
+            throw new IllegalArgumentException(
+                    "maxEntries and timeToLiveMillis must not be negative: " + maxEntries + ", " + timeToLiveMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the live value for key, or null
+     */
+    public V get(String key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expires <= currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.value;
+        }
+    }
+
+    /**
+     * @param dataSourceId data source the value was computed from
+     */
+    public void put(String dataSourceId, String key, V value) {
+        if (maxEntries == 0) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry<V>(dataSourceId, value, currentTimeMillis() + timeToLiveMillis));
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (entries.size() > maxEntries) {
+                it.next();
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop every entry computed from a data source, e.g. after its data has been edited.
+     */
+    public void invalidate(String dataSourceId) {
+        synchronized (entries) {
+            Iterator<Entry<V>> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().dataSourceId.equals(dataSourceId)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of entries dropped to make room, not counting expired or invalidated ones
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "SeriesResultCache[size=" + size() + ", hits=" + hits + ", misses=" + misses + ", evictions="
+               + evictions + "]";
+    }
+
+    private static class Entry<V> {
+
+        private final String dataSourceId;
+        private final V value;
+        private final long expires;
+
+        private Entry(String dataSourceId, V value, long expires) {
+            this.dataSourceId = dataSourceId;
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
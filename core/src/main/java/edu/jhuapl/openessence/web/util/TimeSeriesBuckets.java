@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.web.util;
+
+import edu.jhuapl.openessence.datasource.timeresolution.ResolutionUnitEnum;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps dates to the intervals of a zero filled time series. Each interval is numbered by plain arithmetic on epoch
+ * hours, days, weeks or months, so placing a record is a subtraction instead of a walk over {@link Calendar}s. Uses the
+ * default time zone, like the dates a data source returns. Not safe for use by multiple threads.
+ */
+public class TimeSeriesBuckets {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    // 1970-01-01 was a Thursday
+    private static final int EPOCH_DAY_OF_WEEK = 4;
+
+    private final ResolutionUnitEnum unit;
+    private final int weekStartDay;
+    private final TimeZone timeZone;
+    private final Calendar cal;
+    private final long startMillis;
+    private final long startBucket;
+    private final int size;
+
+    private TimeSeriesBuckets(ResolutionUnitEnum unit, int weekStartDay, Date startDate, Date endDate) {
+        this.unit = unit;
+        this.weekStartDay = weekStartDay;
+        timeZone = TimeZone.getDefault();
+        cal = Calendar.getInstance(timeZone);
+        startMillis = startDate.getTime();
+        startBucket = bucket(startMillis);
+        size = countIntervals(endDate.getTime());
+    }
+
+    /**
+     * @param resolution   hourly, daily, weekly or monthly
+     * @param weekStartDay first day of a week, 0 for Sunday to 6 for Saturday, as used by the weekly resolution handler
+     * @param startDate    date in the first interval
+     * @param endDate      date in the last interval
+     * @return the intervals, or null if the resolution doesn't have fixed intervals
+     */
+    public static TimeSeriesBuckets create(String resolution, int weekStartDay, Date startDate, Date endDate) {
+        for (ResolutionUnitEnum unit : new ResolutionUnitEnum[]{ResolutionUnitEnum.HOURLY, ResolutionUnitEnum.DAILY,
+                                                                ResolutionUnitEnum.WEEKLY,
+                                                                ResolutionUnitEnum.MONTHLY}) {
+            if (unit.name().equalsIgnoreCase(resolution)) {
+                return new TimeSeriesBuckets(unit, weekStartDay, startDate, endDate);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return number of intervals in the series
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the interval the date falls in, or -1 if it is outside the series
+     */
+    public int indexOf(Date date) {
+        if (date == null) {
+            return -1;
+        }
+        long index = bucket(date.getTime()) - startBucket;
+        return index < 0 || index >= size ? -1 : (int) index;
+    }
+
+    private long bucket(long millis) {
+        switch (unit) {
+            case HOURLY:
+                // intervals are a fixed number of milliseconds apart, whatever the time zone does
+                return floorDiv(millis - startMillis, HOUR);
+            case DAILY:
+                return epochDay(millis);
+            case WEEKLY:
+                return floorDiv(epochDay(millis) + EPOCH_DAY_OF_WEEK - weekStartDay, 7);
+            case MONTHLY:
+                cal.setTimeInMillis(millis);
+                return cal.get(Calendar.YEAR) * 12L + cal.get(Calendar.MONTH);
+            default:
+                throw new IllegalStateException("Unexpected resolution " + unit);
+        }
+    }
+
+    private long epochDay(long millis) {
+        return floorDiv(millis + timeZone.getOffset(millis), DAY);
+    }
+
+    /**
+     * Count the intervals up to the one containing the end. Months are stepped through instead, adding whole months
+     * to the start date the same way the intervals' dates are computed for display, so a month only counts if that
+     * date is not after the end.
+     */
+    private int countIntervals(long endMillis) {
+        if (endMillis < startMillis) {
+            return 0;
+        }
+        if (unit != ResolutionUnitEnum.MONTHLY) {
+            return (int) (bucket(endMillis) - startBucket) + 1;
+        }
+
+        int count = 0;
+        long next = startMillis;
+        while (next <= endMillis) {
+            count++;
+            cal.setTimeInMillis(startMillis);
+            cal.add(Calendar.MONTH, count);
+            next = cal.getTimeInMillis();
+        }
+        return count;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+}
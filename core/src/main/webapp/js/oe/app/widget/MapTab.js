@@ -81,13 +81,21 @@ OE.MapTab = Ext.extend(Ext.Panel, {
                             thresholds = layer.thresholds;
                         }
 
-                        me.mapPanel.createWMSOverlay(response, layer.name, Ext.apply(layer.getMapQuery, {
-                            cql_filter: layer.cql_filter
-                        }), layer.layerOptions, {
+                        var callbacks = {
                             featureSelected: function (feature) {
                                 me.mapPanel.displayFeaturePopup({title: null, feature: feature, layer: layer});
                             }
-                        });
+                        };
+
+                        if (layer.featureId) {
+                            // features are served by OE instead of GeoServer
+                            me.mapPanel.createGeoJSONOverlay(response, layer.name, layer.featureId,
+                                layer.layerOptions, callbacks);
+                        } else {
+                            me.mapPanel.createWMSOverlay(response, layer.name, Ext.apply(layer.getMapQuery, {
+                                cql_filter: layer.cql_filter
+                            }), layer.layerOptions, callbacks);
+                        }
                     }
                 });
 
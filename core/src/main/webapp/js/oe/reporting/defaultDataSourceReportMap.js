@@ -181,6 +181,39 @@ OE.report.datasource.map.Panel = Ext.extend(GeoExt.MapPanel, {
         this.mapObjects.push({layers: [layer], controls: [control]});
     },
 
+    /**
+     * Creates overlay layer and controls from features served as GeoJSON by ../map/features, adds layer and control to
+     * mapObjects (for tracking/cleanup). Feature geometries are expected in EPSG:4326.
+     */
+    createGeoJSONOverlay: function (mapData, name, featureId, layerOptions, callbacks) {
+        var layer = new OpenLayers.Layer.Vector(name, Ext.apply({
+            strategies: [new OpenLayers.Strategy.Fixed()],
+            protocol: new OpenLayers.Protocol.HTTP({
+                url: OE.util.getUrl('/map/features'),
+                params: {id: featureId},
+                format: new OpenLayers.Format.GeoJSON({
+                    externalProjection: new OpenLayers.Projection('EPSG:4326'),
+                    internalProjection: this.map.getProjectionObject()
+                })
+            })
+        }, layerOptions));
+        this.map.addLayer(layer);
+
+        var control = new OpenLayers.Control.SelectFeature(layer, {
+            onSelect: function (feature) {
+                if (callbacks && callbacks.featureSelected) {
+                    callbacks.featureSelected.call(this, feature);
+                }
+            },
+            scope: this
+        });
+
+        this.map.addControl(control);
+        control.activate();
+
+        this.mapObjects.push({layers: [layer], controls: [control]});
+    },
+
     /**
      * Created overlay layers and controls for tracking/cleanup
      */
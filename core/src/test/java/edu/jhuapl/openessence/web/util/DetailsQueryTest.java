@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.web.util;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.jdbc.DimensionBean;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GtFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+import edu.jhuapl.openessence.datasource.util.DbTypesEnum;
+import edu.jhuapl.openessence.model.DataSourceDetails;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DetailsQueryTest {
+
+    private SingleConnectionDataSource db;
+    private JdbcOeDataSource unpaged;
+    private JdbcOeDataSource paged;
+
+    @Before
+    public void setUp() {
+        db = new SingleConnectionDataSource("jdbc:h2:mem:details;DB_CLOSE_DELAY=-1", "sa", "", true);
+        JdbcTemplate jdbc = new JdbcTemplate(db);
+        jdbc.execute("DROP ALL OBJECTS");
+        jdbc.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(10))");
+        for (int id = 1; id <= 10; id++) {
+            jdbc.update("INSERT INTO items VALUES (?, ?)", id, "item" + id);
+        }
+
+        // H2 is not a database the data source knows how to page
+        unpaged = configure(new JdbcOeDataSource(), jdbc);
+        paged = configure(new JdbcOeDataSource() {
+            @Override
+            public DbTypesEnum showMeDbType() {
+                return DbTypesEnum.PGSQL;
+            }
+        }, jdbc);
+    }
+
+    @After
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Test
+    public void testSkipToPage() throws Exception {
+        assertFalse(unpaged.supportsPaging());
+        DataSourceDetails details = query(unpaged, 3, 4, false);
+        assertEquals(Arrays.asList(5, 6, 7, 8), ids(details));
+        // rows are read up to the end of the page
+        assertEquals(8, details.getTotalRecords());
+
+        details = query(unpaged, 3, 4, true);
+        assertEquals(Arrays.asList(5, 6, 7, 8), ids(details));
+        assertEquals(9, details.getTotalRecords());
+    }
+
+    @Test
+    public void testDatabasePaging() throws Exception {
+        assertTrue(paged.supportsPaging());
+        DataSourceDetails details = query(paged, 3, 4, true);
+        assertEquals(Arrays.asList(5, 6, 7, 8), ids(details));
+        assertEquals(9, details.getTotalRecords());
+
+        // without a count the total is what has been seen so far
+        assertEquals(7, query(paged, 3, 4, false).getTotalRecords());
+
+        // the last page needs no count
+        details = query(paged, 6, 4, false);
+        assertEquals(Arrays.asList(8, 9, 10), ids(details));
+        assertEquals(9, details.getTotalRecords());
+    }
+
+    @Test
+    public void testSamePagesEitherWay() throws Exception {
+        for (int first = 0; first < 9; first += 4) {
+            assertEquals(ids(query(unpaged, first, 4, true)), ids(query(paged, first, 4, true)));
+            assertEquals(query(unpaged, first, 4, true).getTotalRecords(),
+                         query(paged, first, 4, true).getTotalRecords());
+        }
+    }
+
+    /**
+     * Page through the items after the first, sorted by id.
+     */
+    private static DataSourceDetails query(JdbcOeDataSource ds, long firstRecord, long pageSize,
+                                           boolean totalRequested) throws Exception {
+        List<Dimension> results = Arrays.<Dimension>asList(ds.getResultDimension("id"), ds.getResultDimension("name"));
+        List<Filter> filters = Collections.<Filter>singletonList(new GtFilter("id", 1));
+        List<OrderByFilter> sorts = Collections.singletonList(new OrderByFilter("id", "ASC"));
+        return new DetailsQuery().performDetailsQuery(ds, results, null, filters, sorts, false, null, firstRecord,
+                                                      pageSize, totalRequested);
+    }
+
+    private static List<Integer> ids(DataSourceDetails details) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Map<String, Object> row : details.getRows()) {
+            ids.add(((Number) row.get("id")).intValue());
+        }
+        return ids;
+    }
+
+    private static JdbcOeDataSource configure(JdbcOeDataSource ds, JdbcTemplate jdbc) {
+        ds.setJdbcTemplate(jdbc);
+        ds.setBaseDetailsQuery("items");
+        ds.setDimensions(Arrays.asList(bean("id", FieldType.INTEGER), bean("name", FieldType.TEXT)));
+        ds.setUniqueKeys(Collections.singleton("id"));
+        return ds;
+    }
+
+    private static DimensionBean bean(String id, FieldType type) {
+        DimensionBean bean = new DimensionBean();
+        bean.setId(id);
+        bean.setSqlCol(id);
+        bean.setSqlType(type);
+        bean.setIsResult(true);
+        bean.setIsFilter(true);
+        return bean;
+    }
+}
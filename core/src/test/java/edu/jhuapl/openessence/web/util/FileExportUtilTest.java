@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.web.util;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
+import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.jdbc.DimensionBean;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileExportUtilTest {
+
+    private static final String[] HEADERS = {"Id", "Name", "Visit Date", "Visit Time", "Temp", "Weight", "Code",
+                                             "Admitted", "Count"};
+    private static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/New_York");
+
+    private SingleConnectionDataSource db;
+    private JdbcOeDataSource ds;
+
+    @Before
+    public void setUp() {
+        db = new SingleConnectionDataSource("jdbc:h2:mem:export;DB_CLOSE_DELAY=-1", "sa", "", true);
+        JdbcTemplate jdbc = new JdbcTemplate(db);
+        jdbc.execute("DROP ALL OBJECTS");
+        jdbc.execute("CREATE TABLE visits (id INT PRIMARY KEY, name VARCHAR(20), visit_date DATE, "
+                     + "visit_time TIMESTAMP, temp REAL, weight DOUBLE, code BIGINT, admitted BOOLEAN, cnt INT)");
+        for (int id = 1; id <= 40; id++) {
+            boolean gaps = id % 5 == 0;
+            jdbc.update("INSERT INTO visits VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", id,
+                        gaps ? null : "patient " + id,
+                        gaps ? null : java.sql.Date.valueOf("2013-0" + (1 + id % 9) + "-1" + id % 10),
+                        gaps ? null : new Timestamp(1356998400000L + id * 37231000L + id),
+                        gaps ? null : 36.5f + id / 8f,
+                        gaps ? null : 60.25 + id / 3.0,
+                        gaps ? null : 9000000000L + id,
+                        gaps ? null : id % 2 == 0,
+                        id % 3 == 0 ? null : id % 4);
+        }
+
+        ds = new JdbcOeDataSource();
+        ds.setJdbcTemplate(jdbc);
+        ds.setBaseDetailsQuery("visits");
+        ds.setDimensions(Arrays.asList(bean("id", "id", FieldType.INTEGER), bean("name", "name", FieldType.TEXT),
+                                       bean("visitDate", "visit_date", FieldType.DATE),
+                                       bean("visitTime", "visit_time", FieldType.DATE_TIME),
+                                       bean("temp", "temp", FieldType.FLOAT),
+                                       bean("weight", "weight", FieldType.DOUBLE),
+                                       bean("code", "code", FieldType.LONG),
+                                       bean("admitted", "admitted", FieldType.BOOLEAN)));
+        ds.setAccumulations(Collections.singletonList(bean("count", "cnt", FieldType.INTEGER)));
+        ds.setUniqueKeys(Collections.singleton("id"));
+    }
+
+    @After
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Test
+    public void testStreamedMatchesGrid() throws Exception {
+        assertSameExport(false);
+    }
+
+    @Test
+    public void testStreamedMatchesGridWithAccumulationsAsBoolean() throws Exception {
+        assertSameExport(true);
+    }
+
+    private void assertSameExport(boolean accumulationsAsBoolean) throws Exception {
+        Collection<Record> records = ds.detailsQuery(store());
+        if (accumulationsAsBoolean) {
+            // as ReportController did for renderIntToBool before streaming the export
+            for (Record record : records) {
+                Map<String, Object> values = record.getValues();
+                values.put("count", values.get("count") != null);
+            }
+        }
+        StringWriter grid = new StringWriter();
+        PrintWriter printWriter = new PrintWriter(grid);
+        FileExportUtil.exportGridToCSV(printWriter, HEADERS, records, TIMEZONE);
+        printWriter.flush();
+
+        StringWriter streamed = new StringWriter();
+        FileExportUtil.exportDetailsToCSV(streamed, HEADERS, ds, store(), TIMEZONE, accumulationsAsBoolean);
+
+        assertEquals(41, grid.toString().split("\n").length);
+        assertTrue(grid.toString().contains(",,,,"));
+        assertEquals(grid.toString(), streamed.toString());
+    }
+
+    private QueryManipulationStore store() {
+        List<Dimension> results = Arrays.<Dimension>asList(
+                ds.getResultDimension("id"), ds.getResultDimension("name"), ds.getResultDimension("visitDate"),
+                ds.getResultDimension("visitTime"), ds.getResultDimension("temp"), ds.getResultDimension("weight"),
+                ds.getResultDimension("code"), ds.getResultDimension("admitted"));
+        List<Dimension> accumulations = Collections.singletonList(ds.getAccumulation("count"));
+        return new QueryManipulationStore(results, accumulations, Collections.<Filter>emptyList(),
+                                          Collections.singletonList(new OrderByFilter("id", "ASC")), false);
+    }
+
+    private static DimensionBean bean(String id, String column, FieldType type) {
+        DimensionBean bean = new DimensionBean();
+        bean.setId(id);
+        bean.setSqlCol(column);
+        bean.setSqlType(type);
+        bean.setIsResult(true);
+        bean.setIsFilter(true);
+        return bean;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.web.util;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MapFeatureStoreTest {
+
+    @Test
+    public void testExpiry() {
+        ManualClockStore store = new ManualClockStore(10, 1000);
+        MapFeatureStore.Features features = new MapFeatureStore.Features(new String[]{"a"});
+        String id = store.put(features);
+        store.now = 999;
+        assertSame(features, store.get(id));
+        store.now = 1000;
+        assertNull(store.get(id));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        MapFeatureStore store = new MapFeatureStore(2, 60000);
+        String a = store.put(new MapFeatureStore.Features(new String[0]));
+        String b = store.put(new MapFeatureStore.Features(new String[0]));
+        store.get(a);
+        store.put(new MapFeatureStore.Features(new String[0]));
+        assertNull(store.get(b));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testRemoveExpired() {
+        ManualClockStore store = new ManualClockStore(10, 1000);
+        store.put(new MapFeatureStore.Features(new String[0]));
+        store.now = 500;
+        store.put(new MapFeatureStore.Features(new String[0]));
+        store.now = 1200;
+        store.removeExpired();
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testGeoJson() throws IOException {
+        MapFeatureStore.Features features = new MapFeatureStore.Features(new String[]{"name", "count", "time"});
+        features.add(new Object[]{"Region 1", 3, new Date(1000)}, "{\"type\":\"Point\",\"coordinates\":[1,2]}");
+        features.add(new Object[]{null, 0.5, null}, null);
+
+        StringWriter out = new StringWriter();
+        JsonGenerator generator = new JsonFactory().createJsonGenerator(out);
+        features.writeGeoJson(generator);
+        generator.close();
+
+        assertEquals("{\"type\":\"FeatureCollection\",\"features\":["
+                     + "{\"type\":\"Feature\",\"id\":0,\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]},"
+                     + "\"properties\":{\"name\":\"Region 1\",\"count\":3,\"time\":1000}},"
+                     + "{\"type\":\"Feature\",\"id\":1,\"geometry\":null,"
+                     + "\"properties\":{\"name\":null,\"count\":0.5,\"time\":null}}]}", out.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongValueCount() {
+        new MapFeatureStore.Features(new String[]{"a", "b"}).add(new Object[]{"a"}, null);
+    }
+
+    @Test
+    public void testGeometryIsNotCopiedRaw() throws IOException {
+        MapFeatureStore.Features features = new MapFeatureStore.Features(new String[0]);
+        features.add(new Object[0], "{\"type\":\"Point\"},\"properties\":{\"injected\":1}");
+
+        StringWriter out = new StringWriter();
+        JsonGenerator generator = new JsonFactory().createJsonGenerator(out);
+        features.writeGeoJson(generator);
+        generator.close();
+
+        assertEquals("{\"type\":\"FeatureCollection\",\"features\":["
+                     + "{\"type\":\"Feature\",\"id\":0,\"geometry\":{\"type\":\"Point\"},\"properties\":{}}]}",
+                     out.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGeometry() {
+        new MapFeatureStore.Features(new String[0]).add(new Object[0], "POINT(1 2)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGeometryWithoutType() {
+        new MapFeatureStore.Features(new String[0]).add(new Object[0], "[1,2]");
+    }
+
+    private static class ManualClockStore extends MapFeatureStore {
+
+        private long now;
+
+        private ManualClockStore(int maxEntries, long timeToLiveMillis) {
+            super(maxEntries, timeToLiveMillis);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.web.util;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
+import edu.jhuapl.openessence.datasource.jdbc.DimensionBean;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+import edu.jhuapl.openessence.datasource.jdbc.entry.JdbcOeDataEntrySource;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MapQueryUtilTest {
+
+    private static final int ROWS = 1203;
+
+    private JdbcConnectionPool detailsDb;
+    private JdbcConnectionPool mapDb;
+    private JdbcOeDataSource ds;
+    private JdbcOeDataEntrySource layer;
+
+    @Before
+    public void setUp() {
+        // one connection, so a load that asks the pool for a second one fails rather than waiting
+        detailsDb = JdbcConnectionPool.create("jdbc:h2:mem:mapdetails;DB_CLOSE_DELAY=-1", "sa", "");
+        detailsDb.setMaxConnections(1);
+        detailsDb.setLoginTimeout(1);
+        JdbcTemplate jdbc = new JdbcTemplate(detailsDb);
+        jdbc.execute("DROP ALL OBJECTS");
+        jdbc.execute("CREATE TABLE visits (id INT PRIMARY KEY, region VARCHAR(10), age INT)");
+        for (int id = 1; id <= ROWS; id++) {
+            jdbc.update("INSERT INTO visits VALUES (?, ?, ?)", id, "r" + id % 7, id % 11 == 0 ? null : id % 90);
+        }
+        createLayerTable(jdbc);
+
+        mapDb = JdbcConnectionPool.create("jdbc:h2:mem:maplayers;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate mapJdbc = new JdbcTemplate(mapDb);
+        mapJdbc.execute("DROP ALL OBJECTS");
+        createLayerTable(mapJdbc);
+
+        ds = new JdbcOeDataSource();
+        ds.setJdbcTemplate(jdbc);
+        ds.setBaseDetailsQuery("visits");
+        ds.setDimensions(Arrays.asList(bean("id", FieldType.INTEGER), bean("region", FieldType.TEXT),
+                                       bean("age", FieldType.INTEGER)));
+        ds.setUniqueKeys(Collections.singleton("id"));
+
+        layer = new JdbcOeDataEntrySource();
+        layer.setTableName("layer_rows");
+    }
+
+    @After
+    public void tearDown() {
+        detailsDb.dispose();
+        mapDb.dispose();
+    }
+
+    @Test
+    public void testInsertIntoSameDatabase() {
+        assertInserted(detailsDb);
+    }
+
+    @Test
+    public void testInsertIntoMapDatabase() {
+        assertInserted(mapDb);
+        assertEquals(0, new JdbcTemplate(detailsDb).queryForInt("SELECT COUNT(*) FROM layer_rows"));
+    }
+
+    private void assertInserted(JdbcConnectionPool mapDataSource) {
+        MapQueryUtil util = new MapQueryUtil();
+        ReflectionTestUtils.setField(util, "mapDataSource", mapDataSource);
+        Timestamp time = new Timestamp(1370000000000L);
+        LinkedHashMap<String, String> resultColumns = new LinkedHashMap<String, String>();
+        resultColumns.put("visit_id", "id");
+        resultColumns.put("visit_region", "region");
+        resultColumns.put("visit_age", "age");
+
+        assertEquals(ROWS, util.performBatchInsert(ds, store(), layer, resultColumns, "request_id", 42, time));
+
+        List<Map<String, Object>> rows = new JdbcTemplate(mapDataSource)
+                .queryForList("SELECT * FROM layer_rows ORDER BY visit_id");
+        assertEquals(ROWS, rows.size());
+        for (int i = 0; i < ROWS; i++) {
+            Map<String, Object> row = rows.get(i);
+            int id = i + 1;
+            assertEquals(id, ((Number) row.get("VISIT_ID")).intValue());
+            assertEquals("r" + id % 7, row.get("VISIT_REGION"));
+            if (id % 11 == 0) {
+                assertNull(row.get("VISIT_AGE"));
+            } else {
+                assertEquals(id % 90, ((Number) row.get("VISIT_AGE")).intValue());
+            }
+            assertEquals(42, ((Number) row.get("REQUEST_ID")).intValue());
+            assertEquals(time, row.get("TIME_REQUESTED"));
+        }
+    }
+
+    private QueryManipulationStore store() {
+        List<Dimension> results = Arrays.<Dimension>asList(ds.getResultDimension("id"), ds.getResultDimension("region"),
+                                                           ds.getResultDimension("age"));
+        return new QueryManipulationStore(results, null, Collections.<Filter>emptyList(),
+                                          Collections.singletonList(new OrderByFilter("id", "ASC")), false);
+    }
+
+    private static void createLayerTable(JdbcTemplate jdbc) {
+        jdbc.execute("CREATE TABLE layer_rows (visit_id INT, visit_region VARCHAR(10), visit_age INT, "
+                     + "request_id INT, time_requested TIMESTAMP)");
+    }
+
+    private static DimensionBean bean(String id, FieldType type) {
+        DimensionBean bean = new DimensionBean();
+        bean.setId(id);
+        bean.setSqlCol(id);
+        bean.setSqlType(type);
+        bean.setIsResult(true);
+        bean.setIsFilter(true);
+        return bean;
+    }
+}
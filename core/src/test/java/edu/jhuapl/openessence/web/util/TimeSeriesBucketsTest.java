@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.web.util;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TimeSeriesBucketsTest {
+
+    private static Date date(int year, int month, int day) {
+        return new GregorianCalendar(year, month, day).getTime();
+    }
+
+    private static Date endOfDay(int year, int month, int day) {
+        Calendar cal = new GregorianCalendar(year, month, day);
+        cal.add(Calendar.DATE, 1);
+        cal.add(Calendar.MILLISECOND, -1);
+        return cal.getTime();
+    }
+
+    @Test
+    public void testDaily() {
+        TimeSeriesBuckets buckets = TimeSeriesBuckets.create("daily", 1, date(2013, Calendar.MARCH, 1),
+                                                             endOfDay(2013, Calendar.MARCH, 31));
+        assertEquals(31, buckets.size());
+        assertEquals(0, buckets.indexOf(date(2013, Calendar.MARCH, 1)));
+        // DST starts on March 10 in the US, days are still whole
+        assertEquals(10, buckets.indexOf(date(2013, Calendar.MARCH, 11)));
+        assertEquals(30, buckets.indexOf(endOfDay(2013, Calendar.MARCH, 31)));
+        assertEquals(-1, buckets.indexOf(date(2013, Calendar.FEBRUARY, 28)));
+        assertEquals(-1, buckets.indexOf(date(2013, Calendar.APRIL, 1)));
+        assertEquals(-1, buckets.indexOf(null));
+    }
+
+    @Test
+    public void testWeekly() {
+        // Wednesday to the Tuesday two weeks later, weeks start on Monday
+        TimeSeriesBuckets buckets = TimeSeriesBuckets.create("weekly", 1, date(2013, Calendar.MAY, 1),
+                                                             endOfDay(2013, Calendar.MAY, 14));
+        assertEquals(3, buckets.size());
+        assertEquals(0, buckets.indexOf(date(2013, Calendar.APRIL, 29)));
+        assertEquals(0, buckets.indexOf(date(2013, Calendar.MAY, 5)));
+        assertEquals(1, buckets.indexOf(date(2013, Calendar.MAY, 6)));
+        assertEquals(2, buckets.indexOf(date(2013, Calendar.MAY, 13)));
+        assertEquals(-1, buckets.indexOf(date(2013, Calendar.MAY, 20)));
+
+        // same dates, weeks start on Sunday
+        buckets = TimeSeriesBuckets.create("weekly", 0, date(2013, Calendar.MAY, 1), endOfDay(2013, Calendar.MAY, 14));
+        assertEquals(3, buckets.size());
+        assertEquals(1, buckets.indexOf(date(2013, Calendar.MAY, 5)));
+        assertEquals(-1, buckets.indexOf(date(2013, Calendar.APRIL, 27)));
+    }
+
+    @Test
+    public void testMonthly() {
+        TimeSeriesBuckets buckets = TimeSeriesBuckets.create("monthly", 1, date(2012, Calendar.NOVEMBER, 1),
+                                                             endOfDay(2013, Calendar.FEBRUARY, 28));
+        assertEquals(4, buckets.size());
+        assertEquals(1, buckets.indexOf(date(2012, Calendar.DECEMBER, 31)));
+        assertEquals(2, buckets.indexOf(date(2013, Calendar.JANUARY, 1)));
+        assertEquals(3, buckets.indexOf(date(2013, Calendar.FEBRUARY, 1)));
+
+        // the last month only counts once the start's day of month is reached
+        buckets = TimeSeriesBuckets.create("monthly", 1, date(2013, Calendar.JANUARY, 15),
+                                           endOfDay(2013, Calendar.MARCH, 10));
+        assertEquals(2, buckets.size());
+    }
+
+    @Test
+    public void testOtherResolutions() {
+        assertNull(TimeSeriesBuckets.create("yearly", 1, date(2013, 0, 1), date(2013, 1, 1)));
+        assertNull(TimeSeriesBuckets.create(null, 1, date(2013, 0, 1), date(2013, 1, 1)));
+        assertEquals(0, TimeSeriesBuckets.create("daily", 1, date(2013, 1, 1), date(2013, 0, 1)).size());
+    }
+}
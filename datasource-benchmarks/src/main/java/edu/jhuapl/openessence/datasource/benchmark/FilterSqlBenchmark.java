@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.benchmark;
+
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+import edu.jhuapl.openessence.datasource.jdbc.filter.AndFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.EqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.InFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LikeFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.NotFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.OrFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.SqlGeneratingFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL snippets and arguments of the {@code jdbc.filter} classes, which are generated once per filter per query.
+ * {@code values} is the length of the IN list, from a couple of checkboxes up to a long list of facilities.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterSqlBenchmark {
+
+    @Param({"2", "50"})
+    public int values;
+
+    private JdbcOeDataSource ds;
+    private SqlGeneratingFilter eq;
+    private SqlGeneratingFilter in;
+    private SqlGeneratingFilter like;
+    private SqlGeneratingFilter range;
+    private SqlGeneratingFilter nested;
+
+    @Setup
+    public void setUp() {
+        // filters only look up dimensions, so the data source never opens a connection
+        ds = Visits.createDataSource(new DriverManagerDataSource("jdbc:h2:mem:unused"));
+
+        Object[] facilities = new Object[values];
+        for (int i = 0; i < values; i++) {
+            facilities[i] = "FACILITY " + i;
+        }
+        eq = new EqFilter("sex", "F");
+        in = new InFilter("facility", facilities);
+        like = new LikeFilter("chief_complaint", "%FEVER%");
+        range = new AndFilter(Arrays.<SqlGeneratingFilter>asList(
+                new GteqFilter("visit_date", new Date(Visits.START)),
+                new LteqFilter("visit_date", new Date(Visits.START + 30 * 86400000L))));
+        nested = new AndFilter(Arrays.<SqlGeneratingFilter>asList(
+                range, in,
+                new OrFilter(Arrays.<SqlGeneratingFilter>asList(like, new LikeFilter("chief_complaint", "%COUGH%"))),
+                new NotFilter(new EqFilter("admitted", true))));
+    }
+
+    @Benchmark
+    public void eq(Blackhole bh) {
+        generate(eq, bh);
+    }
+
+    @Benchmark
+    public void in(Blackhole bh) {
+        generate(in, bh);
+    }
+
+    @Benchmark
+    public void like(Blackhole bh) {
+        generate(like, bh);
+    }
+
+    @Benchmark
+    public void range(Blackhole bh) {
+        generate(range, bh);
+    }
+
+    @Benchmark
+    public void nested(Blackhole bh) {
+        generate(nested, bh);
+    }
+
+    private void generate(SqlGeneratingFilter filter, Blackhole bh) {
+        bh.consume(filter.getSqlSnippet(ds));
+        bh.consume(filter.getArguments(ds));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.benchmark;
+
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.InFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LtFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A grouped count query against an in-memory H2 database, as the time series reports issue them: one year of visits
+ * for two facilities, counted by visit date at the given resolution. Each row goes through the resolution handler's
+ * {@code buildKernel}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GroupedQueryBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({Visits.DAILY, Visits.MONTHLY})
+    public String resolution;
+
+    private SingleConnectionDataSource db;
+    private JdbcOeDataSource ds;
+    private List<Filter> filters;
+
+    @Setup
+    public void setUp() {
+        db = Visits.createDatabase("grouped", rows);
+        ds = Visits.createDataSource(db);
+        filters = Arrays.<Filter>asList(new GteqFilter("visit_date", new Date(Visits.START)),
+                                        new LtFilter("visit_date", new Date(Visits.START + 365 * 86400000L)),
+                                        new InFilter("facility", new Object[]{"FACILITY 1", "FACILITY 2"}));
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Benchmark
+    public Collection<Record> counts() {
+        return ds.detailsQuery(Visits.countStore(ds, resolution, filters));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.benchmark;
+
+import edu.jhuapl.openessence.datasource.OeDataSourceException;
+import edu.jhuapl.openessence.datasource.jdbc.ResolutionHandler;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql.PgSqlDailyHandler;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql.PgSqlHourlyHandler;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql.PgSqlMonthlyHandler;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql.PgSqlTruncWeeklyHandler;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql.PgSqlWeeklyHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ResolutionHandler#buildKernel} of the PostgreSQL handlers, which grouped queries call once per row. The
+ * values are what the driver returns for two years of hourly groups: doubles from {@code date_part}, timestamps
+ * from {@code date_trunc}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResolutionKernelBenchmark {
+
+    @Param({"daily", "weekly", "cdcWeekly", "monthly", "hourly", "truncWeekly"})
+    public String handler;
+
+    private ResolutionHandler resolutionHandler;
+    private Object[][] values;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        boolean trunc = false;
+        if ("daily".equals(handler)) {
+            resolutionHandler = new PgSqlDailyHandler();
+        } else if ("weekly".equals(handler)) {
+            resolutionHandler = new PgSqlWeeklyHandler(1);
+        } else if ("cdcWeekly".equals(handler)) {
+            resolutionHandler = new PgSqlWeeklyHandler(0, true);
+        } else if ("monthly".equals(handler)) {
+            resolutionHandler = new PgSqlMonthlyHandler();
+        } else if ("hourly".equals(handler)) {
+            resolutionHandler = new PgSqlHourlyHandler();
+        } else if ("truncWeekly".equals(handler)) {
+            resolutionHandler = new PgSqlTruncWeeklyHandler();
+            trunc = true;
+        } else {
+            throw new IllegalArgumentException("Unknown handler " + handler);
+        }
+
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(Visits.START);
+        values = new Object[Visits.DAYS * 24][];
+        for (int i = 0; i < values.length; i++) {
+            if (trunc) {
+                values[i] = new Object[]{new Timestamp(c.getTimeInMillis())};
+            } else {
+                // date_part('year'), then 'doy', 'week' or 'month', then 'hour'; handlers read what they need
+                values[i] = new Object[]{(double) c.get(Calendar.YEAR), (double) secondField(c),
+                                         (double) c.get(Calendar.HOUR_OF_DAY)};
+            }
+            c.add(Calendar.HOUR_OF_DAY, 1);
+        }
+    }
+
+    @Benchmark
+    public Object buildKernel() throws OeDataSourceException {
+        if (next == values.length) {
+            next = 0;
+        }
+        return resolutionHandler.buildKernel(values[next++]);
+    }
+
+    private int secondField(Calendar c) {
+        if ("weekly".equals(handler) || "cdcWeekly".equals(handler)) {
+            return c.get(Calendar.WEEK_OF_YEAR);
+        } else if ("monthly".equals(handler)) {
+            // date_part('month') counts from 1
+            return c.get(Calendar.MONTH) + 1;
+        }
+        return c.get(Calendar.DAY_OF_YEAR);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.benchmark;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.jdbc.ColumnarRecords;
+import edu.jhuapl.openessence.datasource.jdbc.DataTypeConversionHelper;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping rows to Java values, without the database. The rows of the {@code visits} table are loaded once into an
+ * in-memory result set that is rewound for every invocation, so only {@link DataTypeConversionHelper} and record
+ * creation are measured, not the driver's own decoding.
+ * <p/>
+ * Details queries read rows into {@link ColumnarRecords}, column by column as the data source's result extractor
+ * does. {@code createRecord} is the per-row mapping used before that, and only by data sources that override it now;
+ * it is kept for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMappingBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    @Param({Visits.TEXT, Visits.NUMERIC, Visits.MIXED})
+    public String columns;
+
+    private RecordMapper mapper;
+    private List<Dimension> results;
+    private FieldType[] types;
+    private String[] ids;
+    private int[] columnIndexes;
+    private SimpleResultSet rs;
+
+    @Setup
+    public void setUp() throws SQLException {
+        SingleConnectionDataSource db = Visits.createDatabase("mapping", rows);
+        mapper = Visits.configure(new RecordMapper(), db);
+        results = Visits.results(mapper, columns);
+        types = new FieldType[results.size()];
+        ids = new String[results.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = results.get(i).getSqlType();
+            ids[i] = results.get(i).getId();
+        }
+        ColumnarRecords layout = new ColumnarRecords(results);
+        columnIndexes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            columnIndexes[i] = layout.getColumnIndex(ids[i]);
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < results.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(results.get(i).getId());
+        }
+        sql.append(" FROM visits ORDER BY id");
+        rs = new JdbcTemplate(db).query(sql.toString(), new ResultSetExtractor<SimpleResultSet>() {
+            @Override
+            public SimpleResultSet extractData(ResultSet source) throws SQLException {
+                return copy(source);
+            }
+        });
+        db.destroy();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        rs.close();
+    }
+
+    @Benchmark
+    public void convert2JavaType(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        while (rs.next()) {
+            for (int i = 0; i < types.length; i++) {
+                bh.consume(DataTypeConversionHelper.convert2JavaType(rs, types[i], i + 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public ColumnarRecords columnarRecords() throws SQLException {
+        return readColumnar();
+    }
+
+    /**
+     * Reading the rows and then every value back, as writing a details response does.
+     */
+    @Benchmark
+    public void columnarRecordsAndValues(Blackhole bh) throws SQLException {
+        ColumnarRecords records = readColumnar();
+        for (Record record : records) {
+            for (int i = 0; i < ids.length; i++) {
+                bh.consume(record.getValue(ids[i]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void createRecord(Blackhole bh) throws SQLException {
+        rs.beforeFirst();
+        while (rs.next()) {
+            bh.consume(mapper.createRecord(results, rs));
+        }
+    }
+
+    private ColumnarRecords readColumnar() throws SQLException {
+        ColumnarRecords records = new ColumnarRecords(results);
+        rs.beforeFirst();
+        while (rs.next()) {
+            records.addRow();
+            for (int i = 0; i < columnIndexes.length; i++) {
+                records.read(columnIndexes[i], rs, i + 1);
+            }
+        }
+        return records;
+    }
+
+    private static SimpleResultSet copy(ResultSet source) throws SQLException {
+        SimpleResultSet copy = new SimpleResultSet();
+        // keep the rows after the last next() so the result set can be rewound
+        copy.setAutoClose(false);
+        ResultSetMetaData meta = source.getMetaData();
+        int count = meta.getColumnCount();
+        for (int i = 1; i <= count; i++) {
+            copy.addColumn(meta.getColumnLabel(i), meta.getColumnType(i), meta.getPrecision(i), meta.getScale(i));
+        }
+        while (source.next()) {
+            Object[] row = new Object[count];
+            for (int i = 0; i < count; i++) {
+                row[i] = source.getObject(i + 1);
+            }
+            copy.addRow(row);
+        }
+        return copy;
+    }
+
+    /**
+     * Exposes the data source's row mapping to the benchmark.
+     */
+    static final class RecordMapper extends JdbcOeDataSource {
+
+        @Override
+        public Record createRecord(List<Dimension> queryDimensions, ResultSet rs) throws SQLException {
+            return super.createRecord(queryDimensions, rs);
+        }
+    }
+}
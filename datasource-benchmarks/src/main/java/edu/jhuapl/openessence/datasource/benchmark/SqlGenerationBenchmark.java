@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.benchmark;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+import edu.jhuapl.openessence.datasource.jdbc.filter.EqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.InFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LikeFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LtFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.OrFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.SqlGeneratingFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+/**
+ * Building the SQL and arguments of a query, without a database. The data source runs over a stub connection whose
+ * statements return no rows, so what is left is the dimension lookups, filter SQL and JDBC parameter binding done
+ * for every request. With {@code planCache} off, the SQL text is rebuilt each time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlGenerationBenchmark {
+
+    public static final String NONE = "none";
+    public static final String RANGE = "range";
+    public static final String MANY = "many";
+
+    @Param({NONE, RANGE, MANY})
+    public String filters;
+
+    @Param({"true", "false"})
+    public boolean planCache;
+
+    private final StubDatabase db = new StubDatabase();
+    private JdbcOeDataSource ds;
+    private List<Dimension> results;
+    private List<Filter> where;
+
+    @Setup
+    public void setUp() {
+        ds = Visits.createDataSource(db.dataSource);
+        ds.setQueryPlanCacheSize(planCache ? 100 : 0);
+        results = Visits.results(ds, Visits.MIXED);
+        where = createFilters(filters);
+    }
+
+    @Benchmark
+    public String details() {
+        ds.detailsQuery(Visits.detailsStore(ds, results, where));
+        return db.lastSql;
+    }
+
+    @Benchmark
+    public String dailyCounts() {
+        ds.detailsQuery(Visits.countStore(ds, Visits.DAILY, where));
+        return db.lastSql;
+    }
+
+    static List<Filter> createFilters(String filters) {
+        List<Filter> where = new ArrayList<Filter>();
+        if (NONE.equals(filters)) {
+            return where;
+        }
+        where.add(new GteqFilter("visit_date", new Date(Visits.START)));
+        where.add(new LtFilter("visit_date", new Date(Visits.START + 90 * 86400000L)));
+        if (RANGE.equals(filters)) {
+            return where;
+        }
+        if (!MANY.equals(filters)) {
+            throw new IllegalArgumentException("Unknown filters " + filters);
+        }
+        // roughly what a saved query from the details screen carries
+        where.add(new InFilter("facility", new Object[]{"FACILITY 1", "FACILITY 2", "FACILITY 3", "FACILITY 5",
+                                                        "FACILITY 8", "FACILITY 11"}));
+        where.add(new InFilter("sex", new Object[]{"F", "M"}));
+        where.add(new GteqFilter("age", 18));
+        where.add(new OrFilter(Arrays.<SqlGeneratingFilter>asList(new LikeFilter("chief_complaint", "%FEVER%"),
+                                                                 new LikeFilter("chief_complaint", "%COUGH%"),
+                                                                 new EqFilter("chief_complaint", "SOB"))));
+        return where;
+    }
+
+    /**
+     * A JDBC data source whose statements accept any parameters and return an empty result set. It remembers the
+     * last SQL prepared so the benchmark has something to return.
+     */
+    private static final class StubDatabase implements InvocationHandler {
+
+        final DataSource dataSource = proxy(DataSource.class);
+        private final Connection connection = proxy(Connection.class);
+        private final PreparedStatement statement = proxy(PreparedStatement.class);
+        private final ResultSet resultSet = proxy(ResultSet.class);
+        String lastSql;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("getConnection")) {
+                return connection;
+            } else if (name.equals("prepareStatement")) {
+                lastSql = (String) args[0];
+                return statement;
+            } else if (name.equals("executeQuery")) {
+                return resultSet;
+            } else if (name.equals("getWarnings") || name.equals("unwrap")) {
+                return null;
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("toString")) {
+                return "stub " + proxy.getClass().getInterfaces()[0].getSimpleName();
+            }
+            Class<?> type = method.getReturnType();
+            if (type == boolean.class) {
+                return false;
+            } else if (type == int.class) {
+                return 0;
+            } else if (type == long.class) {
+                return 0L;
+            } else if (type.isPrimitive() && type != void.class) {
+                throw new UnsupportedOperationException(method.toString());
+            }
+            return null;
+        }
+
+        private <T> T proxy(Class<T> type) {
+            return type.cast(Proxy.newProxyInstance(StubDatabase.class.getClassLoader(), new Class<?>[]{type}, this));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.benchmark;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
+import edu.jhuapl.openessence.datasource.dataseries.Grouping;
+import edu.jhuapl.openessence.datasource.jdbc.DimensionBean;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
+import edu.jhuapl.openessence.datasource.jdbc.ResolutionHandler;
+import edu.jhuapl.openessence.datasource.jdbc.dataseries.GroupingImpl;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.mysql.MySqlDailyHandler;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.mysql.MySqlMonthlyHandler;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.sql.DataSource;
+
+/**
+ * A synthetic {@code visits} table and a data source over it, shaped like a typical emergency department feed. Rows
+ * are generated from a fixed seed, so every run measures the same data.
+ */
+final class Visits {
+
+    static final String TEXT = "text";
+    static final String NUMERIC = "numeric";
+    static final String MIXED = "mixed";
+
+    static final String DAILY = "daily";
+    static final String MONTHLY = "monthly";
+
+    static final long START = Timestamp.valueOf("2012-01-01 00:00:00").getTime();
+    static final int DAYS = 730;
+
+    private static final String[] SEXES = {"F", "M", "U"};
+    private static final String[] COMPLAINTS = {
+            "FEVER AND COUGH", "ABD PAIN", "VOMITING X2 DAYS", "SOB", "HEADACHE", "RASH ON ARMS", "CHEST PAIN",
+            "DIARRHEA", "SORE THROAT", "FALL FROM LADDER"};
+
+    private Visits() {
+    }
+
+    /**
+     * Create and fill an in-memory H2 database. The connection is kept open, since H2 drops an in-memory database
+     * when its last connection closes, and H2's reuse of results for repeated queries is turned off so every
+     * invocation executes its query.
+     *
+     * @param name database name, unique per benchmark state
+     * @param rows number of visits
+     */
+    static SingleConnectionDataSource createDatabase(String name, int rows) {
+        String url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=0";
+        SingleConnectionDataSource db = new SingleConnectionDataSource(url, "sa", "", true);
+        JdbcTemplate jdbc = new JdbcTemplate(db);
+        jdbc.execute("DROP TABLE IF EXISTS visits");
+        jdbc.execute("CREATE TABLE visits (id INT PRIMARY KEY, visit_date TIMESTAMP, sex VARCHAR(1), age INT, "
+                     + "weight DOUBLE, facility VARCHAR(20), chief_complaint VARCHAR(100), admitted BOOLEAN)");
+
+        Random random = new Random(17);
+        List<Object[]> batch = new ArrayList<Object[]>(rows);
+        for (int i = 0; i < rows; i++) {
+            long time = START + (long) (random.nextDouble() * DAYS * 24 * 60 * 60 * 1000L);
+            // a few nulls per column, so the wasNull() paths are exercised
+            boolean missing = random.nextInt(50) == 0;
+            batch.add(new Object[]{
+                    i,
+                    new Timestamp(time),
+                    SEXES[random.nextInt(SEXES.length)],
+                    missing ? null : random.nextInt(95),
+                    missing ? null : 3 + random.nextDouble() * 120,
+                    "FACILITY " + random.nextInt(12),
+                    missing ? null : COMPLAINTS[random.nextInt(COMPLAINTS.length)],
+                    random.nextInt(8) == 0});
+        }
+        jdbc.batchUpdate("INSERT INTO visits VALUES (?, ?, ?, ?, ?, ?, ?, ?)", batch);
+        return db;
+    }
+
+    /**
+     * A data source over {@code visits} with every column as a result and filter dimension, {@code visit_date},
+     * {@code sex} and {@code facility} as groupings, and a {@code total} count accumulation. The MySQL resolution
+     * handlers are used because H2 understands their YEAR/DAYOFYEAR/MONTH functions.
+     */
+    static JdbcOeDataSource createDataSource(DataSource db) {
+        return configure(new JdbcOeDataSource(), db);
+    }
+
+    /**
+     * Configure a data source, or a subclass of one, as {@link #createDataSource} does.
+     */
+    static <T extends JdbcOeDataSource> T configure(T ds, DataSource db) {
+        ds.setJdbcTemplate(new JdbcTemplate(db));
+        ds.setBaseDetailsQuery("visits");
+
+        Map<String, ResolutionHandler> handlers = new HashMap<String, ResolutionHandler>();
+        handlers.put(DAILY, new MySqlDailyHandler());
+        handlers.put(MONTHLY, new MySqlMonthlyHandler());
+
+        DimensionBean visitDate = bean("visit_date", FieldType.DATE_TIME);
+        visitDate.setIsGrouping(true);
+        visitDate.setResolutionHandlers(handlers);
+        DimensionBean sex = bean("sex", FieldType.TEXT);
+        sex.setIsGrouping(true);
+        DimensionBean facility = bean("facility", FieldType.TEXT);
+        facility.setIsGrouping(true);
+
+        DimensionBean total = bean("total", FieldType.LONG);
+        total.setSqlCol("COUNT(*)");
+        total.setIsFilter(false);
+        total.setIsAccumulation(true);
+
+        ds.setDimensions(Arrays.asList(bean("id", FieldType.INTEGER), visitDate, sex, bean("age", FieldType.INTEGER),
+                                       bean("weight", FieldType.DOUBLE), facility,
+                                       bean("chief_complaint", FieldType.TEXT), bean("admitted", FieldType.BOOLEAN),
+                                       total));
+        return ds;
+    }
+
+    /**
+     * @param columns {@link #TEXT}, {@link #NUMERIC} or {@link #MIXED}
+     * @return ids of the result dimensions for the column mix
+     */
+    static List<String> resultIds(String columns) {
+        if (TEXT.equals(columns)) {
+            return Arrays.asList("id", "sex", "facility", "chief_complaint");
+        } else if (NUMERIC.equals(columns)) {
+            return Arrays.asList("id", "age", "weight", "admitted");
+        } else if (MIXED.equals(columns)) {
+            return Arrays.asList("id", "visit_date", "sex", "age", "weight", "facility", "chief_complaint",
+                                 "admitted");
+        }
+        throw new IllegalArgumentException("Unknown columns " + columns);
+    }
+
+    static List<Dimension> results(JdbcOeDataSource ds, String columns) {
+        List<Dimension> results = new ArrayList<Dimension>();
+        for (String id : resultIds(columns)) {
+            results.add(ds.getResultDimension(id));
+        }
+        return results;
+    }
+
+    /**
+     * A details query for the column mix, ordered by id so that every database returns rows the same way.
+     */
+    static QueryManipulationStore detailsStore(JdbcOeDataSource ds, List<Dimension> results, List<Filter> filters) {
+        return new QueryManipulationStore(new ArrayList<Dimension>(results), null, new ArrayList<Filter>(filters),
+                                          Collections.singletonList(new OrderByFilter("id", "ASC")), null, false,
+                                          null);
+    }
+
+    /**
+     * Visit counts grouped by {@code visit_date} at the given resolution, as the time series reports issue them.
+     */
+    static QueryManipulationStore countStore(JdbcOeDataSource ds, String resolution, List<Filter> filters) {
+        List<Dimension> results = new ArrayList<Dimension>();
+        results.add(ds.getResultDimension("total"));
+        List<Grouping> groupings = new ArrayList<Grouping>();
+        groupings.add(new GroupingImpl("visit_date", resolution));
+        return new QueryManipulationStore(results, Collections.singletonList(ds.getAccumulation("total")),
+                                          new ArrayList<Filter>(filters), null, groupings, false, null);
+    }
+
+    private static DimensionBean bean(String id, FieldType type) {
+        DimensionBean bean = new DimensionBean();
+        bean.setId(id);
+        bean.setSqlCol(id);
+        bean.setSqlType(type);
+        bean.setIsResult(true);
+        bean.setIsFilter(true);
+        return bean;
+    }
+}
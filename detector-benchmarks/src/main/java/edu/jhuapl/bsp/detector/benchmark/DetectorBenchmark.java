@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector.benchmark;
+
+import edu.jhuapl.bsp.detector.DetectorHelper;
+import edu.jhuapl.bsp.detector.GSSages;
+import edu.jhuapl.bsp.detector.TemporalDetector;
+
+import de.jollyday.HolidayCalendar;
+import de.jollyday.HolidayManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs each temporal detector over a whole series, for a quarter, two years and ten years of sparse and dense counts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectorBenchmark {
+
+    @Param({"GSSages", "EWMASagesDetector", "CusumSagesDetector", "EarsC1", "EarsC2", "EarsC3"})
+    public String detector;
+
+    @Param({"90", "730", "3650"})
+    public int days;
+
+    @Param({Series.SPARSE, Series.DENSE})
+    public String counts;
+
+    private TemporalDetector instance;
+    private double[] data;
+    private Date startDate;
+
+    @Setup
+    public void setUp() {
+        if ("GSSages".equals(detector)) {
+            // the default constructor needs the site's holidays.xml, so use the calendar bundled with jollyday
+            instance = new GSSages(HolidayManager.getInstance(HolidayCalendar.UNITED_STATES));
+        } else {
+            instance = (TemporalDetector) DetectorHelper.createObject("edu.jhuapl.bsp.detector." + detector);
+        }
+        data = Series.generate(counts, days, 42);
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(2010, Calendar.JANUARY, 4);
+        startDate = cal.getTime();
+    }
+
+    @Benchmark
+    public double[][] runDetector() {
+        return instance.runDetector(data, startDate);
+    }
+}
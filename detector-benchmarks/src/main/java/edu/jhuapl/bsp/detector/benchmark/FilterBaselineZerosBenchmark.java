@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector.benchmark;
+
+import edu.jhuapl.bsp.detector.BaselineWindow;
+import edu.jhuapl.bsp.detector.FilterBaselineZeros3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering excess zeros from one 28-day baseline, as the CUSUM and EWMA detectors do every day. Each invocation
+ * takes the next window of a two-year series, so the branch patterns are those of real data rather than one fixed
+ * window.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBaselineZerosBenchmark {
+
+    private static final int BASELINE = 28;
+    private static final int DAYS = 730;
+
+    @Param({Series.SPARSE, Series.DENSE})
+    public String counts;
+
+    private final FilterBaselineZeros3 filter = new FilterBaselineZeros3();
+    private final BaselineWindow window = new BaselineWindow(BASELINE);
+    private double[] data;
+    private double[][] baselines;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        data = Series.generate(counts, DAYS, 11);
+        baselines = new double[DAYS - BASELINE + 1][];
+        for (int i = 0; i < baselines.length; i++) {
+            baselines[i] = Arrays.copyOfRange(data, i, i + BASELINE);
+        }
+        window.moveTo(data, 0, BASELINE);
+    }
+
+    @Benchmark
+    public int[] filterBaselineZeros() {
+        return filter.filterBaselineZeros(nextBaseline());
+    }
+
+    @Benchmark
+    public boolean filterBaselineZerosTest() {
+        return FilterBaselineZeros3.filterBaselineZerosTest(nextBaseline());
+    }
+
+    /**
+     * The same work through {@link BaselineWindow}: slide one day, filter, and take the mean and deviation.
+     */
+    @Benchmark
+    public double baselineWindow() {
+        if (window.getStart() + BASELINE == DAYS) {
+            window.moveTo(data, 0, BASELINE);
+        } else {
+            window.advance();
+        }
+        if (window.needsZeroFilter()) {
+            window.filterZeros();
+        }
+        return window.getMean() + window.getStdDev();
+    }
+
+    private double[] nextBaseline() {
+        if (next == baselines.length) {
+            next = 0;
+        }
+        return baselines[next++];
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector.benchmark;
+
+import edu.jhuapl.bsp.detector.OpenMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link OpenMath} helpers the detectors call once or more per day, over baseline-sized arrays: 28 days for
+ * CUSUM and EWMA, 56 for GSSages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OpenMathBenchmark {
+
+    @Param({"28", "56"})
+    public int size;
+
+    @Param({Series.SPARSE, Series.DENSE})
+    public String counts;
+
+    private double[] baseline;
+    private double stat;
+
+    @Setup
+    public void setUp() {
+        baseline = Series.generate(counts, size, 7);
+        stat = 1.7;
+    }
+
+    @Benchmark
+    public double mean() {
+        return OpenMath.mean(baseline);
+    }
+
+    @Benchmark
+    public double std() {
+        return OpenMath.std(baseline);
+    }
+
+    @Benchmark
+    public double median() {
+        return OpenMath.median(baseline);
+    }
+
+    @Benchmark
+    public double percentile() {
+        return OpenMath.percentile(baseline, 95.0);
+    }
+
+    @Benchmark
+    public double[] nonZeroValues() {
+        return OpenMath.dataInd(baseline, OpenMath.find(baseline));
+    }
+
+    @Benchmark
+    public double normcdf() {
+        return OpenMath.normcdf(stat, 0, 1);
+    }
+}
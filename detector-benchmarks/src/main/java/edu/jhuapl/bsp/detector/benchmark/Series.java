@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector.benchmark;
+
+import java.util.Random;
+
+/**
+ * Synthetic daily counts for the benchmarks. Series are generated from a fixed seed, so every run measures the same
+ * data.
+ */
+final class Series {
+
+    static final String SPARSE = "sparse";
+    static final String DENSE = "dense";
+
+    // relative volume on Sunday through Saturday, weekends quieter as in most emergency department feeds
+    private static final double[] WEEKDAY_FACTORS = {0.7, 1.2, 1.1, 1.0, 1.0, 1.0, 0.8};
+
+    private Series() {
+    }
+
+    /**
+     * @param counts {@link #SPARSE} for a syndrome seen a few times a week, {@link #DENSE} for a busy one
+     * @param days   length of the series
+     * @param seed   random seed
+     */
+    static double[] generate(String counts, int days, long seed) {
+        double mean;
+        if (SPARSE.equals(counts)) {
+            mean = 0.4;
+        } else if (DENSE.equals(counts)) {
+            mean = 40;
+        } else {
+            throw new IllegalArgumentException("Unknown counts " + counts);
+        }
+        Random random = new Random(seed);
+        double[] data = new double[days];
+        for (int i = 0; i < days; i++) {
+            // a yearly cycle peaking in winter, plus the day of week
+            double seasonal = 1 + 0.3 * Math.cos(2 * Math.PI * i / 365.25);
+            data[i] = poisson(random, mean * seasonal * WEEKDAY_FACTORS[i % 7]);
+        }
+        return data;
+    }
+
+    private static double poisson(Random random, double lambda) {
+        if (lambda > 30) {
+            return Math.max(0, Math.round(lambda + Math.sqrt(lambda) * random.nextGaussian()));
+        }
+        double limit = Math.exp(-lambda), product = random.nextDouble();
+        int k = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            k++;
+        }
+        return k;
+    }
+}
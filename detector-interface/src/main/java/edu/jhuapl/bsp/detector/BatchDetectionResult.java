@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+/**
+ * Levels, expecteds and colors for a batch of series, one row per series in the order the series were given.
+ */
+public class BatchDetectionResult {
+
+    private final double[][] levels;
+    private final double[][] expecteds;
+    private final double[][] colors;
+
+    public BatchDetectionResult(int numSeries) {
+        levels = new double[numSeries][];
+        expecteds = new double[numSeries][];
+        colors = new double[numSeries][];
+    }
+
+    /**
+     * Store the results of one series.
+     */
+    public void setSeries(int series, double[] seriesLevels, double[] seriesExpecteds, double[] seriesColors) {
+        levels[series] = seriesLevels;
+        expecteds[series] = seriesExpecteds;
+        colors[series] = seriesColors;
+    }
+
+    /**
+     * Copy every series of another result into this one, starting at the given row.
+     */
+    public void setSeries(int firstSeries, BatchDetectionResult other) {
+        int n = other.size();
+        System.arraycopy(other.levels, 0, levels, firstSeries, n);
+        System.arraycopy(other.expecteds, 0, expecteds, firstSeries, n);
+        System.arraycopy(other.colors, 0, colors, firstSeries, n);
+    }
+
+    public int size() {
+        return levels.length;
+    }
+
+    public double[][] getLevels() {
+        return levels;
+    }
+
+    public double[][] getExpecteds() {
+        return expecteds;
+    }
+
+    public double[][] getColors() {
+        return colors;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a batch of series through a detector on a fork-join pool. The batch is split into chunks of series; each chunk
+ * borrows its own detector from a {@link DetectorRegistry} and runs its series one after another on that instance, so
+ * detectors implementing {@link BatchTemporalDetector} keep reusing their buffers within a chunk.
+ */
+public class BatchDetectionRunner {
+
+    /**
+     * Chunks per worker thread; more than one so that uneven series lengths still balance out.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final DetectorRegistry registry;
+    private final ForkJoinPool pool;
+
+    public BatchDetectionRunner(DetectorRegistry registry) {
+        this(registry, new ForkJoinPool());
+    }
+
+    public BatchDetectionRunner(DetectorRegistry registry, ForkJoinPool pool) {
+        this.registry = registry;
+        this.pool = pool;
+    }
+
+    /**
+     * Run every series through the named detector.
+     *
+     * @param detectorClass  fully qualified name of a {@link TemporalDetectorInterface} implementation
+     * @param data           one row of counts per series
+     * @param startDates     the first date of each series
+     * @param timeResolution resolution of the counts, see {@link BatchTemporalDetector#runBatch}
+     */
+    public BatchDetectionResult run(String detectorClass, double[][] data, Date[] startDates,
+                                    String timeResolution) {
+        DetectorHelper.checkBatch(data, startDates);
+        // fail fast on a bad class name rather than from inside the pool
+        registry.getDetectorClass(detectorClass);
+
+        BatchDetectionResult result = new BatchDetectionResult(data.length);
+        if (data.length > 0) {
+            int chunkSize = Math.max(1, data.length / (pool.getParallelism() * CHUNKS_PER_THREAD));
+            pool.invoke(new BatchTask(detectorClass, data, startDates, timeResolution, result, 0, data.length,
+                                      chunkSize));
+        }
+        return result;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class BatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String detectorClass;
+        private final double[][] data;
+        private final Date[] startDates;
+        private final String timeResolution;
+        private final BatchDetectionResult result;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        BatchTask(String detectorClass, double[][] data, Date[] startDates, String timeResolution,
+                  BatchDetectionResult result, int from, int to, int chunkSize) {
+            this.detectorClass = detectorClass;
+            this.data = data;
+            this.startDates = startDates;
+            this.timeResolution = timeResolution;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                runChunk();
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BatchTask(detectorClass, data, startDates, timeResolution, result, from, mid,
+                                        chunkSize),
+                          new BatchTask(detectorClass, data, startDates, timeResolution, result, mid, to,
+                                        chunkSize));
+            }
+        }
+
+        private void runChunk() {
+            double[][] chunk = Arrays.copyOfRange(data, from, to);
+            Date[] chunkDates = Arrays.copyOfRange(startDates, from, to);
+            TemporalDetectorInterface detector = registry.borrowDetector(detectorClass);
+            try {
+                BatchDetectionResult chunkResult;
+                if (detector instanceof BatchTemporalDetector) {
+                    chunkResult = ((BatchTemporalDetector) detector).runBatch(chunk, chunkDates, timeResolution);
+                } else {
+                    chunkResult = DetectorHelper.runBatch(detector, chunk, chunkDates, timeResolution);
+                }
+                result.setSeries(from, chunkResult);
+            } finally {
+                registry.returnDetector(detector);
+            }
+        }
+    }
+}
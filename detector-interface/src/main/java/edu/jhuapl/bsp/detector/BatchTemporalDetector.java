@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import java.util.Date;
+
+/**
+ * A temporal detector that can run over many series in one call. Implementations reuse their working buffers between
+ * series, so a batch is cheaper than calling {@link TemporalDetectorInterface#runDetector} once per series. Like
+ * single series detection, a batch must not be run concurrently on the same instance; see
+ * {@link BatchDetectionRunner} for running a batch across threads.
+ */
+public interface BatchTemporalDetector {
+
+    /**
+     * Run the detector over each series.
+     *
+     * @param data           one row of counts per series, each from its start date to the end date in order.
+     * @param startDates     the first date of each series.
+     * @param timeResolution resolution of the counts, as set on a single series with
+     *                       {@link TemporalDetectorDataInterface#setTimeResolution(String)}.
+     * @return levels, expecteds and colors, one row per series.
+     */
+    BatchDetectionResult runBatch(double[][] data, Date[] startDates, String timeResolution);
+}
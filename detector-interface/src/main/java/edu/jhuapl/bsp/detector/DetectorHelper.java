@@ -28,13 +28,19 @@ package edu.jhuapl.bsp.detector;
 
 import edu.jhuapl.bsp.detector.util.DateHelper;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Helper Methods used in detection
@@ -43,6 +49,9 @@ public class DetectorHelper {
 
     public final static double MIN_PROB_LEVEL = 0.001;
 
+    private static final ConcurrentMap<String, Properties> propertiesCache =
+            new ConcurrentHashMap<String, Properties>();
+
     public static void postDetectionColorCoding(double[] data, double[] levels, double[] colors,
                                                 double red, double yellow, double defaultLevel,
                                                 boolean greaterThan) {
@@ -114,8 +123,8 @@ public class DetectorHelper {
      *
      * @param conn The database connection to the internal database.
      */
-    public static double[] getData(Connection conn, String queryString, java.util.Date startDate,
-                                   java.util.Date endDate) {
+    public static double[] getData(Connection conn, String queryString, Date startDate,
+                                   Date endDate) {
 
         int daysDiff = DateHelper.getDateDifference(startDate, endDate);
         double[] data = null;
@@ -139,7 +148,7 @@ public class DetectorHelper {
      * @param conn The database connection to the internal database.
      */
     public static double[] getPossibleData(Connection conn, String queryString,
-                                           java.util.Date startDate, java.util.Date endDate) {
+                                           Date startDate, Date endDate) {
 
         int daysDiff = DateHelper.getDateDifference(startDate, endDate);
         double[] data = null;
@@ -164,14 +173,14 @@ public class DetectorHelper {
      * @param size      size of the data array desired.
      * @param startDate the first date of the data array.
      */
-    public static double[] getResultArray(ResultSet resultSet, int size, java.util.Date startDate) {
+    public static double[] getResultArray(ResultSet resultSet, int size, Date startDate) {
         double[] returnArray = new double[size];
 
         Calendar cal = new GregorianCalendar();
         if (startDate != null) {
             cal.setTime(startDate);
         } else {
-            cal.setTime(new java.util.Date());
+            cal.setTime(new Date());
             cal.add(Calendar.DATE, -(size - 1));
         }
 
@@ -245,4 +254,62 @@ public class DetectorHelper {
         return object;
     }
 
+    /**
+     * Load a detector configuration file from the classpath. Each file is parsed once and the same instance is
+     * returned to every caller, so the result must be treated as read-only.
+     *
+     * @param owner        class whose class loader is used to locate the resource
+     * @param resourceName absolute resource name, e.g. "/GSSages.properties"
+     */
+    public static Properties loadProperties(Class<?> owner, String resourceName) {
+        String key = owner.getName() + ':' + resourceName;
+        Properties props = propertiesCache.get(key);
+        if (props == null) {
+            props = new Properties();
+            try (InputStream in = owner.getResourceAsStream(resourceName)) {
+                if (in == null) {
+                    throw new IllegalStateException("Could not locate detector configuration " + resourceName);
+                }
+                props.load(in);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            Properties existing = propertiesCache.putIfAbsent(key, props);
+            if (existing != null) {
+                props = existing;
+            }
+        }
+        return props;
+    }
+
+    /**
+     * Run a batch of series through one detector instance, one series after another.
+     *
+     * @param detector       the detector to run; must not be in use by another thread
+     * @param data           one row of counts per series
+     * @param startDates     the first date of each series
+     * @param timeResolution resolution of the counts, set on each series' data object
+     */
+    public static BatchDetectionResult runBatch(TemporalDetectorInterface detector, double[][] data,
+                                                Date[] startDates, String timeResolution) {
+        checkBatch(data, startDates);
+        BatchDetectionResult result = new BatchDetectionResult(data.length);
+        for (int i = 0; i < data.length; i++) {
+            TemporalDetectorSimpleDataObject tddo = new TemporalDetectorSimpleDataObject();
+            tddo.setCounts(data[i]);
+            tddo.setStartDate(startDates[i]);
+            tddo.setTimeResolution(timeResolution);
+            detector.runDetector(tddo);
+            result.setSeries(i, tddo.getLevels(), tddo.getExpecteds(), tddo.getColors());
+        }
+        return result;
+    }
+
+    static void checkBatch(double[][] data, Date[] startDates) {
+        if (data.length != startDates.length) {
+            throw new IllegalArgumentException(
+                    "Got " + data.length + " series but " + startDates.length + " start dates");
+        }
+    }
+
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Thread-safe source of detector instances. Detector classes are resolved once per class name and idle instances are
+ * pooled per class, so a report with many series does not reflect, construct and re-read configuration for every
+ * series. Detectors keep per-run state in fields, so a borrowed instance must only be used by one thread and must be
+ * handed back with {@link #returnDetector(TemporalDetectorInterface)} when done.
+ */
+public class DetectorRegistry {
+
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private final int maxIdlePerDetector;
+    private final ConcurrentMap<String, Class<? extends TemporalDetectorInterface>> classes =
+            new ConcurrentHashMap<String, Class<? extends TemporalDetectorInterface>>();
+    private final ConcurrentMap<Class<?>, BlockingQueue<TemporalDetectorInterface>> idle =
+            new ConcurrentHashMap<Class<?>, BlockingQueue<TemporalDetectorInterface>>();
+    private final ConcurrentMap<Class<?>, double[]> defaultLevels = new ConcurrentHashMap<Class<?>, double[]>();
+
+    public DetectorRegistry() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * @param maxIdlePerDetector the number of idle instances kept for each detector class
+     */
+    public DetectorRegistry(int maxIdlePerDetector) {
+        if (maxIdlePerDetector < 0) {
+            throw new IllegalArgumentException("maxIdlePerDetector must not be negative");
+        }
+        this.maxIdlePerDetector = maxIdlePerDetector;
+    }
+
+    /**
+     * Resolve a detector class by name, caching the result.
+     *
+     * @param className fully qualified name of a {@link TemporalDetectorInterface} implementation
+     */
+    public Class<? extends TemporalDetectorInterface> getDetectorClass(String className) {
+        Class<? extends TemporalDetectorInterface> detectorClass = classes.get(className);
+        if (detectorClass == null) {
+            Class<?> loaded;
+            try {
+                loaded = Class.forName(className);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Unknown detector class " + className, e);
+            }
+            if (!TemporalDetectorInterface.class.isAssignableFrom(loaded)) {
+                throw new IllegalArgumentException(className + " is not a " +
+                                                   TemporalDetectorInterface.class.getSimpleName());
+            }
+            detectorClass = loaded.asSubclass(TemporalDetectorInterface.class);
+            Class<? extends TemporalDetectorInterface> existing = classes.putIfAbsent(className, detectorClass);
+            if (existing != null) {
+                detectorClass = existing;
+            }
+        }
+        return detectorClass;
+    }
+
+    /**
+     * Take an idle detector of the given class, creating one if none is available.
+     *
+     * @param className fully qualified name of a {@link TemporalDetectorInterface} implementation
+     */
+    public TemporalDetectorInterface borrowDetector(String className) {
+        Class<? extends TemporalDetectorInterface> detectorClass = getDetectorClass(className);
+        TemporalDetectorInterface detector = maxIdlePerDetector == 0 ? null : idleQueue(detectorClass).poll();
+        if (detector == null) {
+            detector = newInstance(detectorClass);
+        }
+        return detector;
+    }
+
+    /**
+     * Hand a detector back to the pool. Its thresholds are restored to the values the class was constructed with so
+     * that callers changing red/yellow levels do not leak into the next borrower.
+     */
+    public void returnDetector(TemporalDetectorInterface detector) {
+        if (detector == null || maxIdlePerDetector == 0) {
+            return;
+        }
+        double[] levels = defaultLevels.get(detector.getClass());
+        if (levels != null) {
+            detector.setRedLevel(levels[0]);
+            detector.setYellowLevel(levels[1]);
+        }
+        // offer() silently drops the instance once the pool is full
+        idleQueue(detector.getClass()).offer(detector);
+    }
+
+    /**
+     * Drop all cached classes and idle instances.
+     */
+    public void clear() {
+        idle.clear();
+        defaultLevels.clear();
+        classes.clear();
+    }
+
+    private BlockingQueue<TemporalDetectorInterface> idleQueue(Class<?> detectorClass) {
+        BlockingQueue<TemporalDetectorInterface> queue = idle.get(detectorClass);
+        if (queue == null) {
+            queue = new LinkedBlockingQueue<TemporalDetectorInterface>(maxIdlePerDetector);
+            BlockingQueue<TemporalDetectorInterface> existing = idle.putIfAbsent(detectorClass, queue);
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        return queue;
+    }
+
+    private TemporalDetectorInterface newInstance(Class<? extends TemporalDetectorInterface> detectorClass) {
+        TemporalDetectorInterface detector;
+        try {
+            detector = detectorClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Could not create detector " + detectorClass.getName(), e);
+        }
+        if (!defaultLevels.containsKey(detectorClass)) {
+            defaultLevels.putIfAbsent(detectorClass,
+                                      new double[]{detector.getRedLevel(), detector.getYellowLevel()});
+        }
+        return detector;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * The end state of an {@link IncrementalTemporalDetector} after a number of days of a series. It records the counts it
+ * was computed from, so that a later run can check that they are a prefix of its own series before resuming.
+ * Subclasses add whatever the detector carries from one day to the next; they must copy arrays they capture, since
+ * the detector keeps reusing its own.
+ */
+public abstract class DetectorState implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String detectorClass;
+    private final long startDate;
+    private final double redLevel;
+    private final double yellowLevel;
+    private final double[] counts;
+
+    /**
+     * @param detector  the detector that produced this state
+     * @param startDate the first date of the series, may be null
+     * @param counts    the series, at least length long
+     * @param length    number of leading days this state covers
+     */
+    protected DetectorState(TemporalDetectorInterface detector, Date startDate, double[] counts, int length) {
+        this.detectorClass = detector.getClass().getName();
+        this.startDate = startDate == null ? Long.MIN_VALUE : startDate.getTime();
+        this.redLevel = detector.getRedLevel();
+        this.yellowLevel = detector.getYellowLevel();
+        this.counts = Arrays.copyOf(counts, length);
+    }
+
+    /**
+     * @return number of leading days this state covers
+     */
+    public int getLength() {
+        return counts.length;
+    }
+
+    /**
+     * @return the first date of the series this state was computed from, or null
+     */
+    public Date getStartDate() {
+        return startDate == Long.MIN_VALUE ? null : new Date(startDate);
+    }
+
+    /**
+     * How many leading days of a new run can be taken from this state.
+     *
+     * @param detector  the detector about to run
+     * @param counts    the series it is about to run on
+     * @param startDate the first date of that series, may be null
+     * @return {@link #getLength()} if this state applies to the series, otherwise 0
+     */
+    public int resumableLength(TemporalDetectorInterface detector, double[] counts, Date startDate) {
+        long start = startDate == null ? Long.MIN_VALUE : startDate.getTime();
+        if (!detectorClass.equals(detector.getClass().getName()) || this.startDate != start
+            || redLevel != detector.getRedLevel() || yellowLevel != detector.getYellowLevel()
+            || counts.length < this.counts.length) {
+            return 0;
+        }
+        for (int i = 0; i < this.counts.length; i++) {
+            if (this.counts[i] != counts[i]) {
+                return 0; // history was edited
+            }
+        }
+        return this.counts.length;
+    }
+
+    /**
+     * @return a copy of the first length values
+     */
+    protected static double[] prefix(double[] values, int length) {
+        return Arrays.copyOf(values, length);
+    }
+
+    /**
+     * Copy saved values back over the start of a detector array.
+     */
+    protected static void restore(double[] saved, double[] values) {
+        System.arraycopy(saved, 0, values, 0, saved.length);
+    }
+}
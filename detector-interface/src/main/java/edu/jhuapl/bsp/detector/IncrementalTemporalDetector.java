@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+/**
+ * A temporal detector whose result for a day depends only on that day and the days before it, so a run over a longer
+ * series can pick up where an earlier run over a prefix of it stopped. Callers keep the returned {@link DetectorState}
+ * and pass it back on the next run; when it no longer matches the series (different start date or thresholds, or any
+ * of its days have been edited) the detector silently falls back to running over the whole series.
+ */
+public interface IncrementalTemporalDetector {
+
+    /**
+     * Run the detector and set the answer params in the data object, reusing previous where it is still valid.
+     *
+     * @param tddi     the series to run detection on
+     * @param previous state returned by an earlier run of the same detector class, or null
+     * @param settled  number of leading days whose counts are final; the most recent day is often still being filled in
+     *                 and should not be captured in the returned state
+     * @return the state after the first settled days, or null if the series is too short to resume from
+     */
+    DetectorState runDetector(TemporalDetectorDataInterface tddi, DetectorState previous, int settled);
+}
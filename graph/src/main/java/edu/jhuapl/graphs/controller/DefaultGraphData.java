@@ -83,6 +83,48 @@ public class DefaultGraphData implements GraphDataInterface, Serializable {
     private Color labelBackgroundColor = new Color(255, 255, 255, 0);  //default to transparent label color
     private Font titleFont = new Font("Arial", Font.BOLD, 14);
 
+    public DefaultGraphData() {
+    }
+
+    /**
+     * Shallow copy. Arrays are shared with {@code other}, so changing a setting on the copy does not affect the original
+     * but writing into one of its arrays does.
+     */
+    public DefaultGraphData(DefaultGraphData other) {
+        this.counts = other.counts;
+        this.colors = other.colors;
+        this.altTexts = other.altTexts;
+        this.lineSetURLs = other.lineSetURLs;
+        this.lineSetURLTarget = other.lineSetURLTarget;
+        this.xLabels = other.xLabels;
+        this.lineSetLabels = other.lineSetLabels;
+        this.displayAlerts = other.displayAlerts;
+        this.displaySeverityAlerts = other.displaySeverityAlerts;
+        this.lineSymbolSizes = other.lineSymbolSizes;
+        this.graphTitle = other.graphTitle;
+        this.graphNoDataMessage = other.graphNoDataMessage;
+        this.xAxisLabel = other.xAxisLabel;
+        this.yAxisLabel = other.yAxisLabel;
+        this.graphWidth = other.graphWidth;
+        this.graphHeight = other.graphHeight;
+        this.graphBaseColors = other.graphBaseColors;
+        this.showLegend = other.showLegend;
+        this.showGraphLabels = other.showGraphLabels;
+        this.percentBased = other.percentBased;
+        this.plotHorizontal = other.plotHorizontal;
+        this.maxLabeledCategoryTicks = other.maxLabeledCategoryTicks;
+        this.levels = other.levels;
+        this.expecteds = other.expecteds;
+        this.yAxisMin = other.yAxisMin;
+        this.yAxisMax = other.yAxisMax;
+        this.dataDisplayKey = other.dataDisplayKey;
+        this.showSingleAlertLegends = other.showSingleAlertLegends;
+        this.showSingleSeverityLegend = other.showSingleSeverityLegend;
+        this.backgroundColor = other.backgroundColor;
+        this.labelBackgroundColor = other.labelBackgroundColor;
+        this.titleFont = other.titleFont;
+    }
+
     @Override
     public double[][] getCounts() {
         return counts;
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.graphs.controller;
+
+import edu.jhuapl.graphs.GraphException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stores graph data on disk in the {@link GraphDataCodec} format, e.g. in a directory shared by several nodes. Only
+ * {@link DefaultGraphData} is supported.
+ */
+public class GraphDataBinaryToDiskHandler implements GraphDataHandlerInterface {
+
+    private String dir;
+    private boolean compress;
+
+    public GraphDataBinaryToDiskHandler(String dir) {
+        this(dir, true);
+    }
+
+    /**
+     * @param compress whether to deflate the files; worth it for large graphs or slow shared file systems
+     */
+    public GraphDataBinaryToDiskHandler(String dir, boolean compress) {
+        this.dir = dir;
+        this.compress = compress;
+    }
+
+    public void putGraphData(GraphDataInterface graphData, String graphDataId) throws GraphException {
+        if (!(graphData instanceof DefaultGraphData)) {
+            throw new GraphException("Cannot write graph data of type " + graphData.getClass().getName());
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(dir, graphDataId)))) {
+            GraphDataCodec.write((DefaultGraphData) graphData, out, compress);
+        } catch (IOException e) {
+            throw new GraphException("Could not write graph data [" + graphDataId + "] to disk", e);
+        }
+    }
+
+    public GraphDataInterface getGraphData(String graphDataId) throws GraphException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(new File(dir, graphDataId)))) {
+            return GraphDataCodec.read(in);
+        } catch (IOException e) {
+            throw new GraphException("Could not read graph data [" + graphDataId + "] from disk", e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.graphs.controller;
+
+import edu.jhuapl.graphs.GraphException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps graph data in memory between the request that builds a graph and the requests that fetch its image. Entries
+ * expire a fixed time after they are stored, and once more than {@code maxEntries} are held the least recently used
+ * ones are handed to an optional spill handler (e.g. a {@link GraphDataSerializeToDiskHandler}) instead of being
+ * dropped. Safe for use by multiple threads.
+ */
+public class InMemoryGraphDataHandler implements GraphDataHandlerInterface {
+
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+    private final GraphDataHandlerInterface spillHandler;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    public InMemoryGraphDataHandler(int maxEntries, long timeToLiveMillis) {
+        this(maxEntries, timeToLiveMillis, null);
+    }
+
+    /**
+     * @param maxEntries       maximum number of graphs held in memory
+     * @param timeToLiveMillis how long graph data can be fetched after it is stored
+     * @param spillHandler     where graphs go when they are pushed out of memory, or null to drop them
+     */
+    public InMemoryGraphDataHandler(int maxEntries, long timeToLiveMillis, GraphDataHandlerInterface spillHandler) {
+        if (maxEntries < 1 || timeToLiveMillis < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid graph data cache size " + maxEntries + " or time to live " + timeToLiveMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.spillHandler = spillHandler;
+    }
+
+    @Override
+    public void putGraphData(GraphDataInterface graphData, String graphDataId) throws GraphException {
+        List<Map.Entry<String, Entry>> spilled = new ArrayList<Map.Entry<String, Entry>>();
+        long now = currentTimeMillis();
+        synchronized (entries) {
+            entries.put(graphDataId, new Entry(copy(graphData), now + timeToLiveMillis));
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries) {
+                Map.Entry<String, Entry> eldest = it.next();
+                it.remove();
+                if (eldest.getValue().expires > now) {
+                    spilled.add(eldest);
+                }
+            }
+        }
+
+        // do the slow part outside the lock
+        if (spillHandler != null) {
+            for (Map.Entry<String, Entry> e : spilled) {
+                spillHandler.putGraphData(e.getValue().graphData, e.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the stored graph data, so callers may change its settings (title, labels, etc.) without
+     *         affecting other requests
+     */
+    @Override
+    public GraphDataInterface getGraphData(String graphDataId) throws GraphException {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(graphDataId);
+            if (entry != null && entry.expires <= currentTimeMillis()) {
+                entries.remove(graphDataId);
+                entry = null;
+            }
+        }
+
+        if (entry != null) {
+            return copy(entry.graphData);
+        }
+        if (spillHandler != null) {
+            return spillHandler.getGraphData(graphDataId);
+        }
+        throw new GraphException("Graph data [" + graphDataId + "] not found or expired");
+    }
+
+    /**
+     * Drop expired entries. Entries are also dropped lazily when they are fetched, so this only needs to be called to
+     * free memory held by graphs that are never fetched again.
+     */
+    public void removeExpired() {
+        long now = currentTimeMillis();
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().expires <= now) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static GraphDataInterface copy(GraphDataInterface graphData) {
+        if (graphData instanceof DefaultGraphData) {
+            return new DefaultGraphData((DefaultGraphData) graphData);
+        }
+        return graphData;
+    }
+
+    private static class Entry {
+
+        private final GraphDataInterface graphData;
+        private final long expires;
+
+        private Entry(GraphDataInterface graphData, long expires) {
+            this.graphData = graphData;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.graphs.controller;
+
+import junit.framework.TestCase;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+public class GraphDataCodecTest extends TestCase {
+
+    private static final int SERIES = 4;
+    private static final int DAYS = 365;
+
+    public void testRoundTrip() throws IOException {
+        DefaultGraphData data = createGraphData();
+        assertGraphDataEquals(data, GraphDataCodec.fromBytes(GraphDataCodec.toBytes(data, false)));
+        assertGraphDataEquals(data, GraphDataCodec.fromBytes(GraphDataCodec.toBytes(data, true)));
+    }
+
+    public void testRoundTripDefaults() throws IOException {
+        DefaultGraphData data = new DefaultGraphData();
+        data.setTitleFont(null);
+        data.setBackgroundColor(null);
+        assertGraphDataEquals(data, GraphDataCodec.fromBytes(GraphDataCodec.toBytes(data, false)));
+    }
+
+    public void testSmallerThanSerialization() throws IOException {
+        DefaultGraphData data = createGraphData();
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(serialized);
+        oos.writeObject(data);
+        oos.close();
+
+        int binary = GraphDataCodec.toBytes(data, false).length;
+        int compressed = GraphDataCodec.toBytes(data, true).length;
+        assertTrue(binary + " >= " + serialized.size(), binary < serialized.size() / 2);
+        assertTrue(compressed + " >= " + binary, compressed < binary);
+    }
+
+    public void testRejectsUnknownVersion() {
+        byte[] bytes = {0x4F, 0x45, 0x47, 0x44, (byte) (GraphDataCodec.VERSION + 1), 0};
+        try {
+            GraphDataCodec.fromBytes(bytes);
+            fail("unknown version accepted");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    static DefaultGraphData createGraphData() {
+        double[][] counts = new double[SERIES][DAYS];
+        double[][] expecteds = new double[SERIES][DAYS];
+        double[][] levels = new double[SERIES][DAYS];
+        int[][] colors = new int[SERIES][DAYS];
+        String[][] altTexts = new String[SERIES][DAYS];
+        String[][] urls = new String[SERIES][DAYS];
+        String[] xLabels = new String[DAYS];
+        String[] lineSetLabels = new String[SERIES];
+        for (int d = 0; d < DAYS; d++) {
+            xLabels[d] = String.format("2013-%02d-%02d", d / 31 + 1, d % 31 + 1);
+        }
+        for (int s = 0; s < SERIES; s++) {
+            lineSetLabels[s] = "Syndrome " + s;
+            for (int d = 0; d < DAYS; d++) {
+                counts[s][d] = (d * 7 + s * 13) % 41;
+                expecteds[s][d] = counts[s][d] * 0.9 + 0.123;
+                levels[s][d] = 1.0 / (d + 1);
+                colors[s][d] = (d + s) % 4;
+                altTexts[s][d] = lineSetLabels[s] + " " + xLabels[d] + ", Count: " + (int) counts[s][d];
+                urls[s][d] = "/oe/report/detailsQuery?dsId=Demo_Data&accumId=syndrome" + s
+                             + "&timeresolution=daily&visitdate_start=" + xLabels[d]
+                             + "&visitdate_end=" + xLabels[d] + "&sex=M\u00e4nnlich";
+            }
+        }
+
+        DefaultGraphData data = new DefaultGraphData();
+        data.setCounts(counts);
+        data.setExpecteds(expecteds);
+        data.setLevels(levels);
+        data.setColors(colors);
+        data.setAltTexts(altTexts);
+        data.setLineSetURLs(urls);
+        data.setLineSetURLTarget("_blank");
+        data.setXLabels(xLabels);
+        data.setLineSetLabels(lineSetLabels);
+        data.setDisplayAlerts(new boolean[]{true, false, true, true});
+        data.setDisplaySeverityAlerts(new boolean[]{false, false, true, false});
+        data.setLineSymbolSizes(new double[]{2.5, 3, 3, 4});
+        data.setGraphTitle("Time Series");
+        data.setNoDataMessage(null);
+        data.setXAxisLabel("Date");
+        data.setYAxisLabel("Count");
+        data.setGraphWidth(720);
+        data.setGraphHeight(360);
+        data.setGraphBaseColors(new Color[]{Color.RED, new Color(1, 2, 3, 4)});
+        data.setShowLegend(false);
+        data.setPercentBased(true);
+        data.setMaxLabeledCategoryTicks(20);
+        data.setYAxisMin(-1.5);
+        data.setDataDisplayKey("counts");
+        data.setShowSingleSeverityLegends(true);
+        data.setTitleFont(new Font("Arial", Font.BOLD, 12));
+        return data;
+    }
+
+    static void assertGraphDataEquals(DefaultGraphData expected, DefaultGraphData actual) {
+        assertTrue(Arrays.deepEquals(expected.getCounts(), actual.getCounts()));
+        assertTrue(Arrays.deepEquals(expected.getExpecteds(), actual.getExpecteds()));
+        assertTrue(Arrays.deepEquals(expected.getLevels(), actual.getLevels()));
+        assertTrue(Arrays.deepEquals(expected.getColors(), actual.getColors()));
+        assertTrue(Arrays.deepEquals(expected.getAltTexts(), actual.getAltTexts()));
+        assertTrue(Arrays.deepEquals(expected.getLineSetURLs(), actual.getLineSetURLs()));
+        assertEquals(expected.getLineSetURLTarget(), actual.getLineSetURLTarget());
+        assertTrue(Arrays.equals(expected.getXLabels(), actual.getXLabels()));
+        assertTrue(Arrays.equals(expected.getLineSetLabels(), actual.getLineSetLabels()));
+        assertTrue(Arrays.equals(expected.displayAlerts(), actual.displayAlerts()));
+        assertTrue(Arrays.equals(expected.displaySeverityAlerts(), actual.displaySeverityAlerts()));
+        assertTrue(Arrays.equals(expected.getLineSymbolSizes(), actual.getLineSymbolSizes()));
+        assertEquals(expected.getGraphTitle(), actual.getGraphTitle());
+        assertEquals(expected.getNoDataMessage(), actual.getNoDataMessage());
+        assertEquals(expected.getXAxisLabel(), actual.getXAxisLabel());
+        assertEquals(expected.getYAxisLabel(), actual.getYAxisLabel());
+        assertEquals(expected.getGraphWidth(), actual.getGraphWidth());
+        assertEquals(expected.getGraphHeight(), actual.getGraphHeight());
+        assertTrue(Arrays.equals(expected.getGraphBaseColors(), actual.getGraphBaseColors()));
+        assertEquals(expected.showLegend(), actual.showLegend());
+        assertEquals(expected.getShowGraphLabels(), actual.getShowGraphLabels());
+        assertEquals(expected.percentBased(), actual.percentBased());
+        assertEquals(expected.plotHorizontal(), actual.plotHorizontal());
+        assertEquals(expected.getMaxLabeledCategoryTicks(), actual.getMaxLabeledCategoryTicks());
+        assertEquals(expected.getYAxisMin(), actual.getYAxisMin());
+        assertEquals(expected.getYAxisMax(), actual.getYAxisMax());
+        assertEquals(expected.getDataDisplayKey(), actual.getDataDisplayKey());
+        assertEquals(expected.getShowSingleAlertLegend(), actual.getShowSingleAlertLegend());
+        assertEquals(expected.getShowSingleSeverityLegend(), actual.getShowSingleSeverityLegend());
+        assertEquals(expected.getBackgroundColor(), actual.getBackgroundColor());
+        assertEquals(expected.getLabelBackgroundColor(), actual.getLabelBackgroundColor());
+        assertEquals(expected.getTitleFont(), actual.getTitleFont());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.graphs.controller;
+
+import edu.jhuapl.graphs.GraphException;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class InMemoryGraphDataHandlerTest extends TestCase {
+
+    public void testCopiesAreIndependent() throws GraphException {
+        InMemoryGraphDataHandler handler = new InMemoryGraphDataHandler(10, 60000);
+        DefaultGraphData data = new DefaultGraphData();
+        data.setGraphTitle("original");
+        data.setCounts(new double[][]{{1, 2, 3}});
+        handler.putGraphData(data, "a");
+
+        GraphDataInterface first = handler.getGraphData("a");
+        first.setGraphTitle("changed");
+        GraphDataInterface second = handler.getGraphData("a");
+        assertEquals("original", second.getGraphTitle());
+        assertSame(data.getCounts(), second.getCounts());
+    }
+
+    public void testExpiry() throws GraphException {
+        ManualClockHandler handler = new ManualClockHandler(10, 1000, null);
+        handler.putGraphData(new DefaultGraphData(), "a");
+        handler.now = 999;
+        assertNotNull(handler.getGraphData("a"));
+        handler.now = 1000;
+        try {
+            handler.getGraphData("a");
+            fail("expired graph data returned");
+        } catch (GraphException e) {
+            // expected
+        }
+        assertEquals(0, handler.size());
+    }
+
+    public void testSpill() throws GraphException {
+        MapHandler disk = new MapHandler();
+        InMemoryGraphDataHandler handler = new InMemoryGraphDataHandler(2, 60000, disk);
+        handler.putGraphData(new DefaultGraphData(), "a");
+        handler.putGraphData(new DefaultGraphData(), "b");
+        handler.getGraphData("a");
+        handler.putGraphData(new DefaultGraphData(), "c");
+
+        assertEquals(2, handler.size());
+        assertEquals(1, disk.graphs.size());
+        assertTrue(disk.graphs.containsKey("b"));
+        assertSame(disk.graphs.get("b"), handler.getGraphData("b"));
+    }
+
+    public void testRemoveExpired() throws GraphException {
+        ManualClockHandler handler = new ManualClockHandler(10, 1000, null);
+        handler.putGraphData(new DefaultGraphData(), "a");
+        handler.now = 500;
+        handler.putGraphData(new DefaultGraphData(), "b");
+        handler.now = 1200;
+        handler.removeExpired();
+        assertEquals(1, handler.size());
+        assertNotNull(handler.getGraphData("b"));
+    }
+
+    private static class ManualClockHandler extends InMemoryGraphDataHandler {
+
+        private long now;
+
+        private ManualClockHandler(int maxEntries, long timeToLiveMillis, GraphDataHandlerInterface spillHandler) {
+            super(maxEntries, timeToLiveMillis, spillHandler);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    private static class MapHandler implements GraphDataHandlerInterface {
+
+        private final Map<String, GraphDataInterface> graphs = new HashMap<String, GraphDataInterface>();
+
+        @Override
+        public void putGraphData(GraphDataInterface graphData, String graphDataId) {
+            graphs.put(graphDataId, graphData);
+        }
+
+        @Override
+        public GraphDataInterface getGraphData(String graphDataId) throws GraphException {
+            GraphDataInterface graphData = graphs.get(graphDataId);
+            if (graphData == null) {
+                throw new GraphException("Graph data [" + graphDataId + "] not found");
+            }
+            return graphData;
+        }
+    }
+}
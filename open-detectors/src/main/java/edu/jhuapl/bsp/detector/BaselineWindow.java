@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import java.util.Arrays;
+
+/**
+ * A baseline window over a data array that grows or slides forward one day at a time, with the bookkeeping of
+ * {@link FilterBaselineZeros3} kept up to date as it moves. Zero counts and the runs of consecutive zeros are updated
+ * in constant time per step, so filtering the window only walks its zero runs rather than sorting a copy of it.
+ * <p/>
+ * The mean and standard deviation are computed with {@link OpenMath} over the kept values in window order, as the
+ * detectors did from the filtered copy, so they are bit-for-bit the same as before and do not depend on how the
+ * window got to its position. That costs a copy and two passes over the window, so a step still takes time linear in
+ * the window size once the statistics are read; the zero filter test is linear too unless the window holds negative
+ * or non-finite values.
+ */
+public final class BaselineWindow {
+
+    private final int capacity;
+    private final double thresholdProb;
+    private final int minNumZeros;
+    private double[] data;
+    private int start;
+    private int size;
+    private int numZeros;
+    private int numPositive;
+    private int numIrregular;
+    // runs of consecutive zeros as inclusive data indices, oldest first, in a ring starting at firstRun
+    private final int[] runStart;
+    private final int[] runEnd;
+    private int firstRun;
+    private int numRuns;
+    private final boolean[] dropped;
+    // the values left by the last call to filterZeros()
+    private int count;
+    private int excludedZeros;
+    private final int[] order;
+    private final double[] scratch;
+    private final double[] kept;
+    private boolean keptCopied;
+
+    /**
+     * @param capacity the largest number of values in the window
+     */
+    public BaselineWindow(int capacity) {
+        this(capacity, FilterBaselineZeros3.DEFAULT_THRESHOLD_PROB, FilterBaselineZeros3.MIN_NUM_ZEROS);
+    }
+
+    /**
+     * @param capacity      the largest number of values in the window
+     * @param thresholdProb see {@link FilterBaselineZeros3#getThresholdProb()}
+     * @param minNumZeros   see {@link FilterBaselineZeros3#getMinNumZeros()}
+     */
+    public BaselineWindow(int capacity, double thresholdProb, int minNumZeros) {
+        this.capacity = capacity;
+        this.thresholdProb = thresholdProb;
+        this.minNumZeros = minNumZeros;
+        runStart = new int[capacity + 1];
+        runEnd = new int[capacity + 1];
+        order = new int[capacity + 1];
+        dropped = new boolean[capacity + 1];
+        scratch = new double[capacity];
+        kept = new double[capacity];
+    }
+
+    /**
+     * Positions the window on data[start] through data[start + size - 1].
+     */
+    public void moveTo(double[] data, int start, int size) {
+        if (size < 1 || size > capacity || start < 0 || start + size > data.length) {
+            throw new IllegalArgumentException(
+                    "Window of " + size + " at " + start + " does not fit in " + data.length + " values");
+        }
+        this.data = data;
+        this.start = start;
+        this.size = size;
+        numZeros = 0;
+        numPositive = 0;
+        numIrregular = 0;
+        firstRun = 0;
+        numRuns = 0;
+        for (int i = start; i < start + size; i++) {
+            add(i);
+        }
+        keepAll();
+    }
+
+    /**
+     * Adds the value after the window to it.
+     */
+    public void extend() {
+        if (size >= capacity || start + size >= data.length) {
+            throw new IllegalStateException("Window cannot grow past " + size + " values");
+        }
+        add(start + size);
+        size++;
+        keepAll();
+    }
+
+    /**
+     * Moves the window forward by one value.
+     */
+    public void advance() {
+        if (start + size >= data.length) {
+            throw new IllegalStateException("Window is already at the end of the data");
+        }
+        remove(start);
+        add(start + size);
+        start++;
+        keepAll();
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Same as {@link FilterBaselineZeros3#filterBaselineZerosTest(double[])} over the whole window.
+     */
+    public boolean needsZeroFilter() {
+        if (numIrregular > 0) {
+            return FilterBaselineZeros3.filterBaselineZerosTest(Arrays.copyOfRange(data, start, start + size));
+        }
+        // with no negative values the median is positive unless at least half the window is zero
+        if (numZeros <= size / 2) {
+            return true;
+        }
+        int n = 0;
+        for (int i = start; i < start + size; i++) {
+            if (data[i] != 0) {
+                scratch[n++] = data[i];
+            }
+        }
+        if (n == 0) {
+            return false;
+        }
+        double upper = select(scratch, n, n / 2);
+        double median = upper;
+        if ((n & 1) == 0) {
+            // everything below n / 2 is no larger than upper, so the lower middle value is the largest of them
+            double lower = scratch[0];
+            for (int i = 1; i < n / 2; i++) {
+                lower = Math.max(lower, scratch[i]);
+            }
+            median = (upper + lower) / 2.0;
+        }
+        return median > 4;
+    }
+
+    /**
+     * Partially orders a[0] through a[n - 1] so that a[k] holds the value a sort would put there, with no larger
+     * values before it and no smaller ones after it.
+     *
+     * @return a[k]
+     */
+    private static double select(double[] a, int n, int k) {
+        int lo = 0, hi = n - 1;
+        while (lo < hi) {
+            double pivot = a[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double t = a[i];
+                    a[i++] = a[j];
+                    a[j--] = t;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                break;
+            }
+        }
+        return a[k];
+    }
+
+    /**
+     * Drops the zero runs that {@link FilterBaselineZeros3#filterBaselineZeros(double[])} would drop, longest first,
+     * until the chance of a run that long among the remaining values is above the threshold. As there, nothing is
+     * kept if fewer than two positive values remain.
+     */
+    public void filterZeros() {
+        // a stable sort of the runs by decreasing length, as in FilterBaselineZeros3
+        for (int k = 0; k < numRuns; k++) {
+            int r = (firstRun + k) % runStart.length;
+            int length = runLength(r);
+            int j = k;
+            while (j > 0 && runLength(order[j - 1]) < length) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = r;
+        }
+        for (int k = 0; k < numRuns; k++) {
+            dropped[order[k]] = false;
+        }
+        int valuesOK = size, zerosOK = numZeros;
+        for (int k = 0; k < numRuns; k++) {
+            int length = runLength(order[k]);
+            if (length < minNumZeros) {
+                continue;
+            }
+            int numValuesOut = valuesOK - length;
+            if (numValuesOut == 0) {
+                break;
+            }
+            double numZerosOut = Math.max(1, zerosOK - length);
+            if (Math.pow(numZerosOut / numValuesOut, length) > thresholdProb) {
+                break;
+            }
+            valuesOK = numValuesOut;
+            zerosOK -= length;
+            dropped[order[k]] = true;
+        }
+        if (numPositive < 2) {
+            count = 0;
+            excludedZeros = numZeros;
+        } else {
+            count = valuesOK;
+            excludedZeros = numZeros - zerosOK;
+        }
+        keptCopied = false;
+    }
+
+    /**
+     * Undoes {@link #filterZeros()}, so the statistics cover the whole window again.
+     */
+    public void keepAll() {
+        count = size;
+        excludedZeros = 0;
+        for (int k = 0; k < numRuns; k++) {
+            dropped[(firstRun + k) % runStart.length] = false;
+        }
+        keptCopied = false;
+    }
+
+    /**
+     * @return the number of values kept
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of zeros among the values kept
+     */
+    public int getZeroCount() {
+        return count == 0 ? 0 : numZeros - excludedZeros;
+    }
+
+    /**
+     * Same as {@link OpenMath#mean(double[])} over the values kept.
+     */
+    public double getMean() {
+        return OpenMath.mean(keptValues(), count);
+    }
+
+    /**
+     * Same as {@link OpenMath#std(double[])} over the values kept.
+     */
+    public double getStdDev() {
+        return OpenMath.std(keptValues(), count);
+    }
+
+    /**
+     * @return the values kept in window order, in the first {@link #getCount()} elements of a reused buffer
+     */
+    private double[] keptValues() {
+        if (!keptCopied && count > 0) {
+            int n = 0, from = start;
+            for (int k = 0; k < numRuns; k++) {
+                int r = (firstRun + k) % runStart.length;
+                if (dropped[r]) {
+                    System.arraycopy(data, from, kept, n, runStart[r] - from);
+                    n += runStart[r] - from;
+                    from = runEnd[r] + 1;
+                }
+            }
+            System.arraycopy(data, from, kept, n, start + size - from);
+            keptCopied = true;
+        }
+        return kept;
+    }
+
+    private int runLength(int r) {
+        return runEnd[r] - runStart[r] + 1;
+    }
+
+    private void add(int i) {
+        double value = data[i];
+        if (value == 0) {
+            numZeros++;
+            int last = (firstRun + numRuns - 1) % runStart.length;
+            if (numRuns > 0 && runEnd[last] == i - 1) {
+                runEnd[last] = i;
+            } else {
+                int r = (firstRun + numRuns) % runStart.length;
+                runStart[r] = i;
+                runEnd[r] = i;
+                numRuns++;
+            }
+        } else if (value > 0) {
+            numPositive++;
+        }
+        if (!(value >= 0) || Double.isInfinite(value)) {
+            numIrregular++;
+        }
+    }
+
+    private void remove(int i) {
+        double value = data[i];
+        if (value == 0) {
+            numZeros--;
+            if (++runStart[firstRun] > runEnd[firstRun]) {
+                firstRun = (firstRun + 1) % runStart.length;
+                numRuns--;
+            }
+        } else if (value > 0) {
+            numPositive--;
+        }
+        if (!(value >= 0) || Double.isInfinite(value)) {
+            numIrregular--;
+        }
+    }
+}
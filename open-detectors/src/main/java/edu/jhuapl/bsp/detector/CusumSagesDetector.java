@@ -28,24 +28,19 @@ package edu.jhuapl.bsp.detector;
 
 import edu.jhuapl.bsp.detector.exception.DetectorException;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Properties;
 
-import static edu.jhuapl.bsp.detector.OpenMath.arrayAdd;
-import static edu.jhuapl.bsp.detector.OpenMath.dataInd;
 import static edu.jhuapl.bsp.detector.OpenMath.interp1;
 import static edu.jhuapl.bsp.detector.OpenMath.max;
-import static edu.jhuapl.bsp.detector.OpenMath.mean;
 import static edu.jhuapl.bsp.detector.OpenMath.min;
-import static edu.jhuapl.bsp.detector.OpenMath.std;
 
 /**
  * Runs the main CUSUM algorithm
  */
-public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDetector {
+public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDetector, BatchTemporalDetector,
+                                           IncrementalTemporalDetector {
 
     static final double[][] lookup_table = {
             {0, 1.00E-05, 0.229568613, 0.62171871, 1.119208207, 1.119719396, 1.12020585, 1.120728881, 1.121436238,
@@ -467,6 +462,9 @@ public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDe
     private double data[];
     protected double threshPValueR, threshPValueY;
     private double cusum_k, minLT, maxLT;
+    // working buffers reused between series
+    private final BaselineWindow window = new BaselineWindow(BASELINE);
+    private double statLookupVals[];
     private double levels[], pvalues[], expectedData[], colors[], r2Levels[], switchFlags[], test_stat[];
 
     //
@@ -511,6 +509,10 @@ public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDe
 
     //
     private void calculate(double data[]) {
+        calculate(data, null);
+    }
+
+    private void calculate(double data[], State previous) {
         if (data.length <= BASELINE) {
             String
                     message =
@@ -518,12 +520,10 @@ public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDe
             throw new DetectorException(message);
         }
         setData(data);
-        calculate();
+        calculate(previous);
     }
 
-    private void calculate() {
-        FilterBaselineZeros3 zf = new FilterBaselineZeros3();
-        ArrayList<Integer> ndxBaseline = new ArrayList<Integer>();
+    private void calculate(State previous) {
 //
         levels = new double[data.length];
         Arrays.fill(levels, 0.5);
@@ -538,22 +538,32 @@ public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDe
         Arrays.fill(switchFlags, 0);
         test_stat = new double[data.length];
         Arrays.fill(test_stat, 0);
-//
-        for (int i = 0; i < BASELINE; i++) {
-            ndxBaseline.add(new Integer(i));
+        int resume = 0;
+        if (previous != null) {
+            resume = previous.restore(this);
         }
 //
-        double testBase[], sigma, baselineData[], baselineMean, zStat, carryOver, statLookupVals[];
-        statLookupVals = new double[data.length];
-        Arrays.fill(statLookupVals, 0);
+        double sigma, baselineMean, zStat, carryOver;
+        if (statLookupVals == null || statLookupVals.length != data.length) {
+            statLookupVals = new double[data.length];
+        } else {
+            Arrays.fill(statLookupVals, 0);
+        }
 //
-        for (int i = BASELINE + GUARDBAND; i < data.length; i++) {
-            testBase = dataInd(data, ndxBaseline);
-            int[] ndxOK = zf.filterBaselineZeros(testBase);
-            baselineData = dataInd(testBase, ndxOK);
-            if (baselineData.length > 1) { // min 2 needed - stdev
-                sigma = Math.max(std(baselineData), MIN_SIGMA);
-                baselineMean = mean(baselineData);
+        int first = Math.max(BASELINE + GUARDBAND, resume);
+        for (int i = first; i < data.length; i++) {
+            // the baseline is the BASELINE days before the guard band
+            int ndxBaseline = i - BASELINE - GUARDBAND;
+            if (i == first) {
+                window.moveTo(data, ndxBaseline, BASELINE);
+            } else {
+                window.advance();
+            }
+            window.filterZeros();
+            int numBaseline = window.getCount();
+            if (numBaseline > 1) { // min 2 needed - stdev
+                sigma = Math.max(window.getStdDev(), MIN_SIGMA);
+                baselineMean = window.getMean();
                 expectedData[i] = baselineMean;
                 zStat = (data[i] - baselineMean) / sigma;
                 if (test_stat[i - 1] > RESET_LEVEL) {
@@ -570,34 +580,22 @@ public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDe
                     levels[i] = test_stat[i];
                 }
             }
-            arrayAdd(ndxBaseline, 1);
         }
-        for (int i = BASELINE + GUARDBAND; i < data.length; i++) {
+        for (int i = Math.max(BASELINE + GUARDBAND, resume); i < data.length; i++) {
             statLookupVals[i] = Math.max(minLT, Math.min(maxLT, test_stat[i]));
             pvalues[i] = interp1(lookup_table[0], lookup_table[1], statLookupVals[i]);
         }
-        for (int i = 0; i < data.length; i++) {
+        for (int i = resume; i < data.length; i++) {
             levels[i] = pvalues[i];
         }
     }
 
     private void readConfigFile() {
-        Properties defaultProps = new Properties();
-        InputStream in = getClass().getResourceAsStream("/CusumSagesDetector.properties");
-        try {
-            defaultProps.load(in);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        Properties defaultProps = DetectorHelper.loadProperties(getClass(), "/CusumSagesDetector.properties");
         String red = defaultProps.getProperty("THRESHOLD_PROBABILITY_RED_ALERT");
         String yellow = defaultProps.getProperty("THRESHOLD_PROBABILITY_YELLOW_ALERT");
         setRedLevel(Double.parseDouble(red));
         setYellowLevel(Double.parseDouble(yellow));
-        try {
-            in.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
     }
 
     public void testDetector(TemporalDetectorDataInterface tddi) {
@@ -611,6 +609,25 @@ public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDe
         double[] data = tddi.getCounts();
 //
         calculate(data);
+        setResults(tddi);
+    }
+
+    @Override
+    public DetectorState runDetector(TemporalDetectorDataInterface tddi, DetectorState previous, int settled) {
+        double[] data = tddi.getCounts();
+        Date startDate = tddi.getStartDate();
+        State state = null;
+        if (previous instanceof State && previous.resumableLength(this, data, startDate) > 0) {
+            state = (State) previous;
+        }
+//
+        calculate(data, state);
+        setResults(tddi);
+        settled = Math.min(settled, data.length);
+        return settled > 0 ? new State(this, startDate, settled) : null;
+    }
+
+    private void setResults(TemporalDetectorDataInterface tddi) {
         DetectorHelper.postDetectionColorCoding(data, levels, colors, getRedLevel(), getYellowLevel(), 0.5, false);
 //
         tddi.setLevels(getLevels());
@@ -632,6 +649,39 @@ public class CusumSagesDetector implements TemporalDetectorInterface, TemporalDe
         return ans;
     }
 
+    @Override
+    public BatchDetectionResult runBatch(double[][] data, Date[] startDates, String timeResolution) {
+        return DetectorHelper.runBatch(this, data, startDates, timeResolution);
+    }
+
+    /**
+     * The only value carried from one day to the next is the previous test statistic, so the saved results are all
+     * that is needed to resume.
+     */
+    private static class State extends DetectorState {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double levels[], expectedData[], test_stat[];
+
+        State(CusumSagesDetector detector, Date startDate, int length) {
+            super(detector, startDate, detector.data, length);
+            levels = prefix(detector.levels, length);
+            expectedData = prefix(detector.expectedData, length);
+            test_stat = prefix(detector.test_stat, length);
+        }
+
+        /**
+         * @return the first day still to be calculated
+         */
+        int restore(CusumSagesDetector detector) {
+            restore(levels, detector.levels);
+            restore(expectedData, detector.expectedData);
+            restore(test_stat, detector.test_stat);
+            return getLength();
+        }
+    }
+
     /**
      * @param ds
      */
@@ -26,24 +26,15 @@
 
 package edu.jhuapl.bsp.detector;
 
-import org.apache.commons.math3.distribution.TDistribution;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Properties;
 
-import static edu.jhuapl.bsp.detector.OpenMath.any;
-import static edu.jhuapl.bsp.detector.OpenMath.arrayAdd;
-import static edu.jhuapl.bsp.detector.OpenMath.dataInd;
-import static edu.jhuapl.bsp.detector.OpenMath.mean;
-import static edu.jhuapl.bsp.detector.OpenMath.std;
-
 /**
  * Runs the main EWMA algorithm
  */
-public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDetector {
+public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDetector, BatchTemporalDetector,
+                                          IncrementalTemporalDetector {
 
     static final double OMEGA = 0.4; // the EWMA smoothing coefficient (between 0 and 1) default 0.4
     static final int MIN_DEG_FREEDOM = 2; // the minimum number of degrees of freedom
@@ -78,6 +69,13 @@ public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDet
     private double UCL_R[], UCL_Y[], sigmaCoeff[], deltaSigma[], minSigma[];
     private int maxBaseline, numGuardBand, minBaseline, degFreedomRange;
     private boolean removeZeros;
+    // working buffers reused between series; the control limit tables only change with omega and the thresholds
+    private double tableOmega = Double.NaN, tableThreshR = Double.NaN, tableThreshY = Double.NaN;
+    private int degFreedom[];
+    private final BaselineWindow window;
+    // values carried into the checkpoint day of an incremental run
+    private double checkpointSmoothedData;
+    private int checkpointBaseline[];
     private double levels[], pvalues[], expectedData[], colors[], r2Levels[], switchFlags[], test_stat[];
 
     //
@@ -89,6 +87,7 @@ public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDet
         removeZeros = REMOVE_ZEROES;
         minBaseline = NUM_FIT_PARAMS + MIN_DEG_FREEDOM;
         degFreedomRange = maxBaseline - NUM_FIT_PARAMS;
+        window = new BaselineWindow(maxBaseline);
         readConfigFile();
     }
 
@@ -124,32 +123,26 @@ public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDet
 
     //
     private void calculate(double data[], double omega) {
+        calculate(data, omega, null, -1);
+    }
+
+    /**
+     * @param previous   state to resume from, or null to run over the whole series
+     * @param checkpoint day at whose start the carried values are saved, or -1
+     */
+    private void calculate(double data[], double omega, State previous, int checkpoint) {
         setData(data);
-        calculate(OMEGA);
+        calculate(OMEGA, previous, checkpoint);
     }
 
-    private void calculate(double omega) {
-        UCL_R = new double[degFreedomRange];
-        UCL_Y = new double[degFreedomRange];
-        sigmaCoeff = new double[degFreedomRange];
-        deltaSigma = new double[degFreedomRange];
-        minSigma = new double[degFreedomRange];
-        int[] degFreedom = new int[data.length];
-//
-        double term1 = omega / (2.0 - omega), term2, term3;
-        for (int i = 0; i < degFreedomRange; i++) {
-            TDistribution tdist = new TDistribution(i + 1);
-            UCL_R[i] = tdist.inverseCumulativeProbability(1 - threshPValueR);
-            UCL_Y[i] = tdist.inverseCumulativeProbability(1 - threshPValueY);
-            int numBaseline = NUM_FIT_PARAMS + i;
-            term2 = 1.0 / numBaseline;
-            term3 = -2.0 * Math.pow((1 - omega), (numGuardBand + 1.0)) *
-                    (1.0 - Math.pow((1 - omega), numBaseline)) / numBaseline;
-            sigmaCoeff[i] = Math.sqrt(term1 + term2 + term3);
-            deltaSigma[i] = (omega / UCL_Y[i]) *
-                            (0.1289 - (0.2414 - 0.1826 * Math.pow((1 - omega), 4)) *
-                                      Math.log(10.0 * threshPValueY));
-            minSigma[i] = (omega / UCL_Y[i]) * (1.0 + 0.5 * Math.pow((1 - omega), 2));
+    private void calculate(double omega, State previous, int checkpoint) {
+        if (omega != tableOmega || threshPValueR != tableThreshR || threshPValueY != tableThreshY) {
+            calculateControlLimits(omega);
+        }
+        if (degFreedom == null || degFreedom.length != data.length) {
+            degFreedom = new int[data.length];
+        } else {
+            Arrays.fill(degFreedom, 0);
         }
 //
         levels = new double[data.length];
@@ -166,52 +159,52 @@ public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDet
         test_stat = new double[data.length];
         Arrays.fill(test_stat, 0);
 //
-        FilterBaselineZeros3 zf = new FilterBaselineZeros3();
-//
-        double smoothedData, sigma, testBase[], baselineData[];
-        ArrayList<Integer> ndxBaseline = new ArrayList<Integer>();
+        double smoothedData, sigma;
         // initialize the smoothed data
         smoothedData = 0;
         for (int i = 1; i < minBaseline + numGuardBand && i < data.length; i++) {
             smoothedData = omega * data[i] + (1 - omega) * smoothedData;
         }
-        // initialize the indices of the baseline period
-        for (int i = 0; i < minBaseline - 1; i++) {
-            ndxBaseline.add(new Integer(i));
+        int resume = 0;
+        if (previous != null) {
+            resume = previous.restore(this);
+            smoothedData = previous.smoothedData;
+        } else if (data.length > minBaseline + numGuardBand) {
+            // initialize the baseline period
+            window.moveTo(data, 0, minBaseline - 1);
         }
         // loop through the days on which to make predictions
-        for (int i = minBaseline + numGuardBand; i < data.length; i++) {
+        for (int i = Math.max(minBaseline + numGuardBand, resume); i < data.length; i++) {
+            if (i == checkpoint) {
+                saveCheckpoint(smoothedData);
+            }
             // smooth the data using an exponentially weighted moving average (EWMA)
             smoothedData = omega * data[i] + (1 - omega) * smoothedData;
             // lengthen and advance the baseline period
-            if (ndxBaseline.isEmpty() || ndxBaseline.get(ndxBaseline.size() - 1) + 1 < maxBaseline) {
-                ndxBaseline.add(0, -1);
+            if (window.getSize() < maxBaseline) {
+                window.extend();
+            } else {
+                window.advance();
             }
-            // advance the indices of the baseline period
-            arrayAdd(ndxBaseline, 1);
             // remove excess consecutive zeros from the baseline data
-            testBase = dataInd(data, ndxBaseline);
-            if (removeZeros && FilterBaselineZeros3.filterBaselineZerosTest(testBase)) {
-                int[] ndxOK = zf.filterBaselineZeros(testBase);
-                baselineData = dataInd(testBase, ndxOK);
-            } else {
-                baselineData = testBase;
+            if (removeZeros && window.needsZeroFilter()) {
+                window.filterZeros();
             }
             // check the baseline period is filled with zeros; no prediction can be
-            if (!any(baselineData)) {
+            if (window.getCount() == window.getZeroCount()) {
                 continue;
             }
             // the number of degrees of freedom
-            degFreedom[i] = baselineData.length - NUM_FIT_PARAMS;
+            degFreedom[i] = window.getCount() - NUM_FIT_PARAMS;
             // there are not enough data points in the baseline period; no prediction can be made
             if (degFreedom[i] < MIN_DEG_FREEDOM) {
                 continue;
             }
             // the predicted current value of the data
-            expectedData[i] = mean(baselineData);
+            expectedData[i] = window.getMean();
             // calculate the test statistic
             // the adjusted standard deviation of the baseline data
-            sigma = sigmaCoeff[degFreedom[i] - 1] * std(baselineData) + deltaSigma[degFreedom[i] - 1];
+            sigma = sigmaCoeff[degFreedom[i] - 1] * window.getStdDev() + deltaSigma[degFreedom[i] - 1];
             // don't allow values smaller than MinSigma
             sigma = Math.max(sigma, minSigma[degFreedom[i] - 1]);
             // the test statistic
@@ -221,32 +214,55 @@ public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDet
                 smoothedData = expectedData[i] + Math.signum(test_stat[i]) * UCL_R[degFreedom[i] - 1] * sigma;
             }
         }
-        for (int i = 0; i < data.length; i++) {
+        if (checkpoint == data.length) {
+            saveCheckpoint(smoothedData);
+        }
+        for (int i = resume; i < data.length; i++) {
             if (Math.abs(test_stat[i]) > 0.0) {
-                TDistribution tdist = new TDistribution(degFreedom[i]);
-                pvalues[i] = 1 - tdist.cumulativeProbability(test_stat[i]);
+                pvalues[i] = 1 - StudentT.cumulativeProbability(degFreedom[i], test_stat[i]);
                 levels[i] = pvalues[i];
             }
         }
     }
 
-    private void readConfigFile() {
-        Properties defaultProps = new Properties();
-        InputStream in = getClass().getResourceAsStream("/EWMASagesDetector.properties");
-        try {
-            defaultProps.load(in);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private void saveCheckpoint(double smoothedData) {
+        checkpointSmoothedData = smoothedData;
+        checkpointBaseline = new int[window.getSize()];
+        for (int k = 0; k < checkpointBaseline.length; k++) {
+            checkpointBaseline[k] = window.getStart() + k;
         }
+    }
+
+    private void calculateControlLimits(double omega) {
+        UCL_R = StudentT.upperCriticalValues(degFreedomRange, threshPValueR);
+        UCL_Y = StudentT.upperCriticalValues(degFreedomRange, threshPValueY);
+        sigmaCoeff = new double[degFreedomRange];
+        deltaSigma = new double[degFreedomRange];
+        minSigma = new double[degFreedomRange];
+//
+        double term1 = omega / (2.0 - omega), term2, term3;
+        for (int i = 0; i < degFreedomRange; i++) {
+            int numBaseline = NUM_FIT_PARAMS + i;
+            term2 = 1.0 / numBaseline;
+            term3 = -2.0 * Math.pow((1 - omega), (numGuardBand + 1.0)) *
+                    (1.0 - Math.pow((1 - omega), numBaseline)) / numBaseline;
+            sigmaCoeff[i] = Math.sqrt(term1 + term2 + term3);
+            deltaSigma[i] = (omega / UCL_Y[i]) *
+                            (0.1289 - (0.2414 - 0.1826 * Math.pow((1 - omega), 4)) *
+                                      Math.log(10.0 * threshPValueY));
+            minSigma[i] = (omega / UCL_Y[i]) * (1.0 + 0.5 * Math.pow((1 - omega), 2));
+        }
+        tableOmega = omega;
+        tableThreshR = threshPValueR;
+        tableThreshY = threshPValueY;
+    }
+
+    private void readConfigFile() {
+        Properties defaultProps = DetectorHelper.loadProperties(getClass(), "/EWMASagesDetector.properties");
         String red = defaultProps.getProperty("THRESHOLD_PROBABILITY_RED_ALERT");
         String yellow = defaultProps.getProperty("THRESHOLD_PROBABILITY_YELLOW_ALERT");
         setRedLevel(Double.parseDouble(red));
         setYellowLevel(Double.parseDouble(yellow));
-        try {
-            in.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
     }
 
     public void testDetector(TemporalDetectorDataInterface tddi) {
@@ -260,6 +276,28 @@ public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDet
         double[] data = tddi.getCounts();
 //
         calculate(data, OMEGA);
+        setResults(tddi);
+    }
+
+    @Override
+    public DetectorState runDetector(TemporalDetectorDataInterface tddi, DetectorState previous, int settled) {
+        double[] data = tddi.getCounts();
+        Date startDate = tddi.getStartDate();
+        // the days before the first prediction also seed the smoothed data, so there is nothing to resume before it
+        settled = Math.min(settled, data.length);
+        int checkpoint = settled >= minBaseline + numGuardBand ? settled : -1;
+        State state = null;
+        if (previous instanceof State && previous.getLength() <= checkpoint
+            && previous.resumableLength(this, data, startDate) > 0) {
+            state = (State) previous;
+        }
+//
+        calculate(data, OMEGA, state, checkpoint);
+        setResults(tddi);
+        return checkpoint > 0 ? new State(this, startDate, checkpoint) : null;
+    }
+
+    private void setResults(TemporalDetectorDataInterface tddi) {
         DetectorHelper.postDetectionColorCoding(data, levels, colors, getRedLevel(), getYellowLevel(), 0.5, false);
 //
         tddi.setLevels(getLevels());
@@ -281,6 +319,54 @@ public class EWMASagesDetector implements TemporalDetectorInterface, TemporalDet
         return ans;
     }
 
+    @Override
+    public BatchDetectionResult runBatch(double[][] data, Date[] startDates, String timeResolution) {
+        return DetectorHelper.runBatch(this, data, startDates, timeResolution);
+    }
+
+    /**
+     * The smoothed data and baseline indices at the start of the first day after the saved ones, plus the saved
+     * results.
+     */
+    private static class State extends DetectorState {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double smoothedData;
+        private final int ndxBaseline[];
+        private final boolean removeZeros;
+        private final double levels[], expectedData[], test_stat[];
+
+        State(EWMASagesDetector detector, Date startDate, int length) {
+            super(detector, startDate, detector.data, length);
+            smoothedData = detector.checkpointSmoothedData;
+            ndxBaseline = detector.checkpointBaseline;
+            removeZeros = detector.removeZeros;
+            levels = prefix(detector.levels, length);
+            expectedData = prefix(detector.expectedData, length);
+            test_stat = prefix(detector.test_stat, length);
+        }
+
+        @Override
+        public int resumableLength(TemporalDetectorInterface detector, double[] counts, Date startDate) {
+            if (!(detector instanceof EWMASagesDetector) || removeZeros != ((EWMASagesDetector) detector).removeZeros) {
+                return 0;
+            }
+            return super.resumableLength(detector, counts, startDate);
+        }
+
+        /**
+         * @return the first day still to be calculated
+         */
+        int restore(EWMASagesDetector detector) {
+            detector.window.moveTo(detector.data, ndxBaseline[0], ndxBaseline.length);
+            restore(levels, detector.levels);
+            restore(expectedData, detector.expectedData);
+            restore(test_stat, detector.test_stat);
+            return getLength();
+        }
+    }
+
     /**
      * @param b
      */
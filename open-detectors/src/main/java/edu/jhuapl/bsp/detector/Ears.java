@@ -86,20 +86,20 @@ public class Ears {
         double cusum0 = 0;
         double cusum1 = 0;
 
-        int ndxBase = 0;
         double estMean = 0;
         double estSigma = 0;
         double currSum = 0;
 
+        SlidingWindowStats window = null;
         for (int i = baseline + baseLag; i < data.length; i++) {
-            ndxBase = i - (baseline + baseLag);
-            ArrayList list = new ArrayList();
-            for (int j = 0; j < baseline; j++) {
-                list.add(new Double(data[ndxBase]));
-                ndxBase++;
+            // the baseline window ends baseLag days before day i
+            if (window == null) {
+                window = new SlidingWindowStats(data, baseline, i - (baseline + baseLag));
+            } else {
+                window.advance();
             }
-            estMean = getAverage(list);
-            estSigma = Math.max(minSigma, getStdDev(list));
+            estMean = window.getMean();
+            estSigma = Math.max(minSigma, window.getStdDev());
 
             currSum = Math.max(0, data[i] - estMean - cusumK * estSigma) / estSigma;
             if (Double.isNaN(currSum) || Double.isInfinite(currSum)) {
@@ -26,14 +26,13 @@
 
 package edu.jhuapl.bsp.detector;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.Date;
 import java.util.Properties;
 
 /**
  * Runs the CDC Ears algorithms C1
  */
-public class EarsC1 implements TemporalDetectorInterface, TemporalDetector {
+public class EarsC1 implements TemporalDetectorInterface, TemporalDetector, BatchTemporalDetector {
 
     public double redLevel;
     public double yellowLevel;
@@ -75,22 +74,11 @@ public class EarsC1 implements TemporalDetectorInterface, TemporalDetector {
     }
 
     private void readConfigFile() {
-        Properties defaultProps = new Properties();
-        InputStream in = getClass().getResourceAsStream("/EarsC1.properties");
-        try {
-            defaultProps.load(in);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        Properties defaultProps = DetectorHelper.loadProperties(getClass(), "/EarsC1.properties");
         String red = defaultProps.getProperty("redLevel");
         String yellow = defaultProps.getProperty("yellowLevel");
         setRedLevel(Double.parseDouble(red));
         setYellowLevel(Double.parseDouble(yellow));
-        try {
-            in.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
     }
 
     /**
@@ -137,4 +125,9 @@ public class EarsC1 implements TemporalDetectorInterface, TemporalDetector {
         double[][] ans = {tddo.getLevels(), tddo.getExpecteds(), tddo.getColors()};
         return ans;
     }
+
+    @Override
+    public BatchDetectionResult runBatch(double[][] data, Date[] startDates, String timeResolution) {
+        return DetectorHelper.runBatch(this, data, startDates, timeResolution);
+    }
 }
@@ -26,14 +26,13 @@
 
 package edu.jhuapl.bsp.detector;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.Date;
 import java.util.Properties;
 
 /**
  * Runs the CDC Ears algorithms C2
  */
-public class EarsC2 implements TemporalDetectorInterface, TemporalDetector {
+public class EarsC2 implements TemporalDetectorInterface, TemporalDetector, BatchTemporalDetector {
 
     public double redLevel;
     public double yellowLevel;
@@ -75,22 +74,11 @@ public class EarsC2 implements TemporalDetectorInterface, TemporalDetector {
     }
 
     private void readConfigFile() {
-        Properties defaultProps = new Properties();
-        InputStream in = getClass().getResourceAsStream("/EarsC2.properties");
-        try {
-            defaultProps.load(in);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        Properties defaultProps = DetectorHelper.loadProperties(getClass(), "/EarsC2.properties");
         String red = defaultProps.getProperty("redLevel");
         String yellow = defaultProps.getProperty("yellowLevel");
         setRedLevel(Double.parseDouble(red));
         setYellowLevel(Double.parseDouble(yellow));
-        try {
-            in.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
     }
 
     /**
@@ -138,4 +126,9 @@ public class EarsC2 implements TemporalDetectorInterface, TemporalDetector {
         return ans;
     }
 
+    @Override
+    public BatchDetectionResult runBatch(double[][] data, Date[] startDates, String timeResolution) {
+        return DetectorHelper.runBatch(this, data, startDates, timeResolution);
+    }
+
 }
@@ -68,14 +68,6 @@ public class FilterBaselineZeros3 {
         this.minNumZeros = minNumZeros;
     }
 
-    public int[] filterBaselineZeros(double[] dt, int len) {
-        double[] dt2 = new double[len];
-        for (int i = 0; i < len; i++) {
-            dt2[i] = dt[i];
-        }
-        return filterBaselineZeros(dt2);
-    }
-
     /**
      * Remove excess zeros from baseline counts, where excess zeros are those in strings that are unreasonably long
      * compared to the rest of the baseline.
@@ -84,6 +76,18 @@ public class FilterBaselineZeros3 {
      * @return An array of indices that hold valid data
      */
     public int[] filterBaselineZeros(double[] dt) {
+        return filterBaselineZeros(dt, dt.length);
+    }
+
+    /**
+     * Same as {@link #filterBaselineZeros(double[])} for the first len values of dt, so callers can filter a reused
+     * buffer without copying it.
+     *
+     * @param dt  Data to be filtered
+     * @param len Number of values of dt to filter
+     * @return An array of indices that hold valid data
+     */
+    public int[] filterBaselineZeros(double[] dt, int len) {
         double testData[];
         int i, ndxOK[], ndx1, ndx2, ndxOut[];
         ArrayList<Integer> ndxStart, ndxEnd;
@@ -91,9 +95,9 @@ public class FilterBaselineZeros3 {
         ndxEnd = new ArrayList<Integer>();
         Double numZerosTest[];
 //
-        testData = new double[1 + dt.length];
+        testData = new double[1 + len];
         testData[0] = 1;
-        for (i = 0; i < dt.length; i++) {
+        for (i = 0; i < len; i++) {
             testData[i + 1] = dt[i];
         }
         for (i = 0; i < testData.length - 1; i++) {
@@ -101,7 +105,7 @@ public class FilterBaselineZeros3 {
                 ndxStart.add(i);
             }
         }
-        for (i = 0; i < dt.length; i++) {
+        for (i = 0; i < len; i++) {
             testData[i] = dt[i];
         }
         testData[i] = 1;
@@ -120,8 +124,8 @@ public class FilterBaselineZeros3 {
 //
         //for (int k : idx) { System.out.println (k+" "+numZerosTest[k]); }
 
-        ndxOK = new int[dt.length];
-        for (i = 0; i < dt.length; i++) {
+        ndxOK = new int[len];
+        for (i = 0; i < len; i++) {
             ndxOK[i] = i;
         }
         for (i = 0; i < idx.length; i++) {
@@ -130,12 +134,12 @@ public class FilterBaselineZeros3 {
             if (val < minNumZeros) {
                 continue;
             }
-            for (ndx1 = 0; ndx1 < dt.length; ndx1++) {
+            for (ndx1 = 0; ndx1 < len; ndx1++) {
                 if (ndxOK[ndx1] == ndxStart.get(key)) {
                     break;
                 }
             }
-            for (ndx2 = 0; ndx2 < dt.length; ndx2++) {
+            for (ndx2 = 0; ndx2 < len; ndx2++) {
                 if (ndxOK[ndx2] == ndxEnd.get(key)) {
                     break;
                 }
@@ -155,10 +159,9 @@ public class FilterBaselineZeros3 {
             if (numValuesOut == 0) {
                 break;
             }
-            double[] dtOut = dataInd(dt, ndxOut);
             int nsum = 0;
-            for (int j = 0; j < dtOut.length; j++) {
-                if (dtOut[j] == 0) {
+            for (int j = 0; j < ndxOut.length; j++) {
+                if (dt[ndxOut[j]] == 0) {
                     nsum++;
                 }
             }
@@ -171,10 +174,9 @@ public class FilterBaselineZeros3 {
             }
             ndxOK = ndxOut;
         }
-        double[] dtOut = dataInd(dt, ndxOK);
         int nsum = 0;
-        for (int j = 0; j < dtOut.length; j++) {
-            if (dtOut[j] > 0) {
+        for (int j = 0; j < ndxOK.length; j++) {
+            if (dt[ndxOK[j]] > 0) {
                 nsum++;
             }
         }
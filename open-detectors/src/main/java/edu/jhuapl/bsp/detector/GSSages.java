@@ -30,20 +30,21 @@ import edu.jhuapl.bsp.detector.exception.DetectorException;
 
 import de.jollyday.HolidayManager;
 
-import org.apache.commons.math3.distribution.TDistribution;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import static edu.jhuapl.bsp.detector.OpenMath.any;
 import static edu.jhuapl.bsp.detector.OpenMath.arrayAbs;
 import static edu.jhuapl.bsp.detector.OpenMath.arrayAdd;
-import static edu.jhuapl.bsp.detector.OpenMath.arrayAdd2;
 import static edu.jhuapl.bsp.detector.OpenMath.arrayMod;
 import static edu.jhuapl.bsp.detector.OpenMath.copya;
 import static edu.jhuapl.bsp.detector.OpenMath.dataInd;
@@ -55,7 +56,6 @@ import static edu.jhuapl.bsp.detector.OpenMath.ismember;
 import static edu.jhuapl.bsp.detector.OpenMath.mean;
 import static edu.jhuapl.bsp.detector.OpenMath.median;
 import static edu.jhuapl.bsp.detector.OpenMath.normcdf;
-import static edu.jhuapl.bsp.detector.OpenMath.numel;
 import static edu.jhuapl.bsp.detector.OpenMath.ones;
 import static edu.jhuapl.bsp.detector.OpenMath.reshape;
 import static edu.jhuapl.bsp.detector.OpenMath.std;
@@ -68,7 +68,8 @@ import static java.lang.Math.pow;
 /**
  * Runs the Generalized Adaptive Smoothing algorithm
  */
-public class GSSages implements TemporalDetectorInterface, TemporalDetector {
+public class GSSages implements TemporalDetectorInterface, TemporalDetector, BatchTemporalDetector,
+                                IncrementalTemporalDetector {
 
     public static final String HOLIDAYS_FILE = "/holidays.xml";
 
@@ -94,15 +95,19 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
 
     private static final Logger log = LoggerFactory.getLogger(GSSages.class);
     private HolidayManager holidayManager;
+    // working buffers reused between series
+    private final FilterBaselineZeros3 zf = new FilterBaselineZeros3();
+    private HolidayCalendar holidays;
+    private final int ndxBaselineBuf[] = new int[BASELINE], ndxBaselineOKBuf[] = new int[BASELINE];
+    private final int memListBuf[] = new int[BASELINE], memListNdxBuf[] = new int[BASELINE], memList2Buf[] = new int[7];
+    private final double baselineBuf[] = new double[BASELINE], seasonBuf[] = new double[7];
+    private final double recentBuf[] = new double[14];
+    private State checkpointState;
+
+    private static HolidayManager defaultHolidayManager;
 
     public GSSages() {
-        URL holidaysFile = getClass().getResource(HOLIDAYS_FILE);
-        if (holidaysFile == null) {
-            throw new IllegalStateException("Could not locate holidays file " + HOLIDAYS_FILE);
-        } else {
-            this.holidayManager = HolidayManager.getInstance(holidaysFile);
-        }
-        init();
+        this(getDefaultHolidayManager());
     }
 
     public GSSages(HolidayManager holidayManager) {
@@ -110,6 +115,22 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
         init();
     }
 
+    /**
+     * Holiday calendar shared by all instances created with the default constructor. Loaded on first use so that
+     * callers supplying their own {@link HolidayManager} never parse {@link #HOLIDAYS_FILE}. A missing file is
+     * reported to every caller, not only the first.
+     */
+    private static synchronized HolidayManager getDefaultHolidayManager() {
+        if (defaultHolidayManager == null) {
+            URL holidaysFile = GSSages.class.getResource(HOLIDAYS_FILE);
+            if (holidaysFile == null) {
+                throw new IllegalStateException("Could not locate holidays file " + HOLIDAYS_FILE);
+            }
+            defaultHolidayManager = HolidayManager.getInstance(holidaysFile);
+        }
+        return defaultHolidayManager;
+    }
+
     private void init() {
         threshPValueR = THRESHOLD_PROBABILITY_RED_ALERT;
         threshPValueY = THRESHOLD_PROBABILITY_YELLOW_ALERT;
@@ -155,25 +176,29 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
 
     //
     private void calculate(double data[]) {
+        calculate(data, null, -1);
+    }
+
+    /**
+     * @param previous   state to resume from, or null to run over the whole series
+     * @param checkpoint day at whose start the carried values are saved in {@link #checkpointState}, or -1
+     */
+    private void calculate(double data[], State previous, int checkpoint) {
         if (data.length <= BASELINE) {
             String message = getName() + " detector needs at least " + BASELINE + " data points to run detection.";
             throw new DetectorException(message);
         }
         init();
         setData(data);
-        calculate();
+        calculate(previous, checkpoint);
     }
 
-    private void calculate() {
-        FilterBaselineZeros3 zf = new FilterBaselineZeros3();
+    private void calculate(State previous, int checkpoint) {
         boolean bSparseFlag;
         int i;
-        double ck, c0[], ytemp[] = new double[0];
-        double UCL_R[], UCL_Y[], sigmaCoeff[], deltaSigma[], Sigma = 0, minSigma[];
-        UCL_R = new double[Baseline];
-        UCL_Y = new double[Baseline];
+        double ck, c0[];
+        double UCL_Y[] = null, sigmaCoeff[] = null, deltaSigma[] = null, Sigma = 0, minSigma[] = null;
         int degFreedom;
-        minSigma = new double[Baseline];
         //
         levels = ones(data.length, 0.5);
         pvalues = ones(data.length, -9999);
@@ -230,9 +255,11 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
             }
             bSparseFlag = false;
         }
-        int HOL[] = HolidayChecker.getHolidays(startDate, data.length, holidayManager); // Holiday function
+        HolidayCalendar calendar = getHolidays();
+        int HOL[] = calendar.getHolidays(); // Holiday function
+        int holOffset = calendar.offsetOf(startDate);
         // Format of the parameterList:
-        // HOL - vector of holidays
+        // HOL - vector of holidays, from holOffset for this series
         final int season = 7; // Seasonality
         double y[] = copya(datak);
         //
@@ -254,18 +281,41 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
         double denom[] = ones(y.length, 0);
         //
         double y_Pred[] = ones(y.length, 0); // initialize predictions
-        int ndxBaseline[] = new int[14];
+        // the per-day index lists live in fixed buffers; only the first numBaseline, numOK, numMem entries are valid
+        int ndxBaseline[] = ndxBaselineBuf, ndxBaselineOK[] = ndxBaselineOKBuf;
+        int memList[] = memListBuf, memListNdx[] = memListNdxBuf, memList2[] = memList2Buf;
+        double yBase[] = baselineBuf, cSeason[] = seasonBuf;
+        int numBaseline = 14, numOK, numMem, numMem2;
         for (i = 0; i < 14; i++) {
             ndxBaseline[i] = i + 1;
         } // starting baseline
+        double datakrMedian = median(reshape(datakr));
+        int start = 2 * season + GUARDBAND;
+        if (previous != null) {
+            // everything set up above depends only on the first Baseline days, which the saved state covers
+            start = previous.getLength();
+            System.arraycopy(previous.alpha, 0, alpha, 0, alpha.length);
+            bSparseFlag = previous.bSparseFlag;
+            datakrMedian = previous.datakrMedian;
+            Sigma = previous.Sigma;
+            numBaseline = previous.ndxBaseline.length;
+            System.arraycopy(previous.ndxBaseline, 0, ndxBaseline, 0, numBaseline);
+            previous.restore(this, m, b, c, denom, y_Pred);
+        }
+        checkpointState = null;
         //
-        for (i = 2 * season + GUARDBAND; i < y.length; i++) { // beginning at day 15 + Guardband
+        for (i = start; i < y.length; i++) { // beginning at day 15 + Guardband
+            if (i == checkpoint) {
+                checkpointState = new State(this, i, m, b, c, denom, y_Pred, ndxBaseline, numBaseline, bSparseFlag,
+                                            datakrMedian, Sigma);
+            }
             // use the indices of the entire baseline period
             // checking that there are at least 7 non-zero values "together"
-            int ndxOK[] = zf.filterBaselineZeros(dataInd_js(datak, ndxBaseline));
-            int ndxBaselineOK[] = dataInd(ndxBaseline, ndxOK);
-            if (numel(ndxBaselineOK) >= 7) {
-                if (HOL[i] == 1
+            int ndxOK[] = zf.filterBaselineZeros(dataInd_js(datak, ndxBaseline, numBaseline, yBase), numBaseline);
+            numOK = ndxOK.length;
+            dataInd(ndxBaseline, ndxOK, numOK, ndxBaselineOK);
+            if (numOK >= 7) {
+                if (HOL[holOffset + i] == 1
                         && !((y[i] < (c[i - 6] * m[i - 6] + denom[i - 1]) && y[i] > (c[i - 6] * m[i - 6] - denom[i - 1])) || HOLfac == 1.0)) {
                     // if holiday - check if the values within reasonable limits (+/- 1 standard deviation from the
                     // mean)
@@ -277,21 +327,30 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
                 // than 5 - start updating seasonal coefficients;
                 // System.out.println
                 // (datak.length+" "+ndxBaselineOK.length+" "+datakr.length+" "+datakr[0].length+" "+ndxBaseline[ndxBaseline.length-1]);
-                if ((mean(dataInd_js(datak, ndxBaselineOK)) >= 5) && (median(reshape(datakr)) == 0)) {
+                if ((mean(dataInd_js(datak, ndxBaselineOK, numOK, yBase), numOK) >= 5) && (datakrMedian == 0)) {
                     // System.out.println ("1");
                     alpha[2] = 0.05;
                     bSparseFlag = false;
-                    if ((numel(ndxBaselineOK) >= 14)
-                            && (ndxBaselineOK[ndxBaselineOK.length - 1] - ndxBaselineOK[ndxBaselineOK.length - 1 - 13] == 13)) {
-                        datakr =
-                                reshape(dataInd_js(y,
-                                        dataVec(ndxBaselineOK, ndxBaselineOK.length - 1 - 13, ndxBaselineOK.length - 1)),
-                                        7, 2);
-                        c0 = mean(transpose(datakr));
-                        ck = mean(mean(transpose(datakr)));
+                    if ((numOK >= 14)
+                            && (ndxBaselineOK[numOK - 1] - ndxBaselineOK[numOK - 1 - 13] == 13)) {
+                        // the last two weeks as a 7 by 2 matrix, one column per week
+                        double recent[] = recentBuf;
+                        for (int k = 0; k < 14; k++) {
+                            recent[k] = y[ndxBaselineOK[numOK - 14 + k] - 1];
+                        }
+                        double weekdayMeans[] = seasonBuf;
+                        for (int n0 = 0; n0 < 7; n0++) {
+                            double sum = 0;
+                            sum += recent[n0];
+                            sum += recent[7 + n0];
+                            sum /= 2;
+                            weekdayMeans[n0] = Double.isNaN(sum) || Double.isInfinite(sum) ? 0 : sum;
+                        }
+                        ck = mean(weekdayMeans, 7);
                         for (int k = i - season, n0 = 0; k < i; k++, n0++) {
-                            c[k] = c0[n0] / ck;
+                            c[k] = weekdayMeans[n0] / ck;
                         }
+                        datakrMedian = median(recent, 14);
                     }
                 }
                 // Updating of parameters
@@ -311,64 +370,68 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
                 c[i] = c[i - season];
             }
             //
-            int memList2[] = findLT(arrayAbs(arrayAdd2(dataVec(c, i - 6, i), -c[i])), 0.1);
-            int memList3[] = arrayMod(arrayAdd2(memList2, i + 2), 7);
-            int memList[] = ismember(arrayMod(ndxBaselineOK, 7), memList3);
-            int HOLlist[] = dataInd_js(HOL, ndxBaselineOK);
-            for (int k = 0; k < ndxBaselineOK.length; k++) {
-                if (HOLlist[k] == 1) {
+            dataVec(c, i - 6, i, cSeason);
+            arrayAdd(cSeason, -c[i]);
+            numMem2 = findLT(arrayAbs(cSeason, cSeason.length, cSeason), cSeason.length, 0.1, memList2);
+            arrayAdd(memList2, numMem2, i + 2);
+            arrayMod(memList2, numMem2, 7, memList2);
+            ismember(arrayMod(ndxBaselineOK, numOK, 7, memListNdx), numOK, memList2, numMem2, memList);
+            for (int k = 0; k < numOK; k++) {
+                if (HOL[holOffset + ndxBaselineOK[k] - 1] == 1) {
                     memList[k] = 0;
                 }
             }
-            memList = find(memList);
-            if (numel(dataInd_js(y, dataInd(ndxBaseline, memList))) <= 4) {
+            numMem = find(memList, numOK, memListNdx);
+            if (numMem <= 4) {
                 // System.out.println ("2");
-                denom[i] = std(dataInd_js(y, ndxBaseline));
+                denom[i] = std(dataInd_js(y, ndxBaseline, numBaseline, yBase), numBaseline);
             } else {
                 // System.out.println ("3");
-                denom[i] = std(dataInd_js(y, dataInd(ndxBaselineOK, memList)));
+                dataInd(ndxBaselineOK, memListNdx, numMem, memList);
+                denom[i] = std(dataInd_js(y, memList, numMem, yBase), numMem);
             }
             // For EWMA switch
             // the term due to the smoothed data
             if (bSparseFlag) {
-                for (int k = 0; k < Baseline; k++) {
-                    TDistribution tdist = new TDistribution(k + 1);
-                    UCL_R[k] = tdist.inverseCumulativeProbability(1 - 0.01);
-                    UCL_Y[k] = tdist.inverseCumulativeProbability(1 - 0.05);
-                }
-                degFreedom = numel(ndxBaselineOK) - 1;
-                double Term1 = alpha[0] / (2.0 - alpha[0]);
-                // the term due to the baseline mean
-                double Term2[] = new double[Baseline];
-                for (int k = 0; k < Term2.length; k++) {
-                    Term2[k] = 1.0 / (2.0 + k);
-                }
-                // the term due to twice their covariance
-                double Term3[] = new double[Baseline];
-                for (int k = 0; k < Term3.length; k++) {
-                    Term3[k] = -2 * pow(1 - alpha[0], GUARDBAND + 1) * (1 - pow(1 - alpha[0], 2.0 + k)) / (2.0 + k);
-                }
-                // the correction factor for sigma
-                sigmaCoeff = new double[Baseline];
-                for (int k = 0; k < Baseline; k++) {
-                    sigmaCoeff[k] = Math.sqrt(Term1 + Term2[k] + Term3[k]);
+                if (UCL_Y == null) { // the sparse-data yellow threshold is fixed at 0.05
+                    UCL_Y = StudentT.upperCriticalValues(Baseline, 0.05);
                 }
-                deltaSigma = new double[Baseline];
-                for (int k = 0; k < Baseline; k++) {
-                    deltaSigma[k] =
-                            (alpha[0] / UCL_Y[k])
-                                    * (0.1289 - (0.2414 - 0.1826 * pow(1 - alpha[0], 4)) * log(10 * 0.05)); // hard-coded
-                                                                                                            // yellow
-                                                                                                            // threshold
-                                                                                                            // to 0.05
-                }
-                if (!any(dataInd_js(y, ndxBaselineOK))) {
-                    Sigma = 0;
-                } else {
-                    Sigma = sigmaCoeff[degFreedom - 1] * std(dataInd_js(y, ndxBaselineOK)) + deltaSigma[degFreedom - 1];
+                degFreedom = numOK - 1;
+                if (sigmaCoeff == null) { // alpha(1) is fixed for the rest of the series
+                    double Term1 = alpha[0] / (2.0 - alpha[0]);
+                    // the term due to the baseline mean
+                    double Term2[] = new double[Baseline];
+                    for (int k = 0; k < Term2.length; k++) {
+                        Term2[k] = 1.0 / (2.0 + k);
+                    }
+                    // the term due to twice their covariance
+                    double Term3[] = new double[Baseline];
+                    for (int k = 0; k < Term3.length; k++) {
+                        Term3[k] = -2 * pow(1 - alpha[0], GUARDBAND + 1) * (1 - pow(1 - alpha[0], 2.0 + k)) / (2.0 + k);
+                    }
+                    // the correction factor for sigma
+                    sigmaCoeff = new double[Baseline];
+                    for (int k = 0; k < Baseline; k++) {
+                        sigmaCoeff[k] = Math.sqrt(Term1 + Term2[k] + Term3[k]);
+                    }
+                    deltaSigma = new double[Baseline];
+                    for (int k = 0; k < Baseline; k++) {
+                        deltaSigma[k] =
+                                (alpha[0] / UCL_Y[k])
+                                        * (0.1289 - (0.2414 - 0.1826 * pow(1 - alpha[0], 4)) * log(10 * 0.05)); // hard-coded
+                                                                                                                // yellow
+                                                                                                                // threshold
+                                                                                                                // to 0.05
+                    }
+                    minSigma = new double[Baseline];
                     for (int k = 0; k < Baseline; k++) {
                         minSigma[k] = (alpha[0] / UCL_Y[k]) * (1 + 0.5 * (1 - alpha[0]) * (1 - alpha[0]));
                     }
+                }
+                if (!any(dataInd_js(y, ndxBaselineOK, numOK, yBase), numOK)) {
+                    Sigma = 0;
+                } else {
+                    Sigma = sigmaCoeff[degFreedom - 1] * std(yBase, numOK) + deltaSigma[degFreedom - 1];
                     Sigma = max(Sigma, minSigma[degFreedom - 1]);
                 }
             }
@@ -385,9 +448,9 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
             // 2) prediction is negative
             // 3) Holiday
             // 4) Day after holiday
-            if (((abs(y_Pred[i] - y[i] + Adj) / denom[i] > APE_LIMIT) && (numel(ndxBaseline) == numel(ndxBaselineOK)) && (y[i] > c[8 + (i % 7) - 1]
-                    * OpenMath.percentile(dataInd_js(y, ndxBaseline), 95.0)))
-                    || HOL[i] == 1) {
+            if (((abs(y_Pred[i] - y[i] + Adj) / denom[i] > APE_LIMIT) && (numBaseline == numOK) && (y[i] > c[8 + (i % 7) - 1]
+                    * OpenMath.percentile(dataInd_js(y, ndxBaseline, numBaseline, yBase), numBaseline, 95.0)))
+                    || HOL[holOffset + i] == 1) {
                 m[i] = m[i - 1];
                 b[i] = b[i - 1];
                 c[i] = c[i - season];
@@ -395,30 +458,30 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
             test_stat[i] = (y[i] - y_Pred[i] - Adj) / denom[i]; // Calculating the test statistics(removing the
                                                                 // adjustment added on line 69
             if (bSparseFlag) {
-                ytemp = dataInd_js(y, ndxBaselineOK);
                 Sigma = Math.max(Sigma, 0.5);
-                test_stat[i] = (m[i] - mean(ytemp) + Adj) / Sigma;
+                test_stat[i] = (m[i] - mean(dataInd_js(y, ndxBaselineOK, numOK, yBase), numOK) + Adj) / Sigma;
             }
             if ((y[i] - Adj) == 0) { // if value is 0 to begin with - return 0 for the statistic
                 test_stat[i] = 0;
             }
-            if (ndxBaselineOK.length == 0) {
+            if (numOK == 0) {
                 test_stat[i] = 0;
             }
             pvalues[i] = 1 - normcdf(test_stat[i], 0, 1); // Using Gaussian (normal) 0,1 distribution table value
-            if (ndxBaseline[ndxBaseline.length - 1] < Baseline) {
+            if (ndxBaseline[numBaseline - 1] < Baseline) {
                 // increase baseline vector
-                int bt[] = ndxBaseline;
-                ndxBaseline = new int[bt.length + 1];
+                System.arraycopy(ndxBaseline, 0, ndxBaseline, 1, numBaseline);
                 ndxBaseline[0] = 0;
-                for (int k = 1; k < ndxBaseline.length; k++) {
-                    ndxBaseline[k] = bt[k - 1];
-                }
+                numBaseline++;
             }
-            arrayAdd(ndxBaseline, 1); // go forward by one day
+            arrayAdd(ndxBaseline, numBaseline, 1); // go forward by one day
             // System.out.println (String.format ("%.4f %.4f %.4f %.4f %.4f %.4f %.4f %.4f %.4f",
             // denom[i], pvalues[i], m[i], c[i], test_stat[i], y_Pred[i], (bSparseFlag?1.0:0.0), m0, multFac));
         }
+        if (checkpoint == y.length) {
+            checkpointState = new State(this, i, m, b, c, denom, y_Pred, ndxBaseline, numBaseline, bSparseFlag,
+                                        datakrMedian, Sigma);
+        }
         arrayAdd(y_Pred, -Adj); // remove adjustment from prediction
         //
         for (i = 0; i < data.length; i++) {
@@ -427,23 +490,23 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
         expectedData = y_Pred;
     }
 
-    private void readConfigFile() {
-        Properties defaultProps = new Properties();
-        InputStream in = getClass().getResourceAsStream("/GSSages.properties");
-        try {
-            defaultProps.load(in);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Holiday flags covering the current series. Series in a batch usually share their dates, so the calendar is kept
+     * for as long as it covers them.
+     */
+    private HolidayCalendar getHolidays() {
+        if (holidays == null || !holidays.covers(holidayManager, startDate, data.length)) {
+            holidays = HolidayCalendar.forRange(holidayManager, startDate, data.length);
         }
+        return holidays;
+    }
+
+    private void readConfigFile() {
+        Properties defaultProps = DetectorHelper.loadProperties(getClass(), "/GSSages.properties");
         String red = defaultProps.getProperty("THRESHOLD_PROBABILITY_RED_ALERT");
         String yellow = defaultProps.getProperty("THRESHOLD_PROBABILITY_YELLOW_ALERT");
         setRedLevel(Double.parseDouble(red));
         setYellowLevel(Double.parseDouble(yellow));
-        try {
-            in.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
     }
 
     public void testDetector(TemporalDetectorDataInterface tddi) {
@@ -459,6 +522,30 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
         //
         setStartDate(tddi.getStartDate());
         calculate(data);
+        setResults(tddi);
+    }
+
+    @Override
+    public DetectorState runDetector(TemporalDetectorDataInterface tddi, DetectorState previous, int settled) {
+        double[] data = tddi.getCounts();
+        //
+        setStartDate(tddi.getStartDate());
+        // the starting coefficients come from the first Baseline days, so there is nothing to resume before them
+        settled = Math.min(settled, data.length);
+        int checkpoint = settled >= BASELINE ? settled : -1;
+        State state = null;
+        if (previous instanceof State && previous.getLength() <= checkpoint
+            && previous.resumableLength(this, data, startDate) > 0) {
+            state = (State) previous;
+        }
+        calculate(data, state, checkpoint);
+        setResults(tddi);
+        State result = checkpointState;
+        checkpointState = null;
+        return result;
+    }
+
+    private void setResults(TemporalDetectorDataInterface tddi) {
         DetectorHelper.postDetectionColorCoding(data, levels, colors, getRedLevel(), getYellowLevel(), 0.5, false);
         //
         tddi.setLevels(getLevels());
@@ -480,6 +567,320 @@ public class GSSages implements TemporalDetectorInterface, TemporalDetector {
         return ans;
     }
 
+    /**
+     * Runs series of the same length that take the common path of the algorithm together, see {@link Strata}, and the
+     * others one at a time. The results are the same as running each series on its own.
+     */
+    @Override
+    public BatchDetectionResult runBatch(double[][] data, Date[] startDates, String timeResolution) {
+        DetectorHelper.checkBatch(data, startDates);
+        // one holiday vector for the whole batch, rather than one per distinct date range
+        holidays = HolidayCalendar.forBatch(holidayManager, data, startDates);
+        BatchDetectionResult result = new BatchDetectionResult(data.length);
+        Map<Integer, List<Integer>> strata = new LinkedHashMap<Integer, List<Integer>>();
+        for (int s = 0; s < data.length; s++) {
+            if (Strata.takesCommonPath(data[s], startDates[s])) {
+                List<Integer> series = strata.get(data[s].length);
+                if (series == null) {
+                    series = new ArrayList<Integer>();
+                    strata.put(data[s].length, series);
+                }
+                series.add(s);
+            } else {
+                TemporalDetectorSimpleDataObject tddo = new TemporalDetectorSimpleDataObject();
+                tddo.setCounts(data[s]);
+                tddo.setStartDate(startDates[s]);
+                tddo.setTimeResolution(timeResolution);
+                runDetector(tddo);
+                result.setSeries(s, tddo.getLevels(), tddo.getExpecteds(), tddo.getColors());
+            }
+        }
+        for (List<Integer> series : strata.values()) {
+            new Strata(this, data, startDates, series).run(result);
+        }
+        return result;
+    }
+
+    /**
+     * Series of one length stepped through the days together. Their counts are all positive, so the baseline never
+     * loses zeros to {@link FilterBaselineZeros3} and the sparse-data switch never fires: the only per-series branches
+     * left are the holiday and parameter-freeze rules, which are cheap tests on the carried values. Those values are
+     * kept as one array per series of the level, trend, seasonality and standard deviation, each indexed by series, in
+     * rings over the last week, so a day's update walks contiguous arrays. The baseline indices depend only on the
+     * day, so all series share them.
+     * <p/>
+     * Every expression is evaluated as in {@link GSSages#calculate(State, int)}, so the results are bit-for-bit the
+     * same as a run of each series on its own.
+     */
+    private static final class Strata {
+
+        private static final int SEASON = 7;
+
+        private final GSSages detector;
+        private final double[][] data;
+        private final int[] series;
+        private final int[] holOffset;
+        private final int n;
+        private final int length;
+        // per series: alpha(1), alpha(2) and alpha(3)
+        private final double[] alpha0, alpha1, alpha2;
+        // level and seasonality of day i at [i % 7][series], trend and standard deviation of the day before
+        private final double[][] m, c;
+        private final double[] b, denom;
+        // the seasonality of the second week, which the APE check keeps using
+        private final double[][] cWeek2;
+        private final double[][] pvalues, yPred;
+
+        Strata(GSSages detector, double[][] data, Date[] startDates, List<Integer> series) {
+            this.detector = detector;
+            this.data = data;
+            this.n = series.size();
+            this.series = new int[n];
+            this.holOffset = new int[n];
+            for (int s = 0; s < n; s++) {
+                this.series[s] = series.get(s);
+                holOffset[s] = detector.holidays.offsetOf(startDates[this.series[s]]);
+            }
+            length = data[this.series[0]].length;
+            alpha0 = new double[n];
+            alpha1 = new double[n];
+            alpha2 = new double[n];
+            m = new double[SEASON][n];
+            c = new double[SEASON][n];
+            cWeek2 = new double[SEASON][n];
+            b = new double[n];
+            denom = new double[n];
+            pvalues = new double[n][];
+            yPred = new double[n][];
+        }
+
+        /**
+         * @return whether a series can be run with the others of its length
+         */
+        static boolean takesCommonPath(double[] data, Date startDate) {
+            if (startDate == null || data.length <= BASELINE) {
+                return false;
+            }
+            for (double value : data) {
+                if (!(value > 0) || Double.isInfinite(value)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void run(BatchDetectionResult result) {
+            detector.init();
+            double Adj = detector.Adj;
+            double HOLfac = detector.HOLfac;
+            boolean bAutoCoef = detector.bAutoCoef;
+            int Baseline = detector.Baseline;
+            int[] HOL = detector.holidays.getHolidays();
+            double[] c0 = new double[SEASON];
+            for (int s = 0; s < n; s++) {
+                double[] datak = data[series[s]];
+                // the column means of the first Baseline days reshaped to 7 by Baseline / 7
+                for (int r = 0; r < SEASON; r++) {
+                    double sum = 0;
+                    for (int col = 0; col < Baseline / SEASON; col++) {
+                        sum += datak[col * SEASON + r];
+                    }
+                    sum /= Baseline / SEASON;
+                    c0[r] = Double.isNaN(sum) || Double.isInfinite(sum) ? 0 : sum;
+                }
+                double ck = mean(c0);
+                double m0 = ck;
+                alpha0[s] = detector.alpha[0];
+                alpha1[s] = detector.alpha[1];
+                alpha2[s] = detector.alpha[2];
+                if (bAutoCoef) {
+                    if (m0 < 1) {
+                        alpha0[s] = 0.05;
+                        alpha1[s] = 0;
+                        alpha2[s] = 0.1;
+                    } else if (m0 < 10) {
+                        alpha0[s] = 0.1;
+                        alpha1[s] = 0;
+                        alpha2[s] = 0.05;
+                    } else if (m0 < 100) {
+                        alpha0[s] = 0.15;
+                        alpha1[s] = 0;
+                        alpha2[s] = 0.05;
+                    } else {
+                        alpha0[s] = 0.4;
+                        alpha1[s] = 0;
+                        alpha2[s] = 0.05;
+                    }
+                }
+                for (int k = 0; k < SEASON; k++) {
+                    m[k][s] = m0;
+                    // c[7..13], copies of c[0..6]
+                    c[k][s] = max(c0[k] / ck, 0.01);
+                    cWeek2[k][s] = c[k][s];
+                }
+                b[s] = 0;
+                denom[s] = 0;
+                pvalues[s] = ones(length, -9999);
+                yPred[s] = ones(length, 0);
+            }
+
+            int ndxBaseline[] = new int[BASELINE], memList2[] = new int[SEASON];
+            double yBase[] = new double[BASELINE], cSeason[] = new double[SEASON];
+            int numBaseline = 14;
+            for (int i = 0; i < 14; i++) {
+                ndxBaseline[i] = i + 1;
+            }
+            for (int i = 2 * SEASON + GUARDBAND; i < length; i++) {
+                int now = i % SEASON, before = (i + SEASON - 1) % SEASON, weekBefore = (i + 1) % SEASON;
+                double[] mNow = m[now], mBefore = m[before], mWeekBefore = m[weekBefore];
+                double[] cNow = c[now], cWeekBefore = c[weekBefore], cWeek2Now = cWeek2[i % 7];
+                for (int s = 0; s < n; s++) {
+                    double[] datak = data[series[s]];
+                    double y = datak[i] + Adj;
+                    double cSeasonAgo = cNow[s];
+                    double multFac;
+                    if (HOL[holOffset[s] + i] == 1
+                        && !((y < (cWeekBefore[s] * mWeekBefore[s] + denom[s])
+                              && y > (cWeekBefore[s] * mWeekBefore[s] - denom[s])) || HOLfac == 1.0)) {
+                        multFac = HOLfac;
+                    } else {
+                        multFac = cSeasonAgo;
+                    }
+                    double mi = alpha0[s] * y / cSeasonAgo + (1 - alpha0[s]) * (mBefore[s] + b[s]);
+                    mi = max(mi, 0.5);
+                    double bi = alpha1[s] * (mi - mBefore[s]) + (1 - alpha1[s]) * b[s];
+                    double yPredi = max(multFac * (mi + GUARDBAND * bi), 0);
+                    double ci;
+                    if (mBefore[s] == 0) {
+                        ci = alpha2[s] * y + (1 - alpha2[s]) * cSeasonAgo;
+                    } else {
+                        ci = alpha2[s] * y / mBefore[s] + (1 - alpha2[s]) * cSeasonAgo;
+                    }
+                    cNow[s] = ci;
+
+                    // the baseline days on the same days of the week as those with similar seasonality
+                    for (int k = 0; k < SEASON; k++) {
+                        cSeason[k] = c[(i + 1 + k) % SEASON][s];
+                    }
+                    arrayAdd(cSeason, -ci);
+                    int numMem2 = findLT(arrayAbs(cSeason, SEASON, cSeason), SEASON, 0.1, memList2);
+                    arrayAdd(memList2, numMem2, i + 2);
+                    arrayMod(memList2, numMem2, 7, memList2);
+                    int numMem = 0;
+                    for (int k = 0; k < numBaseline; k++) {
+                        int day = ndxBaseline[k];
+                        if (HOL[holOffset[s] + day - 1] != 1 && isMember((day + 7) % 7, memList2, numMem2)) {
+                            yBase[numMem++] = datak[day - 1] + Adj;
+                        }
+                    }
+                    double denomi;
+                    if (numMem <= 4) {
+                        denomi = std(adjusted(datak, ndxBaseline, numBaseline, yBase, Adj), numBaseline);
+                    } else {
+                        denomi = std(yBase, numMem);
+                    }
+                    denomi = max(denomi, 0.5);
+                    if (ci < 0.05 || mi / mBefore[s] > 10) {
+                        mi = mBefore[s];
+                    }
+                    if (((abs(yPredi - y + Adj) / denomi > APE_LIMIT) && (y > cWeek2Now[s]
+                            * OpenMath.percentile(adjusted(datak, ndxBaseline, numBaseline, yBase, Adj),
+                                                  numBaseline, 95.0)))
+                        || HOL[holOffset[s] + i] == 1) {
+                        mi = mBefore[s];
+                        bi = b[s];
+                        cNow[s] = cSeasonAgo;
+                    }
+                    double testStat = (y - yPredi - Adj) / denomi;
+                    if ((y - Adj) == 0) {
+                        testStat = 0;
+                    }
+                    mNow[s] = mi;
+                    b[s] = bi;
+                    denom[s] = denomi;
+                    yPred[s][i] = yPredi;
+                    pvalues[s][i] = 1 - normcdf(testStat, 0, 1);
+                }
+                if (ndxBaseline[numBaseline - 1] < Baseline) {
+                    System.arraycopy(ndxBaseline, 0, ndxBaseline, 1, numBaseline);
+                    ndxBaseline[0] = 0;
+                    numBaseline++;
+                }
+                arrayAdd(ndxBaseline, numBaseline, 1);
+            }
+
+            for (int s = 0; s < n; s++) {
+                arrayAdd(yPred[s], -Adj);
+                double[] colors = new double[length];
+                DetectorHelper.postDetectionColorCoding(data[series[s]], pvalues[s], colors, detector.getRedLevel(),
+                                                        detector.getYellowLevel(), 0.5, false);
+                result.setSeries(series[s], pvalues[s], yPred[s], colors);
+            }
+        }
+
+        private static boolean isMember(int value, int[] set, int size) {
+            for (int k = 0; k < size; k++) {
+                if (set[k] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * The adjusted counts of the given days, y in {@link GSSages#calculate(State, int)}.
+         */
+        private static double[] adjusted(double[] datak, int[] days, int num, double[] out, double Adj) {
+            for (int k = 0; k < num; k++) {
+                out[k] = datak[days[k] - 1] + Adj;
+            }
+            return out;
+        }
+    }
+
+    /**
+     * The values carried from one day to the next at the start of the first day after the saved ones. Arrays that are
+     * only written on their own day are saved up to that day; the seasonal coefficients can be revised for the week
+     * before the current day, so they are copied when the state is taken.
+     */
+    private static class State extends DetectorState {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double alpha[];
+        private final boolean bSparseFlag;
+        private final double datakrMedian, Sigma;
+        private final int ndxBaseline[];
+        private final double m[], b[], c[], denom[], y_Pred[], pvalues[], test_stat[];
+
+        State(GSSages detector, int length, double m[], double b[], double c[], double denom[], double y_Pred[],
+              int ndxBaseline[], int numBaseline, boolean bSparseFlag, double datakrMedian, double Sigma) {
+            super(detector, detector.startDate, detector.data, length);
+            this.alpha = detector.alpha.clone();
+            this.bSparseFlag = bSparseFlag;
+            this.datakrMedian = datakrMedian;
+            this.Sigma = Sigma;
+            this.ndxBaseline = Arrays.copyOf(ndxBaseline, numBaseline);
+            this.m = prefix(m, length);
+            this.b = prefix(b, length);
+            this.c = prefix(c, length);
+            this.denom = prefix(denom, length);
+            this.y_Pred = prefix(y_Pred, length);
+            this.pvalues = prefix(detector.pvalues, length);
+            this.test_stat = prefix(detector.test_stat, length);
+        }
+
+        void restore(GSSages detector, double m[], double b[], double c[], double denom[], double y_Pred[]) {
+            restore(this.m, m);
+            restore(this.b, b);
+            restore(this.c, c);
+            restore(this.denom, denom);
+            restore(this.y_Pred, y_Pred);
+            restore(pvalues, detector.pvalues);
+            restore(test_stat, detector.test_stat);
+        }
+    }
+
     /**
      * @param bautocoef
      */
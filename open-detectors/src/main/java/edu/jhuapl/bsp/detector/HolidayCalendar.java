@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import de.jollyday.HolidayManager;
+
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holiday flags for a span of days, computed once and shared read-only by every series that falls inside the span.
+ * Series in a batch, or in the chunks of a batch running on other threads, usually cover the same dates, so the most
+ * recent calendar is kept and handed to any caller whose days it covers.
+ */
+public final class HolidayCalendar {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private static final AtomicReference<HolidayCalendar> last = new AtomicReference<HolidayCalendar>();
+
+    private final HolidayManager holidayManager;
+    private final TimeZone timeZone;
+    private final long firstDay;
+    private final int[] holidays;
+
+    private HolidayCalendar(HolidayManager holidayManager, TimeZone timeZone, Date startDate, int numberOfDays) {
+        this.holidayManager = holidayManager;
+        this.timeZone = timeZone;
+        this.firstDay = day(timeZone, startDate);
+        this.holidays = HolidayChecker.getHolidays(startDate, numberOfDays, holidayManager);
+    }
+
+    /**
+     * @return a calendar covering numberOfDays days from startDate
+     */
+    public static HolidayCalendar forRange(HolidayManager holidayManager, Date startDate, int numberOfDays) {
+        TimeZone timeZone = TimeZone.getDefault();
+        HolidayCalendar calendar = last.get();
+        if (calendar == null || !calendar.covers(holidayManager, timeZone, startDate, numberOfDays)) {
+            calendar = new HolidayCalendar(holidayManager, timeZone, startDate, numberOfDays);
+            last.set(calendar);
+        }
+        return calendar;
+    }
+
+    /**
+     * @return a calendar covering every series, each data[i].length days from startDates[i]
+     */
+    public static HolidayCalendar forBatch(HolidayManager holidayManager, double[][] data, Date[] startDates) {
+        TimeZone timeZone = TimeZone.getDefault();
+        Date first = null;
+        long firstDay = 0, endDay = 0;
+        for (int i = 0; i < data.length; i++) {
+            long day = day(timeZone, startDates[i]);
+            if (first == null || day < firstDay) {
+                first = startDates[i];
+                firstDay = day;
+            }
+            endDay = Math.max(endDay, day + data[i].length);
+        }
+        return first == null ? null : forRange(holidayManager, first, (int) (Math.max(endDay, firstDay) - firstDay));
+    }
+
+    /**
+     * @return whether this calendar has flags for numberOfDays days from startDate
+     */
+    public boolean covers(HolidayManager holidayManager, Date startDate, int numberOfDays) {
+        return covers(holidayManager, TimeZone.getDefault(), startDate, numberOfDays);
+    }
+
+    private boolean covers(HolidayManager holidayManager, TimeZone timeZone, Date startDate, int numberOfDays) {
+        if (this.holidayManager != holidayManager || !this.timeZone.equals(timeZone)) {
+            return false;
+        }
+        long offset = day(timeZone, startDate) - firstDay;
+        return offset >= 0 && offset + numberOfDays <= holidays.length;
+    }
+
+    /**
+     * @return the index into {@link #getHolidays()} of the day containing date
+     */
+    public int offsetOf(Date date) {
+        return (int) (day(timeZone, date) - firstDay);
+    }
+
+    /**
+     * @return 1 for each holiday and 0 otherwise, from the first day of the calendar; shared, so must not be modified
+     */
+    public int[] getHolidays() {
+        return holidays;
+    }
+
+    /**
+     * @return the number of local days from the epoch to the day containing date
+     */
+    private static long day(TimeZone timeZone, Date date) {
+        long local = date.getTime() + timeZone.getOffset(date.getTime());
+        long day = local / MILLIS_PER_DAY;
+        return local < 0 && day * MILLIS_PER_DAY != local ? day - 1 : day;
+    }
+}
@@ -33,7 +33,6 @@ import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 
 import static java.lang.Math.log;
 import static java.lang.Math.pow;
@@ -41,17 +40,28 @@ import static java.lang.Math.pow;
 //
 public class OpenMath {
 
+    // cumulativeProbability() is stateless, so one instance can be shared; constructing a distribution seeds a
+    // random generator, which is far more expensive than the lookup itself
+    private static final NormalDistribution STANDARD_NORMAL = new NormalDistribution(0, 1);
+
     /* Simulates MATLAB any() function. Will return true if any value in the
      * input array is non-zero.
      * @param in
      * @return true if a non-zero value is found
      */
     public static boolean any(double[] in) {
-        if (in != null) {
-            for (int i = 0; i < in.length; i++) {
-                if (in[i] != 0) {
-                    return true;
-                }
+        return in != null && any(in, in.length);
+    }
+
+    /* Same as any(double[]) over the first n values of the input array.
+     * @param in
+     * @param n
+     * @return true if a non-zero value is found
+     */
+    public static boolean any(double[] in, int n) {
+        for (int i = 0; i < n; i++) {
+            if (in[i] != 0) {
+                return true;
             }
         }
         return false;
@@ -73,6 +83,20 @@ public class OpenMath {
         return new double[0];
     }
 
+    /* Calculates the abs of the first n values of the input vector into out.
+     * in and out may be the same array.
+     * @param in
+     * @param n
+     * @param out
+     * @return out
+     */
+    public static double[] arrayAbs(double[] in, int n, double[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = Math.abs(in[i]);
+        }
+        return out;
+    }
+
     /* Calculates the sum of the values in the input list.
      * @param in
      *           input data
@@ -172,12 +196,24 @@ public class OpenMath {
      * @return default is 0
      */
     public static double mean(double[] in) {
-        if (in != null && in.length > 0) {
+        if (in != null) {
+            return mean(in, in.length);
+        }
+        return 0;
+    }
+
+    /* Calculates the average of the first n values of the input array.
+     * @param in
+     * @param n
+     * @return default is 0
+     */
+    public static double mean(double[] in, int n) {
+        if (n > 0) {
             double sum = 0;
-            for (int i = 0; i < in.length; i++) {
+            for (int i = 0; i < n; i++) {
                 sum += in[i];
             }
-            double result = sum / in.length;
+            double result = sum / n;
             if (Double.isNaN(result) || Double.isInfinite(result)) {
                 return 0;
             } else {
@@ -295,13 +331,25 @@ public class OpenMath {
      * @return default is 0
      */
     public static double std(double[] in) {
-        if (in != null && in.length > 1) {
+        if (in != null) {
+            return std(in, in.length);
+        }
+        return 0.0;
+    }
+
+    /* Calculate the standard deviation of the first n values of the list
+     * @param in
+     * @param n
+     * @return default is 0
+     */
+    public static double std(double[] in, int n) {
+        if (n > 1) {
             double sum = 0;
-            double avg = OpenMath.mean(in);
-            for (int i = 0; i < in.length; i++) {
+            double avg = OpenMath.mean(in, n);
+            for (int i = 0; i < n; i++) {
                 sum += ((in[i] - avg) * (in[i] - avg));
             }
-            double stddev = Math.sqrt(sum / (in.length - 1));
+            double stddev = Math.sqrt(sum / (n - 1));
             if (Double.isNaN(stddev) || Double.isInfinite(stddev)) {
                 return 0;
             } else {
@@ -317,27 +365,31 @@ public class OpenMath {
      */
     public static double median(double[] in) {
         if (in != null) {
-            if (in.length > 0) {
-                double[] d = new double[in.length];
-                for (int i = 0; i < in.length; i++) {
-                    d[i] = in[i];
-                }
-                Arrays.sort(d);
-                Double median = null;
-                int index = (int) Math.ceil(d.length / 2);
-                if ((d.length & 1) == 1) {
-                    median = new Double(d[index]);
-                } else {
-                    median = new Double((d[index] + d[index - 1]) / 2.0);
-                }
-                if (median.isNaN() || median.isInfinite()) {
-                    return 0.0;
-                } else {
-                    return median.doubleValue();
-                }
+            return median(Arrays.copyOf(in, in.length), in.length);
+        }
+        return 0.0;
+    }
+
+    /* Same as median(double[]) for the first n values of the input, which
+     * are sorted in place.
+     * @param in
+     * @param n
+     * @return default is 0
+     */
+    public static double median(double[] in, int n) {
+        if (n > 0) {
+            Arrays.sort(in, 0, n);
+            int index = n / 2;
+            double median;
+            if ((n & 1) == 1) {
+                median = in[index];
             } else {
+                median = (in[index] + in[index - 1]) / 2.0;
+            }
+            if (Double.isNaN(median) || Double.isInfinite(median)) {
                 return 0.0;
             }
+            return median;
         }
         return 0.0;
     }
@@ -364,6 +416,24 @@ public class OpenMath {
         return new int[0];
     }
 
+    /* Same as findLT(double[], double) over the first n values of d, writing
+     * the indices into out.
+     * @param d
+     * @param n
+     * @param value
+     * @param out must hold at least n indices
+     * @return number of indices written
+     */
+    public static int findLT(double[] d, int n, double value, int[] out) {
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (d[i] < value) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+
     /* Simulates MATLAB find( v > 0 ) function. Returns a list of indices.
      * @param d
      * @return array of indices for those non zero elements
@@ -406,6 +476,23 @@ public class OpenMath {
         return new int[0];
     }
 
+    /* Same as find(int[]) over the first n values of d, writing the indices
+     * into out.
+     * @param d
+     * @param n
+     * @param out must hold at least n indices
+     * @return number of indices written
+     */
+    public static int find(int[] d, int n, int[] out) {
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (d[i] > 0) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+
     /* Simulates the MATLAB feature where values can be extracted from a set by
      * being passed in a set of indicies via an array.
      * @param d
@@ -423,6 +510,21 @@ public class OpenMath {
         return new double[0];
     }
 
+    /* Same as dataInd_js(double[], int[]) for the first n indices, writing
+     * the values into out.
+     * @param d
+     * @param i
+     * @param n
+     * @param out
+     * @return out
+     */
+    public static double[] dataInd_js(double[] d, int[] i, int n, double[] out) {
+        for (int j = 0; j < n; j++) {
+            out[j] = d[i[j] - 1];
+        }
+        return out;
+    }
+
     /* Simulates the MATLAB feature where values can be extracted from a set by
      * being passed in a set of indicies via an array.
      * @param d
@@ -440,6 +542,21 @@ public class OpenMath {
         return new int[0];
     }
 
+    /* Same as dataInd_js(int[], int[]) for the first n indices, writing the
+     * values into out.
+     * @param d
+     * @param i
+     * @param n
+     * @param out
+     * @return out
+     */
+    public static int[] dataInd_js(int[] d, int[] i, int n, int[] out) {
+        for (int j = 0; j < n; j++) {
+            out[j] = d[i[j] - 1];
+        }
+        return out;
+    }
+
     /* Simulates the MATLAB feature where values can be extracted from a set by
      * being passed in a set of indicies via an array.
      * @param d
@@ -474,6 +591,21 @@ public class OpenMath {
         return new double[0];
     }
 
+    /* Same as dataInd(double[], int[]) for the first n indices, writing the
+     * values into out.
+     * @param d
+     * @param i
+     * @param n
+     * @param out
+     * @return out
+     */
+    public static double[] dataInd(double[] d, int[] i, int n, double[] out) {
+        for (int j = 0; j < n; j++) {
+            out[j] = d[i[j]];
+        }
+        return out;
+    }
+
     /* Simulates the MATLAB feature where values can be extracted from a set by
      * being passed in a set of indicies via an array.
      * @param d
@@ -491,6 +623,21 @@ public class OpenMath {
         return new int[0];
     }
 
+    /* Same as dataInd(int[], int[]) for the first n indices, writing the
+     * values into out.
+     * @param d
+     * @param i
+     * @param n
+     * @param out
+     * @return out
+     */
+    public static int[] dataInd(int[] d, int[] i, int n, int[] out) {
+        for (int j = 0; j < n; j++) {
+            out[j] = d[i[j]];
+        }
+        return out;
+    }
+
     /* Simulates the MATLAB feature where values can be set by indices
      * @param d
      * @param i1
@@ -508,6 +655,22 @@ public class OpenMath {
         return new double[0];
     }
 
+    /* Same as dataVec(double[], int, int), copying d[i1..i2] into out.
+     * @param d
+     * @param i1
+     * @param i2
+     * @param out
+     * @return number of values copied; 0 if the range is out of bounds
+     */
+    public static int dataVec(double[] d, int i1, int i2, double[] out) {
+        if (0 <= i1 && i2 < d.length) {
+            int n = i2 - i1 + 1;
+            System.arraycopy(d, i1, out, 0, n);
+            return n;
+        }
+        return 0;
+    }
+
     /* Simulates the MATLAB feature where values can be set by indices
      * @param d
      * @param i1
@@ -550,6 +713,21 @@ public class OpenMath {
         return new int[0];
     }
 
+    /* Same as arrayMod(int[], int) for the first n values, writing into out.
+     * d and out may be the same array.
+     * @param d
+     * @param n
+     * @param x
+     * @param out
+     * @return out
+     */
+    public static int[] arrayMod(int[] d, int n, int x, int[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = (d[i] + x) % x;
+        }
+        return out;
+    }
+
     /* Simulates MATLAB array addition capability.
      * @param d
      * @param x
@@ -570,6 +748,17 @@ public class OpenMath {
         }
     }
 
+    /* Simulates MATLAB array addition capability on the first n values.
+     * @param d
+     * @param n
+     * @param x
+     */
+    public static void arrayAdd(int[] d, int n, int x) {
+        for (int i = 0; i < n; i++) {
+            d[i] += x;
+        }
+    }
+
     /* Simulates MATLAB array addition capability.
      * @param d
      * @param x
@@ -727,7 +916,7 @@ public class OpenMath {
      */
     public static double normcdf(double stat, double m, double s) {
         double result = 0;
-        NormalDistribution normdist = new NormalDistribution(m, s);
+        NormalDistribution normdist = (m == 0 && s == 1) ? STANDARD_NORMAL : new NormalDistribution(m, s);
         result = normdist.cumulativeProbability(stat);
         return result;
     }
@@ -750,33 +939,60 @@ public class OpenMath {
         return r;
     }
 
+    /* Same as ismember(int[], int[]) for the first n values of A and the
+     * first m values of B, writing into out.
+     * @return out
+     */
+    public static int[] ismember(int[] A, int n, int[] B, int m, int[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = 0;
+            for (int j = 0; j < m; j++) {
+                if (A[i] == B[j]) {
+                    out[i] = 1;
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
     public static double percentile(double[] x, double p) {
-        ArrayList<Double> intermediate = new ArrayList<Double>(x.length);
-        for (int i = 0; i < x.length; i++) {
+        return percentile(Arrays.copyOf(x, x.length), x.length, p);
+    }
+
+    /* Same as percentile(double[], double) for the first n values of x.
+     * The finite values are moved to the front of x and sorted in place.
+     * @param x
+     * @param n
+     * @param p
+     * @return the interpolated percentile
+     */
+    public static double percentile(double[] x, int n, double p) {
+        int len = 0;
+        for (int i = 0; i < n; i++) {
             if (!Double.isInfinite(x[i]) && !Double.isNaN(x[i])) {
-                intermediate.add(x[i]);
+                x[len++] = x[i];
             }
         }
-        Iterator<Double> iter = intermediate.iterator();
-        double[] xcopy = new double[intermediate.size()];
-        int index = 0;
-        while (iter.hasNext()) {
-            xcopy[index] = iter.next();
-            index++;
-        }
-        Arrays.sort(xcopy);
-        double minprctile = 100 * ((.5) / xcopy.length), maxprctile = 100 * ((xcopy.length - .5) / xcopy.length);
+        Arrays.sort(x, 0, len);
+        double minprctile = 100 * ((.5) / len), maxprctile = 100 * ((len - .5) / len);
         if (p >= maxprctile) {
-            return xcopy[xcopy.length - 1];
+            return x[len - 1];
         } else if (p <= minprctile) {
-            return xcopy[0];
+            return x[0];
         }
-        double[] xprctile = new double[xcopy.length];
-        for (int i = 0; i < xprctile.length; i++) {
-            xprctile[i] = 100 * (((xprctile.length - (xprctile.length - i - 1)) - .5) / xprctile.length);
+        // the linear interpolation between the points (100 * (i + 0.5) / len, x[i])
+        for (int i = 0; i < len - 1; i++) {
+            double p0 = 100 * (((i + 1) - .5) / len), p1 = 100 * (((i + 2) - .5) / len);
+            if (p == p0) {
+                return x[i];
+            } else if (p == p1) {
+                return x[i + 1];
+            } else if (p > p0 && p < p1) {
+                return x[i] + (p - p0) * ((x[i + 1] - x[i]) / (p1 - p0));
+            }
         }
-        LinearInterpolation LI = new LinearInterpolation(xprctile, xcopy);
-        return LI.interpolatedValue(p);
+        return -9999;
     }
 
     public static void main(String[] args) {
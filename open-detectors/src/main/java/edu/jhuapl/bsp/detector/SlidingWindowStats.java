@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+/**
+ * Mean and sample standard deviation of a fixed-size window sliding forward over a data array, updated in constant
+ * time per step. The running sums are kept relative to a shift value so that large counts do not lose precision, and
+ * are recomputed from the window every {@link #RENORMALIZE_INTERVAL} steps to stop rounding error from accumulating.
+ */
+public final class SlidingWindowStats {
+
+    static final int RENORMALIZE_INTERVAL = 1024;
+
+    private final double[] data;
+    private final int size;
+    private int start;
+    private int steps;
+    private double shift;
+    private double sum;
+    private double sumSq;
+
+    /**
+     * @param data  data array from first day to last, no interuptions
+     * @param size  number of values in the window
+     * @param start index of the first value of the initial window
+     */
+    public SlidingWindowStats(double[] data, int size, int start) {
+        if (size < 1 || start < 0 || start + size > data.length) {
+            throw new IllegalArgumentException(
+                    "Window of " + size + " at " + start + " does not fit in " + data.length + " values");
+        }
+        this.data = data;
+        this.size = size;
+        this.start = start;
+        renormalize();
+    }
+
+    /**
+     * Moves the window forward by one value.
+     */
+    public void advance() {
+        if (start + size >= data.length) {
+            throw new IllegalStateException("Window is already at the end of the data");
+        }
+        double out = data[start] - shift;
+        double in = data[start + size] - shift;
+        start++;
+        if (++steps >= RENORMALIZE_INTERVAL || Double.isNaN(sum) || Double.isInfinite(sum)) {
+            renormalize();
+        } else {
+            sum += in - out;
+            sumSq += in * in - out * out;
+        }
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Same as {@link Ears#getAverage(java.util.ArrayList)} over the current window.
+     */
+    public double getMean() {
+        double average = shift + sum / size;
+        if (Double.isNaN(average) || Double.isInfinite(average)) {
+            return 0;
+        }
+        return average;
+    }
+
+    /**
+     * Same as {@link Ears#getStdDev(java.util.ArrayList)} over the current window.
+     */
+    public double getStdDev() {
+        double variance = (sumSq - sum * sum / size) / (size - 1);
+        if (variance < 0) {
+            // cancellation can leave a tiny negative value for a constant window
+            variance = 0;
+        }
+        double stddev = Math.sqrt(variance);
+        if (Double.isNaN(stddev) || Double.isInfinite(stddev)) {
+            return 0;
+        }
+        return stddev;
+    }
+
+    private void renormalize() {
+        steps = 0;
+        shift = data[start];
+        if (Double.isNaN(shift) || Double.isInfinite(shift)) {
+            shift = 0;
+        }
+        sum = 0;
+        sumSq = 0;
+        for (int i = start; i < start + size; i++) {
+            double value = data[i] - shift;
+            sum += value;
+            sumSq += value * value;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared Student-t lookups for the detectors. Constructing a {@link TDistribution} seeds a random generator and
+ * inverting its CDF runs a root search, both far more expensive than the detectors' own arithmetic, so one instance
+ * is kept per degree of freedom and every quantile is computed once per (degrees of freedom, probability) pair. The
+ * caches are filled lazily and are safe to use from any thread.
+ */
+public final class StudentT {
+
+    private static final ConcurrentMap<Integer, TDistribution> distributions =
+            new ConcurrentHashMap<Integer, TDistribution>();
+    private static final ConcurrentMap<Quantile, Double> quantiles = new ConcurrentHashMap<Quantile, Double>();
+
+    private StudentT() {
+    }
+
+    /**
+     * @param degFreedom degrees of freedom, at least 1
+     * @param x          the point at which the CDF is evaluated
+     * @return P(X <= x)
+     */
+    public static double cumulativeProbability(int degFreedom, double x) {
+        return distribution(degFreedom).cumulativeProbability(x);
+    }
+
+    /**
+     * @param degFreedom degrees of freedom, at least 1
+     * @param p          the cumulative probability, in [0, 1]
+     * @return the x for which P(X <= x) = p
+     */
+    public static double inverseCumulativeProbability(int degFreedom, double p) {
+        Quantile key = new Quantile(degFreedom, p);
+        Double value = quantiles.get(key);
+        if (value == null) {
+            value = distribution(degFreedom).inverseCumulativeProbability(p);
+            quantiles.putIfAbsent(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Upper-tail critical values for 1 through {@code maxDegFreedom} degrees of freedom.
+     *
+     * @param maxDegFreedom the largest degrees of freedom in the table
+     * @param pvalue        the one-sided tail probability
+     * @return a new array whose element k is the quantile at 1 - pvalue for k + 1 degrees of freedom
+     */
+    public static double[] upperCriticalValues(int maxDegFreedom, double pvalue) {
+        double[] values = new double[maxDegFreedom];
+        for (int k = 0; k < maxDegFreedom; k++) {
+            values[k] = inverseCumulativeProbability(k + 1, 1 - pvalue);
+        }
+        return values;
+    }
+
+    private static TDistribution distribution(int degFreedom) {
+        TDistribution tdist = distributions.get(degFreedom);
+        if (tdist == null) {
+            // cumulativeProbability() and inverseCumulativeProbability() do not touch the random generator, so a
+            // single instance per degree of freedom can be shared between threads
+            tdist = new TDistribution(degFreedom);
+            TDistribution existing = distributions.putIfAbsent(degFreedom, tdist);
+            if (existing != null) {
+                tdist = existing;
+            }
+        }
+        return tdist;
+    }
+
+    private static final class Quantile {
+
+        private final int degFreedom;
+        private final double p;
+
+        Quantile(int degFreedom, double p) {
+            this.degFreedom = degFreedom;
+            this.p = p;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Quantile)) {
+                return false;
+            }
+            Quantile other = (Quantile) o;
+            return degFreedom == other.degFreedom
+                   && Double.doubleToLongBits(p) == Double.doubleToLongBits(other.p);
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(p);
+            return 31 * degFreedom + (int) (bits ^ (bits >>> 32));
+        }
+    }
+}
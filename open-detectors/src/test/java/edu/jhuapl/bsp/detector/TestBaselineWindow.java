@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestBaselineWindow extends TestCase {
+
+    public void testSlidingMatchesFilterBaselineZeros() {
+        assertSlidingMatches(TestFilterBaselineZeros.vec1, 28);
+        assertSlidingMatches(TestFilterBaselineZeros.vec2, 28);
+        assertSlidingMatches(TestFilterBaselineZeros.vec1, 7);
+    }
+
+    public void testGrowingMatchesFilterBaselineZeros() {
+        double[] data = TestFilterBaselineZeros.vec1;
+        BaselineWindow window = new BaselineWindow(28);
+        window.moveTo(data, 0, 2);
+        assertMatches(data, window);
+        while (window.getSize() < 28) {
+            window.extend();
+            assertMatches(data, window);
+        }
+    }
+
+    public void testLongSparseSeries() {
+        Random random = new Random(42);
+        double[] data = new double[5000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt(4) == 0 ? random.nextInt(20) : 0;
+        }
+        assertSlidingMatches(data, 28);
+
+        // medians of the nonzero values either side of the zero filter's cutoff
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt(3) == 0 ? 1 + random.nextInt(8) : 0;
+        }
+        assertSlidingMatches(data, 28);
+        assertSlidingMatches(data, 27);
+    }
+
+    public void testMoveToMatchesAdvancing() {
+        double[] data = TestFilterBaselineZeros.vec2;
+        BaselineWindow walked = new BaselineWindow(28);
+        BaselineWindow moved = new BaselineWindow(28);
+        walked.moveTo(data, 0, 28);
+        for (int start = 1; start + 28 <= data.length; start++) {
+            walked.advance();
+            moved.moveTo(data, start, 28);
+            walked.filterZeros();
+            moved.filterZeros();
+            assertEquals(walked.getCount(), moved.getCount());
+            assertEquals(walked.getMean(), moved.getMean(), 0.0);
+            assertEquals(walked.getStdDev(), moved.getStdDev(), 0.0);
+        }
+    }
+
+    private void assertSlidingMatches(double[] data, int size) {
+        BaselineWindow window = new BaselineWindow(size);
+        window.moveTo(data, 0, size);
+        assertMatches(data, window);
+        while (window.getStart() + size < data.length) {
+            window.advance();
+            assertMatches(data, window);
+        }
+    }
+
+    private void assertMatches(double[] data, BaselineWindow window) {
+        double[] values = Arrays.copyOfRange(data, window.getStart(), window.getStart() + window.getSize());
+        assertEquals(FilterBaselineZeros3.filterBaselineZerosTest(values), window.needsZeroFilter());
+        assertEquals(OpenMath.mean(values), window.getMean(), 0.0);
+        assertEquals(OpenMath.std(values), window.getStdDev(), 0.0);
+
+        double[] filtered = OpenMath.dataInd(values, new FilterBaselineZeros3().filterBaselineZeros(values));
+        window.filterZeros();
+        assertEquals(filtered.length, window.getCount());
+        assertEquals(OpenMath.mean(filtered), window.getMean(), 0.0);
+        assertEquals(OpenMath.std(filtered), window.getStdDev(), 0.0);
+        int zeros = 0;
+        for (double value : filtered) {
+            if (value == 0) {
+                zeros++;
+            }
+        }
+        assertEquals(zeros, window.getZeroCount());
+        window.keepAll();
+    }
+}
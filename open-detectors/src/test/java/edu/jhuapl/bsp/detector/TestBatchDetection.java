@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import de.jollyday.HolidayManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class TestBatchDetection extends TestCase {
+
+    private double[][] data;
+    private Date[] startDates;
+
+    @Override
+    protected void setUp() throws Exception {
+        Calendar cal = Calendar.getInstance();
+        cal.set(2007, Calendar.JANUARY, 10);
+        Date start = cal.getTime();
+        cal.add(Calendar.DATE, 3);
+        Date laterStart = cal.getTime();
+
+        data = new double[][]{TestGSSages.vec1, TestGSSages.vec2, TestGSSages.vec3, TestGSSages.vec2,
+                              TestGSSages.vec1, TestGSSages.vec3, TestGSSages.vec1};
+        startDates = new Date[]{start, start, start, laterStart, laterStart, start, start};
+    }
+
+    public void testBatchMatchesSingleSeries() {
+        HolidayManager holidayManager = HolidayManager.getInstance(getClass().getResource("/Holidays_2.xml"));
+        assertBatchMatches(new GSSages(holidayManager), new GSSages(holidayManager));
+        assertBatchMatches(new EWMASagesDetector(), new EWMASagesDetector());
+        assertBatchMatches(new CusumSagesDetector(), new CusumSagesDetector());
+        assertBatchMatches(new EarsC3(), new EarsC3());
+    }
+
+    public void testGSSagesStrataMatchSingleSeries() {
+        // all positive, so these are stepped together; different levels pick different smoothing coefficients
+        Random random = new Random(11);
+        Calendar cal = Calendar.getInstance();
+        cal.set(2006, Calendar.NOVEMBER, 20);
+        int[] lengths = {400, 400, 400, 120, 400, 120, 400, 400};
+        double[] levels = {0.5, 3, 40, 8, 250, 60, 15, 900};
+        data = new double[lengths.length + 1][];
+        startDates = new Date[data.length];
+        for (int s = 0; s < lengths.length; s++) {
+            data[s] = new double[lengths[s]];
+            for (int i = 0; i < lengths[s]; i++) {
+                // weekly pattern, noise and the odd spike
+                double mean = levels[s] * (i % 7 < 5 ? 1.2 : 0.5) + (random.nextInt(50) == 0 ? 5 * levels[s] : 0);
+                data[s][i] = Math.max(0.25, mean + random.nextGaussian() * Math.sqrt(mean));
+            }
+            startDates[s] = cal.getTime();
+            cal.add(Calendar.DATE, s % 3);
+        }
+        // with zeros, so run on its own between the others
+        data[lengths.length] = TestGSSages.vec1;
+        startDates[lengths.length] = cal.getTime();
+
+        HolidayManager holidayManager = HolidayManager.getInstance(getClass().getResource("/Holidays_2.xml"));
+        assertBatchMatches(new GSSages(holidayManager), new GSSages(holidayManager));
+    }
+
+    public void testThresholdChangeBetweenBatches() {
+        EWMASagesDetector detector = new EWMASagesDetector();
+        detector.runBatch(data, startDates, "daily");
+        detector.setYellowLevel(0.1);
+
+        EWMASagesDetector fresh = new EWMASagesDetector();
+        fresh.setYellowLevel(0.1);
+        assertBatchMatches(fresh, detector);
+    }
+
+    public void testParallelRunnerMatchesSingleSeries() {
+        BatchDetectionRunner runner = new BatchDetectionRunner(new DetectorRegistry(), new ForkJoinPool(3));
+        try {
+            BatchDetectionResult result = runner.run(EWMASagesDetector.class.getName(), data, startDates, "daily");
+            assertMatches(new EWMASagesDetector(), result);
+
+            result = runner.run(EarsC1.class.getName(), data, startDates, "daily");
+            assertMatches(new EarsC1(), result);
+        } finally {
+            runner.shutdown();
+        }
+    }
+
+    public void testTimeResolutionSetOnEachSeries() {
+        final List<String> resolutions = new ArrayList<String>();
+        new EarsC1() {
+            @Override
+            public void runDetector(TemporalDetectorDataInterface tddi) {
+                resolutions.add(((TemporalDetectorSimpleDataObject) tddi).getTimeResolution());
+                super.runDetector(tddi);
+            }
+        }.runBatch(data, startDates, "weekly");
+        assertEquals(Collections.nCopies(data.length, "weekly"), resolutions);
+
+        // vec1 has zeros, so GSSages runs it on its own
+        resolutions.clear();
+        HolidayManager holidayManager = HolidayManager.getInstance(getClass().getResource("/Holidays_2.xml"));
+        new GSSages(holidayManager) {
+            @Override
+            public void runDetector(TemporalDetectorDataInterface tddi) {
+                resolutions.add(((TemporalDetectorSimpleDataObject) tddi).getTimeResolution());
+                super.runDetector(tddi);
+            }
+        }.runBatch(new double[][]{TestGSSages.vec1}, new Date[]{startDates[0]}, "weekly");
+        assertEquals(Collections.singletonList("weekly"), resolutions);
+    }
+
+    public void testMismatchedStartDates() {
+        try {
+            new EarsC1().runBatch(data, new Date[1], "daily");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private void assertBatchMatches(TemporalDetector single, BatchTemporalDetector batch) {
+        assertMatches(single, batch.runBatch(data, startDates, "daily"));
+    }
+
+    private void assertMatches(TemporalDetector single, BatchDetectionResult result) {
+        assertEquals(data.length, result.size());
+        for (int i = 0; i < data.length; i++) {
+            double[][] expected = single.runDetector(data[i], startDates[i]);
+            assertTrue(Arrays.equals(expected[0], result.getLevels()[i]));
+            assertTrue(Arrays.equals(expected[1], result.getExpecteds()[i]));
+            assertTrue(Arrays.equals(expected[2], result.getColors()[i]));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+public class TestDetectorRegistry extends TestCase {
+
+    public void testReturnedDetectorIsReused() {
+        DetectorRegistry registry = new DetectorRegistry();
+        TemporalDetectorInterface first = registry.borrowDetector(EarsC1.class.getName());
+        TemporalDetectorInterface second = registry.borrowDetector(EarsC1.class.getName());
+        assertNotSame(first, second);
+
+        registry.returnDetector(first);
+        assertSame(first, registry.borrowDetector(EarsC1.class.getName()));
+    }
+
+    public void testThresholdsAreRestoredOnReturn() {
+        DetectorRegistry registry = new DetectorRegistry();
+        TemporalDetectorInterface detector = registry.borrowDetector(EarsC1.class.getName());
+        double red = detector.getRedLevel();
+        double yellow = detector.getYellowLevel();
+
+        detector.setRedLevel(red + 10);
+        detector.setYellowLevel(yellow + 10);
+        registry.returnDetector(detector);
+
+        assertSame(detector, registry.borrowDetector(EarsC1.class.getName()));
+        assertEquals(red, detector.getRedLevel(), 0);
+        assertEquals(yellow, detector.getYellowLevel(), 0);
+    }
+
+    public void testPooledDetectorMatchesFreshDetector() {
+        Calendar cal = Calendar.getInstance();
+        cal.set(2012, Calendar.JANUARY, 1);
+        Date startDate = cal.getTime();
+
+        DetectorRegistry registry = new DetectorRegistry();
+        TemporalDetectorInterface pooled = registry.borrowDetector(EWMASagesDetector.class.getName());
+        ((TemporalDetector) pooled).runDetector(TestEarsC1.vec1, startDate);
+        registry.returnDetector(pooled);
+        pooled = registry.borrowDetector(EWMASagesDetector.class.getName());
+
+        double[][] expected = new EWMASagesDetector().runDetector(TestEarsC1.vec1, startDate);
+        double[][] actual = ((TemporalDetector) pooled).runDetector(TestEarsC1.vec1, startDate);
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(Arrays.equals(expected[i], actual[i]));
+        }
+    }
+
+    public void testUnknownDetector() {
+        DetectorRegistry registry = new DetectorRegistry();
+        try {
+            registry.borrowDetector("edu.jhuapl.bsp.detector.NoSuchDetector");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            registry.borrowDetector(String.class.getName());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testPoolingDisabled() {
+        DetectorRegistry registry = new DetectorRegistry(0);
+        TemporalDetectorInterface detector = registry.borrowDetector(EarsC1.class.getName());
+        registry.returnDetector(detector);
+        assertNotSame(detector, registry.borrowDetector(EarsC1.class.getName()));
+    }
+}
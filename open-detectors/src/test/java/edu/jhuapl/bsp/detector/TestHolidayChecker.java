@@ -34,6 +34,8 @@ import java.util.Calendar;
 import java.util.Date;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TestHolidayChecker {
 
@@ -157,4 +159,27 @@ public class TestHolidayChecker {
                           0, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
         assertArrayEquals(expected, HolidayChecker.getHolidays(date, 992, holidayManager));
     }
+
+    @Test
+    public void testCalendarCoversBatch() {
+        HolidayManager holidayManager = HolidayManager.getInstance(getClass().getResource("/Holidays_2.xml"));
+        Calendar cal = Calendar.getInstance();
+        cal.set(2000, Calendar.JANUARY, 1);
+        Date first = cal.getTime();
+        cal.add(Calendar.DATE, 45);
+        Date later = cal.getTime();
+
+        HolidayCalendar calendar =
+                HolidayCalendar.forBatch(holidayManager, new double[][]{new double[400], new double[500]},
+                                         new Date[]{later, first});
+        assertTrue(calendar.covers(holidayManager, first, 500));
+        assertTrue(calendar.covers(holidayManager, later, 400));
+        assertSame(calendar, HolidayCalendar.forRange(holidayManager, later, 300));
+        for (Date start : new Date[]{first, later}) {
+            int offset = calendar.offsetOf(start);
+            int[] slice = new int[400];
+            System.arraycopy(calendar.getHolidays(), offset, slice, 0, slice.length);
+            assertArrayEquals(HolidayChecker.getHolidays(start, 400, holidayManager), slice);
+        }
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import de.jollyday.HolidayManager;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+public class TestIncrementalDetection extends TestCase {
+
+    private static final int[] SETTLED = {56, 57, 100, 500, 991};
+
+    private HolidayManager holidayManager;
+    private Date start;
+
+    @Override
+    protected void setUp() throws Exception {
+        holidayManager = HolidayManager.getInstance(getClass().getResource("/Holidays_2.xml"));
+        Calendar cal = Calendar.getInstance();
+        cal.set(2007, Calendar.JANUARY, 10);
+        start = cal.getTime();
+    }
+
+    public void testResumeMatchesFullRun() {
+        for (double[] series : new double[][]{TestGSSages.vec1, TestGSSages.vec2, TestGSSages.vec3}) {
+            assertResumeMatches(new GSSages(holidayManager), series);
+            assertResumeMatches(new EWMASagesDetector(), series);
+            assertResumeMatches(new CusumSagesDetector(), series);
+        }
+    }
+
+    public void testEditedHistoryRunsFullSeries() {
+        double[] series = TestGSSages.vec2;
+        GSSages detector = new GSSages(holidayManager);
+        DetectorState state = detector.runDetector(data(Arrays.copyOf(series, 300)), null, 300);
+
+        double[] edited = series.clone();
+        edited[120] += 5;
+        assertEquals(0, state.resumableLength(detector, edited, start));
+        assertResults(new GSSages(holidayManager).runDetector(edited, start), detector, edited, state);
+    }
+
+    public void testStateCoversSettledDays() {
+        CusumSagesDetector detector = new CusumSagesDetector();
+        DetectorState state = detector.runDetector(data(TestGSSages.vec1), null, 400);
+        assertEquals(400, state.getLength());
+        assertEquals(400, state.resumableLength(detector, TestGSSages.vec1, start));
+        assertEquals(0, state.resumableLength(new EWMASagesDetector(), TestGSSages.vec1, start));
+        assertEquals(0, state.resumableLength(detector, Arrays.copyOf(TestGSSages.vec1, 399), start));
+        assertNull(new GSSages(holidayManager).runDetector(data(TestGSSages.vec1), null, 20));
+    }
+
+    public void testMovedWindowDoesNotResume() {
+        double[] series = TestGSSages.vec3;
+        int moved = 30;
+        int length = 500;
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(start);
+        cal.add(Calendar.DATE, moved);
+        Date movedStart = cal.getTime();
+        for (TemporalDetector fresh : new TemporalDetector[]{new GSSages(holidayManager), new EWMASagesDetector(),
+                                                               new CusumSagesDetector()}) {
+            IncrementalTemporalDetector detector = (IncrementalTemporalDetector) fresh;
+            DetectorState state = detector.runDetector(data(Arrays.copyOf(series, length)), null, length - 1);
+            assertEquals(start, state.getStartDate());
+            double[] window = Arrays.copyOfRange(series, moved, moved + length);
+            assertEquals(0, state.resumableLength((TemporalDetectorInterface) fresh, window, movedStart));
+        }
+    }
+
+    public void testStateCache() {
+        DetectorStateCache cache = new DetectorStateCache(2);
+        CusumSagesDetector detector = new CusumSagesDetector();
+        DetectorState state = detector.runDetector(data(TestGSSages.vec1), null, 100);
+        cache.put("a", state);
+        cache.put("b", state);
+        cache.get("a");
+        cache.put("c", state);
+        assertEquals(2, cache.size());
+        assertSame(state, cache.get("a"));
+        assertNull(cache.get("b"));
+        cache.put("a", null);
+        assertNull(cache.get("a"));
+    }
+
+    private void assertResumeMatches(TemporalDetector fresh, double[] series) {
+        double[][] expected = fresh.runDetector(series, start);
+        IncrementalTemporalDetector detector = (IncrementalTemporalDetector) fresh;
+        for (int settled : SETTLED) {
+            DetectorState state = detector.runDetector(data(Arrays.copyOf(series, settled + 1)), null, settled);
+            assertEquals(settled, state.getLength());
+            assertEquals(settled, state.resumableLength((TemporalDetectorInterface) fresh, series, start));
+            assertResults(expected, detector, series, state);
+        }
+    }
+
+    private void assertResults(double[][] expected, IncrementalTemporalDetector detector, double[] series,
+                               DetectorState state) {
+        TemporalDetectorSimpleDataObject tddo = data(series);
+        DetectorState next = detector.runDetector(tddo, state, series.length - 1);
+        assertEquals(series.length - 1, next.getLength());
+        assertTrue(Arrays.equals(expected[0], tddo.getLevels()));
+        assertTrue(Arrays.equals(expected[1], tddo.getExpecteds()));
+        assertTrue(Arrays.equals(expected[2], tddo.getColors()));
+    }
+
+    private TemporalDetectorSimpleDataObject data(double[] counts) {
+        TemporalDetectorSimpleDataObject tddo = new TemporalDetectorSimpleDataObject();
+        tddo.setCounts(counts);
+        tddo.setStartDate(start);
+        return tddo;
+    }
+}
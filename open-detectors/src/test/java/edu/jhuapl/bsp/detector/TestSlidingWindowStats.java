@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class TestSlidingWindowStats extends TestCase {
+
+    public void testMatchesEarsHelpers() {
+        assertMatchesEars(TestEarsC1.vec1, 7);
+        assertMatchesEars(TestEarsC1.vec2, 7);
+        assertMatchesEars(TestEarsC1.vec3, 7);
+        assertMatchesEars(TestEarsC1.vec3, 1);
+    }
+
+    public void testLongSeriesWithLargeCounts() {
+        // long enough to cross several renormalizations
+        Random random = new Random(42);
+        double[] data = new double[5 * SlidingWindowStats.RENORMALIZE_INTERVAL];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 100000 + random.nextInt(5000) + random.nextDouble();
+        }
+        assertMatchesEars(data, 28);
+    }
+
+    public void testConstantWindowHasZeroDeviation() {
+        double[] data = {5, 5, 5, 5, 5, 5, 5, 5, 5, 5};
+        SlidingWindowStats window = new SlidingWindowStats(data, 7, 0);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(5.0, window.getMean(), 0.0);
+            assertEquals(0.0, window.getStdDev(), 0.0);
+            window.advance();
+        }
+    }
+
+    public void testWindowMustFit() {
+        try {
+            new SlidingWindowStats(new double[5], 7, 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        SlidingWindowStats window = new SlidingWindowStats(new double[7], 7, 0);
+        try {
+            window.advance();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static void assertMatchesEars(double[] data, int size) {
+        SlidingWindowStats window = new SlidingWindowStats(data, size, 0);
+        for (int start = 0; start + size <= data.length; start++) {
+            if (start > 0) {
+                window.advance();
+            }
+            ArrayList<Double> list = new ArrayList<Double>();
+            for (int j = start; j < start + size; j++) {
+                list.add(data[j]);
+            }
+            assertEquals(start, window.getStart());
+            assertEquals(Ears.getAverage(list), window.getMean(), 1e-9);
+            assertEquals(Ears.getStdDev(list), window.getStdDev(), 1e-9);
+        }
+    }
+}
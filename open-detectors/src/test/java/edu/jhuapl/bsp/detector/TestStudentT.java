@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.bsp.detector;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+import junit.framework.TestCase;
+
+public class TestStudentT extends TestCase {
+
+    public void testMatchesCommonsMath() {
+        for (int df = 1; df <= 30; df++) {
+            TDistribution tdist = new TDistribution(df);
+            for (double p : new double[]{0.5, 0.9, 0.95, 0.99}) {
+                assertEquals(tdist.inverseCumulativeProbability(p), StudentT.inverseCumulativeProbability(df, p), 0.0);
+            }
+            for (double x = -4.0; x <= 4.0; x += 0.5) {
+                assertEquals(tdist.cumulativeProbability(x), StudentT.cumulativeProbability(df, x), 0.0);
+            }
+        }
+    }
+
+    public void testUpperCriticalValues() {
+        double[] values = StudentT.upperCriticalValues(27, 0.05);
+        assertEquals(27, values.length);
+        assertEquals(6.3138, values[0], 1e-4);
+        assertEquals(1.7033, values[26], 1e-4);
+        // callers may keep the array, so each call gets its own copy
+        assertNotSame(values, StudentT.upperCriticalValues(27, 0.05));
+    }
+}
@@ -53,6 +53,10 @@ public class QueryManipulationStore {
     private List<Grouping> groupings;
     private String timezone;
 
+    private long offset;
+    private long limit = -1;
+    private List<Object> keyset;
+
 
     /**
      * @param results            dimensions that should appear as results in select query
@@ -153,4 +157,39 @@ public class QueryManipulationStore {
     public void setTimezone(String timezone) {
         this.timezone = timezone;
     }
+
+    /**
+     * Number of rows to skip. Ignored when a usable {@link #getKeyset() keyset} is set.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * Maximum number of rows to return, or a negative number for all rows.
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    public void setLimit(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Values of the order by columns of the last row of the previous page, one per {@link #getOrderByFilters() order
+     * by filter}. When the order by filters include the data source's unique key, the query starts after this row
+     * instead of skipping {@link #getOffset() offset} rows. Null to page by offset.
+     */
+    public List<Object> getKeyset() {
+        return keyset;
+    }
+
+    public void setKeyset(List<Object> keyset) {
+        this.keyset = keyset;
+    }
 }
@@ -0,0 +1,702 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Record;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Query results stored column by column. Every row shares one schema, numeric and date values are kept in primitive
+ * arrays with a null bitmap, and text is dictionary encoded while it repeats. {@link #get(int)} hands out lightweight
+ * {@link Record} views over a row; writing through {@link Record#getValues()} updates the underlying column.
+ */
+public class ColumnarRecords extends AbstractList<Record> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Text columns switch from dictionary codes to plain strings once they hold more distinct values than this and
+     * more than half of the rows are distinct.
+     */
+    private static final int MAX_DICTIONARY_SIZE = 1024;
+
+    private final Map<String, Dimension> dimensions;
+    private final Map<String, Integer> columnIndexes;
+    private final String[] ids;
+    private final Column[] columns;
+    private int size;
+    private int capacity;
+
+    /**
+     * @param dimensions dimensions of each row, in column order
+     */
+    public ColumnarRecords(List<? extends Dimension> dimensions) {
+        this(dimensions, Collections.<String>emptySet());
+    }
+
+    /**
+     * @param dimensions dimensions of each row, in column order. When an id repeats, the last dimension wins and
+     *                   its SQL type is the type of the column.
+     * @param objectIds  ids whose values are arbitrary objects rather than values of the dimension's SQL type
+     */
+    public ColumnarRecords(List<? extends Dimension> dimensions, Collection<String> objectIds) {
+        Map<String, Dimension> dims = new LinkedHashMap<String, Dimension>(dimensions.size());
+        for (Dimension d : dimensions) {
+            dims.put(d.getId(), d);
+        }
+        this.dimensions = Collections.unmodifiableMap(dims);
+
+        ids = dims.keySet().toArray(new String[dims.size()]);
+        columns = new Column[ids.length];
+        columnIndexes = new HashMap<String, Integer>(ids.length * 2);
+        capacity = INITIAL_CAPACITY;
+        for (int i = 0; i < ids.length; i++) {
+            columnIndexes.put(ids[i], i);
+            if (objectIds.contains(ids[i])) {
+                columns[i] = new ObjectColumn(capacity);
+            } else {
+                columns[i] = createColumn(dims.get(ids[i]).getSqlType(), capacity);
+            }
+        }
+    }
+
+    /**
+     * @return index of the column holding values for the given result id, or -1 if there is none
+     */
+    public int getColumnIndex(String resultId) {
+        Integer index = columnIndexes.get(resultId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Append a row whose values are all null.
+     *
+     * @return index of the new row
+     */
+    public int addRow() {
+        if (size == capacity) {
+            capacity *= 2;
+            for (Column c : columns) {
+                c.grow(capacity);
+            }
+        }
+        for (Column c : columns) {
+            c.nulls.set(size);
+        }
+        return size++;
+    }
+
+    /**
+     * Read a value of the column's type from the current row of a result set into the last row added.
+     */
+    public void read(int column, ResultSet rs, int rsColumn) throws SQLException {
+        columns[column].read(rs, rsColumn, size - 1);
+    }
+
+    /**
+     * Store a value in the last row added.
+     */
+    public void setValue(int column, Object value) {
+        setValue(size - 1, column, value);
+    }
+
+    private void setValue(int row, int column, Object value) {
+        if (value == null) {
+            columns[column].nulls.set(row);
+        } else {
+            if (!columns[column].accepts(value)) {
+                columns[column] = new ObjectColumn(columns[column], size, capacity);
+            }
+            columns[column].set(row, value);
+            columns[column].nulls.clear(row);
+        }
+    }
+
+    private Object getValue(int row, int column) {
+        return columns[column].nulls.get(row) ? null : columns[column].get(row);
+    }
+
+    @Override
+    public Record get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new Row(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static Column createColumn(FieldType type, int capacity) {
+        switch (type) {
+            case DATE:
+                return new DateColumn(capacity, false);
+            case DATE_TIME:
+                return new DateColumn(capacity, true);
+            case FLOAT:
+                return new FloatColumn(capacity);
+            case DOUBLE:
+                return new DoubleColumn(capacity);
+            case INTEGER:
+                return new IntColumn(capacity);
+            case LONG:
+                return new LongColumn(capacity);
+            case TEXT:
+                return new StringColumn(capacity);
+            case BOOLEAN:
+                return new BooleanColumn();
+            default:
+                throw new AssertionError("Unexpected field type \"" + type + "\"");
+        }
+    }
+
+    /**
+     * A view of one row.
+     */
+    private class Row implements Record {
+
+        private final int row;
+
+        private Row(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Set<String> getResultIds() {
+            return dimensions.keySet();
+        }
+
+        @Override
+        public Object getValue(String resultId) {
+            int column = getColumnIndex(resultId);
+            return column < 0 ? null : ColumnarRecords.this.getValue(row, column);
+        }
+
+        @Override
+        public Dimension getDimension(String resultId) {
+            return dimensions.get(resultId);
+        }
+
+        @Override
+        public Map<String, Dimension> getDimensions() {
+            return dimensions;
+        }
+
+        @Override
+        public Map<String, Object> getValues() {
+            return new RowValues(row);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Row) {
+                Row r = (Row) o;
+                return getValues().equals(r.getValues()) && dimensions.equals(r.getDimensions());
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return getValues().hashCode() + dimensions.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder res = new StringBuilder("{");
+            for (int i = 0; i < ids.length; i++) {
+                if (i > 0) {
+                    res.append(", ");
+                }
+                res.append(ids[i]).append(':').append(ColumnarRecords.this.getValue(row, i))
+                        .append('(').append(dimensions.get(ids[i]).getSqlType()).append(')');
+            }
+            return res.append('}').toString();
+        }
+    }
+
+    /**
+     * Values of one row as a map that reads from and writes to the columns. Entries cannot be removed.
+     */
+    private class RowValues extends AbstractMap<String, Object> {
+
+        private final int row;
+
+        private RowValues(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer column = columnIndexes.get(key);
+            return column == null ? null : getValue(row, column);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return columnIndexes.containsKey(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Integer column = columnIndexes.get(key);
+            if (column == null) {
+                throw new IllegalArgumentException("Unknown result id " + key);
+            }
+            Object old = getValue(row, column);
+            setValue(row, column, value);
+            return old;
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int column;
+
+                        @Override
+                        public boolean hasNext() {
+                            return column < ids.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final int c = column++;
+                            return new SimpleEntry<String, Object>(ids[c], getValue(row, c)) {
+                                @Override
+                                public Object setValue(Object value) {
+                                    put(ids[c], value);
+                                    return super.setValue(value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ids.length;
+                }
+            };
+        }
+    }
+
+    private abstract static class Column {
+
+        protected final BitSet nulls = new BitSet();
+
+        abstract void grow(int capacity);
+
+        abstract void read(ResultSet rs, int rsColumn, int row) throws SQLException;
+
+        abstract boolean accepts(Object value);
+
+        abstract void set(int row, Object value);
+
+        abstract Object get(int row);
+    }
+
+    private static class IntColumn extends Column {
+
+        private int[] values;
+
+        IntColumn(int capacity) {
+            values = new int[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int rsColumn, int row) throws SQLException {
+            values[row] = rs.getInt(rsColumn);
+            nulls.set(row, rs.wasNull());
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Integer;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = (Integer) value;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+    }
+
+    private static class LongColumn extends Column {
+
+        private long[] values;
+
+        LongColumn(int capacity) {
+            values = new long[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int rsColumn, int row) throws SQLException {
+            values[row] = rs.getLong(rsColumn);
+            nulls.set(row, rs.wasNull());
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Long;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = (Long) value;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+    }
+
+    private static class FloatColumn extends Column {
+
+        private float[] values;
+
+        FloatColumn(int capacity) {
+            values = new float[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int rsColumn, int row) throws SQLException {
+            values[row] = rs.getFloat(rsColumn);
+            nulls.set(row, rs.wasNull());
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Float;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = (Float) value;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+
+        private double[] values;
+
+        DoubleColumn(int capacity) {
+            values = new double[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int rsColumn, int row) throws SQLException {
+            values[row] = rs.getDouble(rsColumn);
+            nulls.set(row, rs.wasNull());
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Double;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = (Double) value;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+    }
+
+    private static class BooleanColumn extends Column {
+
+        private final BitSet values = new BitSet();
+
+        @Override
+        void grow(int capacity) {
+        }
+
+        @Override
+        void read(ResultSet rs, int rsColumn, int row) throws SQLException {
+            values.set(row, rs.getBoolean(rsColumn));
+            nulls.set(row, rs.wasNull());
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof Boolean;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values.set(row, (Boolean) value);
+        }
+
+        @Override
+        Object get(int row) {
+            return values.get(row);
+        }
+    }
+
+    /**
+     * Dates kept as epoch milliseconds. Each read returns a new {@link Date} since callers may modify it.
+     */
+    private static class DateColumn extends Column {
+
+        private final boolean timestamp;
+        private long[] values;
+
+        DateColumn(int capacity, boolean timestamp) {
+            this.timestamp = timestamp;
+            values = new long[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int rsColumn, int row) throws SQLException {
+            Date d = timestamp ? rs.getTimestamp(rsColumn) : rs.getDate(rsColumn);
+            if (d != null && !rs.wasNull()) {
+                values[row] = d.getTime();
+                nulls.clear(row);
+            } else {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            // a Timestamp would lose its nanos
+            return value instanceof Date && !(value instanceof Timestamp);
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = ((Date) value).getTime();
+        }
+
+        @Override
+        Object get(int row) {
+            return new Date(values[row]);
+        }
+    }
+
+    private static class StringColumn extends Column {
+
+        private Map<String, Integer> dictionary = new HashMap<String, Integer>();
+        private List<String> words = new ArrayList<String>();
+        private int[] codes;
+        private String[] values;
+        private int rows;
+
+        StringColumn(int capacity) {
+            codes = new int[capacity];
+        }
+
+        @Override
+        void grow(int capacity) {
+            if (values != null) {
+                values = Arrays.copyOf(values, capacity);
+            } else {
+                codes = Arrays.copyOf(codes, capacity);
+            }
+        }
+
+        @Override
+        void read(ResultSet rs, int rsColumn, int row) throws SQLException {
+            String value = rs.getString(rsColumn);
+            if (value == null || rs.wasNull()) {
+                nulls.set(row);
+            } else {
+                set(row, value);
+                nulls.clear(row);
+            }
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value instanceof String;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            String s = (String) value;
+            rows = Math.max(rows, row + 1);
+            if (values != null) {
+                values[row] = s;
+                return;
+            }
+            Integer code = dictionary.get(s);
+            if (code == null) {
+                if (words.size() >= MAX_DICTIONARY_SIZE && words.size() > rows / 2) {
+                    dropDictionary();
+                    values[row] = s;
+                    return;
+                }
+                code = words.size();
+                words.add(s);
+                dictionary.put(s, code);
+            }
+            codes[row] = code;
+        }
+
+        private void dropDictionary() {
+            values = new String[codes.length];
+            for (int i = 0; i < rows; i++) {
+                if (!nulls.get(i)) {
+                    values[i] = words.get(codes[i]);
+                }
+            }
+            codes = null;
+            words = null;
+            dictionary = null;
+        }
+
+        @Override
+        Object get(int row) {
+            return values != null ? values[row] : words.get(codes[row]);
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+
+        private Object[] values;
+
+        ObjectColumn(int capacity) {
+            values = new Object[capacity];
+        }
+
+        /**
+         * Copy of a typed column, used when a value that does not fit the column's type is stored.
+         */
+        ObjectColumn(Column column, int size, int capacity) {
+            this(capacity);
+            for (int i = 0; i < size; i++) {
+                if (!column.nulls.get(i)) {
+                    values[i] = column.get(i);
+                }
+            }
+            nulls.or(column.nulls);
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int rsColumn, int row) throws SQLException {
+            values[row] = rs.getObject(rsColumn);
+            nulls.set(row, rs.wasNull());
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        void set(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+    }
+}
@@ -0,0 +1,590 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.OeDataSourceAccessException;
+import edu.jhuapl.openessence.datasource.OeDataSourceException;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
+import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.dataseries.Grouping;
+import edu.jhuapl.openessence.datasource.jdbc.dataseries.GroupingImpl;
+import edu.jhuapl.openessence.datasource.jdbc.filter.FieldFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GtFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LtFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+import edu.jhuapl.openessence.datasource.timeresolution.ResolutionUnitEnum;
+import edu.jhuapl.openessence.datasource.util.DbTypesEnum;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.util.StringUtils;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Daily rollup of a data source, i.e. a table with one row per day and combination of grouping dimensions that holds
+ * the data source's accumulations for that day. Details queries that group by the date dimension at a day or coarser
+ * resolution and only filter on rolled up dimensions are answered from this table instead of the base query.
+ *
+ * <p>Accumulations must be additive, e.g. {@code count(*)} or {@code sum(x)}: rolled up days are summed when the
+ * rollup is queried. Filters on the date dimension must fall on day boundaries, which is what the time series pages
+ * send.
+ *
+ * <p>{@link #refresh()} builds the table on first use and afterwards only recomputes the last {@link
+ * #setLookbackDays(int) lookbackDays} days. Changes to older data are picked up after {@link #invalidate()}, which
+ * sends queries back to the base query until the next refresh has rebuilt the whole table. {@link
+ * #recordsChanged(Collection)} only invalidates when a changed record is older than the lookback period.
+ *
+ * <p>Only daily, weekly and monthly series are answered from the table. Hourly series, or any other resolution finer
+ * than a day, always use the base query.
+ */
+public class DailyRollup {
+
+    public static final long DEFAULT_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+    public static final int DEFAULT_LOOKBACK_DAYS = 14;
+
+    private static final String DAY_COLUMN = "rollup_day";
+
+    // resolutions that are sums of whole days
+    private static final Set<ResolutionUnitEnum> ROLLED_UP_RESOLUTIONS =
+            EnumSet.of(ResolutionUnitEnum.DAILY, ResolutionUnitEnum.WEEKLY, ResolutionUnitEnum.MONTHLY);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final JdbcOeDataSource baseDs;
+    private final String tableName;
+    private final String dateId;
+    private final List<String> groupingIds;
+    private final List<String> accumulationIds;
+    private final Map<String, String> columnNames;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile long refreshedInvalidations;
+    private volatile JdbcOeDataSource rollupDs;
+    private volatile int lookbackDays = DEFAULT_LOOKBACK_DAYS;
+
+    /**
+     * @param baseDs          the data source to roll up
+     * @param tableName       table to keep the rollup in, created on the first refresh if it does not exist
+     * @param dateId          date dimension the rollup is by day of; must be a grouping dimension
+     * @param groupingIds     dimensions kept in the rollup, so queries may group or filter on them
+     * @param accumulationIds additive accumulations to roll up
+     */
+    public DailyRollup(JdbcOeDataSource baseDs, String tableName, String dateId, List<String> groupingIds,
+                       List<String> accumulationIds) {
+        this.baseDs = baseDs;
+        this.tableName = tableName;
+        this.dateId = dateId;
+        this.groupingIds = new ArrayList<String>(groupingIds);
+        this.accumulationIds = new ArrayList<String>(accumulationIds);
+
+        columnNames = new LinkedHashMap<String, String>();
+        columnNames.put(dateId, DAY_COLUMN);
+        for (String id : this.groupingIds) {
+            addColumnName(id, "g_");
+        }
+        for (String id : this.accumulationIds) {
+            addColumnName(id, "a_");
+        }
+    }
+
+    private void addColumnName(String id, String prefix) {
+        String name = prefix + id.replaceAll("[^A-Za-z0-9_]", "_").toLowerCase();
+        if (columnNames.containsKey(id) || columnNames.containsValue(name)) {
+            throw new IllegalArgumentException("Dimension " + id + " is rolled up more than once");
+        }
+        columnNames.put(id, name);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getDateId() {
+        return dateId;
+    }
+
+    public int getLookbackDays() {
+        return lookbackDays;
+    }
+
+    /**
+     * @param lookbackDays number of days, counting back from today, that each refresh recomputes. Rows loaded for
+     *                     earlier days after the table was built are only picked up after {@link #invalidate()}.
+     */
+    public void setLookbackDays(int lookbackDays) {
+        this.lookbackDays = lookbackDays;
+    }
+
+    /**
+     * @return true if queries are being answered from the rollup table
+     */
+    public boolean isUsable() {
+        return rollupDs != null && refreshedInvalidations == invalidations.get();
+    }
+
+    /**
+     * Mark the whole table as out of date, e.g. because records were entered or changed. Queries use the base query
+     * until the next {@link #refresh()} has rebuilt the table.
+     */
+    public void invalidate() {
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Note that records were added, changed or removed. Records dated inside the lookback period are picked up by the
+     * next {@link #refresh()}; an older record, or one whose date is not known, invalidates the whole table.
+     *
+     * @param dates value of the date dimension of each changed record, both before and after a change; null if not
+     *              known
+     */
+    public void recordsChanged(Collection<Date> dates) {
+        // one day of slack, in case the day ends before the next refresh
+        Date since = startOfDay(currentTimeMillis(), 1 - lookbackDays);
+        for (Date date : dates) {
+            if (date == null || date.before(since)) {
+                invalidate();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Bring the rollup table up to date. The first refresh, and the first one after {@link #invalidate()}, rebuilds the
+     * whole table; later ones only recompute the lookback period.
+     */
+    public synchronized void refresh() {
+        // anything invalidated from here on needs another refresh
+        long target = invalidations.get();
+        boolean full = rollupDs == null || refreshedInvalidations != target;
+
+        if (!CollectionUtils.isEmpty(baseDs.baseHavingClauses)) {
+            throw new OeDataSourceException("Cannot roll up data source " + baseDs.getDataSourceId()
+                                            + " because its base query has HAVING clauses");
+        }
+        if (baseDs.getDimensionJoiner() != null) {
+            baseDs.getDimensionJoiner().joinDimensions();
+        }
+
+        JdbcOeDataSource rolledUp = createRollupDataSource();
+        Date since = full ? null : startOfDay(currentTimeMillis(), -lookbackDays);
+        long start = currentTimeMillis();
+        if (!tableExists()) {
+            createTable();
+        } else {
+            fillTable(since);
+        }
+        log.info("Refreshed rollup table {} of {} {} in {} ms", tableName, baseDs.getDataSourceId(),
+                 since == null ? "in full" : "since " + since, currentTimeMillis() - start);
+
+        refreshedInvalidations = target;
+        rollupDs = rolledUp;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Answer a details query from the rollup table.
+     *
+     * @return the records, or null if the rollup is not usable or cannot answer this query
+     */
+    public Collection<Record> query(QueryManipulationStore store) throws OeDataSourceException {
+        JdbcOeDataSource rolledUp = rollupDs;
+        if (rolledUp == null || !isUsable() || !canAnswer(rolledUp.getDimensionRegistry(), store)) {
+            return null;
+        }
+
+        DimensionRegistry dimensions = rolledUp.getDimensionRegistry();
+        List<Dimension> results = new ArrayList<Dimension>();
+        for (Dimension d : store.getResults()) {
+            results.add(dimensions.getAllResults().getDimension(d.getId()));
+        }
+        List<Dimension> accumulations = new ArrayList<Dimension>();
+        if (store.getAccumulations() != null) {
+            for (Dimension d : store.getAccumulations()) {
+                accumulations.add(dimensions.getAccumulations().getDimension(d.getId()));
+            }
+        }
+        // filters, sorters and groupings refer to dimensions by id, so they work unchanged against the rollup
+        QueryManipulationStore rolledUpStore =
+                new QueryManipulationStore(results, accumulations, new ArrayList<Filter>(store.getWhereClauseFilters()),
+                                           store.getOrderByFilters(), store.getGroupings(), false, null);
+        log.debug("Details query of {} answered from rollup table {}", baseDs.getDataSourceId(), tableName);
+        return rolledUp.detailsQuery(rolledUpStore);
+    }
+
+    private boolean canAnswer(DimensionRegistry dimensions, QueryManipulationStore store) {
+        // the rollup is by server day, so client time zones would move rows between days
+        if (store.getTimezone() != null || store.getLimit() > 0 || store.getKeyset() != null
+            || !"".equals(store.getDistinctFilterSql())) {
+            return false;
+        }
+        if (CollectionUtils.isEmpty(store.getResults()) || store.getWhereClauseFilters() == null) {
+            return false;
+        }
+
+        // without a grouping on the date, rows of different days would not be summed
+        boolean byDate = false;
+        if (store.getGroupings() != null) {
+            for (Grouping g : store.getGroupings()) {
+                if (!(g instanceof GroupingImpl)) {
+                    return false;
+                }
+                GroupingImpl gi = (GroupingImpl) g;
+                if (!dimensions.getGroupings().contains(gi.getId())) {
+                    return false;
+                }
+                if (dateId.equals(gi.getId())) {
+                    if (!isRolledUpResolution(dimensions.getGroupings().getBean(dateId), gi.getResolution())) {
+                        return false;
+                    }
+                    byDate = true;
+                }
+            }
+        }
+        if (!byDate) {
+            return false;
+        }
+
+        for (Dimension d : store.getResults()) {
+            if (d == null || !dimensions.getAllResults().contains(d.getId())) {
+                return false;
+            }
+        }
+        if (store.getAccumulations() != null) {
+            for (Dimension d : store.getAccumulations()) {
+                if (!dimensions.getAccumulations().contains(d.getId())) {
+                    return false;
+                }
+            }
+        }
+        if (store.getOrderByFilters() != null) {
+            for (OrderByFilter sorter : store.getOrderByFilters()) {
+                if (!dimensions.getResults().contains(sorter.getFilterId())) {
+                    return false;
+                }
+            }
+        }
+
+        boolean dateOnly = dimensions.getFilters().getBean(dateId).getSqlType() == FieldType.DATE;
+        for (Filter filter : store.getWhereClauseFilters()) {
+            if (!(filter instanceof FieldFilter)) {
+                return false;
+            }
+            FieldFilter fieldFilter = (FieldFilter) filter;
+            if (!dimensions.getFilters().contains(fieldFilter.getFilterId())) {
+                return false;
+            }
+            if (dateId.equals(fieldFilter.getFilterId()) && !dateOnly && !isWholeDays(fieldFilter)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The rollup table only holds days, so an hourly series would put every count on midnight.
+     */
+    private static boolean isRolledUpResolution(DimensionBean date, String resolution) {
+        if (resolution == null || date.getResolutionHandlers() == null) {
+            return false;
+        }
+        ResolutionHandler handler = date.getResolutionHandlers().get(resolution);
+        return handler != null && ROLLED_UP_RESOLUTIONS.contains(handler.getCategory());
+    }
+
+    /**
+     * A filter on a timestamp keeps or drops whole days if it starts on midnight or ends on the last millisecond of a
+     * day. Only those give the same answer when applied to the day instead.
+     */
+    private boolean isWholeDays(FieldFilter filter) {
+        int offset;
+        if (filter instanceof GteqFilter || filter instanceof LtFilter) {
+            offset = 0;
+        } else if (filter instanceof LteqFilter || filter instanceof GtFilter) {
+            offset = 1;
+        } else {
+            return false;
+        }
+        for (Object argument : filter.getArguments()) {
+            if (!(argument instanceof Date)) {
+                return false;
+            }
+            long time = ((Date) argument).getTime() + offset;
+            if (startOfDay(time, 0).getTime() != time) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Date startOfDay(long time, int addDays) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(time);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        cal.add(Calendar.DATE, addDays);
+        return cal.getTime();
+    }
+
+    /**
+     * Data source over the rollup table with the same dimension ids as the base data source.
+     */
+    private JdbcOeDataSource createRollupDataSource() {
+        DimensionRegistry dimensions = baseDs.getDimensionRegistry();
+        List<DimensionBean> beans = new ArrayList<DimensionBean>();
+
+        DimensionBean date = dimensions.getGroupings().getBean(dateId);
+        if (date == null) {
+            throw new OeDataSourceException("Rollup date dimension " + dateId + " is not a grouping dimension");
+        }
+        DimensionBean day = rollupBean(date, DAY_COLUMN);
+        day.setIsFilter(true);
+        day.setIsGrouping(true);
+        day.setResolutionHandlers(date.getResolutionHandlers());
+        beans.add(day);
+
+        for (String id : groupingIds) {
+            DimensionBean grouping = getGroupingBean(id);
+            DimensionBean bean = rollupBean(grouping, columnNames.get(id));
+            bean.setIsFilter(true);
+            bean.setIsGrouping(grouping.getIsGrouping());
+            bean.setResolutionHandlers(grouping.getResolutionHandlers());
+            beans.add(bean);
+        }
+
+        for (String id : accumulationIds) {
+            DimensionBean accumulation = dimensions.getAccumulations().getBean(id);
+            if (accumulation == null) {
+                throw new OeDataSourceException("Unrecognized rollup accumulation " + id);
+            }
+            DimensionBean bean = rollupBean(accumulation, "sum(" + columnNames.get(id) + ")");
+            bean.setIsAccumulation(true);
+            beans.add(bean);
+        }
+
+        JdbcOeDataSource rolledUp = new JdbcOeDataSource();
+        rolledUp.setJdbcTemplate(baseDs.getJdbcTemplate());
+        rolledUp.setTransactionManager(baseDs.getTransactionManager());
+        rolledUp.setBaseDetailsQuery(tableName);
+        rolledUp.setDimensions(beans);
+        return rolledUp;
+    }
+
+    private DimensionBean getGroupingBean(String id) {
+        DimensionBean bean = baseDs.getDimensionRegistry().getGroupings().getBean(id);
+        if (bean == null) {
+            bean = baseDs.getBean(id);
+        }
+        if (bean == null) {
+            throw new OeDataSourceException("Unrecognized rollup dimension " + id);
+        }
+        return bean;
+    }
+
+    private static DimensionBean rollupBean(DimensionBean bean, String sqlCol) {
+        DimensionBean copy = new DimensionBean();
+        copy.setId(bean.getId());
+        copy.setDisplayName(bean.getDisplayName());
+        copy.setMetaData(bean.getMetaData());
+        copy.setSqlType(bean.getSqlType());
+        copy.setSqlCol(sqlCol);
+        copy.setIsResult(bean.getIsResult());
+        return copy;
+    }
+
+    private String getDayColumn() {
+        String col = baseDs.getDimensionRegistry().getGroupings().getBean(dateId).getSqlCol();
+        try {
+            if (baseDs.showMeDbType() == DbTypesEnum.ORACLE) {
+                // Oracle dates have a time of day
+                return "TRUNC(" + col + ")";
+            }
+        } catch (OeDataSourceAccessException e) {
+            throw new OeDataSourceException(e);
+        }
+        return "CAST(" + col + " AS DATE)";
+    }
+
+    /**
+     * SELECT that rolls up the base query, optionally only for days starting at {@code since}.
+     */
+    private String getRollupSql(boolean incremental) {
+        List<String> columns = new ArrayList<String>();
+        List<String> groupBy = new ArrayList<String>();
+        String dayColumn = getDayColumn();
+        columns.add(dayColumn + " " + DAY_COLUMN);
+        groupBy.add(dayColumn);
+        for (String id : groupingIds) {
+            String col = getGroupingBean(id).getSqlCol();
+            columns.add(col + " " + columnNames.get(id));
+            groupBy.add(col);
+        }
+        for (String id : accumulationIds) {
+            columns.add(baseDs.getDimensionRegistry().getAccumulations().getBean(id).getSqlCol() + " "
+                        + columnNames.get(id));
+        }
+
+        List<String> where = new ArrayList<String>();
+        if (!CollectionUtils.isEmpty(baseDs.baseWhereClauses)) {
+            where.addAll(baseDs.baseWhereClauses);
+        }
+        if (incremental) {
+            where.add(baseDs.getDimensionRegistry().getGroupings().getBean(dateId).getSqlCol() + " >= ?");
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+        sql.append(StringUtils.collectionToDelimitedString(columns, ", "));
+        sql.append(" FROM ").append(baseDs.getBaseDetailsQuery());
+        if (!where.isEmpty()) {
+            sql.append(" WHERE ").append(StringUtils.collectionToDelimitedString(where, " AND "));
+        }
+        sql.append(" GROUP BY ").append(StringUtils.collectionToDelimitedString(groupBy, ", "));
+        return sql.toString();
+    }
+
+    private boolean tableExists() {
+        return baseDs.getJdbcTemplate().execute(new ConnectionCallback<Boolean>() {
+            @Override
+            public Boolean doInConnection(Connection con) throws SQLException, DataAccessException {
+                DatabaseMetaData metaData = con.getMetaData();
+                String schema = null;
+                String table = tableName;
+                int dot = table.lastIndexOf('.');
+                if (dot >= 0) {
+                    schema = table.substring(0, dot);
+                    table = table.substring(dot + 1);
+                }
+                // unquoted names are stored upper case by some databases and lower case by others
+                Set<String> candidates = new HashSet<String>(
+                        Arrays.asList(table, table.toLowerCase(), table.toUpperCase()));
+                for (String candidate : candidates) {
+                    ResultSet rs = metaData.getTables(null, schema == null ? null : caseAs(candidate, schema),
+                                                      candidate, new String[]{"TABLE"});
+                    try {
+                        if (rs.next()) {
+                            return true;
+                        }
+                    } finally {
+                        rs.close();
+                    }
+                }
+                return false;
+            }
+        });
+    }
+
+    private static String caseAs(String example, String name) {
+        if (example.equals(example.toLowerCase()) && !example.equals(example.toUpperCase())) {
+            return name.toLowerCase();
+        } else if (example.equals(example.toUpperCase()) && !example.equals(example.toLowerCase())) {
+            return name.toUpperCase();
+        }
+        return name;
+    }
+
+    private void createTable() {
+        JdbcTemplate jdbcTemplate = baseDs.getJdbcTemplate();
+        jdbcTemplate.execute("CREATE TABLE " + tableName + " AS " + getRollupSql(false));
+        String indexName = tableName.substring(tableName.lastIndexOf('.') + 1) + "_day_idx";
+        jdbcTemplate.execute("CREATE INDEX " + indexName + " ON " + tableName + " (" + DAY_COLUMN + ")");
+    }
+
+    /**
+     * Replace the rows of every day starting at {@code since}, or of all days if it is null, in one transaction.
+     */
+    private void fillTable(final Date since) {
+        final JdbcTemplate jdbcTemplate = baseDs.getJdbcTemplate();
+        String insert = "INSERT INTO " + tableName + " ("
+                        + StringUtils.collectionToDelimitedString(columnNames.values(), ", ") + ") "
+                        + getRollupSql(since != null);
+
+        PlatformTransactionManager transactionManager = baseDs.getTransactionManager();
+        TransactionStatus status = null;
+        if (transactionManager instanceof DataSourceTransactionManager
+            && ((DataSourceTransactionManager) transactionManager).getDataSource() == jdbcTemplate.getDataSource()) {
+            status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        }
+        try {
+            if (since == null) {
+                jdbcTemplate.update("DELETE FROM " + tableName);
+                jdbcTemplate.update(insert);
+            } else {
+                jdbcTemplate.update("DELETE FROM " + tableName + " WHERE " + DAY_COLUMN + " >= ?",
+                                    new java.sql.Date(since.getTime()));
+                jdbcTemplate.update(insert, new Timestamp(since.getTime()));
+            }
+        } catch (RuntimeException e) {
+            if (status != null) {
+                transactionManager.rollback(status);
+            }
+            throw e;
+        }
+        if (status != null) {
+            transactionManager.commit(status);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DailyRollup[" + baseDs.getDataSourceId() + " -> " + tableName + "]";
+    }
+}
@@ -30,30 +30,130 @@ import edu.jhuapl.openessence.datasource.FieldType;
 import edu.jhuapl.openessence.datasource.QueryManipulationStore;
 import edu.jhuapl.openessence.datasource.Record;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Joins dimensions, i.e. adds dimensions from one datasource into another. *
+ * Joins dimensions, i.e. adds dimensions from one datasource into another.
+ *
+ * <p>The joined dimensions are cached as a versioned snapshot. {@link #joinDimensions()} only queries the other
+ * datasources when there is no snapshot yet, when the snapshot is older than {@link #setMaxAge(long) maxAge} or after
+ * {@link #invalidate()}. A refresh builds the new dimensions on the side and swaps them into the base datasource in one
+ * step, so requests never see a partially joined set. While one thread refreshes a stale snapshot, other threads keep
+ * using the current one.
  */
 public class DimensionJoiner {
 
+    public static final long DEFAULT_MAX_AGE = TimeUnit.MINUTES.toMillis(5);
+
     private JdbcOeDataSource baseDs;
     private Map<? extends JdbcOeDataSource, ? extends Collection<DimensionBean>> dimensionJoinMapping;
-    private Map<JdbcOeDataSource, Collection<DimensionBean>> previouslyJoinedDimensions;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    private volatile boolean invalidated;
+    private volatile long maxAge = DEFAULT_MAX_AGE;
 
     public DimensionJoiner(JdbcOeDataSource baseDs,
                            Map<? extends JdbcOeDataSource, ? extends Collection<DimensionBean>> dimensionJoinMapping) {
         this.baseDs = baseDs;
         this.dimensionJoinMapping = dimensionJoinMapping;
-        this.previouslyJoinedDimensions = new HashMap<JdbcOeDataSource, Collection<DimensionBean>>();
     }
 
+    /**
+     * Make sure the joined dimensions are in the base datasource, refreshing them if they are missing or stale.
+     */
     public void joinDimensions() {
+        if (refreshLock.isHeldByCurrentThread()) {
+            // the refresh queried a datasource that joins through us
+            return;
+        }
+
+        Snapshot current = snapshot;
+        if (current != null && isFresh(current)) {
+            return;
+        }
+
+        if (current == null) {
+            // nothing to fall back on, wait for whoever is joining
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            // someone else is refreshing, keep using the current snapshot
+            return;
+        }
+        try {
+            if (snapshot == current) {
+                doRefresh();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Query the other datasources and replace the joined dimensions now.
+     */
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            doRefresh();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Mark the joined dimensions as out of date, e.g. because a lookup table changed. The next call to {@link
+     * #joinDimensions()} refreshes them.
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    /**
+     * @return the number of times the joined dimensions have been refreshed, 0 if they have not been joined yet
+     */
+    public long getVersion() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.version;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @param maxAge milliseconds after which the joined dimensions are refreshed, or 0 to only refresh on {@link
+     *               #invalidate()} or {@link #refresh()}
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return !invalidated && (maxAge <= 0 || currentTimeMillis() - current.loadedAt < maxAge);
+    }
+
+    private void doRefresh() {
+        // anything invalidated from here on needs another refresh
+        invalidated = false;
+        long loadedAt = currentTimeMillis();
+
+        Map<JdbcOeDataSource, Collection<DimensionBean>> joined =
+                new HashMap<JdbcOeDataSource, Collection<DimensionBean>>();
+        List<DimensionBean> added = new ArrayList<DimensionBean>();
         for (Entry<? extends JdbcOeDataSource, ? extends Collection<DimensionBean>> e : dimensionJoinMapping
                 .entrySet()) {
             Collection<DimensionBean> dimensionsToJoin = e.getValue();
@@ -64,27 +164,40 @@ public class DimensionJoiner {
                         store =
                         new QueryManipulationStore(e.getKey().getResultDimensions(), null, null, null, false);
 
-                for (Record r : e.getKey().detailsQuery(store)) {
+                Collection<Record> records;
+                try {
+                    records = e.getKey().detailsQuery(store);
+                } catch (RuntimeException ex) {
+                    // keep the current snapshot but try again next time
+                    invalidated = true;
+                    throw ex;
+                }
+                for (Record r : records) {
                     DimensionBean joinedDimension = onDimensionJoin(e.getKey(), otherDimension, r);
-                    baseDs.addDimension(joinedDimension);
+                    added.add(joinedDimension);
                     // dimension has now been joined
                     dimensionsJustAdded.add(joinedDimension);
                 }
             }
-            // check for otherDs's previously joined dimensions
-            // remove all previously joined dimensions that no longer exist
-            if (previouslyJoinedDimensions.containsKey(e.getKey())) {
-                Iterator<? extends DimensionBean> iterator = previouslyJoinedDimensions.get(e.getKey()).iterator();
-                while (iterator.hasNext()) {
-                    DimensionBean oldBean = iterator.next();
-                    if (!dimensionsJustAdded.contains(oldBean)) {
-                        baseDs.removeDimension(oldBean);
-                        iterator.remove();
+            joined.put(e.getKey(), Collections.unmodifiableCollection(dimensionsJustAdded));
+        }
+
+        // remove all previously joined dimensions that no longer exist
+        List<DimensionBean> removed = new ArrayList<DimensionBean>();
+        Snapshot previous = snapshot;
+        if (previous != null) {
+            for (Entry<JdbcOeDataSource, Collection<DimensionBean>> e : previous.joined.entrySet()) {
+                Collection<DimensionBean> stillJoined = joined.get(e.getKey());
+                for (DimensionBean oldBean : e.getValue()) {
+                    if (stillJoined == null || !stillJoined.contains(oldBean)) {
+                        removed.add(oldBean);
                     }
                 }
             }
-            previouslyJoinedDimensions.put(e.getKey(), dimensionsJustAdded);
         }
+
+        baseDs.replaceDimensions(removed, added);
+        snapshot = new Snapshot(previous == null ? 1 : previous.version + 1, loadedAt, joined);
     }
 
     /**
@@ -106,4 +219,17 @@ public class DimensionJoiner {
         return bean;
     }
 
+    private static class Snapshot {
+
+        private final long version;
+        private final long loadedAt;
+        private final Map<JdbcOeDataSource, Collection<DimensionBean>> joined;
+
+        Snapshot(long version, long loadedAt, Map<JdbcOeDataSource, Collection<DimensionBean>> joined) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.joined = joined;
+        }
+    }
+
 }
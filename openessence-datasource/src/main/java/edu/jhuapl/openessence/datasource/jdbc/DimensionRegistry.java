@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FilterDimension;
+import edu.jhuapl.openessence.datasource.SortingDimension;
+import edu.jhuapl.openessence.datasource.dataseries.GroupingDimension;
+import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource.DimBeanExec;
+import edu.jhuapl.openessence.datasource.jdbc.dataseries.GroupingDimensionAdapter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of a {@link JdbcOeDataSource}'s dimensions. Adapters are created once when the snapshot is built,
+ * so looking up or iterating dimensions doesn't allocate. The data source builds a new registry whenever its dimensions
+ * change and publishes it with a single write; a registry that is in use is never modified. Reading every role of a
+ * query from one registry therefore never mixes dimensions from before and after a change.
+ */
+public final class DimensionRegistry {
+
+    private final DimensionIndex<Dimension> accumulations;
+    private final DimensionIndex<Dimension> results;
+    private final DimensionIndex<Dimension> allResults;
+    private final DimensionIndex<SortingDimension> sortingDimensions;
+    private final DimensionIndex<FilterDimension> filters;
+    private final DimensionIndex<Dimension> specialSqlDimensions;
+    private final DimensionIndex<GroupingDimension> groupings;
+    private final DimensionIndex<Dimension> edits;
+    private final DimensionIndex<Dimension> allEdits;
+    private final DimensionIndex<Dimension> autoGenDimensions;
+    private final DimensionIndex<Dimension> childResults;
+    private final DimensionIndex<Dimension> childEdits;
+    private final Set<String> resultFilterIds;
+
+    DimensionRegistry(final JdbcOeDataSource ds, Map<String, DimensionBean> accumulationMap,
+                      Map<String, DimensionBean> resultMap, Map<String, DimensionBean> superResultMap,
+                      Map<String, DimensionBean> filterMap, Map<String, DimensionBean> specialSqlMap,
+                      Map<String, DimensionBean> groupingMap, Map<String, DimensionBean> editMap,
+                      Map<String, DimensionBean> superEditMap, Map<String, DimensionBean> autoGenMap,
+                      Map<String, DimensionBean> childResultMap, Map<String, DimensionBean> childEditMap,
+                      Collection<String> resultFilterIds) {
+        // plain adapters are shared between indexes, e.g. a result is usually also an accumulation
+        final Map<DimensionBean, Dimension> adapters = new IdentityHashMap<DimensionBean, Dimension>();
+        DimBeanExec<Dimension> plain = new DimBeanExec<Dimension>() {
+            @Override
+            public Dimension exec(DimensionBean b) {
+                Dimension adapter = adapters.get(b);
+                if (adapter == null) {
+                    adapter = new DimensionBeanAdapter(b, ds);
+                    adapters.put(b, adapter);
+                }
+                return adapter;
+            }
+        };
+
+        accumulations = new DimensionIndex<Dimension>(accumulationMap, plain);
+        results = new DimensionIndex<Dimension>(resultMap, plain);
+        allResults = new DimensionIndex<Dimension>(superResultMap, plain);
+        sortingDimensions = new DimensionIndex<SortingDimension>(superResultMap, new DimBeanExec<SortingDimension>() {
+            @Override
+            public SortingDimension exec(DimensionBean b) {
+                return new SortingDimensionBeanAdapter(b, ds);
+            }
+        });
+        filters = new DimensionIndex<FilterDimension>(filterMap, new DimBeanExec<FilterDimension>() {
+            @Override
+            public FilterDimension exec(DimensionBean b) {
+                return new FilterDimensionBeanAdapter(b, ds);
+            }
+        });
+        specialSqlDimensions = new DimensionIndex<Dimension>(specialSqlMap, plain);
+        groupings = new DimensionIndex<GroupingDimension>(groupingMap, new DimBeanExec<GroupingDimension>() {
+            @Override
+            public GroupingDimension exec(DimensionBean b) {
+                return new GroupingDimensionAdapter(b, ds);
+            }
+        });
+        edits = new DimensionIndex<Dimension>(editMap, plain);
+        allEdits = new DimensionIndex<Dimension>(superEditMap, plain);
+        autoGenDimensions = new DimensionIndex<Dimension>(autoGenMap, plain);
+        childResults = new DimensionIndex<Dimension>(childResultMap, plain);
+        childEdits = new DimensionIndex<Dimension>(childEditMap, plain);
+        this.resultFilterIds = Collections.unmodifiableSet(new HashSet<String>(resultFilterIds));
+    }
+
+    public DimensionIndex<Dimension> getAccumulations() {
+        return accumulations;
+    }
+
+    public DimensionIndex<Dimension> getResults() {
+        return results;
+    }
+
+    /**
+     * @return results and child results
+     */
+    public DimensionIndex<Dimension> getAllResults() {
+        return allResults;
+    }
+
+    public DimensionIndex<SortingDimension> getSortingDimensions() {
+        return sortingDimensions;
+    }
+
+    public DimensionIndex<FilterDimension> getFilters() {
+        return filters;
+    }
+
+    public DimensionIndex<Dimension> getSpecialSqlDimensions() {
+        return specialSqlDimensions;
+    }
+
+    public DimensionIndex<GroupingDimension> getGroupings() {
+        return groupings;
+    }
+
+    public DimensionIndex<Dimension> getEdits() {
+        return edits;
+    }
+
+    /**
+     * @return edit and child edit dimensions
+     */
+    public DimensionIndex<Dimension> getAllEdits() {
+        return allEdits;
+    }
+
+    public DimensionIndex<Dimension> getAutoGenDimensions() {
+        return autoGenDimensions;
+    }
+
+    public DimensionIndex<Dimension> getChildResults() {
+        return childResults;
+    }
+
+    public DimensionIndex<Dimension> getChildEdits() {
+        return childEdits;
+    }
+
+    /**
+     * @return IDs of filter beans that may be requested as results
+     */
+    public Set<String> getResultFilterIds() {
+        return resultFilterIds;
+    }
+
+    /**
+     * Dimensions with one role, in the order they were added, along with their beans.
+     */
+    public static final class DimensionIndex<T extends Dimension> {
+
+        private final DimensionBean[] beans;
+        private final Map<String, DimensionBean> beanMap;
+        private final List<T> dimensions;
+        private final Map<String, Integer> positions;
+
+        @SuppressWarnings("unchecked")
+        DimensionIndex(Map<String, DimensionBean> beanMap, DimBeanExec<? extends T> ctr) {
+            beans = beanMap.values().toArray(new DimensionBean[beanMap.size()]);
+            this.beanMap = Collections.unmodifiableMap(new LinkedHashMap<String, DimensionBean>(beanMap));
+            T[] adapters = (T[]) new Dimension[beans.length];
+            positions = new HashMap<String, Integer>(beans.length * 2);
+            int i = 0;
+            for (Map.Entry<String, DimensionBean> e : beanMap.entrySet()) {
+                adapters[i] = ctr.exec(e.getValue());
+                positions.put(e.getKey(), i);
+                i++;
+            }
+            dimensions = Collections.unmodifiableList(Arrays.asList(adapters));
+        }
+
+        /**
+         * @return unmodifiable list of dimensions
+         */
+        public List<T> getDimensions() {
+            return dimensions;
+        }
+
+        /**
+         * @return the dimension with the given ID, or {@code null} if there isn't one
+         */
+        public T getDimension(String id) {
+            Integer position = positions.get(id);
+            return position == null ? null : dimensions.get(position);
+        }
+
+        /**
+         * @return the bean of the dimension with the given ID, or {@code null} if there isn't one
+         */
+        public DimensionBean getBean(String id) {
+            Integer position = positions.get(id);
+            return position == null ? null : beans[position];
+        }
+
+        /**
+         * @return unmodifiable map of dimension ID to bean, in the order they were added
+         */
+        public Map<String, DimensionBean> getBeans() {
+            return beanMap;
+        }
+
+        public boolean contains(String id) {
+            return positions.containsKey(id);
+        }
+
+        public int size() {
+            return beans.length;
+        }
+    }
+}
@@ -39,10 +39,14 @@ import edu.jhuapl.openessence.datasource.dataseries.Grouping;
 import edu.jhuapl.openessence.datasource.entry.ChildTableDetails;
 import edu.jhuapl.openessence.datasource.jdbc.dataseries.GroupingImpl;
 import edu.jhuapl.openessence.datasource.jdbc.filter.AndFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.InFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.MultiFilterCombiner;
 import edu.jhuapl.openessence.datasource.jdbc.filter.NotFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.OneArgOpFilter;
 import edu.jhuapl.openessence.datasource.jdbc.filter.OrFilter;
 import edu.jhuapl.openessence.datasource.jdbc.filter.SqlGeneratingFilter;
 import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.SortingDirection;
 import edu.jhuapl.openessence.datasource.timeresolution.ResolutionHandlerFactory;
 import edu.jhuapl.openessence.datasource.ui.PossibleValuesConfiguration;
 import edu.jhuapl.openessence.datasource.util.DbConfigHelper;
@@ -58,13 +62,18 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 import org.springframework.util.StringUtils;
 
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
@@ -72,6 +81,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -88,6 +98,19 @@ import javax.sql.DataSource;
 
 public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware, InitializingBean {
 
+    /**
+     * Off, as subclasses can override the {@code add*Clauses} methods; see {@link #setQueryPlanCacheSize}.
+     */
+    public static final int DEFAULT_QUERY_PLAN_CACHE_SIZE = 0;
+
+    /**
+     * Parameter types of the {@code createRecord} methods that map details rows.
+     */
+    private static final List<List<Class<?>>> CREATE_RECORD_SIGNATURES = Arrays.<List<Class<?>>>asList(
+            Arrays.<Class<?>>asList(List.class, ResultSet.class),
+            Arrays.<Class<?>>asList(List.class, ResultSet.class, int.class),
+            Arrays.<Class<?>>asList(List.class, ResultSet.class, List.class, List.class, List.class));
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
     private ApplicationContext ctx;
     protected JdbcTemplate jdbcTemplate;
@@ -111,26 +134,51 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
     protected List<String> baseWhereClauses;
     protected List<String> baseHavingClauses;
-    protected Map<String, DimensionBean> accumulationMap;
-    protected Map<String, DimensionBean> resultMap;
-    protected List<String> resultFilterIds;
-    protected Map<String, DimensionBean> childResultMap;
-    protected Map<String, DimensionBean> superResultMap;
-    protected Map<String, DimensionBean> editMap;
-    protected Map<String, DimensionBean> childEditMap;
-    protected Map<String, DimensionBean> superEditMap;
-    protected Map<String, DimensionBean> autoGenMap;
-    protected Map<String, DimensionBean> specialSqlMap;
-
-    private Map<String, DimensionBean> groupingMap;
-    private Map<String, DimensionBean> filterMap;
+
+    /*
+     * The dimension maps below mirror the current registry for subclasses. They are replaced one by one when the
+     * dimensions change, so code that needs a consistent set of dimensions reads them from getDimensionRegistry().
+     */
+    protected volatile Map<String, DimensionBean> accumulationMap;
+    protected volatile Map<String, DimensionBean> resultMap;
+    protected volatile List<String> resultFilterIds;
+    protected volatile Map<String, DimensionBean> childResultMap;
+    protected volatile Map<String, DimensionBean> superResultMap;
+    protected volatile Map<String, DimensionBean> editMap;
+    protected volatile Map<String, DimensionBean> childEditMap;
+    protected volatile Map<String, DimensionBean> superEditMap;
+    protected volatile Map<String, DimensionBean> autoGenMap;
+    protected volatile Map<String, DimensionBean> specialSqlMap;
+
+    private volatile Map<String, DimensionBean> groupingMap;
+    private volatile Map<String, DimensionBean> filterMap;
+    /**
+     * Published with a single write after the maps it was built from; see {@link #replaceDimensions}.
+     */
+    private volatile DimensionRegistry registry;
+    private volatile int queryPlanCacheSize = DEFAULT_QUERY_PLAN_CACHE_SIZE;
+    private final Map<List<Object>, DetailsQueryPlan> queryPlans =
+            new LinkedHashMap<List<Object>, DetailsQueryPlan>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, DetailsQueryPlan> eldest) {
+                    return size() > queryPlanCacheSize;
+                }
+            };
     private Map<String, Object> metadata;
     private Map<String, Object> childEditDimensions;
     private Map<String, String> fksToParent;
 
     private DimensionJoiner dimensionJoiner;
+    private DailyRollup dailyRollup;
 
     private Set<String> roles;
+    private Set<String> uniqueKeys;
+    private Set<String> nonNullDimensions;
+
+    /**
+     * Whether a subclass maps details rows itself through one of the {@code createRecord} methods.
+     */
+    private final boolean createRecordOverridden = overridesCreateRecord(getClass());
 
     public JdbcOeDataSource() {
         accumulationMap = new LinkedHashMap<String, DimensionBean>();
@@ -145,6 +193,7 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
         specialSqlMap = new LinkedHashMap<String, DimensionBean>();
         groupingMap = new LinkedHashMap<String, DimensionBean>();
         filterMap = new LinkedHashMap<String, DimensionBean>();
+        registry = new DimensionMaps(this).createRegistry(this);
         metadata = new LinkedHashMap<String, Object>();
 
         roles = new HashSet<String>();
@@ -163,71 +212,77 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
      * Add dimension. If a dimension already exists with the same ID, the existing dimension is updated.
      */
     public void addDimension(DimensionBean dimension) {
-        if (dimension.getFilterBeanId() != null && dimension.getFilterBeanId().length() > 0) {
-            resultFilterIds.add(dimension.getFilterBeanId());
-        }
-        if (dimension.getIsResult()) {
-            resultMap.put(dimension.getId(), dimension);
-            superResultMap.put(dimension.getId(), dimension);
-        }
+        replaceDimensions(Collections.<DimensionBean>emptyList(), Collections.singletonList(dimension));
+    }
 
-        if (dimension.getIsChildResult()) {
-            childResultMap.put(dimension.getId(), dimension);
-            superResultMap.put(dimension.getId(), dimension);
-        }
+    public void removeDimension(DimensionBean dimension) {
+        replaceDimensions(Collections.singletonList(dimension), Collections.<DimensionBean>emptyList());
+    }
 
-        if (dimension.getIsFilter()) {
-            filterMap.put(dimension.getId(), dimension);
+    /**
+     * Remove and then add dimensions without changing any dimension map in place. The maps are copied and changed, a
+     * new {@link DimensionRegistry} is built from the copies, and the registry is published with a single volatile
+     * write. Queries read all their dimensions from one registry, so while dimensions are replaced they see either
+     * the old set or the new one, never a mix.
+     */
+    public synchronized void replaceDimensions(Collection<? extends DimensionBean> removed,
+                                               Collection<? extends DimensionBean> added) {
+        DimensionMaps maps = new DimensionMaps(this);
+        for (DimensionBean dimension : removed) {
+            maps.remove(dimension);
         }
-
-        if (dimension.getIsAccumulation()) {
-            accumulationMap.put(dimension.getId(), dimension);
+        for (DimensionBean dimension : added) {
+            maps.add(dimension);
         }
+        maps.publish(this);
+    }
 
-        /** CRUD - DataEntry related ONLY isEdit, isChildEdit, hasSpecialSql, isAutoGen */
-        if (dimension.getIsEdit()) {
-            editMap.put(dimension.getId(), dimension);
-            superEditMap.put(dimension.getId(), dimension);
-        }
+    public void setDimensions(Collection<? extends DimensionBean> dimensions) {
+        replaceDimensions(Collections.<DimensionBean>emptyList(), dimensions);
+    }
 
-        if (dimension.getIsChildEdit()) {
-            childEditMap.put(dimension.getId(), dimension);
-            superEditMap.put(dimension.getId(), dimension);
-        }
+    /**
+     * @return the current dimensions; dimensions added or removed later go into a new registry
+     */
+    public DimensionRegistry getDimensionRegistry() {
+        return registry;
+    }
 
-        if (dimension.hasSpecialSql()) {
-            specialSqlMap.put(dimension.getId(), dimension);
-        }
+    public int getQueryPlanCacheSize() {
+        return queryPlanCacheSize;
+    }
 
-        if (dimension.isAutoGen()) {
-            autoGenMap.put(dimension.getId(), dimension);
-        }
+    /**
+     * Set how many details query shapes keep their SQL text, so repeated queries skip building it. The cache is off
+     * (0) by default. Only turn it on for a data source whose {@code add*Clauses} and paging methods build their SQL
+     * from the query alone, since a cached plan is reused without calling them again. Where clause filters are keyed
+     * by class, dimension, operator and number of arguments, and any other filter by its SQL snippet.
+     */
+    public void setQueryPlanCacheSize(int queryPlanCacheSize) {
+        this.queryPlanCacheSize = queryPlanCacheSize;
+        clearQueryPlans();
+    }
 
-        if (dimension.getIsGrouping()) {
-            groupingMap.put(dimension.getId(), dimension);
+    protected void clearQueryPlans() {
+        synchronized (queryPlans) {
+            queryPlans.clear();
         }
     }
 
-    public void removeDimension(DimensionBean dimension) {
-        resultMap.remove(dimension.getId());
-        superResultMap.remove(dimension.getId());
-        if (dimension.getFilterBeanId() != null && dimension.getFilterBeanId().length() > 0) {
-            resultFilterIds.remove(dimension.getFilterBeanId());
-        }
-        childResultMap.remove(dimension.getId());
-        filterMap.remove(dimension.getId());
-        accumulationMap.remove(dimension.getId());
-        editMap.remove(dimension.getId());
-        superEditMap.remove(dimension.getId());
-        childEditMap.remove(dimension.getId());
-        specialSqlMap.remove(dimension.getId());
-        autoGenMap.remove(dimension.getId());
-        groupingMap.remove(dimension.getId());
+    private DetailsQueryPlan getQueryPlan(List<Object> shape) {
+        if (shape == null) {
+            return null;
+        }
+        synchronized (queryPlans) {
+            return queryPlans.get(shape);
+        }
     }
 
-    public void setDimensions(Collection<? extends DimensionBean> dimensions) {
-        for (DimensionBean bean : dimensions) {
-            addDimension(bean);
+    private void putQueryPlan(List<Object> shape, DetailsQueryPlan plan) {
+        if (shape != null) {
+            synchronized (queryPlans) {
+                queryPlans.put(shape, plan);
+            }
         }
     }
 
@@ -249,154 +304,115 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
     public void setBaseDetailsWhereClauses(final List<String> baseWhereClauses) {
         this.baseWhereClauses = baseWhereClauses;
+        clearQueryPlans();
     }
 
     public void setBaseDetailsHavingClauses(final List<String> baseHavingClauses) {
         this.baseHavingClauses = baseHavingClauses;
+        clearQueryPlans();
     }
 
-    public void setAccumulations(final List<DimensionBean> accumulations) {
-        this.accumulationMap = new LinkedHashMap<String, DimensionBean>(accumulations.size());
+    public synchronized void setAccumulations(final List<DimensionBean> accumulations) {
+        DimensionMaps maps = new DimensionMaps(this);
+        maps.accumulationMap.clear();
         for (final DimensionBean bean : accumulations) {
-            this.accumulationMap.put(bean.getId(), bean);
+            maps.accumulationMap.put(bean.getId(), bean);
         }
+        maps.publish(this);
     }
 
     @Override
     public Dimension getAccumulation(final String id) {
         joinDimensions();
 
-        if (accumulationMap.containsKey(id)) {
-            return new DimensionBeanAdapter(accumulationMap.get(id), this);
-        } else {
+        Dimension accumulation = registry.getAccumulations().getDimension(id);
+        if (accumulation == null) {
             log.warn("Unrecognized accumulation id \'" + id + "\' was requested.");
-            return null;
         }
+        return accumulation;
     }
 
     @Override
     public Collection<Dimension> getAccumulations() {
         joinDimensions();
 
-        return getAccumulation(accumulationMap.values(), new DimBeanExec<Dimension>() {
-            @Override
-            public Dimension exec(DimensionBean b) {
-                return new DimensionBeanAdapter(b, JdbcOeDataSource.this);
-            }
-        });
+        return registry.getAccumulations().getDimensions();
     }
 
     @Override
     public Dimension getResultDimension(final String id) {
         joinDimensions();
 
-        if (superResultMap.containsKey(id)) {
-            return new DimensionBeanAdapter(superResultMap.get(id), this);
-        } else {
+        Dimension result = registry.getAllResults().getDimension(id);
+        if (result == null) {
             // this happens all the time in MapController
             log.trace("Unrecognized result dimension id '{}' was requested.", id);
-            return null;
         }
+        return result;
     }
 
     @Override
     public Collection<Dimension> getResultDimensions() {
         joinDimensions();
 
-        return getDimension(resultMap.values(), new DimBeanExec<Dimension>() {
-            @Override
-            public Dimension exec(DimensionBean b) {
-                return new DimensionBeanAdapter(b, JdbcOeDataSource.this);
-            }
-        });
+        return registry.getResults().getDimensions();
     }
 
     @Override
     public Collection<Dimension> getAllResultDimensions() {
         joinDimensions();
 
-        return getDimension(superResultMap.values(), new DimBeanExec<Dimension>() {
-            @Override
-            public Dimension exec(DimensionBean b) {
-                return new DimensionBeanAdapter(b, JdbcOeDataSource.this);
-            }
-        });
+        return registry.getAllResults().getDimensions();
     }
 
     @Override
     public SortingDimension getSortingDimension(final String id) {
         joinDimensions();
 
-        if (superResultMap.containsKey(id)) {
-            return new SortingDimensionBeanAdapter(resultMap.get(id), this);
-        } else {
+        SortingDimension sortingDimension = registry.getSortingDimensions().getDimension(id);
+        if (sortingDimension == null) {
             log.warn("Unrecognized sorting dimension id \'" + id + "\' was requested.");
-            return null;
         }
+        return sortingDimension;
     }
 
     @Override
     public Collection<SortingDimension> getSortingDimensions() {
         joinDimensions();
 
-        return getDimension(superResultMap.values(), new DimBeanExec<SortingDimension>() {
-            @Override
-            public SortingDimension exec(DimensionBean b) {
-                return new SortingDimensionBeanAdapter(b, JdbcOeDataSource.this);
-            }
-        });
+        return registry.getSortingDimensions().getDimensions();
     }
 
     @Override
     public Dimension getSpecialSqlDimension(String id) {
-        if (specialSqlMap != null) {
-
-            if (specialSqlMap.get(id) != null) {
-                return new DimensionBeanAdapter(specialSqlMap.get(id), this);
-            }
+        Dimension specialSqlDimension = registry.getSpecialSqlDimensions().getDimension(id);
+        if (specialSqlDimension == null) {
             log.warn("Unrecognized special sql dimension id \'" + id + "\' was requested.");
-            return null;
-        } else {
-            return null;
         }
+        return specialSqlDimension;
     }
 
     @Override
     public Collection<Dimension> getSpecialSqlDimensions() {
-        if (specialSqlMap != null) {
-            return getDimension(specialSqlMap.values(), new DimBeanExec<Dimension>() {
-                @Override
-                public Dimension exec(DimensionBean b) {
-                    return new DimensionBeanAdapter(b, JdbcOeDataSource.this);
-                }
-            });
-        } else {
-            return new ArrayList<Dimension>(0);
-        }
+        return registry.getSpecialSqlDimensions().getDimensions();
     }
 
     @Override
     public FilterDimension getFilterDimension(String id) {
         joinDimensions();
 
-        if (filterMap.get(id) != null) {
-            return new FilterDimensionBeanAdapter(filterMap.get(id), this);
-        } else {
+        FilterDimension filter = registry.getFilters().getDimension(id);
+        if (filter == null) {
             log.warn("Unrecognized filter dimension id \'" + id + "\' was requested.");
-            return null;
         }
+        return filter;
     }
 
     @Override
     public Collection<FilterDimension> getFilterDimensions() {
         joinDimensions();
 
-        return getDimension(filterMap.values(), new DimBeanExec<FilterDimension>() {
-            @Override
-            public FilterDimension exec(DimensionBean b) {
-                return new FilterDimensionBeanAdapter(b, JdbcOeDataSource.this);
-            }
-        });
+        return registry.getFilters().getDimensions();
     }
 
     /**
@@ -552,6 +568,23 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
         return arguments;
     }
 
+    /**
+     * @return whether a data source class overrides one of the {@code createRecord} methods used for details rows.
+     *         Details rows are then mapped one record at a time through them instead of being read into {@link
+     *         ColumnarRecords}.
+     */
+    static boolean overridesCreateRecord(Class<?> type) {
+        for (Class<?> c = type; c != null && c != JdbcOeDataSource.class; c = c.getSuperclass()) {
+            for (Method m : c.getDeclaredMethods()) {
+                if (m.getName().equals("createRecord") && !m.isBridge()
+                    && CREATE_RECORD_SIGNATURES.contains(Arrays.asList(m.getParameterTypes()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     protected Record createRecord(final List<Dimension> queryDimensions, final ResultSet rs) throws SQLException {
         return createRecord(queryDimensions, rs, 0);
     }
@@ -681,7 +714,100 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
     public void detailsQuery(final QueryManipulationStore queryManipStore, final RowCallbackHandler rcbh,
                              final Integer fzparm) throws OeDataSourceException {
+        prepareDetailsQuery(queryManipStore);
+
+        final int fz = (fzparm != null ? fzparm : jdbcTemplate.getFetchSize());
+        jdbcTemplate.query(new DetailsPreparedStatementCreator(queryManipStore) {
+            @Override
+            public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+                PreparedStatement ps = super.createPreparedStatement(con);
+                ps.setFetchSize(fz);
+                return ps;
+            }
+        }, rcbh);
+    }
+
+    /**
+     * Count the rows a details query returns, ignoring the store's offset, limit and keyset.
+     */
+    public long detailsCount(final QueryManipulationStore queryManipStore) throws OeDataSourceException {
+        prepareDetailsQuery(queryManipStore);
+
+        DetailsPreparedStatementCreator creator = new DetailsPreparedStatementCreator(queryManipStore);
+        creator.countOnly = true;
+        return jdbcTemplate.query(creator, new ResultSetExtractor<Long>() {
+            @Override
+            public Long extractData(ResultSet rs) throws SQLException {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
+
+    /**
+     * Run {@link #detailsQuery(QueryManipulationStore, RowCallbackHandler, Integer)} in a read-only transaction when
+     * this data source's transaction manager works on the same connections as its JDBC template. PostgreSQL only
+     * honours the fetch size with auto-commit off, so this lets rows be handled while the database is still sending
+     * them.
+     */
+    public void streamDetailsQuery(final QueryManipulationStore queryManipStore, final RowCallbackHandler rcbh,
+                                   final Integer fzparm) throws OeDataSourceException {
+        if (!(transactionManager instanceof DataSourceTransactionManager) || jdbcTemplate == null
+            || ((DataSourceTransactionManager) transactionManager).getDataSource() != jdbcTemplate.getDataSource()) {
+            detailsQuery(queryManipStore, rcbh, fzparm);
+            return;
+        }
+
+        DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+        def.setReadOnly(true);
+        TransactionStatus status = transactionManager.getTransaction(def);
+        try {
+            detailsQuery(queryManipStore, rcbh, fzparm);
+        } catch (RuntimeException e) {
+            transactionManager.rollback(status);
+            throw e;
+        }
+        transactionManager.commit(status);
+    }
+
+    /**
+     * The dimensions of the columns a details query returns, in result set order. Accumulations are moved to the end,
+     * or dropped when none were requested. Call this after the store has been used for a details query, since the
+     * query fixes the order of its results.
+     */
+    public List<Dimension> getDetailsColumns(final QueryManipulationStore queryManipStore) {
+        final List<Dimension> results2 = new ArrayList<Dimension>(queryManipStore.getResults());
+        // TODO: EMPTY?
+        final List<String> accumulationIds = new ArrayList<String>();
+        if (CollectionUtils.isEmpty(queryManipStore.getAccumulations())) {
+            // Remove all accumulations from results, based on Id
+            for (final Dimension accumulation : getAccumulations()) {
+                accumulationIds.add(accumulation.getId());
+            }
+
+            for (final Iterator<Dimension> iterator = results2.iterator(); iterator.hasNext(); ) {
+                final Dimension dimension = iterator.next();
+                if (accumulationIds.contains(dimension.getId())) {
+                    iterator.remove();
+                }
+            }
+        } else {
+            // DetailsPreparedStatementCreator puts accum dimensions at the end of results,
+            // however, DetailsResultExtractor does not know about this. That is why rearranging results.
+            // Remove accums and add them at the end.
+            for (final Iterator<Dimension> iterator = results2.iterator(); iterator.hasNext(); ) {
+                final Dimension dimension = iterator.next();
+                if (queryManipStore.getAccumulations().contains(dimension)) {
+                    iterator.remove();
+                }
+            }
+            for (Dimension d : queryManipStore.getAccumulations()) {
+                results2.add(d);
+            }
+        }
+        return results2;
+    }
 
+    private void prepareDetailsQuery(final QueryManipulationStore queryManipStore) throws OeDataSourceException {
         if (jdbcTemplate == null) {
             throw new OeDataSourceException("No JDBC Template configured");
         }
@@ -701,12 +827,13 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
         final Collection<Dimension> results = queryManipStore.getResults();
         if (!CollectionUtils.isEmpty(results)) {
+            final DimensionRegistry dimensions = registry;
             // now check if each result dimension is okay.
             for (final Dimension d : results) {
                 if (d != null) {
-                    final DimensionBean bean = superResultMap.get(d.getId());
-                    if (resultFilterIds.size() > 0) {
-                        if (bean == null && !resultFilterIds.contains(d.getId())) {
+                    final DimensionBean bean = dimensions.getAllResults().getBean(d.getId());
+                    if (dimensions.getResultFilterIds().size() > 0) {
+                        if (bean == null && !dimensions.getResultFilterIds().contains(d.getId())) {
                             throw new OeDataSourceException("Unrecognized result dimension " + d.getId());
                         }
                     } else {
@@ -741,16 +868,88 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
         final List<Object> arguments = getArguments(filters);
         queryManipStore.setArguments(arguments);
+    }
 
-        final int fz = (fzparm != null ? fzparm : jdbcTemplate.getFetchSize());
-        jdbcTemplate.query(new DetailsPreparedStatementCreator(queryManipStore) {
-            @Override
-            public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
-                PreparedStatement ps = super.createPreparedStatement(con);
-                ps.setFetchSize(fz);
-                return ps;
+    /**
+     * @return true if {@link #addPagingClause} can page details queries on this database, otherwise callers have to
+     *         skip rows themselves. Subclasses that support another database should override both methods.
+     */
+    public boolean supportsPaging() throws OeDataSourceAccessException {
+        return showMeDbType() != DbTypesEnum.UNKNOWN;
+    }
+
+    /**
+     * Append a clause that skips {@code offset} rows and returns at most {@code limit} rows.
+     *
+     * @param args query arguments, the clause's arguments are added at the end
+     */
+    protected void addPagingClause(final StringBuilder query, final List<Object> args, long offset, long limit)
+            throws OeDataSourceAccessException {
+        switch (showMeDbType()) {
+            case MYSQL:
+            case PGSQL:
+                query.append(" LIMIT ? OFFSET ?");
+                args.add(limit);
+                args.add(offset);
+                break;
+            case ORACLE:
+                // 12c and up
+                query.append(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+                args.add(offset);
+                args.add(limit);
+                break;
+            default:
+                throw new OeDataSourceAccessException("Paging is not supported on " + getDatabaseProductName());
+        }
+    }
+
+    /**
+     * A keyset can only identify a row if the sort includes a unique key, otherwise rows with the same sort values
+     * would be skipped. Comparisons with NULL are never true, so rows with a null sort value would be skipped too:
+     * every sort dimension has to be a unique key or declared {@link #getNonNullDimensions() non-null}. Otherwise the
+     * query is paged by offset.
+     */
+    private boolean isKeysetUsable(QueryManipulationStore queryManipStore) {
+        List<Object> keyset = queryManipStore.getKeyset();
+        List<OrderByFilter> sorters = queryManipStore.getOrderByFilters();
+        Set<String> keys = getUniqueKeys();
+        if (keyset == null || sorters == null || keyset.size() != sorters.size() || CollectionUtils.isEmpty(keys)
+            || keyset.contains(null)) {
+            return false;
+        }
+        Set<String> nonNull = getNonNullDimensions();
+        Set<String> sortIds = new HashSet<String>();
+        for (OrderByFilter sorter : sorters) {
+            if (!keys.contains(sorter.getFilterId())
+                && (nonNull == null || !nonNull.contains(sorter.getFilterId()))) {
+                return false;
             }
-        }, rcbh);
+            sortIds.add(sorter.getFilterId());
+        }
+        return sortIds.containsAll(keys);
+    }
+
+    /**
+     * Condition for rows that sort after the keyset, e.g. {@code (a > ?) OR (a = ? AND b < ?)} for
+     * {@code ORDER BY a ASC, b DESC}. Only used when no sort column can be null.
+     *
+     * @param keysetArgs the index into the keyset of each argument the condition takes, in order
+     */
+    private String getKeysetSql(List<OrderByFilter> sorters, List<Integer> keysetArgs) {
+        List<String> alternatives = new ArrayList<String>();
+        for (int k = 0; k < sorters.size(); k++) {
+            List<String> terms = new ArrayList<String>();
+            for (int j = 0; j < k; j++) {
+                terms.add(getResultDimension(sorters.get(j).getFilterId()).getSqlCol() + " = ?");
+                keysetArgs.add(j);
+            }
+            OrderByFilter sorter = sorters.get(k);
+            String operator = SortingDirection.DESC.getSqlSnippet().equals(sorter.getOperator()) ? " < ?" : " > ?";
+            terms.add(getResultDimension(sorter.getFilterId()).getSqlCol() + operator);
+            keysetArgs.add(k);
+            alternatives.add("(" + StringUtils.collectionToDelimitedString(terms, " AND ") + ")");
+        }
+        return "(" + StringUtils.collectionToDelimitedString(alternatives, " OR ") + ")";
     }
 
     @Override
@@ -772,6 +971,14 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
         // helper method to override/apply additional filters
         updateQueryManipStore(queryManipStore);
+
+        if (dailyRollup != null) {
+            Collection<Record> rolledUp = dailyRollup.query(queryManipStore);
+            if (rolledUp != null) {
+                return rolledUp;
+            }
+        }
+
         List<Grouping> groupings = queryManipStore.getGroupings();
         List<DimensionBean> groupingDimensions = new LinkedList<DimensionBean>();
         List<ResolutionHandler> handlers = new LinkedList<ResolutionHandler>();
@@ -786,7 +993,7 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
                 }
 
                 GroupingImpl gi = (GroupingImpl) g;
-                DimensionBean bean = groupingMap.get(gi.getId());
+                DimensionBean bean = registry.getGroupings().getBean(gi.getId());
                 if (bean == null) {
                     throw new OeDataSourceException("Grouping on non-grouping dimension \"" + gi.getId() + "\"");
                 }
@@ -851,12 +1058,13 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
         final Collection<Dimension> results = queryManipStore.getResults();
         if (!CollectionUtils.isEmpty(results)) {
+            final DimensionRegistry dimensions = registry;
             // now check if each result dimension is okay.
             for (final Dimension d : results) {
                 if (d != null) {
-                    final DimensionBean bean = superResultMap.get(d.getId());
-                    if (resultFilterIds.size() > 0) {
-                        if (bean == null && !resultFilterIds.contains(d.getId())) {
+                    final DimensionBean bean = dimensions.getAllResults().getBean(d.getId());
+                    if (dimensions.getResultFilterIds().size() > 0) {
+                        if (bean == null && !dimensions.getResultFilterIds().contains(d.getId())) {
                             throw new OeDataSourceException("Unrecognized result dimension " + d.getId());
                         }
                     } else {
@@ -892,39 +1100,14 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
         final List<Object> arguments = getArguments(filters);
         queryManipStore.setArguments(arguments);
 
-        final List<Dimension> results2 = new ArrayList<Dimension>(results);
-        // TODO: EMPTY?
-        final List<String> accumulationIds = new ArrayList<String>();
-        if (CollectionUtils.isEmpty(queryManipStore.getAccumulations())) {
-            // Remove all accumulations from results, based on Id
-            for (final Dimension accumulation : getAccumulations()) {
-                accumulationIds.add(accumulation.getId());
-            }
+        final List<Dimension> results2 = getDetailsColumns(queryManipStore);
 
-            for (final Iterator<Dimension> iterator = results2.iterator(); iterator.hasNext(); ) {
-                final Dimension dimension = iterator.next();
-                if (accumulationIds.contains(dimension.getId())) {
-                    iterator.remove();
-                }
-            }
-        } else {
-            // DetailsPreparedStatementCreator puts accum dimensions at the end of results,
-            // however, DetailsRowMapper does not know about this. That is why rearranging results.
-            // Remove accums and add them at the end.
-            for (final Iterator<Dimension> iterator = results2.iterator(); iterator.hasNext(); ) {
-                final Dimension dimension = iterator.next();
-                if (queryManipStore.getAccumulations().contains(dimension)) {
-                    iterator.remove();
-                }
-            }
-            for (Dimension d : queryManipStore.getAccumulations()) {
-                results2.add(d);
-            }
+        if (createRecordOverridden) {
+            return jdbcTemplate.query(new DetailsPreparedStatementCreator(queryManipStore, groupCols),
+                                      new DetailsRowMapper(results2, groupingDimensions, handlers, colAddedCounts));
         }
-
-        return (Collection<Record>) jdbcTemplate.query(new DetailsPreparedStatementCreator(queryManipStore, groupCols),
-                                                       new DetailsRowMapper(results2, groupingDimensions, handlers,
-                                                                            colAddedCounts));
+        return jdbcTemplate.query(new DetailsPreparedStatementCreator(queryManipStore, groupCols),
+                                  new DetailsResultExtractor(results2, groupingDimensions, handlers, colAddedCounts));
 
     }
 
@@ -1065,6 +1248,7 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
         private final QueryManipulationStore queryManipulationStore;
         private List<String> groupingCols;
+        private boolean countOnly;
 
         private DetailsPreparedStatementCreator(QueryManipulationStore queryManipulationStore) {
             this.queryManipulationStore = queryManipulationStore;
@@ -1079,6 +1263,121 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
         @Override
         public PreparedStatement createPreparedStatement(final Connection connection) throws SQLException {
+            // keyset paging only makes sense on ungrouped rows
+            boolean keyset = !countOnly && queryManipulationStore.getLimit() > 0
+                             && CollectionUtils.isEmpty(groupingCols)
+                             && CollectionUtils.isEmpty(queryManipulationStore.getAccumulations())
+                             && isKeysetUsable(queryManipulationStore);
+
+            List<Object> shape = getShape(keyset);
+            DetailsQueryPlan plan = getQueryPlan(shape);
+            if (plan == null) {
+                plan = createPlan(keyset);
+                putQueryPlan(shape, plan);
+            }
+
+            final List<Object> arguments = new ArrayList<Object>(queryManipulationStore.getArguments());
+            for (int i : plan.keysetArgs) {
+                arguments.add(queryManipulationStore.getKeyset().get(i));
+            }
+            if (plan.paged) {
+                try {
+                    // the paging clause is already in the plan, we only need its arguments
+                    addPagingClause(new StringBuilder(), arguments, keyset ? 0 : queryManipulationStore.getOffset(),
+                                    queryManipulationStore.getLimit());
+                } catch (OeDataSourceAccessException e) {
+                    throw new SQLException("Error occured while building paging clause.", e);
+                }
+            }
+
+            PreparedStatement
+                    pStmt =
+                    connection.prepareStatement(plan.sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                ResultSet.CONCUR_READ_ONLY);
+            log.debug("DETAILS QUERY w/ params: " + pStmt);
+            setArguments(arguments, pStmt);
+            log.info("DETAILS QUERY w/ args: " + pStmt);
+            return pStmt;
+        }
+
+        /**
+         * Everything the SQL text depends on, flattened into one list with the length of each part in front of it.
+         * Argument values are left out, except where they change the number of placeholders.
+         */
+        private List<Object> getShape(boolean keyset) {
+            if (queryPlanCacheSize <= 0) {
+                return null;
+            }
+
+            List<Object> shape = new ArrayList<Object>();
+            shape.add(countOnly);
+            shape.add(keyset);
+            shape.add(queryManipulationStore.getLimit() > 0);
+            shape.add(queryManipulationStore.getDistinctFilterSql());
+            shape.add(getBaseDetailsQuery());
+
+            Collection<Dimension> results = queryManipulationStore.getResults();
+            shape.add(results.size());
+            for (Dimension dimension : results) {
+                shape.add(dimension.getId());
+                shape.add(dimension.getSqlCol());
+            }
+            Collection<Dimension> accumulations = queryManipulationStore.getAccumulations();
+            shape.add(accumulations.size());
+            for (Dimension accumulation : accumulations) {
+                shape.add(accumulation.getSqlCol());
+            }
+            if (groupingCols == null) {
+                shape.add(0);
+            } else {
+                shape.add(groupingCols.size());
+                shape.addAll(groupingCols);
+            }
+            Collection<Filter> filters = queryManipulationStore.getWhereClauseFilters();
+            if (filters == null) {
+                shape.add(0);
+            } else {
+                shape.add(filters.size());
+                for (Filter filter : filters) {
+                    addFilterShape(shape, (SqlGeneratingFilter) filter);
+                }
+            }
+            Collection<OrderByFilter> sorters = queryManipulationStore.getOrderByFilters();
+            if (sorters == null) {
+                shape.add(0);
+            } else {
+                shape.add(sorters.size());
+                for (OrderByFilter sorter : sorters) {
+                    shape.add(sorter.getFilterId());
+                    shape.add(sorter.getOperator());
+                }
+            }
+            return shape;
+        }
+
+        private void addFilterShape(List<Object> shape, SqlGeneratingFilter filter) {
+            shape.add(filter.getClass());
+            if (filter instanceof InFilter) {
+                shape.add(((InFilter) filter).getFilterId());
+                shape.add(((InFilter) filter).getArguments().size());
+            } else if (filter instanceof OneArgOpFilter) {
+                shape.add(((OneArgOpFilter) filter).getFilterId());
+                shape.add(((OneArgOpFilter) filter).getOperator());
+            } else if (filter instanceof NotFilter) {
+                addFilterShape(shape, ((NotFilter) filter).getSubFilter());
+            } else if (filter instanceof MultiFilterCombiner) {
+                List<SqlGeneratingFilter> subFilters = ((MultiFilterCombiner) filter).getSubFilters();
+                shape.add(((MultiFilterCombiner) filter).getCombiningOp());
+                shape.add(subFilters.size());
+                for (SqlGeneratingFilter subFilter : subFilters) {
+                    addFilterShape(shape, subFilter);
+                }
+            } else {
+                shape.add(filter.getSqlSnippet(JdbcOeDataSource.this));
+            }
+        }
+
+        private DetailsQueryPlan createPlan(boolean keyset) throws SQLException {
             final StringBuilder query = new StringBuilder();
             query.append("SELECT ");
             // 2013/02/05, S. Chris Carr, I don't see how this syntax would work (it certainly doesn't in PostgreSQL).  "SELECT  DISTINCT , col1, ...."
@@ -1134,7 +1433,15 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
             query.append(" FROM ");
             query.append(getBaseDetailsQuery());
 
+            int beforeWhere = query.length();
             addWhereClauses(query, queryManipulationStore.getWhereClauseFilters());
+
+            List<Integer> keysetArgs = new ArrayList<Integer>();
+            if (keyset) {
+                query.append(query.length() == beforeWhere ? " WHERE " : " AND ");
+                query.append(getKeysetSql(queryManipulationStore.getOrderByFilters(), keysetArgs));
+            }
+
             boolean first = true;
             StringBuffer nameList = new StringBuffer();
 
@@ -1164,33 +1471,186 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
 
             addHavingClauses(query);
 
-            try {
+            if (countOnly) {
+                // order and paging don't change the count
+                query.insert(0, "SELECT COUNT(*) FROM (").append(") oe_count");
+            } else {
+                try {
 
-                Collection<OrderByFilter> mysorters = queryManipulationStore.getOrderByFilters();
-                if (mysorters != null && !mysorters.isEmpty()) {
-                    for (OrderByFilter orderby : mysorters) {
-                        if (getResultDimension(orderby.getFilterId()) == null) {
-                            throw new SQLException(
-                                    "Invalid sorters exist. Verify that all your sort filters exist in your SELECT clause.");
+                    Collection<OrderByFilter> mysorters = queryManipulationStore.getOrderByFilters();
+                    if (mysorters != null && !mysorters.isEmpty()) {
+                        for (OrderByFilter orderby : mysorters) {
+                            if (getResultDimension(orderby.getFilterId()) == null) {
+                                throw new SQLException(
+                                        "Invalid sorters exist. Verify that all your sort filters exist in your SELECT clause.");
+                            }
                         }
                     }
+                    addOrderByClauses(query, mysorters, nameList);
+
+                    if (queryManipulationStore.getLimit() > 0) {
+                        addPagingClause(query, new ArrayList<Object>(),
+                                        keyset ? 0 : queryManipulationStore.getOffset(),
+                                        queryManipulationStore.getLimit());
+                    }
+                } catch (OeDataSourceException | OeDataSourceAccessException e) {
+                    throw new SQLException("Error occured while building Order By clause.", e);
                 }
-                addOrderByClauses(query, mysorters, nameList);
-            } catch (OeDataSourceException e) {
-                throw new SQLException("Error occured while building Order By clause.", e);
             }
 
-            PreparedStatement
-                    pStmt =
-                    connection.prepareStatement(query.toString(), ResultSet.TYPE_FORWARD_ONLY,
-                                                ResultSet.CONCUR_READ_ONLY);
-            log.debug("DETAILS QUERY w/ params: " + pStmt);
-            setArguments(queryManipulationStore.getArguments(), pStmt);
-            log.info("DETAILS QUERY w/ args: " + pStmt);
-            return pStmt;
+            return new DetailsQueryPlan(query.toString(), keysetArgs,
+                                        !countOnly && queryManipulationStore.getLimit() > 0);
         }
     }
 
+    /**
+     * SQL text of a details query and where its keyset arguments go. Filter arguments come first and paging arguments
+     * last.
+     */
+    private static class DetailsQueryPlan {
+
+        private final String sql;
+        private final int[] keysetArgs;
+        private final boolean paged;
+
+        DetailsQueryPlan(String sql, List<Integer> keysetArgs, boolean paged) {
+            this.sql = sql;
+            this.keysetArgs = new int[keysetArgs.size()];
+            for (int i = 0; i < this.keysetArgs.length; i++) {
+                this.keysetArgs[i] = keysetArgs.get(i);
+            }
+            this.paged = paged;
+        }
+    }
+
+    /**
+     * Copies of the dimension maps of a data source.
+     */
+    private static class DimensionMaps {
+
+        private final Map<String, DimensionBean> accumulationMap;
+        private final Map<String, DimensionBean> resultMap;
+        private final List<String> resultFilterIds;
+        private final Map<String, DimensionBean> childResultMap;
+        private final Map<String, DimensionBean> superResultMap;
+        private final Map<String, DimensionBean> editMap;
+        private final Map<String, DimensionBean> childEditMap;
+        private final Map<String, DimensionBean> superEditMap;
+        private final Map<String, DimensionBean> autoGenMap;
+        private final Map<String, DimensionBean> specialSqlMap;
+        private final Map<String, DimensionBean> groupingMap;
+        private final Map<String, DimensionBean> filterMap;
+
+        DimensionMaps(JdbcOeDataSource ds) {
+            accumulationMap = new LinkedHashMap<String, DimensionBean>(ds.accumulationMap);
+            resultMap = new LinkedHashMap<String, DimensionBean>(ds.resultMap);
+            resultFilterIds = new ArrayList<String>(ds.resultFilterIds);
+            childResultMap = new LinkedHashMap<String, DimensionBean>(ds.childResultMap);
+            superResultMap = new LinkedHashMap<String, DimensionBean>(ds.superResultMap);
+            editMap = new LinkedHashMap<String, DimensionBean>(ds.editMap);
+            childEditMap = new LinkedHashMap<String, DimensionBean>(ds.childEditMap);
+            superEditMap = new LinkedHashMap<String, DimensionBean>(ds.superEditMap);
+            autoGenMap = new LinkedHashMap<String, DimensionBean>(ds.autoGenMap);
+            specialSqlMap = new LinkedHashMap<String, DimensionBean>(ds.specialSqlMap);
+            groupingMap = new LinkedHashMap<String, DimensionBean>(ds.groupingMap);
+            filterMap = new LinkedHashMap<String, DimensionBean>(ds.filterMap);
+        }
+
+        void add(DimensionBean dimension) {
+            if (dimension.getFilterBeanId() != null && dimension.getFilterBeanId().length() > 0) {
+                resultFilterIds.add(dimension.getFilterBeanId());
+            }
+            if (dimension.getIsResult()) {
+                resultMap.put(dimension.getId(), dimension);
+                superResultMap.put(dimension.getId(), dimension);
+            }
+
+            if (dimension.getIsChildResult()) {
+                childResultMap.put(dimension.getId(), dimension);
+                superResultMap.put(dimension.getId(), dimension);
+            }
+
+            if (dimension.getIsFilter()) {
+                filterMap.put(dimension.getId(), dimension);
+            }
+
+            if (dimension.getIsAccumulation()) {
+                accumulationMap.put(dimension.getId(), dimension);
+            }
+
+            /** CRUD - DataEntry related ONLY isEdit, isChildEdit, hasSpecialSql, isAutoGen */
+            if (dimension.getIsEdit()) {
+                editMap.put(dimension.getId(), dimension);
+                superEditMap.put(dimension.getId(), dimension);
+            }
+
+            if (dimension.getIsChildEdit()) {
+                childEditMap.put(dimension.getId(), dimension);
+                superEditMap.put(dimension.getId(), dimension);
+            }
+
+            if (dimension.hasSpecialSql()) {
+                specialSqlMap.put(dimension.getId(), dimension);
+            }
+
+            if (dimension.isAutoGen()) {
+                autoGenMap.put(dimension.getId(), dimension);
+            }
+
+            if (dimension.getIsGrouping()) {
+                groupingMap.put(dimension.getId(), dimension);
+            }
+        }
+
+        void remove(DimensionBean dimension) {
+            resultMap.remove(dimension.getId());
+            superResultMap.remove(dimension.getId());
+            if (dimension.getFilterBeanId() != null && dimension.getFilterBeanId().length() > 0) {
+                resultFilterIds.remove(dimension.getFilterBeanId());
+            }
+            childResultMap.remove(dimension.getId());
+            filterMap.remove(dimension.getId());
+            accumulationMap.remove(dimension.getId());
+            editMap.remove(dimension.getId());
+            superEditMap.remove(dimension.getId());
+            childEditMap.remove(dimension.getId());
+            specialSqlMap.remove(dimension.getId());
+            autoGenMap.remove(dimension.getId());
+            groupingMap.remove(dimension.getId());
+        }
+
+        DimensionRegistry createRegistry(JdbcOeDataSource ds) {
+            return new DimensionRegistry(ds, accumulationMap, resultMap, superResultMap, filterMap, specialSqlMap,
+                                         groupingMap, editMap, superEditMap, autoGenMap, childResultMap,
+                                         childEditMap, resultFilterIds);
+        }
+
+        /**
+         * Make these the data source's dimensions. The registry is written last and is the only thing queries read.
+         */
+        void publish(JdbcOeDataSource ds) {
+            DimensionRegistry registry = createRegistry(ds);
+            ds.accumulationMap = accumulationMap;
+            ds.resultMap = resultMap;
+            ds.resultFilterIds = resultFilterIds;
+            ds.childResultMap = childResultMap;
+            ds.superResultMap = superResultMap;
+            ds.editMap = editMap;
+            ds.childEditMap = childEditMap;
+            ds.superEditMap = superEditMap;
+            ds.autoGenMap = autoGenMap;
+            ds.specialSqlMap = specialSqlMap;
+            ds.groupingMap = groupingMap;
+            ds.filterMap = filterMap;
+            ds.registry = registry;
+            // cached SQL may use columns of dimensions that changed
+            ds.clearQueryPlans();
+        }
+    }
+
+    /**
+     * Maps details rows one at a time through the {@code createRecord} methods, for subclasses that override them.
+     */
     private class DetailsRowMapper implements RowMapper<Record> {
 
         private final List<Dimension> dimensions;
@@ -1217,6 +1677,96 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
         }
     }
 
+    /**
+     * Reads details rows into {@link ColumnarRecords}, laying out columns the same way as the {@code createRecord}
+     * methods. Grouping dimension adapters are created once per query instead of once per row.
+     */
+    private class DetailsResultExtractor implements ResultSetExtractor<Collection<Record>> {
+
+        private final List<Dimension> dimensions;
+        private List<ResolutionHandler> handlers;
+        private List<Integer> colAddedCounts;
+        private List<DimensionBean> groupingDimensions;
+
+        public DetailsResultExtractor(List<Dimension> results2, List<DimensionBean> groupingDimensions,
+                                      List<ResolutionHandler> handlers, List<Integer> colAddedCounts) {
+            this.dimensions = results2;
+            this.groupingDimensions = groupingDimensions;
+            this.handlers = handlers;
+            this.colAddedCounts = colAddedCounts;
+        }
+
+        @Override
+        public Collection<Record> extractData(ResultSet rs) throws SQLException {
+            final List<DimensionBean> grouping =
+                    groupingDimensions == null ? Collections.<DimensionBean>emptyList() : groupingDimensions;
+
+            final List<Dimension> recordDimensions = new ArrayList<Dimension>(dimensions.size() + grouping.size());
+            recordDimensions.addAll(dimensions);
+            for (DimensionBean dim : grouping) {
+                recordDimensions.add(new DimensionBeanAdapter(dim, JdbcOeDataSource.this));
+            }
+
+            // as in createRecord, the last column with a repeated id wins, so only that one is read
+            final boolean[] read = new boolean[recordDimensions.size()];
+            final Set<String> seen = new HashSet<String>();
+            for (int i = read.length - 1; i >= 0; i--) {
+                read[i] = seen.add(recordDimensions.get(i).getId());
+            }
+            final Set<String> kernelIds = new HashSet<String>();
+            for (int i = 0; i < grouping.size(); i += 1) {
+                if (handlers.get(i) != null && read[dimensions.size() + i]) {
+                    kernelIds.add(grouping.get(i).getId());
+                }
+            }
+
+            final ColumnarRecords records = new ColumnarRecords(recordDimensions, kernelIds);
+            final int[] columns = new int[recordDimensions.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = records.getColumnIndex(recordDimensions.get(i).getId());
+            }
+
+            while (rs.next()) {
+                records.addRow();
+                int colCount = 0;
+                for (int i = 0; i < dimensions.size(); i++) {
+                    if (read[i]) {
+                        records.read(columns[i], rs, i + 1);
+                    }
+                    colCount++;
+                }
+
+                for (int i = 0; i < grouping.size(); i += 1) {
+                    ResolutionHandler handler = handlers.get(i);
+                    int column = columns[dimensions.size() + i];
+                    boolean last = read[dimensions.size() + i];
+
+                    if (handler == null) {
+                        if (last) {
+                            records.read(column, rs, colCount);
+                        }
+                        colCount += 1;
+                    } else {
+                        int size = colAddedCounts.get(i);
+                        if (last) {
+                            Object[] vals = new Object[size];
+                            for (int j = 0; j < size; j += 1) {
+                                vals[j] = rs.getObject(colCount + 1 + j);
+                            }
+                            try {
+                                records.setValue(column, handler.buildKernel(vals));
+                            } catch (OeDataSourceException e) {
+                                throw new SQLException(e);
+                            }
+                        }
+                        colCount += size;
+                    }
+                }
+            }
+            return records;
+        }
+    }
+
     @Override
     public DatabaseMetaData getDataSourceMetaData() throws OeDataSourceAccessException {
         if (databaseMetaData != null) {
@@ -1306,11 +1856,17 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
         return getDatabaseProductName().equalsIgnoreCase(DbConfigHelper.MYSQL);
     }
 
+    public boolean isOracleDBMS() throws OeDataSourceAccessException {
+        return getDatabaseProductName().equalsIgnoreCase(DbConfigHelper.ORACLE);
+    }
+
     public DbTypesEnum showMeDbType() throws OeDataSourceAccessException {
         if (isMySqlDBMS()) {
             return DbTypesEnum.MYSQL;
         } else if (isPostgreSqlDBMS()) {
             return DbTypesEnum.PGSQL;
+        } else if (isOracleDBMS()) {
+            return DbTypesEnum.ORACLE;
         } else {
             return DbTypesEnum.UNKNOWN;
         }
@@ -1329,14 +1885,15 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
     }
 
     public DimensionBean getBean(String fieldId) {
-        DimensionBean bean = filterMap.get(fieldId);
+        DimensionRegistry dimensions = registry;
+        DimensionBean bean = dimensions.getFilters().getBean(fieldId);
 
-        if (bean == null && editMap != null) {
-            bean = editMap.get(fieldId);
+        if (bean == null) {
+            bean = dimensions.getEdits().getBean(fieldId);
         }
 
-        if (bean == null && resultMap != null) {
-            bean = resultMap.get(fieldId);
+        if (bean == null) {
+            bean = dimensions.getResults().getBean(fieldId);
         }
 
         return bean;
@@ -1418,6 +1975,17 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
         this.dimensionJoiner = dimensionJoiner;
     }
 
+    public DailyRollup getDailyRollup() {
+        return dailyRollup;
+    }
+
+    /**
+     * @param dailyRollup rollup that answers eligible time series queries, or null to always use the base query
+     */
+    public void setDailyRollup(DailyRollup dailyRollup) {
+        this.dailyRollup = dailyRollup;
+    }
+
     private void joinDimensions() {
         if (dimensionJoiner != null) {
             dimensionJoiner.joinDimensions();
@@ -1432,6 +2000,30 @@ public class JdbcOeDataSource implements OeDataSource, ApplicationContextAware,
         this.roles = roles;
     }
 
+    /**
+     * Ids of the result dimensions that together identify a row, used for keyset paging of details queries. Null if
+     * not known.
+     */
+    public Set<String> getUniqueKeys() {
+        return uniqueKeys;
+    }
+
+    public void setUniqueKeys(Set<String> uniqueKeys) {
+        this.uniqueKeys = uniqueKeys;
+    }
+
+    /**
+     * Ids of result dimensions, besides the unique keys, that are never null. Keyset paging is only used when every
+     * sort dimension is a unique key or one of these. Null if none are known.
+     */
+    public Set<String> getNonNullDimensions() {
+        return nonNullDimensions;
+    }
+
+    public void setNonNullDimensions(Set<String> nonNullDimensions) {
+        this.nonNullDimensions = nonNullDimensions;
+    }
+
     public static Authentication getAuthentication() {
         return SecurityContextHolder.getContext().getAuthentication();
     }
@@ -38,6 +38,7 @@ import edu.jhuapl.openessence.datasource.dataseries.GroupingDimension;
 import edu.jhuapl.openessence.datasource.jdbc.DataTypeConversionHelper;
 import edu.jhuapl.openessence.datasource.jdbc.DimensionBean;
 import edu.jhuapl.openessence.datasource.jdbc.DimensionBeanAdapter;
+import edu.jhuapl.openessence.datasource.jdbc.DimensionRegistry;
 import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
 import edu.jhuapl.openessence.datasource.jdbc.PluggableResolutionHandler;
 import edu.jhuapl.openessence.datasource.jdbc.QueryRecord;
@@ -60,46 +61,22 @@ import java.util.Map;
 
 public class JdbcDataSeriesSource extends JdbcOeDataSource implements DataSeriesSource {
 
-    private Map<String, DimensionBean> groupingMap;
-
     public JdbcDataSeriesSource() {
         super();
-        groupingMap = new LinkedHashMap<String, DimensionBean>();
     }
 
     public String getDataSourceId() {
         return this.getClass().getSimpleName();
     }
 
-    @Override
-    public void addDimension(DimensionBean dimension) {
-        // TODO just get rid of all these dimension maps already!
-        super.addDimension(dimension);
-        if (dimension.getIsGrouping()) {
-            groupingMap.put(dimension.getId(), dimension);
-        }
-    }
-
-    @Override
-    public void removeDimension(DimensionBean dimension) {
-        super.removeDimension(dimension);
-        groupingMap.remove(dimension.getId());
-    }
-
     @Override
     public Collection<GroupingDimension> getGroupingDimensions() {
-        return getDimension(groupingMap.values(), new DimBeanExec<GroupingDimension>() {
-            @Override
-            public GroupingDimension exec(DimensionBean b) {
-                return new GroupingDimensionAdapter(b, JdbcDataSeriesSource.this);
-            }
-        });
+        return getDimensionRegistry().getGroupings().getDimensions();
     }
 
     @Override
     public GroupingDimension getGroupingDimension(String dimensionId) {
-        DimensionBean groupingBean = groupingMap.get(dimensionId);
-        return groupingBean != null ? new GroupingDimensionAdapter(groupingBean, this) : null;
+        return getDimensionRegistry().getGroupings().getDimension(dimensionId);
     }
 
     @Override
@@ -132,8 +109,9 @@ public class JdbcDataSeriesSource extends JdbcOeDataSource implements DataSeries
             throw new OeDataSourceException("At least one accumulation must be provided.");
         }
 
+        DimensionRegistry dimensionRegistry = getDimensionRegistry();
         for (String accumId : accumIds) {
-            DimensionBean bean = accumulationMap.get(accumId);
+            DimensionBean bean = dimensionRegistry.getAccumulations().getBean(accumId);
             if (bean == null) {
                 throw new OeDataSourceException("Unknown accumulation \"" + accumId + "\"");
             }
@@ -150,7 +128,7 @@ public class JdbcDataSeriesSource extends JdbcOeDataSource implements DataSeries
             }
 
             GroupingImpl gi = (GroupingImpl) g;
-            DimensionBean bean = groupingMap.get(gi.getId());
+            DimensionBean bean = dimensionRegistry.getGroupings().getBean(gi.getId());
             if (bean == null) {
                 throw new OeDataSourceException("Grouping on non-grouping dimension \"" + gi.getId() + "\"");
             }
@@ -240,7 +218,7 @@ public class JdbcDataSeriesSource extends JdbcOeDataSource implements DataSeries
                     query.append(",");
                 }
 
-                DimensionBean bean = accumulationMap.get(accumId);
+                DimensionBean bean = getDimensionRegistry().getAccumulations().getBean(accumId);
                 query.append(bean.getSqlCol());
             }
 
@@ -42,7 +42,6 @@ import edu.jhuapl.openessence.datasource.entry.OeDataEntrySource;
 import edu.jhuapl.openessence.datasource.entry.ParentTableDetails;
 import edu.jhuapl.openessence.datasource.jdbc.DataTypeConversionHelper;
 import edu.jhuapl.openessence.datasource.jdbc.DimensionBean;
-import edu.jhuapl.openessence.datasource.jdbc.DimensionBeanAdapter;
 import edu.jhuapl.openessence.datasource.jdbc.JdbcOeDataSource;
 import edu.jhuapl.openessence.datasource.jdbc.filter.EqFilter;
 
@@ -126,6 +125,17 @@ public class JdbcOeDataEntrySource extends JdbcOeDataSource implements OeDataEnt
         return this.parentTableDetails;
     }
 
+    /**
+     * Defaults to the parent table's primary key.
+     */
+    @Override
+    public Set<String> getUniqueKeys() {
+        if (super.getUniqueKeys() == null && parentTableDetails != null) {
+            return parentTableDetails.getPks();
+        }
+        return super.getUniqueKeys();
+    }
+
     @Override
     public String getTableName() {
         return tableName;
@@ -151,14 +161,14 @@ public class JdbcOeDataEntrySource extends JdbcOeDataSource implements OeDataEnt
      * @return autoGenMap map of dimension id to dimension bean that is auto-generated during sql insert
      */
     public Map<String, DimensionBean> getAutoGenMap() {
-        return this.autoGenMap;
+        return getDimensionRegistry().getAutoGenDimensions().getBeans();
     }
 
     /**
      * @return specialSqlMap map of dimension id to dimension bean that has special sql
      */
     public Map<String, DimensionBean> getSpecialSqlMap() {
-        return this.specialSqlMap;
+        return getDimensionRegistry().getSpecialSqlDimensions().getBeans();
     }
 
     /*****************************************************************************************************************
@@ -526,7 +536,8 @@ public class JdbcOeDataEntrySource extends JdbcOeDataSource implements OeDataEnt
             tablePkIds = parentTableDetails.getPks();
 
             // setup autogen to sqlcol map
-            Map<String, Object> superEditCopy = new LinkedHashMap<String, Object>(superEditMap);
+            Map<String, Object> superEditCopy =
+                    new LinkedHashMap<String, Object>(getDimensionRegistry().getAllEdits().getBeans());
             Set<String> superEditKeys = superEditCopy.keySet();
             DualHashBidiMap bidimap = new DualHashBidiMap();
             superEditKeys.retainAll(tablePkIds);
@@ -1034,13 +1045,11 @@ public class JdbcOeDataEntrySource extends JdbcOeDataSource implements OeDataEnt
 		}	*/
 
         // todo - can replace editDims check above...
-        if (superEditMap == null) {
-            throw new OeDataSourceException("Edits cannot be null");
-        }
+        Map<String, DimensionBean> superEdits = getDimensionRegistry().getAllEdits().getBeans();
 
         // now check if each edit dimension is okay.
         for (Dimension d : editDims) {
-            DimensionBean bean = superEditMap.get(d.getId());
+            DimensionBean bean = superEdits.get(d.getId());
             if (bean == null) {
                 throw new OeDataSourceException("Unrecognized edit dimension " + d.getId());
             }
@@ -1072,6 +1081,7 @@ public class JdbcOeDataEntrySource extends JdbcOeDataSource implements OeDataEnt
         @Override
         public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
             StringBuilder query = new StringBuilder("SELECT ");
+            Map<String, DimensionBean> superEdits = getDimensionRegistry().getAllEdits().getBeans();
 
             // first add all the edit(i.e. result) dimensions
             boolean first = true;
@@ -1082,7 +1092,7 @@ public class JdbcOeDataEntrySource extends JdbcOeDataSource implements OeDataEnt
                     query.append(", ");
                 }
 
-                query.append(superEditMap.get(d.getId()).getSqlCol());
+                query.append(superEdits.get(d.getId()).getSqlCol());
             }
             query.append(" FROM ").append(tableName).append(" ");
 
@@ -1400,71 +1410,29 @@ public class JdbcOeDataEntrySource extends JdbcOeDataSource implements OeDataEnt
 
     @Override
     public Dimension getAutoGeneratedDimension(String id) {
-        if (autoGenMap != null) {
-
-            if (autoGenMap.get(id) != null) {
-                return new DimensionBeanAdapter(autoGenMap.get(id), this);
-            }
-            return null;
-        } else {
-            return null;
-        }
+        return getDimensionRegistry().getAutoGenDimensions().getDimension(id);
     }
 
 
     @Override
     public Collection<Dimension> getAutoGeneratedDimensions() {
-        if (autoGenMap != null) {
-            return getDimension(autoGenMap.values(), new DimBeanExec<Dimension>() {
-                @Override
-                public Dimension exec(DimensionBean b) {
-                    return new DimensionBeanAdapter(b, JdbcOeDataEntrySource.this);
-                }
-            });
-        } else {
-            return new ArrayList<Dimension>(0);
-        }
+        return getDimensionRegistry().getAutoGenDimensions().getDimensions();
     }
 
 
     @Override
     public Dimension getEditDimension(String id) {
-        if (superEditMap != null) {
-            if (superEditMap.get(id) != null) {
-                return new DimensionBeanAdapter(superEditMap.get(id), this);
-            }
-            return null;
-        } else {
-            return null;
-        }
+        return getDimensionRegistry().getAllEdits().getDimension(id);
     }
 
     @Override
     public Collection<Dimension> getEditDimensions() {
-        if (editMap != null) {
-            return getDimension(editMap.values(), new DimBeanExec<Dimension>() {
-                @Override
-                public Dimension exec(DimensionBean b) {
-                    return new DimensionBeanAdapter(b, JdbcOeDataEntrySource.this);
-                }
-            });
-        } else {
-            return new ArrayList<Dimension>(0);
-        }
+        return getDimensionRegistry().getEdits().getDimensions();
     }
 
     @Override
     public Collection<Dimension> getAllEditDimensions() {
-        if (superEditMap != null) {
-            return getDimension(superEditMap.values(), new DimBeanExec<Dimension>() {
-                @Override
-                public Dimension exec(DimensionBean b) {
-                    return new DimensionBeanAdapter(b, JdbcOeDataEntrySource.this);
-                }
-            });
-        } else {
-            return new ArrayList<Dimension>(0);
-        }
+        return getDimensionRegistry().getAllEdits().getDimensions();
     }
 
     /**
@@ -61,6 +61,14 @@ public abstract class MultiFilterCombiner implements SqlGeneratingFilter {
         return sb.toString();
     }
 
+    public List<SqlGeneratingFilter> getSubFilters() {
+        return subFilters;
+    }
+
+    public String getCombiningOp() {
+        return combiningOp;
+    }
+
     public List<Object> getArguments(JdbcOeDataSource ds) {
         List<Object> args = new LinkedList<Object>();
         for (SqlGeneratingFilter subFilter : subFilters) {
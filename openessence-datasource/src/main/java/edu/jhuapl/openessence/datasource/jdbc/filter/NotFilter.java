@@ -50,6 +50,10 @@ public class NotFilter implements SqlGeneratingFilter {
         return sb.toString();
     }
 
+    public SqlGeneratingFilter getSubFilter() {
+        return subFilter;
+    }
+
     public List<Object> getArguments(JdbcOeDataSource ds) {
         return subFilter.getArguments(ds);
     }
@@ -28,6 +28,8 @@ package edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql;
 
 import edu.jhuapl.openessence.datasource.OeDataSourceException;
 
+import java.util.Date;
+
 public class PgSqlTimeHandler {
 
     //http://www.postgresql.org/docs/8.0/interactive/functions-datetime.html
@@ -42,4 +44,15 @@ public class PgSqlTimeHandler {
         }
     }
 
+    // date_trunc returns a timestamp, copy it so kernels compare equal to plain dates
+    protected Date dateValue(Object o, int pos)
+            throws OeDataSourceException {
+        if (o instanceof Date) {
+            return new Date(((Date) o).getTime());
+        } else {
+            throw new OeDataSourceException(
+                    "Could not convert " + o + " to date value for grouping value in position " + pos);
+        }
+    }
+
 }
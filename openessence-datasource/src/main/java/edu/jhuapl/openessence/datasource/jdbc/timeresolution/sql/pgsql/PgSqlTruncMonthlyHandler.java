@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql;
+
+import edu.jhuapl.openessence.datasource.OeDataSourceException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monthly resolution that groups on the first day of each month, computed with {@code date_trunc}, instead of on the
+ * year and month parts. See {@link PgSqlTruncWeeklyHandler}.
+ */
+public class PgSqlTruncMonthlyHandler extends PgSqlMonthlyHandler {
+
+    @Override
+    public Object buildKernel(Object[] resolutionValues)
+            throws OeDataSourceException {
+        return dateValue(resolutionValues[0], 0);
+    }
+
+    @Override
+    public List<String> getResolutionColumns(String dimCol, String timezone)
+            throws OeDataSourceException {
+        String tzString = (timezone != null && timezone.length() > 0) ?
+                          (" AT TIME ZONE '" + timezone + "' ") : "";
+        List<String> groupCols = new ArrayList<String>(1);
+        groupCols.add("date_trunc('month', " + dimCol + tzString + ")");
+        return groupCols;
+    }
+
+}
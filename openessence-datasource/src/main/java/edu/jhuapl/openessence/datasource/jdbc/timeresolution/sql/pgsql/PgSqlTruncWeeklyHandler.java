@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql;
+
+import edu.jhuapl.openessence.datasource.OeDataSourceException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Weekly resolution that groups on the first day of each week instead of on {@code getYear} and {@code getWeekOfYear}.
+ * The week start is a single {@code date_trunc} expression, so PostgreSQL doesn't call a PL/pgSQL function per row, can
+ * aggregate in parallel and can use an expression index on the same expression. Weeks start on {@link
+ * #getWeekStartDay()}; CDC weeks are the weeks that start on Sunday.
+ */
+public class PgSqlTruncWeeklyHandler extends PgSqlWeeklyHandler {
+
+    public PgSqlTruncWeeklyHandler() {
+        super();
+    }
+
+    /**
+     * @param day weekStartDay
+     */
+    public PgSqlTruncWeeklyHandler(int day) {
+        super(day);
+    }
+
+    @Override
+    public Object buildKernel(Object[] resolutionValues)
+            throws OeDataSourceException {
+        return dateValue(resolutionValues[0], 0);
+    }
+
+    @Override
+    public List<String> getResolutionColumns(String dimCol, String timezone)
+            throws OeDataSourceException {
+        String tzString = (timezone != null && timezone.length() > 0) ?
+                          (" AT TIME ZONE '" + timezone + "' ") : "";
+        // date_trunc weeks start on Monday, shift the dates so that they start on our start day
+        int offset = (getWeekStartDay() + 6) % 7;
+        List<String> groupCols = new ArrayList<String>(1);
+        if (offset == 0) {
+            groupCols.add("date_trunc('week', " + dimCol + tzString + ")");
+        } else {
+            groupCols.add("(date_trunc('week', (" + dimCol + tzString + ") - interval '" + offset + " days')"
+                          + " + interval '" + offset + " days')");
+        }
+        return groupCols;
+    }
+
+}
@@ -42,6 +42,21 @@ public class MapMetaData {
         overlays = new WMSLayer[0];
     }
 
+    /**
+     * Copy of the metadata with its own overlay layers, for filling in per-request layer state.
+     */
+    public MapMetaData(MapMetaData other) {
+        bounds = other.bounds;
+        baseLayers = other.baseLayers;
+        style = other.style;
+        if (other.overlays != null) {
+            overlays = new WMSLayer[other.overlays.length];
+            for (int i = 0; i < overlays.length; i++) {
+                overlays[i] = new WMSLayer(other.overlays[i]);
+            }
+        }
+    }
+
     public float[] getBounds() {
         return bounds;
     }
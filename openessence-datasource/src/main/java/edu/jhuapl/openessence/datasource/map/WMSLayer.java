@@ -50,11 +50,39 @@ public class WMSLayer {
      */
     private String cql_filter;
 
+    /**
+     * Result dimension holding each feature's geometry as GeoJSON, used when features are served from memory
+     */
+    private String geometryId;
+
+    /**
+     * Id of the in-memory features of this layer, populated via map controller
+     */
+    private String featureId;
+
     private Threshold[] thresholds;
 
     public WMSLayer() {
     }
 
+    /**
+     * Copy of a configured layer, so the per-request CQL filter and feature id can be set without touching the data
+     * source's shared metadata.
+     */
+    public WMSLayer(WMSLayer other) {
+        name = other.name;
+        getMapQuery = other.getMapQuery;
+        layerOptions = other.layerOptions;
+        accumulationId = other.accumulationId;
+        dataDSName = other.dataDSName;
+        dataFieldMap = other.dataFieldMap;
+        grouping = other.grouping;
+        cql_filter = other.cql_filter;
+        geometryId = other.geometryId;
+        featureId = other.featureId;
+        thresholds = other.thresholds;
+    }
+
     public String getName() {
         return name;
     }
@@ -127,4 +155,20 @@ public class WMSLayer {
     public String getCqlFilter() {
         return cql_filter;
     }
+
+    public String getGeometryId() {
+        return geometryId;
+    }
+
+    public void setGeometryId(String geometryId) {
+        this.geometryId = geometryId;
+    }
+
+    public String getFeatureId() {
+        return featureId;
+    }
+
+    public void setFeatureId(String featureId) {
+        this.featureId = featureId;
+    }
 }
@@ -30,6 +30,7 @@ public class DbConfigHelper {
 
     public static final String POSTGRESQL = "PostgreSQL";
     public static final String MYSQL = "MySQL";
+    public static final String ORACLE = "Oracle";
     public static final Integer POSTGRESQL_FETCH_SIZE = 100;
     public static final Integer MYSQL_FETCH_SIZE = Integer.MIN_VALUE;
 }
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Record;
+
+import org.h2.tools.SimpleResultSet;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ColumnarRecordsTest {
+
+    private static final JdbcOeDataSource DATA_SOURCE = new JdbcOeDataSource();
+
+    private static final List<Dimension> TYPED = Arrays.<Dimension>asList(
+            dimension("i", FieldType.INTEGER), dimension("l", FieldType.LONG), dimension("f", FieldType.FLOAT),
+            dimension("d", FieldType.DOUBLE), dimension("b", FieldType.BOOLEAN), dimension("s", FieldType.TEXT),
+            dimension("day", FieldType.DATE), dimension("time", FieldType.DATE_TIME));
+
+    @Test
+    public void testReadMatchesConversionHelper() throws SQLException {
+        SimpleResultSet rs = typedResultSet();
+        rs.addRow(1, 2L, 1.5f, 2.25, true, "a", new java.sql.Date(86400000L), new Timestamp(90061001L));
+        rs.addRow(null, null, null, null, null, null, null, null);
+        rs.addRow(0, 0L, 0f, 0d, false, "", new java.sql.Date(0L), new Timestamp(0L));
+
+        ColumnarRecords records = read(TYPED, rs);
+
+        rs.beforeFirst();
+        for (Record record : records) {
+            assertTrue(rs.next());
+            for (int c = 0; c < TYPED.size(); c++) {
+                Dimension d = TYPED.get(c);
+                Object expected = DataTypeConversionHelper.convert2JavaType(rs, d.getSqlType(), c + 1);
+                assertEquals(d.getId(), expected, record.getValue(d.getId()));
+                if (expected != null) {
+                    assertEquals(d.getId(), expected.getClass(), record.getValue(d.getId()).getClass());
+                }
+            }
+        }
+        assertFalse(rs.next());
+        assertEquals(3, records.size());
+    }
+
+    @Test
+    public void testGrowsPastInitialCapacity() throws SQLException {
+        SimpleResultSet rs = typedResultSet();
+        for (int i = 0; i < 1000; i++) {
+            rs.addRow(i, (long) i, (float) i, (double) i, i % 2 == 0, "s" + (i % 7),
+                      i % 5 == 0 ? null : new java.sql.Date(i * 86400000L), new Timestamp(i));
+        }
+
+        ColumnarRecords records = read(TYPED, rs);
+
+        assertEquals(1000, records.size());
+        for (int i = 0; i < 1000; i++) {
+            Record r = records.get(i);
+            assertEquals(i, r.getValue("i"));
+            assertEquals((long) i, r.getValue("l"));
+            assertEquals(i % 2 == 0, r.getValue("b"));
+            assertEquals("s" + (i % 7), r.getValue("s"));
+            assertEquals(i % 5 == 0 ? null : new Date(i * 86400000L), r.getValue("day"));
+        }
+    }
+
+    @Test
+    public void testDictionaryFallback() {
+        ColumnarRecords records = new ColumnarRecords(Collections.singletonList(dimension("s", FieldType.TEXT)));
+        // a few repeated words, then more distinct values than the dictionary holds
+        for (int i = 0; i < 5000; i++) {
+            records.addRow();
+            if (i % 11 != 0) {
+                records.setValue(0, i < 2000 ? "word" + (i % 3) : "value" + i);
+            }
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            Object expected = i % 11 == 0 ? null : i < 2000 ? "word" + (i % 3) : "value" + i;
+            assertEquals(expected, records.get(i).getValue("s"));
+        }
+    }
+
+    @Test
+    public void testWriteThroughValues() {
+        ColumnarRecords records = new ColumnarRecords(TYPED);
+        records.addRow();
+        records.setValue(records.getColumnIndex("i"), 1);
+        records.setValue(records.getColumnIndex("s"), "a");
+
+        Map<String, Object> values = records.get(0).getValues();
+        assertEquals(1, values.put("i", 2));
+        assertNull(values.put("day", new Date(5)));
+        assertEquals("a", values.put("s", null));
+
+        Record record = records.get(0);
+        assertEquals(2, record.getValue("i"));
+        assertEquals(new Date(5), record.getValue("day"));
+        assertNull(record.getValue("s"));
+        assertTrue(record.getValues().containsKey("s"));
+        assertEquals(TYPED.size(), record.getValues().size());
+
+        for (Map.Entry<String, Object> entry : record.getValues().entrySet()) {
+            if (entry.getKey().equals("l")) {
+                assertNull(entry.setValue(7L));
+                assertEquals(7L, entry.getValue());
+            }
+        }
+        assertEquals(7L, records.get(0).getValue("l"));
+
+        try {
+            values.put("unknown", 1);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            values.remove("i");
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDatesAreCopies() {
+        ColumnarRecords records = new ColumnarRecords(TYPED);
+        records.addRow();
+        records.setValue(records.getColumnIndex("day"), new Date(1000));
+
+        Date date = (Date) records.get(0).getValue("day");
+        date.setTime(2000);
+        assertEquals(new Date(1000), records.get(0).getValue("day"));
+        assertNotSame(records.get(0).getValue("day"), records.get(0).getValue("day"));
+    }
+
+    @Test
+    public void testValueOfAnotherType() {
+        ColumnarRecords records = new ColumnarRecords(TYPED);
+        int i = records.getColumnIndex("i");
+        records.addRow();
+        records.setValue(i, 1);
+        records.addRow();
+        records.addRow();
+        records.setValue(i, "three");
+
+        // the column keeps the earlier values once it has to hold any object
+        assertEquals(1, records.get(0).getValue("i"));
+        assertNull(records.get(1).getValue("i"));
+        assertEquals("three", records.get(2).getValue("i"));
+
+        Timestamp timestamp = new Timestamp(1000);
+        timestamp.setNanos(123456789);
+        records.get(0).getValues().put("time", timestamp);
+        assertEquals(timestamp, records.get(0).getValue("time"));
+    }
+
+    @Test
+    public void testObjectAndRepeatedIds() throws SQLException {
+        List<Dimension> dimensions = Arrays.<Dimension>asList(dimension("x", FieldType.TEXT),
+                                                              dimension("k", FieldType.DATE),
+                                                              dimension("x", FieldType.INTEGER));
+        ColumnarRecords records = new ColumnarRecords(dimensions, Collections.singleton("k"));
+
+        records.addRow();
+        assertEquals(Arrays.asList("x", "k"), new ArrayList<String>(records.get(0).getResultIds()));
+        // the last dimension with an id gives the column its type
+        assertEquals(FieldType.INTEGER, records.get(0).getDimension("x").getSqlType());
+
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("x", Types.INTEGER, 10, 0);
+        rs.addRow(5);
+        assertTrue(rs.next());
+        records.read(records.getColumnIndex("x"), rs, 1);
+        records.setValue(records.getColumnIndex("k"), Arrays.asList(1, 2));
+
+        assertEquals(5, records.get(0).getValue("x"));
+        assertEquals(Arrays.asList(1, 2), records.get(0).getValue("k"));
+        assertEquals(-1, records.getColumnIndex("unknown"));
+        assertNull(records.get(0).getValue("unknown"));
+    }
+
+    @Test
+    public void testRowEquality() {
+        ColumnarRecords records = new ColumnarRecords(TYPED);
+        for (int i = 0; i < 3; i++) {
+            records.addRow();
+            records.setValue(records.getColumnIndex("s"), i < 2 ? "same" : "other");
+        }
+
+        assertEquals(records.get(0), records.get(1));
+        assertEquals(records.get(0).hashCode(), records.get(1).hashCode());
+        assertFalse(records.get(0).equals(records.get(2)));
+    }
+
+    private static ColumnarRecords read(List<Dimension> dimensions, ResultSet rs) throws SQLException {
+        ColumnarRecords records = new ColumnarRecords(dimensions);
+        while (rs.next()) {
+            records.addRow();
+            for (int c = 0; c < dimensions.size(); c++) {
+                records.read(records.getColumnIndex(dimensions.get(c).getId()), rs, c + 1);
+            }
+        }
+        return records;
+    }
+
+    private static SimpleResultSet typedResultSet() {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.setAutoClose(false);
+        rs.addColumn("i", Types.INTEGER, 10, 0);
+        rs.addColumn("l", Types.BIGINT, 19, 0);
+        rs.addColumn("f", Types.REAL, 7, 0);
+        rs.addColumn("d", Types.DOUBLE, 17, 0);
+        rs.addColumn("b", Types.BOOLEAN, 1, 0);
+        rs.addColumn("s", Types.VARCHAR, 10, 0);
+        rs.addColumn("day", Types.DATE, 10, 0);
+        rs.addColumn("time", Types.TIMESTAMP, 23, 0);
+        return rs;
+    }
+
+    private static Dimension dimension(String id, FieldType type) {
+        return new DimensionBeanAdapter(TestDatabase.bean(id, type), DATA_SOURCE);
+    }
+}
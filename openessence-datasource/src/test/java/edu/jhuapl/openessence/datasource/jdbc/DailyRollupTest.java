@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
+import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.dataseries.Grouping;
+import edu.jhuapl.openessence.datasource.jdbc.dataseries.GroupingImpl;
+import edu.jhuapl.openessence.datasource.jdbc.filter.EqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GtFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LtFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LteqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.mysql.MySqlDailyHandler;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.mysql.MySqlHourlyHandler;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.mysql.MySqlMonthlyHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DailyRollupTest {
+
+    private SingleConnectionDataSource db;
+    private JdbcTemplate jdbc;
+    private JdbcOeDataSource ds;
+    private ManualClockRollup rollup;
+
+    @Before
+    public void setUp() {
+        db = TestDatabase.create("rollup");
+        jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE visits (ts TIMESTAMP, sex VARCHAR(1))");
+        // three visits a day for 40 days up to today, at 01:00, 09:00 and 17:00
+        for (int day = 0; day < 40; day++) {
+            for (int hour = 1; hour < 24; hour += 8) {
+                insert(day(-day).getTime() + hour * 60 * 60 * 1000L, (day + hour) % 2 == 0 ? "M" : "F");
+            }
+        }
+
+        ds = new JdbcOeDataSource();
+        ds.setJdbcTemplate(jdbc);
+        ds.setBaseDetailsQuery("visits");
+        Map<String, ResolutionHandler> handlers = new HashMap<String, ResolutionHandler>();
+        handlers.put("daily", new MySqlDailyHandler());
+        handlers.put("monthly", new MySqlMonthlyHandler());
+        handlers.put("hourly", new MySqlHourlyHandler());
+        DimensionBean visit = TestDatabase.bean("visit", FieldType.DATE_TIME);
+        visit.setSqlCol("ts");
+        visit.setIsGrouping(true);
+        visit.setResolutionHandlers(handlers);
+        DimensionBean sex = TestDatabase.bean("sex", FieldType.TEXT);
+        sex.setIsGrouping(true);
+        DimensionBean total = TestDatabase.bean("total", FieldType.LONG);
+        total.setSqlCol("count(*)");
+        total.setIsFilter(false);
+        total.setIsAccumulation(true);
+        ds.setDimensions(Arrays.asList(visit, sex, total));
+
+        rollup = new ManualClockRollup(ds);
+        ds.setDailyRollup(rollup);
+    }
+
+    @After
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Test
+    public void testAnswersDailyAndMonthlySeries() {
+        List<Filter> filters = Arrays.<Filter>asList(new GteqFilter("visit", day(-20)), new LtFilter("visit", day(1)),
+                                                     new EqFilter("sex", "M"));
+        String daily = run("daily", filters);
+        String monthly = run("monthly", filters);
+        assertNull(rollup.query(store("daily", filters)));
+
+        rollup.refresh();
+        assertTrue(rollup.isUsable());
+        assertNotNull(rollup.query(store("daily", filters)));
+        assertNotNull(rollup.query(store("monthly", filters)));
+        assertEquals(daily, run("daily", filters));
+        assertEquals(monthly, run("monthly", filters));
+    }
+
+    @Test
+    public void testHourlySeriesUseBaseQuery() {
+        rollup.refresh();
+        List<Filter> filters = Arrays.<Filter>asList(new GteqFilter("visit", day(-2)), new LtFilter("visit", day(1)));
+        assertNull(rollup.query(store("hourly", filters)));
+        assertNull(rollup.query(store(null, filters)));
+
+        // the hours survive because the base query answered
+        assertEquals(9, ds.detailsQuery(store("hourly", filters)).size());
+        assertFalse(run("hourly", filters).contains("00:00:00"));
+    }
+
+    @Test
+    public void testWholeDayFilters() {
+        rollup.refresh();
+        long lastMillisecond = day(0).getTime() - 1;
+        assertAnswered(true, new GteqFilter("visit", day(-5)), new LtFilter("visit", day(0)));
+        assertAnswered(true, new GtFilter("visit", new Date(day(-5).getTime() - 1)),
+                       new LteqFilter("visit", new Date(lastMillisecond)));
+        // these would include or drop the boundary instant itself, not whole days
+        assertAnswered(false, new LteqFilter("visit", day(0)));
+        assertAnswered(false, new GtFilter("visit", day(-5)));
+        assertAnswered(false, new GteqFilter("visit", new Date(day(-5).getTime() + 9 * 60 * 60 * 1000L)));
+        assertAnswered(false, new LtFilter("visit", new Date(lastMillisecond)));
+    }
+
+    @Test
+    public void testIncrementalRefresh() {
+        rollup.setLookbackDays(14);
+        rollup.refresh();
+        assertEquals(3, rolledUpCount(day(-3)));
+        assertEquals(3, rolledUpCount(day(-30)));
+
+        insert(day(-3).getTime() + 1000, "M");
+        insert(day(-30).getTime() + 1000, "M");
+        rollup.refresh();
+        // the lookback period was deleted and inserted again, without duplicating rows
+        assertEquals(4, rolledUpCount(day(-3)));
+        assertEquals(3, rolledUpCount(day(-30)));
+        assertEquals(3, rolledUpCount(day(-14)));
+        assertEquals(40 * 3 + 1, (long) jdbc.queryForObject("SELECT sum(a_total) FROM visits_daily", Long.class));
+        assertTrue(rollup.isUsable());
+    }
+
+    @Test
+    public void testInvalidateFallsBackUntilRebuilt() {
+        List<Filter> filters = Arrays.<Filter>asList(new GteqFilter("visit", day(-35)), new LtFilter("visit", day(1)));
+        rollup.refresh();
+        insert(day(-30).getTime() + 1000, "M");
+
+        rollup.invalidate();
+        assertFalse(rollup.isUsable());
+        assertNull(rollup.query(store("daily", filters)));
+        String base = run("daily", filters);
+        assertTrue(base.contains("=4"));
+
+        rollup.refresh();
+        assertTrue(rollup.isUsable());
+        assertEquals(4, rolledUpCount(day(-30)));
+        assertNotNull(rollup.query(store("daily", filters)));
+        assertEquals(base, run("daily", filters));
+    }
+
+    @Test
+    public void testRecordsChanged() {
+        rollup.setLookbackDays(14);
+        rollup.refresh();
+        // the next refresh recomputes from 14 days ago, which still covers 13 days ago if it runs tomorrow
+        rollup.recordsChanged(Arrays.asList(day(0), day(-13)));
+        assertTrue(rollup.isUsable());
+        rollup.recordsChanged(Arrays.asList(day(0), new Date(day(-13).getTime() - 1)));
+        assertFalse(rollup.isUsable());
+
+        rollup.refresh();
+        rollup.recordsChanged(Collections.<Date>singletonList(null));
+        assertFalse(rollup.isUsable());
+    }
+
+    private void assertAnswered(boolean answered, Filter... filters) {
+        Collection<Record> records = rollup.query(store("daily", Arrays.asList(filters)));
+        assertEquals(Arrays.toString(filters), answered, records != null);
+    }
+
+    private long rolledUpCount(Date day) {
+        return jdbc.queryForObject("SELECT sum(a_total) FROM visits_daily WHERE rollup_day = ?", Long.class,
+                                   new java.sql.Date(day.getTime()));
+    }
+
+    private void insert(long time, String sex) {
+        jdbc.update("INSERT INTO visits VALUES (?, ?)", new Timestamp(time), sex);
+    }
+
+    private QueryManipulationStore store(String resolution, List<Filter> filters) {
+        List<Dimension> results = new ArrayList<Dimension>();
+        results.add(ds.getResultDimension("total"));
+        List<Grouping> groupings = new ArrayList<Grouping>();
+        groupings.add(new GroupingImpl("visit", resolution));
+        return new QueryManipulationStore(results, Collections.singletonList(ds.getAccumulation("total")),
+                                          new ArrayList<Filter>(filters), null, groupings, false, null);
+    }
+
+    private String run(String resolution, List<Filter> filters) {
+        StringBuilder sb = new StringBuilder();
+        for (Record record : ds.detailsQuery(store(resolution, filters))) {
+            sb.append(new Timestamp(((Date) record.getValue("visit")).getTime())).append('=')
+                    .append(record.getValue("total")).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * Midnight of today plus {@code days}.
+     */
+    private static Date day(int days) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(ManualClockRollup.MIDNIGHT);
+        cal.add(Calendar.DATE, days);
+        return cal.getTime();
+    }
+
+    private static class ManualClockRollup extends DailyRollup {
+
+        // 2013-03-20 00:00 local time
+        private static final long MIDNIGHT = java.sql.Date.valueOf("2013-03-20").getTime();
+
+        private ManualClockRollup(JdbcOeDataSource ds) {
+            super(ds, "visits_daily", "visit", Arrays.asList("sex"), Arrays.asList("total"));
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return MIDNIGHT + 10 * 60 * 60 * 1000L;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.OeDataSourceAccessException;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
+import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GtFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+import edu.jhuapl.openessence.datasource.util.DbTypesEnum;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DetailsPagingTest {
+
+    private static final int ROWS = 10;
+
+    private SingleConnectionDataSource db;
+    private PagedDataSource ds;
+
+    @Before
+    public void setUp() {
+        db = TestDatabase.create("paging");
+        JdbcTemplate jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(10), n INT NOT NULL)");
+        for (int id = 1; id <= ROWS; id++) {
+            // every third name is null, and n repeats so it needs the id to break ties
+            jdbc.update("INSERT INTO items VALUES (?, ?, ?)", id, id % 3 == 0 ? null : "item" + (ROWS - id), id % 4);
+        }
+
+        ds = new PagedDataSource();
+        ds.setJdbcTemplate(jdbc);
+        ds.setBaseDetailsQuery("items");
+        ds.setDimensions(Arrays.asList(TestDatabase.bean("id", FieldType.INTEGER),
+                                       TestDatabase.bean("name", FieldType.TEXT),
+                                       TestDatabase.bean("n", FieldType.INTEGER)));
+        ds.setUniqueKeys(Collections.singleton("id"));
+    }
+
+    @After
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Test
+    public void testPagingClause() throws OeDataSourceAccessException {
+        StringBuilder query = new StringBuilder("SELECT 1");
+        List<Object> args = new ArrayList<Object>();
+        ds.dbType = DbTypesEnum.PGSQL;
+        ds.addPagingClause(query, args, 20, 10);
+        assertEquals("SELECT 1 LIMIT ? OFFSET ?", query.toString());
+        assertEquals(Arrays.<Object>asList(10L, 20L), args);
+
+        query = new StringBuilder("SELECT 1");
+        args.clear();
+        ds.dbType = DbTypesEnum.ORACLE;
+        ds.addPagingClause(query, args, 20, 10);
+        assertEquals("SELECT 1 OFFSET ? ROWS FETCH NEXT ? ROWS ONLY", query.toString());
+        assertEquals(Arrays.<Object>asList(20L, 10L), args);
+    }
+
+    @Test
+    public void testPagesPerDatabase() throws OeDataSourceAccessException {
+        // H2 understands both clauses
+        for (DbTypesEnum type : Arrays.asList(DbTypesEnum.MYSQL, DbTypesEnum.PGSQL, DbTypesEnum.ORACLE)) {
+            ds.dbType = type;
+            // a data source never changes database, so cached SQL doesn't expect it to
+            ds.clearQueryPlans();
+            assertTrue(ds.supportsPaging());
+            assertEquals(type.toString(), Arrays.asList(4, 5, 6, 7), ids(page(3, 4, null, sort("id", "ASC"))));
+            assertEquals(type.toString(), Arrays.asList(9, 10), ids(page(8, 4, null, sort("id", "ASC"))));
+        }
+    }
+
+    @Test
+    public void testUnknownDatabaseDoesNotPage() {
+        ds.dbType = DbTypesEnum.UNKNOWN;
+        try {
+            assertFalse(ds.supportsPaging());
+            ds.addPagingClause(new StringBuilder(), new ArrayList<Object>(), 0, 10);
+            fail("Paging clause on an unknown database");
+        } catch (OeDataSourceAccessException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDetailsCount() {
+        QueryManipulationStore store = store(sort("id", "ASC"));
+        store.getWhereClauseFilters().add(new GtFilter("id", 3));
+        store.setOffset(2);
+        store.setLimit(2);
+        store.setKeyset(Arrays.<Object>asList(5));
+        // offset, limit and keyset are ignored
+        assertEquals(7, ds.detailsCount(store));
+        assertEquals(ROWS, ds.detailsCount(store(sort("id", "ASC"))));
+    }
+
+    @Test
+    public void testKeysetOnKey() {
+        // the keyset wins over the offset
+        assertEquals(Arrays.asList(6, 5, 4), ids(page(0, 3, Arrays.<Object>asList(7), sort("id", "DESC"))));
+    }
+
+    @Test
+    public void testKeysetOnNonNullDimension() {
+        ds.setNonNullDimensions(Collections.singleton("n"));
+        List<OrderByFilter> sorts = sort("n", "ASC", "id", "ASC");
+        // n is id % 4: 4 8 | 1 5 9 | 2 6 10 | 3 7
+        assertEquals(Arrays.asList(9, 2, 6), ids(page(0, 3, Arrays.<Object>asList(1, 5), sorts)));
+    }
+
+    @Test
+    public void testNullableSortPagesByOffset() {
+        List<OrderByFilter> sorts = sort("name", "ASC", "id", "ASC");
+        List<Integer> all = ids(page(0, ROWS, null, sorts));
+        assertEquals(ROWS, all.size());
+
+        // walk the pages the way the grid does, passing the keyset of the last row and the offset
+        List<Integer> paged = new ArrayList<Integer>();
+        List<Object> keyset = null;
+        for (int offset = 0; offset < ROWS; offset += 3) {
+            List<Record> page = page(offset, 3, keyset, sorts);
+            Record last = page.get(page.size() - 1);
+            keyset = Arrays.asList(last.getValue("name"), last.getValue("id"));
+            paged.addAll(ids(page));
+        }
+        assertEquals(all, paged);
+        assertEquals(ROWS, new HashSet<Integer>(paged).size());
+    }
+
+    private List<Record> page(long offset, long limit, List<Object> keyset, List<OrderByFilter> sorts) {
+        QueryManipulationStore store = store(sorts);
+        store.setOffset(offset);
+        store.setLimit(limit);
+        store.setKeyset(keyset);
+        return new ArrayList<Record>(ds.detailsQuery(store));
+    }
+
+    private QueryManipulationStore store(List<OrderByFilter> sorts) {
+        List<Dimension> results = new ArrayList<Dimension>();
+        for (String id : Arrays.asList("id", "name", "n")) {
+            results.add(ds.getResultDimension(id));
+        }
+        return new QueryManipulationStore(results, null, new ArrayList<Filter>(), sorts, false);
+    }
+
+    private static List<OrderByFilter> sort(String... idsAndDirections) {
+        List<OrderByFilter> sorts = new ArrayList<OrderByFilter>();
+        for (int i = 0; i < idsAndDirections.length; i += 2) {
+            sorts.add(new OrderByFilter(idsAndDirections[i], idsAndDirections[i + 1]));
+        }
+        return sorts;
+    }
+
+    private static List<Integer> ids(List<Record> records) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Record record : records) {
+            ids.add((Integer) record.getValue("id"));
+        }
+        return ids;
+    }
+
+    private static class PagedDataSource extends JdbcOeDataSource {
+
+        private DbTypesEnum dbType = DbTypesEnum.PGSQL;
+
+        @Override
+        public DbTypesEnum showMeDbType() {
+            return dbType;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
+import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.dataseries.Grouping;
+import edu.jhuapl.openessence.datasource.jdbc.dataseries.GroupingImpl;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+import edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.mysql.MySqlDailyHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Details rows read into {@link ColumnarRecords} against the same rows mapped through {@code createRecord}.
+ */
+public class DetailsRecordsTest {
+
+    private SingleConnectionDataSource db;
+    private JdbcTemplate jdbc;
+
+    @Before
+    public void setUp() {
+        db = TestDatabase.create("records");
+        jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE visits (id INT PRIMARY KEY, ts TIMESTAMP, sex VARCHAR(1))");
+        for (int id = 1; id <= 12; id++) {
+            jdbc.update("INSERT INTO visits VALUES (?, ?, ?)", id, new Timestamp(1363737600000L + id * 21600000L),
+                        id % 3 == 0 ? null : id % 2 == 0 ? "F" : "M");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Test
+    public void testOverridesCreateRecord() {
+        assertFalse(JdbcOeDataSource.overridesCreateRecord(JdbcOeDataSource.class));
+        assertFalse(JdbcOeDataSource.overridesCreateRecord(new JdbcOeDataSource() {
+        }.getClass()));
+        assertTrue(JdbcOeDataSource.overridesCreateRecord(RecordMappingDataSource.class));
+        assertTrue(JdbcOeDataSource.overridesCreateRecord(LowerCaseDataSource.class));
+    }
+
+    @Test
+    public void testOverriddenCreateRecordIsUsed() {
+        JdbcOeDataSource ds = configure(new LowerCaseDataSource());
+        List<String> sexes = new ArrayList<String>();
+        for (Record record : ds.detailsQuery(store(ds, Arrays.asList("id", "sex"), null, null))) {
+            sexes.add((String) record.getValue("sex"));
+        }
+        assertEquals(Arrays.asList("m", "f", null, "f", "m", null, "m", "f", null, "f", "m", null), sexes);
+    }
+
+    @Test
+    public void testDetailsRows() {
+        assertSameRecords(Arrays.asList("id", "ts", "sex"), null, null);
+    }
+
+    @Test
+    public void testGroupedByResolution() {
+        assertSameRecords(Collections.singletonList("total"), "ts", "daily");
+    }
+
+    private void assertSameRecords(List<String> results, String grouping, String resolution) {
+        JdbcOeDataSource columnar = configure(new JdbcOeDataSource());
+        JdbcOeDataSource mapped = configure(new RecordMappingDataSource());
+
+        Collection<Record> expected = mapped.detailsQuery(store(mapped, results, grouping, resolution));
+        Collection<Record> actual = columnar.detailsQuery(store(columnar, results, grouping, resolution));
+        assertTrue(actual instanceof ColumnarRecords);
+        assertFalse(expected instanceof ColumnarRecords);
+        assertEquals(expected.size(), actual.size());
+        assertTrue(expected.size() > 0);
+
+        List<Record> expectedRows = new ArrayList<Record>(expected);
+        List<Record> actualRows = new ArrayList<Record>(actual);
+        for (int i = 0; i < expectedRows.size(); i++) {
+            Map<String, Object> expectedValues = expectedRows.get(i).getValues();
+            Map<String, Object> actualValues = new LinkedHashMap<String, Object>(actualRows.get(i).getValues());
+            assertEquals(expectedValues, actualValues);
+            assertEquals(expectedRows.get(i).getResultIds(), actualRows.get(i).getResultIds());
+            for (Map.Entry<String, Object> entry : expectedValues.entrySet()) {
+                if (entry.getValue() != null) {
+                    assertEquals(entry.getKey(), entry.getValue().getClass(),
+                                 actualValues.get(entry.getKey()).getClass());
+                }
+            }
+        }
+    }
+
+    private static QueryManipulationStore store(JdbcOeDataSource ds, List<String> resultIds, String grouping,
+                                                String resolution) {
+        List<Dimension> results = new ArrayList<Dimension>();
+        for (String id : resultIds) {
+            results.add(ds.getResultDimension(id));
+        }
+        List<OrderByFilter> sorts = new ArrayList<OrderByFilter>();
+        List<Dimension> accumulations = null;
+        List<Grouping> groupings = null;
+        if (grouping == null) {
+            sorts.add(new OrderByFilter("id", "ASC"));
+        } else {
+            accumulations = Collections.singletonList(ds.getAccumulation("total"));
+            groupings = Collections.<Grouping>singletonList(new GroupingImpl(grouping, resolution));
+        }
+        return new QueryManipulationStore(results, accumulations, new ArrayList<Filter>(), sorts, groupings, false,
+                                          null);
+    }
+
+    private JdbcOeDataSource configure(JdbcOeDataSource ds) {
+        ds.setJdbcTemplate(jdbc);
+        ds.setBaseDetailsQuery("visits");
+        Map<String, ResolutionHandler> handlers = new HashMap<String, ResolutionHandler>();
+        handlers.put("daily", new MySqlDailyHandler());
+        DimensionBean ts = TestDatabase.bean("ts", FieldType.DATE_TIME);
+        ts.setIsGrouping(true);
+        ts.setResolutionHandlers(handlers);
+        DimensionBean sex = TestDatabase.bean("sex", FieldType.TEXT);
+        sex.setIsGrouping(true);
+        DimensionBean total = TestDatabase.bean("total", FieldType.LONG);
+        total.setSqlCol("count(*)");
+        total.setIsFilter(false);
+        total.setIsAccumulation(true);
+        ds.setDimensions(Arrays.asList(TestDatabase.bean("id", FieldType.INTEGER), ts, sex, total));
+        return ds;
+    }
+
+    /**
+     * Maps rows through the default {@code createRecord} methods.
+     */
+    private static class RecordMappingDataSource extends JdbcOeDataSource {
+
+        @Override
+        protected Record createRecord(List<Dimension> queryDimensions, ResultSet rs) throws SQLException {
+            return super.createRecord(queryDimensions, rs);
+        }
+
+        @Override
+        protected Record createRecord(List<Dimension> queryDimensions, ResultSet rs,
+                                      List<DimensionBean> groupingDimensions, List<ResolutionHandler> handlers,
+                                      List<Integer> colAddedCounts) throws SQLException {
+            return super.createRecord(queryDimensions, rs, groupingDimensions, handlers, colAddedCounts);
+        }
+    }
+
+    private static class LowerCaseDataSource extends JdbcOeDataSource {
+
+        @Override
+        protected Record createRecord(List<Dimension> queryDimensions, ResultSet rs, int offset)
+                throws SQLException {
+            Record record = super.createRecord(queryDimensions, rs, offset);
+            Map<String, Object> values = new LinkedHashMap<String, Object>(record.getValues());
+            if (values.get("sex") != null) {
+                values.put("sex", ((String) values.get("sex")).toLowerCase());
+            }
+            return new QueryRecord(record.getDimensions(), values);
+        }
+    }
+}
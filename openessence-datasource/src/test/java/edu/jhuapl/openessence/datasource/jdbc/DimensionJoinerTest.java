@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Record;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DimensionJoinerTest {
+
+    private static final long MAX_AGE = 60000;
+
+    private SingleConnectionDataSource db;
+    private JdbcTemplate jdbc;
+    private JdbcOeDataSource base;
+    private ManualClockJoiner joiner;
+
+    @Before
+    public void setUp() {
+        db = TestDatabase.create("joiner");
+        jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE syndromes (name VARCHAR(10) PRIMARY KEY)");
+        jdbc.execute("CREATE TABLE visits (id INT PRIMARY KEY)");
+        jdbc.update("INSERT INTO syndromes VALUES ('gi')");
+        jdbc.update("INSERT INTO syndromes VALUES ('ili')");
+
+        JdbcOeDataSource syndromes = new JdbcOeDataSource();
+        syndromes.setJdbcTemplate(jdbc);
+        syndromes.setBaseDetailsQuery("syndromes");
+        syndromes.setDimensions(Collections.singletonList(TestDatabase.bean("name", FieldType.TEXT)));
+
+        base = new JdbcOeDataSource();
+        base.setJdbcTemplate(jdbc);
+        base.setBaseDetailsQuery("visits");
+        base.setDimensions(Collections.singletonList(TestDatabase.bean("id", FieldType.INTEGER)));
+
+        joiner = new ManualClockJoiner(base, Collections.singletonMap(
+                syndromes, Collections.singletonList(syndromes.getDimensionRegistry().getAllResults()
+                                                             .getBean("name"))));
+        joiner.setMaxAge(MAX_AGE);
+        base.setDimensionJoiner(joiner);
+    }
+
+    @After
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Test
+    public void testJoinsOnFirstUse() {
+        assertEquals(0, joiner.getVersion());
+        assertEquals(Arrays.asList("gi", "ili"), accumulationIds());
+        assertEquals(1, joiner.getVersion());
+        assertNotNull(base.getResultDimension("gi"));
+    }
+
+    @Test
+    public void testRefreshesAfterMaxAge() {
+        accumulationIds();
+        jdbc.update("INSERT INTO syndromes VALUES ('rash')");
+        jdbc.update("DELETE FROM syndromes WHERE name = 'gi'");
+
+        joiner.now += MAX_AGE - 1;
+        assertEquals(Arrays.asList("gi", "ili"), accumulationIds());
+        assertEquals(1, joiner.getVersion());
+
+        joiner.now += 1;
+        assertEquals(Arrays.asList("ili", "rash"), accumulationIds());
+        assertEquals(2, joiner.getVersion());
+        assertNull(base.getResultDimension("gi"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        accumulationIds();
+        jdbc.update("INSERT INTO syndromes VALUES ('rash')");
+
+        joiner.invalidate();
+        assertEquals(Arrays.asList("gi", "ili", "rash"), accumulationIds());
+        assertEquals(2, joiner.getVersion());
+
+        // fresh again until the next invalidate or max age
+        accumulationIds();
+        assertEquals(2, joiner.getVersion());
+    }
+
+    @Test
+    public void testNoMaxAge() {
+        joiner.setMaxAge(0);
+        accumulationIds();
+        joiner.now += 365 * 24 * 3600 * 1000L;
+        accumulationIds();
+        assertEquals(1, joiner.getVersion());
+
+        joiner.refresh();
+        assertEquals(2, joiner.getVersion());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsDimensions() {
+        accumulationIds();
+        DimensionRegistry joined = base.getDimensionRegistry();
+        jdbc.execute("ALTER TABLE syndromes RENAME TO syndromes_old");
+
+        joiner.invalidate();
+        try {
+            base.getAccumulations();
+            fail("Expected the refresh to fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertSame(joined, base.getDimensionRegistry());
+        assertEquals(1, joiner.getVersion());
+
+        // still invalid, so the next use tries again
+        jdbc.execute("ALTER TABLE syndromes_old RENAME TO syndromes");
+        assertEquals(Arrays.asList("gi", "ili"), accumulationIds());
+        assertEquals(2, joiner.getVersion());
+    }
+
+    @Test
+    public void testRefreshPublishesOneRegistry() {
+        accumulationIds();
+        DimensionRegistry before = base.getDimensionRegistry();
+        jdbc.update("INSERT INTO syndromes VALUES ('rash')");
+        joiner.refresh();
+
+        // the old registry is untouched, the new one has the dimension in every role
+        DimensionRegistry after = base.getDimensionRegistry();
+        assertEquals(2, before.getAccumulations().size());
+        assertTrue(after.getAccumulations().contains("rash"));
+        assertTrue(after.getResults().contains("rash"));
+        assertTrue(after.getAllResults().contains("rash"));
+        assertSame(after.getAccumulations().getBean("rash"), after.getResults().getBean("rash"));
+    }
+
+    private List<String> accumulationIds() {
+        List<String> ids = new ArrayList<String>();
+        for (Dimension d : base.getAccumulations()) {
+            ids.add(d.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private static class ManualClockJoiner extends DimensionJoiner {
+
+        private long now = 1000000;
+
+        ManualClockJoiner(JdbcOeDataSource baseDs, Map<JdbcOeDataSource, ? extends Collection<DimensionBean>> mapping) {
+            super(baseDs, mapping);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        protected DimensionBean onDimensionJoin(JdbcOeDataSource otherDs, DimensionBean otherDimension, Record r) {
+            DimensionBean bean = super.onDimensionJoin(otherDs, otherDimension, r);
+            String name = (String) r.getValue(otherDimension.getId());
+            bean.setId(name);
+            bean.setSqlCol("0");
+            return bean;
+        }
+    }
+}
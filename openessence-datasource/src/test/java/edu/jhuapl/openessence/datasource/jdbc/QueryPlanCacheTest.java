@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc;
+
+import edu.jhuapl.openessence.datasource.Dimension;
+import edu.jhuapl.openessence.datasource.FieldType;
+import edu.jhuapl.openessence.datasource.Filter;
+import edu.jhuapl.openessence.datasource.QueryManipulationStore;
+import edu.jhuapl.openessence.datasource.Record;
+import edu.jhuapl.openessence.datasource.jdbc.filter.EqFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.GtFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.InFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.LikeFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.NotFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.OrFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.SqlGeneratingFilter;
+import edu.jhuapl.openessence.datasource.jdbc.filter.sorting.OrderByFilter;
+import edu.jhuapl.openessence.datasource.util.DbTypesEnum;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class QueryPlanCacheTest {
+
+    private static final int ROWS = 10;
+
+    private SingleConnectionDataSource db;
+    private RecordingDataSource ds;
+
+    @Before
+    public void setUp() {
+        db = TestDatabase.create("plans");
+        JdbcTemplate jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE items (id INT PRIMARY KEY, name VARCHAR(10), n INT NOT NULL)");
+        for (int id = 1; id <= ROWS; id++) {
+            jdbc.update("INSERT INTO items VALUES (?, ?, ?)", id, "item" + id, id % 4);
+        }
+
+        ds = new RecordingDataSource();
+        ds.setJdbcTemplate(new JdbcTemplate(new RecordingDatabase(db, ds)));
+        ds.setBaseDetailsQuery("items");
+        ds.setDimensions(Arrays.asList(TestDatabase.bean("id", FieldType.INTEGER),
+                                       TestDatabase.bean("name", FieldType.TEXT),
+                                       TestDatabase.bean("n", FieldType.INTEGER)));
+        ds.setUniqueKeys(Collections.singleton("id"));
+    }
+
+    @After
+    public void tearDown() {
+        db.destroy();
+    }
+
+    @Test
+    public void testOffByDefault() {
+        assertEquals(0, new JdbcOeDataSource().getQueryPlanCacheSize());
+    }
+
+    @Test
+    public void testCacheHitMatchesColdBuild() {
+        List<QueryManipulationStore> stores = stores();
+        List<Statement> cold = new ArrayList<Statement>();
+        List<List<Record>> coldRecords = new ArrayList<List<Record>>();
+        for (QueryManipulationStore store : stores) {
+            coldRecords.add(new ArrayList<Record>(ds.detailsQuery(store)));
+            cold.add(ds.last);
+        }
+        assertEquals(stores.size(), ds.whereClauses);
+
+        ds.setQueryPlanCacheSize(100);
+        for (QueryManipulationStore store : stores) {
+            ds.detailsQuery(store);
+        }
+        ds.whereClauses = 0;
+        for (int i = 0; i < stores.size(); i++) {
+            assertEquals(coldRecords.get(i), new ArrayList<Record>(ds.detailsQuery(stores.get(i))));
+            assertEquals(cold.get(i).sql, ds.last.sql);
+            assertEquals(cold.get(i).arguments, ds.last.arguments);
+        }
+        // every query came from the cache
+        assertEquals(0, ds.whereClauses);
+    }
+
+    @Test
+    public void testArgumentCountChangesShape() {
+        ds.setQueryPlanCacheSize(100);
+        ds.detailsQuery(store(new InFilter("id", new Object[]{1, 2})));
+        String two = ds.last.sql;
+        ds.detailsQuery(store(new InFilter("id", new Object[]{1, 2, 3})));
+        assertNotEquals(two, ds.last.sql);
+        assertEquals(Arrays.<Object>asList(1, 2, 3), ds.last.arguments);
+    }
+
+    private List<QueryManipulationStore> stores() {
+        List<QueryManipulationStore> stores = new ArrayList<QueryManipulationStore>();
+        stores.add(store());
+        stores.add(store(new GtFilter("id", 3)));
+        stores.add(store(new GtFilter("id", 5)));
+        stores.add(store(new InFilter("n", new Object[]{1, 2}), new NotFilter(new EqFilter("id", 6))));
+        stores.add(store(new OrFilter(Arrays.<SqlGeneratingFilter>asList(new LikeFilter("name", "item1%"),
+                                                                       new EqFilter("n", 3)))));
+        QueryManipulationStore paged = store(new GtFilter("n", 0));
+        paged.setOffset(2);
+        paged.setLimit(3);
+        stores.add(paged);
+        QueryManipulationStore keyset = store();
+        keyset.setLimit(3);
+        keyset.setKeyset(Arrays.<Object>asList(4));
+        stores.add(keyset);
+        return stores;
+    }
+
+    private QueryManipulationStore store(Filter... filters) {
+        List<Dimension> results = new ArrayList<Dimension>();
+        for (String id : Arrays.asList("id", "name", "n")) {
+            results.add(ds.getResultDimension(id));
+        }
+        return new QueryManipulationStore(results, null, new ArrayList<Filter>(Arrays.asList(filters)),
+                                          Arrays.asList(new OrderByFilter("id", "ASC")), false);
+    }
+
+    private static class Statement {
+
+        private String sql;
+        private List<Object> arguments;
+    }
+
+    /**
+     * Remembers the last statement it ran and how many times it built a where clause.
+     */
+    private static class RecordingDataSource extends JdbcOeDataSource {
+
+        private Statement last;
+        private int whereClauses;
+
+        @Override
+        public DbTypesEnum showMeDbType() {
+            return DbTypesEnum.PGSQL;
+        }
+
+        @Override
+        protected void addWhereClauses(StringBuilder query, Collection<Filter> filters) {
+            whereClauses++;
+            super.addWhereClauses(query, filters);
+        }
+
+        @Override
+        protected void setArguments(List<Object> arguments, PreparedStatement pStmt) throws SQLException {
+            last.arguments = new ArrayList<Object>(arguments);
+            super.setArguments(arguments, pStmt);
+        }
+    }
+
+    /**
+     * Passes the SQL of every prepared statement to the data source before preparing it.
+     */
+    private static class RecordingDatabase extends DelegatingDataSource {
+
+        private final RecordingDataSource ds;
+
+        RecordingDatabase(SingleConnectionDataSource db, RecordingDataSource ds) {
+            super(db);
+            this.ds = ds;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                                                       new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getName().equals("prepareStatement")) {
+                        ds.last = new Statement();
+                        ds.last.sql = (String) args[0];
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            });
+        }
+    }
+}
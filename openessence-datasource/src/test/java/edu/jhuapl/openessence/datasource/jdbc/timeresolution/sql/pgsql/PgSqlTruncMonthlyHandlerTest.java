@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql;
+
+import edu.jhuapl.openessence.datasource.OeDataSourceException;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class PgSqlTruncMonthlyHandlerTest {
+
+    @Test
+    public void testResolutionColumns() throws Exception {
+        PgSqlTruncMonthlyHandler handler = new PgSqlTruncMonthlyHandler();
+        assertEquals(Collections.singletonList("date_trunc('month', visit_date)"),
+                     handler.getResolutionColumns("visit_date", null));
+        assertEquals(Collections.singletonList("date_trunc('month', visit_date)"),
+                     handler.getResolutionColumns("visit_date", ""));
+        assertEquals(Collections.singletonList("date_trunc('month', visit_time AT TIME ZONE 'EST' )"),
+                     handler.getResolutionColumns("visit_time", "EST"));
+    }
+
+    @Test
+    public void testBuildKernel() throws Exception {
+        Calendar c = Calendar.getInstance();
+        c.clear();
+        c.set(2013, Calendar.FEBRUARY, 1);
+        Date monthStart = c.getTime();
+        Object kernel = new PgSqlTruncMonthlyHandler().buildKernel(new Object[]{monthStart});
+        assertEquals(monthStart, kernel);
+        assertNotSame(monthStart, kernel);
+    }
+
+    @Test(expected = OeDataSourceException.class)
+    public void testBuildKernelNeedsDate() throws Exception {
+        new PgSqlTruncMonthlyHandler().buildKernel(new Object[]{2013, 2});
+    }
+}
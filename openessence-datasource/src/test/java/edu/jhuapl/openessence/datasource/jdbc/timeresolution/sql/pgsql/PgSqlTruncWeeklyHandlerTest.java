@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2013 The Johns Hopkins University/Applied Physics Laboratory
+ *                             All rights reserved.
+ *
+ * This material may be used, modified, or reproduced by or for the U.S.
+ * Government pursuant to the rights granted under the clauses at
+ * DFARS 252.227-7013/7014 or FAR 52.227-14.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * NO WARRANTY.   THIS MATERIAL IS PROVIDED "AS IS."  JHU/APL DISCLAIMS ALL
+ * WARRANTIES IN THE MATERIAL, WHETHER EXPRESS OR IMPLIED, INCLUDING (BUT NOT
+ * LIMITED TO) ANY AND ALL IMPLIED WARRANTIES OF PERFORMANCE,
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, AND NON-INFRINGEMENT OF
+ * INTELLECTUAL PROPERTY RIGHTS. ANY USER OF THE MATERIAL ASSUMES THE ENTIRE
+ * RISK AND LIABILITY FOR USING THE MATERIAL.  IN NO EVENT SHALL JHU/APL BE
+ * LIABLE TO ANY USER OF THE MATERIAL FOR ANY ACTUAL, INDIRECT,
+ * CONSEQUENTIAL, SPECIAL OR OTHER DAMAGES ARISING FROM THE USE OF, OR
+ * INABILITY TO USE, THE MATERIAL, INCLUDING, BUT NOT LIMITED TO, ANY DAMAGES
+ * FOR LOST PROFITS.
+ */
+
+package edu.jhuapl.openessence.datasource.jdbc.timeresolution.sql.pgsql;
+
+import edu.jhuapl.openessence.datasource.OeDataSourceException;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class PgSqlTruncWeeklyHandlerTest {
+
+    private static final Pattern SHIFT = Pattern.compile("interval '(\\d) days'");
+
+    @Test
+    public void testResolutionColumnsForEachStartDay() throws Exception {
+        // date_trunc weeks start on Monday, so every other start day is a shift back and forth
+        int[] offsets = {6, 0, 1, 2, 3, 4, 5};
+        for (int day = 0; day < 7; day++) {
+            String expected = offsets[day] == 0 ? "date_trunc('week', visit_date)"
+                              : "(date_trunc('week', (visit_date) - interval '" + offsets[day] + " days')"
+                                + " + interval '" + offsets[day] + " days')";
+            assertEquals(Collections.singletonList(expected),
+                         new PgSqlTruncWeeklyHandler(day).getResolutionColumns("visit_date", null));
+            assertEquals(Collections.singletonList(expected),
+                         new PgSqlTruncWeeklyHandler(day).getResolutionColumns("visit_date", ""));
+        }
+    }
+
+    @Test
+    public void testResolutionColumnsWithTimezone() throws Exception {
+        assertEquals(Collections.singletonList("date_trunc('week', visit_time AT TIME ZONE 'EST' )"),
+                     new PgSqlTruncWeeklyHandler(1).getResolutionColumns("visit_time", "EST"));
+        assertEquals(Collections.singletonList("(date_trunc('week', (visit_time AT TIME ZONE 'EST' ) - interval "
+                                               + "'6 days') + interval '6 days')"),
+                     new PgSqlTruncWeeklyHandler(0).getResolutionColumns("visit_time", "EST"));
+    }
+
+    @Test
+    public void testWeeksStartOnStartDay() throws Exception {
+        for (int day = 0; day < 7; day++) {
+            String column = new PgSqlTruncWeeklyHandler(day).getResolutionColumns("d", null).get(0);
+            Matcher shift = SHIFT.matcher(column);
+            int offset = shift.find() ? Integer.parseInt(shift.group(1)) : 0;
+
+            Calendar date = midnight(2013, Calendar.JUNE, 1);
+            for (int i = 0; i < 21; i++) {
+                Calendar weekStart = (Calendar) date.clone();
+                weekStart.add(Calendar.DATE, -offset);
+                while (weekStart.get(Calendar.DAY_OF_WEEK) != Calendar.MONDAY) {
+                    weekStart.add(Calendar.DATE, -1);
+                }
+                weekStart.add(Calendar.DATE, offset);
+
+                // OE days count from 0 for Sunday, Calendar days from 1
+                assertEquals(day + 1, weekStart.get(Calendar.DAY_OF_WEEK));
+                long days = (date.getTimeInMillis() - weekStart.getTimeInMillis()) / (24 * 60 * 60 * 1000L);
+                assertTrue(days >= 0 && days < 7);
+                date.add(Calendar.DATE, 1);
+            }
+        }
+    }
+
+    @Test
+    public void testBuildKernel() throws Exception {
+        Date weekStart = midnight(2013, Calendar.JUNE, 9).getTime();
+        for (int day = 0; day < 7; day++) {
+            Object kernel = new PgSqlTruncWeeklyHandler(day).buildKernel(new Object[]{weekStart});
+            assertEquals(weekStart, kernel);
+            assertNotSame(weekStart, kernel);
+        }
+    }
+
+    @Test(expected = OeDataSourceException.class)
+    public void testBuildKernelNeedsDate() throws Exception {
+        new PgSqlTruncWeeklyHandler().buildKernel(new Object[]{2013, 23});
+    }
+
+    private static Calendar midnight(int year, int month, int day) {
+        Calendar c = Calendar.getInstance();
+        c.clear();
+        c.set(year, month, day);
+        return c;
+    }
+}